@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This class runs the benchmarks (java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regexp]).
+ * It accepts the JMH command line options, but unless a result format is given the results are written as JSON to
+ * 'jmh-result.json', so runs can be compared to find regressions (i.e by uploading the file to a JMH visualizer, or by
+ * comparing the 'primaryMetric' score of every benchmark and its parameters).
+ *
+ */
+public class BenchmarkMain {
+	private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args The JMH command line options.
+	 * @throws IOException
+	 * @throws CommandLineOptionException
+	 * @throws RunnerException
+	 */
+	public static void main(String[] args) throws IOException, CommandLineOptionException, RunnerException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if (options.shouldHelp()||options.shouldList()||options.shouldListWithParams()||options.shouldListProfilers()||
+				options.shouldListResultFormats()){
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+		if (!options.getResultFormat().hasValue()){
+			builder.resultFormat(ResultFormatType.JSON);
+			if (!options.getResult().hasValue()){
+				builder.result(DEFAULT_RESULT_FILE);
+			}
+		}
+		new Runner(builder.build()).run();
+	}
+}
@@ -0,0 +1,190 @@
+package benchmarks;
+
+import java.io.*;
+import java.util.Locale;
+import java.util.Random;
+
+import application.Parser;
+import scene.Scene;
+import scene.SceneParser;
+import sceneObjects.ISceneObject;
+import vectors.*;
+
+/**
+ * This class builds the scenes, the objects and the rays which the benchmarks measure.
+ * The scenes are generated from a fixed seed, so every run of a benchmark measures the same work.
+ *
+ */
+public class BenchmarkScenes {
+	/**
+	 * The width and height of the canvas of the generated scenes.
+	 */
+	public static final int CANVAS_SIZE = 256;
+
+	private BenchmarkScenes(){
+	}
+
+	/**
+	 * Returns a parsed, compiled scene for the given scene text.
+	 * The output of the parser is suppressed.
+	 *
+	 * @param sceneText
+	 * @return The scene.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	public static Scene parse(String sceneText) throws IOException, Parser.ParseException {
+		return parse(sceneText, CANVAS_SIZE, CANVAS_SIZE);
+	}
+
+	/**
+	 * Returns a parsed, compiled scene for the given scene text, with a canvas of the given size.
+	 * The output of the parser is suppressed.
+	 *
+	 * @param sceneText
+	 * @param width
+	 * @param height
+	 * @return The scene.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	public static Scene parse(String sceneText, int width, int height) throws IOException, Parser.ParseException {
+		Scene scene = new Scene();
+		scene.setCanvasSize(height, width);
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			new SceneParser(scene).parse(new StringReader(sceneText));
+		} finally {
+			System.setOut(out);
+		}
+		scene.initSceneViewPlane();
+		scene.compile();
+		return scene;
+	}
+
+	/**
+	 * Returns the text of a scene with a camera, a point light, a floor and the given number of random spheres and
+	 * triangles (half of each) in front of the camera.
+	 *
+	 * @param objectCount
+	 * @param seed
+	 * @return The text of the scene.
+	 */
+	public static String createRandomScene(int objectCount, long seed){
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		sb.append("scene:\nbackground-col = 0.3 0.3 0.4\nambient-light = 0.2 0.2 0.2\n\n");
+		sb.append("camera:\neye = 0 2 8\nlook-at = 0 1 0\nscreen-dist = 1\nup-direction = 0 1 0\n\n");
+		sb.append("light-point:\npos = 3 6 4\ncolor = 0.9 0.9 0.9\n\n");
+		sb.append("rectangle:\np0 = -6 0 -6\np1 = 6 0 -6\np2 = -6 0 6\nmtl-diffuse = 0.6 0.6 0.6\n\n");
+		double size = 2.0 / Math.cbrt(Math.max(objectCount, 1));
+		for (int i=0; i<objectCount; i++){
+			double x = -4 + 8*random.nextDouble();
+			double y = 0.2 + 3*random.nextDouble();
+			double z = -4 + 8*random.nextDouble();
+			String color = format(random.nextDouble(), random.nextDouble(), random.nextDouble());
+			if (i%2==0){
+				sb.append("sphere:\ncenter = ").append(format(x, y, z)).append("\n");
+				sb.append("radius = ").append(format(size*(0.3+0.5*random.nextDouble()))).append("\n");
+			}else{
+				sb.append("triangle:\np0 = ").append(format(x, y, z)).append("\n");
+				sb.append("p1 = ").append(format(x+size, y, z+size*random.nextDouble())).append("\n");
+				sb.append("p2 = ").append(format(x+size*random.nextDouble(), y+size, z)).append("\n");
+			}
+			sb.append("mtl-diffuse = ").append(color).append("\nmtl-specular = 0.5 0.5 0.5\n\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns rays from the camera of the scene through random points of its view plane.
+	 *
+	 * @param scene
+	 * @param count
+	 * @param seed
+	 * @return The rays.
+	 */
+	public static IRay[] createPrimaryRays(Scene scene, int count, long seed){
+		Random random = new Random(seed);
+		IPoint3D eye = scene.getCamera().getEyePosition();
+		IPoint3D lookAt = eye.movePointByVector(scene.getCamera().getViewDirection());
+		IVector3D up = scene.getCamera().getUpDirection();
+		IVector3D right = scene.getCamera().getRightDirection();
+		IRay[] rays = new IRay[count];
+		for (int i=0; i<count; i++){
+			double u = random.nextDouble()-0.5;
+			double v = random.nextDouble()-0.5;
+			IPoint3D p = lookAt.movePointByVector(right.multiplyByScalar(u)).movePointByVector(up.multiplyByScalar(v));
+			rays[i] = new Ray(eye, new Vector3D(eye, p).normalize());
+		}
+		return rays;
+	}
+
+	/**
+	 * Returns a single object which is parsed from the given block of a scene file (without its name line).
+	 *
+	 * @param name The name of the object (i.e 'sphere').
+	 * @param parameters The parameter lines of the object.
+	 * @return The object.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	public static ISceneObject createObject(String name, String parameters) throws IOException, Parser.ParseException {
+		Scene scene = parse(name+":\n"+parameters+"\nmtl-diffuse = 0.5 0.5 0.5\n");
+		return scene.getObjectList().get(0);
+	}
+
+	/**
+	 * Writes a mesh of a sphere with about the given number of triangles to a file in the 'off' format.
+	 *
+	 * @param file
+	 * @param triangleCount
+	 * @throws IOException
+	 */
+	public static void writeSphereMesh(File file, int triangleCount) throws IOException {
+		int segments = Math.max(3, (int)Math.round(Math.sqrt(triangleCount/2.0)));
+		int rings = segments;
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		try {
+			out.println("OFF");
+			out.println(((rings+1)*segments)+" "+(2*rings*segments)+" 0");
+			for (int r=0; r<=rings; r++){
+				double theta = Math.PI*r/rings;
+				for (int s=0; s<segments; s++){
+					double phi = 2*Math.PI*s/segments;
+					out.println(format(Math.sin(theta)*Math.cos(phi), Math.cos(theta), Math.sin(theta)*Math.sin(phi)));
+				}
+			}
+			for (int r=0; r<rings; r++){
+				for (int s=0; s<segments; s++){
+					int a = r*segments+s;
+					int b = r*segments+(s+1)%segments;
+					int c = a+segments;
+					int d = b+segments;
+					out.println("3 "+a+" "+c+" "+b);
+					out.println("3 "+b+" "+c+" "+d);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the given numbers as the arguments of a scene file parameter.
+	 *
+	 * @param values
+	 * @return The given numbers separated by spaces.
+	 */
+	private static String format(double... values){
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<values.length; i++){
+			if (i>0){
+				sb.append(' ');
+			}
+			sb.append(String.format(Locale.ROOT, "%.6f", values[i]));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import application.Parser;
+import scene.Scene;
+import sceneObjects.Mesh;
+
+/**
+ * This class measures loading a mesh file: parsing the file, building the triangles and computing the normals of the
+ * vertices (Mesh.parseParameter and Mesh.commit), for meshes of several sizes.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MeshBenchmark {
+
+	@Param({"1000", "4000", "16000"})
+	public int triangles;
+
+	private File directory;
+	private File file;
+
+	/**
+	 * Writes the mesh file to a temporary directory.
+	 *
+	 * @throws IOException
+	 */
+	@Setup
+	public void setup() throws IOException {
+		directory = File.createTempFile("mesh-benchmark", "");
+		directory.delete();
+		directory.mkdirs();
+		file = new File(directory, "sphere.off");
+		BenchmarkScenes.writeSphereMesh(file, triangles);
+		Scene.setPathToTextureFile(directory.getAbsolutePath()+File.separator);
+	}
+
+	/**
+	 * Removes the mesh file.
+	 */
+	@TearDown
+	public void tearDown(){
+		file.delete();
+		directory.delete();
+	}
+
+	/**
+	 * Loads the mesh.
+	 *
+	 * @return The mesh.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	@Benchmark
+	public Mesh load() throws IOException, Parser.ParseException {
+		Mesh mesh = new Mesh();
+		mesh.parseParameter("pos", new String[] {"0", "0", "0"});
+		mesh.parseParameter("filename", new String[] {file.getName()});
+		mesh.commit();
+		return mesh;
+	}
+}
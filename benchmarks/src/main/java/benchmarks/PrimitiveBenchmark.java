@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import application.Parser;
+import scene.Intersection;
+import sceneObjects.ISceneObject;
+import vectors.*;
+
+/**
+ * This class measures the intersection of a single ray with a single object of every type, for a ray which hits the
+ * object and for a ray which misses it.
+ * 'isIntersects' returns a new intersection for every ray, while 'intersect' records the hit in an intersection which
+ * is reused (as the renderer does).
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimitiveBenchmark {
+
+	@Param({"sphere", "triangle", "rectangle", "box", "cylinder", "disc"})
+	public String primitive;
+
+	private ISceneObject object;
+	private IRay hitRay;
+	private IRay missRay;
+	private Intersection hit;
+
+	/**
+	 * Creates the object (around the origin) and a ray which hits it and a ray which misses it (both from z=5).
+	 *
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	@Setup
+	public void setup() throws IOException, Parser.ParseException {
+		if (primitive.equals("sphere")){
+			object = BenchmarkScenes.createObject("sphere", "center = 0 0 0\nradius = 1");
+		}else if (primitive.equals("triangle")){
+			object = BenchmarkScenes.createObject("triangle", "p0 = -1 -1 0\np1 = 1 -1 0\np2 = 0 1 0");
+		}else if (primitive.equals("rectangle")){
+			object = BenchmarkScenes.createObject("rectangle", "p0 = -1 -1 0\np1 = 1 -1 0\np2 = -1 1 0");
+		}else if (primitive.equals("box")){
+			object = BenchmarkScenes.createObject("box", "p0 = -1 -1 -1\np1 = 1 -1 -1\np2 = -1 1 -1\np3 = -1 -1 1");
+		}else if (primitive.equals("cylinder")){
+			object = BenchmarkScenes.createObject("cylinder", "start = 0 -1 0\ndirection = 0 1 0\nlength = 2\nradius = 0.5");
+		}else{
+			object = BenchmarkScenes.createObject("disc", "center = 0 0 0\nnormal = 0 0 1\nradius = 1");
+		}
+		IPoint3D origin = new Point3D(0, 0, 5);
+		hitRay = new Ray(origin, new Vector3D(0.05, 0.1, -1).normalize());
+		missRay = new Ray(origin, new Vector3D(0.6, 0.5, -1).normalize());
+		hit = new Intersection();
+	}
+
+	/**
+	 * Returns the intersection of the object with a ray which hits it.
+	 *
+	 * @return The intersection.
+	 */
+	@Benchmark
+	public Intersection isIntersectsHit(){
+		return object.isIntersects(hitRay);
+	}
+
+	/**
+	 * Returns the intersection of the object with a ray which misses it.
+	 *
+	 * @return The intersection.
+	 */
+	@Benchmark
+	public Intersection isIntersectsMiss(){
+		return object.isIntersects(missRay);
+	}
+
+	/**
+	 * Records the intersection of the object with a ray which hits it (and completes the hit point and the normal).
+	 *
+	 * @return The normal at the hit point.
+	 */
+	@Benchmark
+	public IVector3D intersectHit(){
+		hit.reset();
+		object.intersect(hitRay, hit);
+		return hit.getNormal();
+	}
+
+	/**
+	 * Records the intersection of the object with a ray which misses it.
+	 *
+	 * @return 'true' if the ray hit the object.
+	 */
+	@Benchmark
+	public boolean intersectMiss(){
+		hit.reset();
+		return object.intersect(missRay, hit);
+	}
+}
@@ -0,0 +1,477 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import javax.imageio.ImageIO;
+
+import application.Parser;
+import colors.FrameBuffer;
+import rendering.ITileListener;
+import rendering.PNGEncoder;
+import rendering.Tile;
+import rendering.TileRenderer;
+import scene.RenderTelemetry;
+import scene.Scene;
+
+/**
+ * This class renders a fixed set of scenes end to end (the scene files in the examples directory and generated
+ * stress scenes) at a fixed resolution and super sample width, and reports the wall time, the primary rays per second
+ * and the allocation rate of every scene.
+ * Every image is compared to a stored reference image, so an optimization which changes the picture fails the run:
+ * a pixel is different if one of its channels differs by more than the tolerance, and a scene fails if more than the
+ * allowed fraction of its pixels is different.
+ * The run ends with a JSON summary (which can be compared between versions) and exits with status 1 if a scene failed.
+ * With the 'raytracer.telemetry' system property the summary also holds the counters of the last render of every
+ * scene (see RenderTelemetry), i.e the shadow and reflection rays and the intersection tests.
+ *
+ * java -cp benchmarks/target/benchmarks.jar:swt.jar benchmarks.RenderSuite [options]
+ *
+ * -size WxH              the resolution (default 320x240)
+ * -samples n             the super sample width of all the scenes (default 2)
+ * -threads n             the rendering threads (default 1)
+ * -warmup n              the renders of every scene before it is measured (default 1)
+ * -runs n                the measured renders of every scene (default 3, the median is reported)
+ * -examples dir          the directory of the example scenes (default examples)
+ * -stress n,n            the object counts of the generated stress scenes (default 100,1000)
+ * -references dir        the directory of the reference images (default benchmarks/references)
+ * -tolerance n           the largest difference of a channel (0-255) which is not a difference (default 2)
+ * -max-different f       the largest fraction of different pixels of a scene which passes (default 0.001)
+ * -output dir            the directory which receives the rendered images (default target/render-suite)
+ * -summary file          the JSON summary (default render-suite.json)
+ * -update-references     writes the rendered images as the new reference images (nothing is compared)
+ *
+ */
+public class RenderSuite {
+	private int width = 320;
+	private int height = 240;
+	private int samples = 2;
+	private int threads = 1;
+	private int warmup = 1;
+	private int runs = 3;
+	private File examples = new File("examples");
+	private int[] stress = {100, 1000};
+	private File references = new File("benchmarks/references");
+	private int tolerance = 2;
+	private double maxDifferent = 0.001;
+	private File output = new File("target/render-suite");
+	private File summary = new File("render-suite.json");
+	private boolean updateReferences = false;
+
+	/**
+	 * The measurements of a scene.
+	 */
+	private static class Result {
+		private String name;
+		private long[] wallNanos;
+		private long[] allocatedBytes;
+		private String reference;
+		private long differentPixels;
+		private int maxDifference;
+		private double meanDifference;
+		private boolean passed;
+		private long[] counters;
+	}
+
+	/**
+	 * Records the bytes which every rendering thread allocated until it completed its last tile.
+	 * The threads of the tile renderer are started for every render, so their counters start at (about) zero.
+	 */
+	private static class AllocationListener implements ITileListener {
+		private final com.sun.management.ThreadMXBean threadBean;
+		private final Map<Long,Long> allocated = new HashMap<Long,Long>();
+
+		/**
+		 * Constructs the listener.
+		 */
+		private AllocationListener(){
+			threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		}
+
+		@Override
+		public void tileRendered(Tile tile, FrameBuffer tileBuffer){
+			long id = Thread.currentThread().getId();
+			long bytes = threadBean.getThreadAllocatedBytes(id);
+			synchronized (allocated) {
+				allocated.put(id, bytes);
+			}
+		}
+
+		/**
+		 * Returns the bytes which the rendering threads allocated.
+		 *
+		 * @return The bytes which the rendering threads allocated.
+		 */
+		private long getAllocatedBytes(){
+			long sum = 0;
+			synchronized (allocated) {
+				for (long bytes:allocated.values()){
+					sum += bytes;
+				}
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * Runs the suite.
+	 *
+	 * @param args The options (see the class documentation).
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		RenderSuite suite = new RenderSuite();
+		try {
+			suite.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+		System.exit(suite.run() ? 0 : 1);
+	}
+
+	/**
+	 * Parses the command line options.
+	 *
+	 * @param args
+	 * @throws IllegalArgumentException If an option is not valid.
+	 */
+	public void parseArguments(String[] args){
+		try {
+			for (int i=0; i<args.length; i++){
+				String option = args[i];
+				if (option.equals("-update-references")){
+					updateReferences = true;
+				}else if (i+1>=args.length){
+					throw new IllegalArgumentException("Missing the value of option "+option);
+				}else if (option.equals("-size")){
+					String[] size = args[++i].toLowerCase().split("x");
+					width = Integer.parseInt(size[0]);
+					height = Integer.parseInt(size[1]);
+				}else if (option.equals("-samples")){
+					samples = Integer.parseInt(args[++i]);
+				}else if (option.equals("-threads")){
+					threads = Integer.parseInt(args[++i]);
+				}else if (option.equals("-warmup")){
+					warmup = Integer.parseInt(args[++i]);
+				}else if (option.equals("-runs")){
+					runs = Integer.parseInt(args[++i]);
+				}else if (option.equals("-examples")){
+					examples = new File(args[++i]);
+				}else if (option.equals("-stress")){
+					String[] counts = args[++i].split(",");
+					stress = new int[(args[i].length()==0) ? 0 : counts.length];
+					for (int j=0; j<stress.length; j++){
+						stress[j] = Integer.parseInt(counts[j].trim());
+					}
+				}else if (option.equals("-references")){
+					references = new File(args[++i]);
+				}else if (option.equals("-tolerance")){
+					tolerance = Integer.parseInt(args[++i]);
+				}else if (option.equals("-max-different")){
+					maxDifferent = Double.parseDouble(args[++i]);
+				}else if (option.equals("-output")){
+					output = new File(args[++i]);
+				}else if (option.equals("-summary")){
+					summary = new File(args[++i]);
+				}else{
+					throw new IllegalArgumentException("Unknown option "+option);
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Wrong number in the options: "+e.getMessage());
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Wrong size (expected WxH)");
+		}
+		if ((width<=0)||(height<=0)||(samples<=0)||(threads<=0)||(runs<=0)||(warmup<0)){
+			throw new IllegalArgumentException("The size, the samples, the threads and the runs must be positive");
+		}
+	}
+
+	/**
+	 * Renders all the scenes, compares them to their reference images and writes the summary.
+	 *
+	 * @return 'true' if all the scenes passed, otherwise 'false'.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 * @throws InterruptedException
+	 */
+	public boolean run() throws IOException, Parser.ParseException, InterruptedException {
+		output.mkdirs();
+		if (updateReferences){
+			references.mkdirs();
+		}
+		List<Result> results = new ArrayList<Result>();
+		File[] files = examples.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".txt");
+			}
+		});
+		if (files!=null){
+			Arrays.sort(files);
+			for (File file:files){
+				String name = file.getName().substring(0, file.getName().length()-4);
+				Scene.setPathToTextureFile(file.getAbsoluteFile().getParent()+File.separator);
+				byte[] text = java.nio.file.Files.readAllBytes(file.toPath());
+				results.add(run(name, new String(text, "UTF-8")));
+			}
+		}
+		for (int count:stress){
+			results.add(run("stress-"+count, BenchmarkScenes.createRandomScene(count, count)));
+		}
+		writeSummary(results);
+		boolean passed = true;
+		for (Result result:results){
+			passed &= result.passed;
+		}
+		return passed;
+	}
+
+	/**
+	 * Renders a scene (the warmup and the measured renders), writes the image and compares it to its reference.
+	 *
+	 * @param name
+	 * @param sceneText
+	 * @return The measurements of the scene.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 * @throws InterruptedException
+	 */
+	private Result run(String name, String sceneText) throws IOException, Parser.ParseException, InterruptedException {
+		Result result = new Result();
+		result.name = name;
+		result.wallNanos = new long[runs];
+		result.allocatedBytes = new long[runs];
+		FrameBuffer frame = null;
+		for (int i=-warmup; i<runs; i++){
+			if (RenderTelemetry.ENABLED){
+				RenderTelemetry.reset();
+			}
+			Scene scene = parse(sceneText);
+			frame = new FrameBuffer(width, height);
+			TileRenderer renderer = new TileRenderer(scene, TileRenderer.DEFAULT_TILE_SIZE, threads);
+			AllocationListener allocation = new AllocationListener();
+			renderer.addTileListener(allocation);
+			long start = System.nanoTime();
+			renderer.render(frame);
+			long wall = System.nanoTime()-start;
+			if (i>=0){
+				result.wallNanos[i] = wall;
+				result.allocatedBytes[i] = allocation.getAllocatedBytes();
+			}
+		}
+		if (RenderTelemetry.ENABLED){
+			result.counters = new long[RenderTelemetry.getCounterCount()];
+			for (int i=0; i<result.counters.length; i++){
+				result.counters[i] = RenderTelemetry.getTotal(i);
+			}
+		}
+		String filename = name+"-"+width+"x"+height+"-s"+samples+".png";
+		writeImage(frame, new File(output, filename));
+		result.reference = filename;
+		if (updateReferences){
+			writeImage(frame, new File(references, filename));
+			result.passed = true;
+		}else{
+			compare(frame, new File(references, filename), result);
+		}
+		System.out.println(String.format(Locale.ROOT, "%-16s %8.1f ms %12.0f rays/s %10.1f MB/s  %s", name,
+				median(result.wallNanos)/1e6, getRaysPerSecond(result), getAllocationRate(result)/1e6,
+				(updateReferences) ? "reference written" : (result.passed ? "ok" : "DIFFERENT ("+result.differentPixels+" pixels)")));
+		return result;
+	}
+
+	/**
+	 * Returns the parsed and compiled scene, with the resolution and the super sample width of the suite.
+	 *
+	 * @param sceneText
+	 * @return The scene.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	private Scene parse(String sceneText) throws IOException, Parser.ParseException {
+		Scene scene = new Scene();
+		scene.setCanvasSize(height, width);
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			new scene.SceneParser(scene).parse(new StringReader(sceneText));
+		} finally {
+			System.setOut(out);
+		}
+		scene.setSuperSampleWidth(samples);
+		scene.initSceneViewPlane();
+		scene.compile();
+		return scene;
+	}
+
+	/**
+	 * Compares an image to its reference image.
+	 *
+	 * @param frame
+	 * @param file The reference image.
+	 * @param result Receives the differences and whether the image passed.
+	 * @throws IOException
+	 */
+	private void compare(FrameBuffer frame, File file, Result result) throws IOException {
+		if (!file.isFile()){
+			System.err.println("Missing reference image "+file+" (run with -update-references)");
+			result.differentPixels = (long)width*height;
+			result.maxDifference = 255;
+			result.passed = false;
+			return;
+		}
+		BufferedImage reference = ImageIO.read(file);
+		if ((reference.getWidth()!=width)||(reference.getHeight()!=height)){
+			throw new IOException("The reference image "+file+" has a different size");
+		}
+		int[] row = new int[width];
+		long sum = 0;
+		for (int y=0; y<height; y++){
+			frame.getRowRGB(y, row);
+			for (int x=0; x<width; x++){
+				int expected = reference.getRGB(x, y);
+				int difference = 0;
+				for (int shift=0; shift<24; shift+=8){
+					int channel = Math.abs(((row[x]>>shift)&0xFF)-((expected>>shift)&0xFF));
+					difference = Math.max(difference, channel);
+					sum += channel;
+				}
+				result.maxDifference = Math.max(result.maxDifference, difference);
+				if (difference>tolerance){
+					result.differentPixels++;
+				}
+			}
+		}
+		result.meanDifference = (double)sum/(3.0*width*height);
+		result.passed = result.differentPixels <= maxDifferent*width*height;
+	}
+
+	/**
+	 * Writes an image as a PNG file.
+	 *
+	 * @param frame
+	 * @param file
+	 * @throws IOException
+	 */
+	private void writeImage(FrameBuffer frame, File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			PNGEncoder encoder = new PNGEncoder(out);
+			encoder.begin(width, height);
+			int[] row = new int[width];
+			for (int y=0; y<height; y++){
+				frame.getRowRGB(y, row);
+				encoder.writeRow(row, 0);
+			}
+			encoder.finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the primary rays (samples) per second of the median render of a scene.
+	 *
+	 * @param result
+	 * @return The primary rays per second.
+	 */
+	private double getRaysPerSecond(Result result){
+		return (double)width*height*samples*samples / (median(result.wallNanos)/1e9);
+	}
+
+	/**
+	 * Returns the allocated bytes per second of the renders of a scene.
+	 *
+	 * @param result
+	 * @return The allocated bytes per second.
+	 */
+	private static double getAllocationRate(Result result){
+		long bytes = 0;
+		long nanos = 0;
+		for (int i=0; i<result.wallNanos.length; i++){
+			bytes += result.allocatedBytes[i];
+			nanos += result.wallNanos[i];
+		}
+		return bytes / (nanos/1e9);
+	}
+
+	/**
+	 * Returns the median of the given values.
+	 *
+	 * @param values
+	 * @return The median of the given values.
+	 */
+	private static double median(long[] values){
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int n = sorted.length;
+		return (n%2==1) ? sorted[n/2] : (sorted[n/2-1]+sorted[n/2])/2.0;
+	}
+
+	/**
+	 * Writes the JSON summary of the run.
+	 *
+	 * @param results
+	 * @throws IOException
+	 */
+	private void writeSummary(List<Result> results) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+		sb.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+		sb.append("  \"width\": ").append(width).append(",\n");
+		sb.append("  \"height\": ").append(height).append(",\n");
+		sb.append("  \"samples\": ").append(samples).append(",\n");
+		sb.append("  \"threads\": ").append(threads).append(",\n");
+		sb.append("  \"runs\": ").append(runs).append(",\n");
+		sb.append("  \"tolerance\": ").append(tolerance).append(",\n");
+		sb.append("  \"scenes\": [\n");
+		for (int i=0; i<results.size(); i++){
+			Result result = results.get(i);
+			sb.append("    {\n");
+			sb.append("      \"name\": \"").append(result.name).append("\",\n");
+			sb.append(String.format(Locale.ROOT, "      \"wallMillis\": %.3f,\n", median(result.wallNanos)/1e6));
+			sb.append(String.format(Locale.ROOT, "      \"minWallMillis\": %.3f,\n", min(result.wallNanos)/1e6));
+			sb.append(String.format(Locale.ROOT, "      \"primaryRaysPerSecond\": %.0f,\n", getRaysPerSecond(result)));
+			sb.append(String.format(Locale.ROOT, "      \"allocatedBytesPerRender\": %.0f,\n", median(result.allocatedBytes)));
+			sb.append(String.format(Locale.ROOT, "      \"allocationBytesPerSecond\": %.0f,\n", getAllocationRate(result)));
+			sb.append("      \"reference\": \"").append(result.reference).append("\",\n");
+			sb.append("      \"differentPixels\": ").append(result.differentPixels).append(",\n");
+			sb.append("      \"maxDifference\": ").append(result.maxDifference).append(",\n");
+			sb.append(String.format(Locale.ROOT, "      \"meanDifference\": %.4f,\n", result.meanDifference));
+			if (result.counters!=null){
+				sb.append("      \"counters\": {");
+				for (int c=0; c<result.counters.length; c++){
+					sb.append((c>0) ? ", " : "").append('"').append(RenderTelemetry.getCounterName(c)).append("\": ").append(result.counters[c]);
+				}
+				sb.append("},\n");
+			}
+			sb.append("      \"passed\": ").append(result.passed).append("\n");
+			sb.append((i<results.size()-1) ? "    },\n" : "    }\n");
+		}
+		sb.append("  ]\n}\n");
+		Writer out = new OutputStreamWriter(new FileOutputStream(summary), "UTF-8");
+		try {
+			out.write(sb.toString());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the minimum of the given values.
+	 *
+	 * @param values
+	 * @return The minimum of the given values.
+	 */
+	private static long min(long[] values){
+		long min = Long.MAX_VALUE;
+		for (long value:values){
+			min = Math.min(min, value);
+		}
+		return min;
+	}
+}
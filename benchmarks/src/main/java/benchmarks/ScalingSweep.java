@@ -0,0 +1,253 @@
+package benchmarks;
+
+import java.io.*;
+import java.util.*;
+
+import application.Parser;
+import colors.FrameBuffer;
+import rendering.TileRenderer;
+import scene.Scene;
+
+/**
+ * This class measures how the time of a render scales with the number of objects, the number of lights, the
+ * resolution and the reflection depth, with scenes of the stress scene generator.
+ * Every axis changes one value of a base scene (200 objects of all types and 2 meshes, 1 point light, 160x120 pixels,
+ * reflectance 0.3 and a reflection depth of 4), and every point of the axis is parsed, compiled and rendered.
+ * The points are written as CSV rows (one curve per axis), and a summary is printed.
+ *
+ * java -cp benchmarks/target/benchmarks.jar:swt.jar benchmarks.ScalingSweep [options]
+ *
+ * -axes a,b              the axes to measure (default objects,lights,area-lights,resolution,depth)
+ * -objects n,n           the object counts of the 'objects' axis (default 10,100,1000,10000)
+ * -lights n,n            the point light counts of the 'lights' axis (default 1,2,4,8,16)
+ * -area-lights n,n       the area light counts (3x3 grids) of the 'area-lights' axis (default 1,2,4)
+ * -resolutions WxH,WxH   the resolutions of the 'resolution' axis (default 80x60,160x120,320x240,640x480)
+ * -depths n,n            the reflection depths of the 'depth' axis (default 0,1,2,4,8)
+ * -samples n             the super sample width (default 1)
+ * -threads n             the rendering threads (default 1)
+ * -warmup n              the renders of every point before it is measured (default 1)
+ * -runs n                the measured renders of every point (default 3, the median is reported)
+ * -output file           the CSV file (default scaling.csv)
+ *
+ */
+public class ScalingSweep {
+	private static final int BASE_OBJECTS = 200;
+	private static final int BASE_MESHES = 2;
+	private static final int BASE_WIDTH = 160;
+	private static final int BASE_HEIGHT = 120;
+	private static final double BASE_REFLECTANCE = 0.3;
+	private static final int BASE_DEPTH = 4;
+
+	private String[] axes = {"objects", "lights", "area-lights", "resolution", "depth"};
+	private String[] objects = {"10", "100", "1000", "10000"};
+	private String[] lights = {"1", "2", "4", "8", "16"};
+	private String[] areaLights = {"1", "2", "4"};
+	private String[] resolutions = {"80x60", "160x120", "320x240", "640x480"};
+	private String[] depths = {"0", "1", "2", "4", "8"};
+	private int samples = 1;
+	private int threads = 1;
+	private int warmup = 1;
+	private int runs = 3;
+	private File output = new File("scaling.csv");
+	private File directory;
+
+	/**
+	 * Runs the sweep.
+	 *
+	 * @param args The options (see the class documentation).
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		ScalingSweep sweep = new ScalingSweep();
+		try {
+			sweep.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+		sweep.run();
+	}
+
+	/**
+	 * Parses the command line options.
+	 *
+	 * @param args
+	 * @throws IllegalArgumentException If an option is not valid.
+	 */
+	public void parseArguments(String[] args){
+		try {
+			for (int i=0; i<args.length; i++){
+				String option = args[i];
+				if (i+1>=args.length){
+					throw new IllegalArgumentException("Missing the value of option "+option);
+				}
+				String value = args[++i];
+				if (option.equals("-axes")){
+					axes = value.split(",");
+				}else if (option.equals("-objects")){
+					objects = value.split(",");
+				}else if (option.equals("-lights")){
+					lights = value.split(",");
+				}else if (option.equals("-area-lights")){
+					areaLights = value.split(",");
+				}else if (option.equals("-resolutions")){
+					resolutions = value.split(",");
+				}else if (option.equals("-depths")){
+					depths = value.split(",");
+				}else if (option.equals("-samples")){
+					samples = Integer.parseInt(value);
+				}else if (option.equals("-threads")){
+					threads = Integer.parseInt(value);
+				}else if (option.equals("-warmup")){
+					warmup = Integer.parseInt(value);
+				}else if (option.equals("-runs")){
+					runs = Integer.parseInt(value);
+				}else if (option.equals("-output")){
+					output = new File(value);
+				}else{
+					throw new IllegalArgumentException("Unknown option "+option);
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Wrong number in the options: "+e.getMessage());
+		}
+		if ((samples<=0)||(threads<=0)||(runs<=0)||(warmup<0)){
+			throw new IllegalArgumentException("The samples, the threads and the runs must be positive");
+		}
+		for (String axis:axes){
+			if (getValues(axis)==null){
+				throw new IllegalArgumentException("Unknown axis "+axis);
+			}
+		}
+	}
+
+	/**
+	 * Measures all the points of all the axes and writes them to the CSV file.
+	 *
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 * @throws InterruptedException
+	 */
+	public void run() throws IOException, Parser.ParseException, InterruptedException {
+		directory = File.createTempFile("scaling-sweep", "");
+		directory.delete();
+		directory.mkdirs();
+		Scene.setPathToTextureFile(directory.getAbsolutePath()+File.separator);
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+		try {
+			out.println("axis,value,objects,pointLights,areaLights,width,height,samples,depth,parseMillis,renderMillis,primaryRaysPerSecond,nanosPerSample");
+			for (String axis:axes){
+				System.out.println(axis+":");
+				for (String value:getValues(axis)){
+					out.println(measure(axis, value.trim()));
+					out.flush();
+				}
+			}
+		} finally {
+			out.close();
+			File[] files = directory.listFiles();
+			if (files!=null){
+				for (File file:files){
+					file.delete();
+				}
+			}
+			directory.delete();
+		}
+		System.out.println("Wrote "+output);
+	}
+
+	/**
+	 * Returns the values of an axis, or null if the axis is not known.
+	 *
+	 * @param axis
+	 * @return The values of the axis, or null if the axis is not known.
+	 */
+	private String[] getValues(String axis){
+		if (axis.equals("objects")){
+			return objects;
+		}
+		if (axis.equals("lights")){
+			return lights;
+		}
+		if (axis.equals("area-lights")){
+			return areaLights;
+		}
+		if (axis.equals("resolution")){
+			return resolutions;
+		}
+		if (axis.equals("depth")){
+			return depths;
+		}
+		return null;
+	}
+
+	/**
+	 * Generates, parses and renders the scene of a point of an axis.
+	 *
+	 * @param axis
+	 * @param value
+	 * @return The CSV row of the point.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 * @throws InterruptedException
+	 */
+	private String measure(String axis, String value) throws IOException, Parser.ParseException, InterruptedException {
+		StressSceneGenerator generator = new StressSceneGenerator();
+		generator.setObjectCount(BASE_OBJECTS);
+		generator.setMeshes(BASE_MESHES);
+		generator.setReflectance(BASE_REFLECTANCE);
+		generator.setMaxReflectionDepth(BASE_DEPTH);
+		generator.setSuperSampleWidth(samples);
+		int pointLights = 1;
+		int areaLightCount = 0;
+		int width = BASE_WIDTH;
+		int height = BASE_HEIGHT;
+		int depth = BASE_DEPTH;
+		try {
+			if (axis.equals("objects")){
+				generator.setObjectCount(Integer.parseInt(value));
+			}else if (axis.equals("lights")){
+				pointLights = Integer.parseInt(value);
+			}else if (axis.equals("area-lights")){
+				pointLights = 0;
+				areaLightCount = Integer.parseInt(value);
+			}else if (axis.equals("resolution")){
+				String[] size = value.toLowerCase().split("x");
+				width = Integer.parseInt(size[0]);
+				height = Integer.parseInt(size[1]);
+			}else if (axis.equals("depth")){
+				depth = Integer.parseInt(value);
+			}
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Wrong value of axis "+axis+": "+value);
+		}
+		generator.setPointLights(pointLights);
+		generator.setAreaLights(areaLightCount);
+		generator.setMaxReflectionDepth(depth);
+		File file = new File(directory, "scene.txt");
+		generator.writeScene(file);
+		String text = new String(java.nio.file.Files.readAllBytes(file.toPath()), "UTF-8");
+
+		long parseStart = System.nanoTime();
+		Scene scene = BenchmarkScenes.parse(text, width, height);
+		long parseNanos = System.nanoTime()-parseStart;
+		long[] renderNanos = new long[runs];
+		for (int i=-warmup; i<runs; i++){
+			FrameBuffer frame = new FrameBuffer(width, height);
+			TileRenderer renderer = new TileRenderer(scene, TileRenderer.DEFAULT_TILE_SIZE, threads);
+			long start = System.nanoTime();
+			renderer.render(frame);
+			if (i>=0){
+				renderNanos[i] = System.nanoTime()-start;
+			}
+		}
+		Arrays.sort(renderNanos);
+		double median = (runs%2==1) ? renderNanos[runs/2] : (renderNanos[runs/2-1]+renderNanos[runs/2])/2.0;
+		double sampleCount = (double)width*height*samples*samples;
+		System.out.println(String.format(Locale.ROOT, "  %-10s parse %9.1f ms  render %9.1f ms  %12.0f rays/s",
+				value, parseNanos/1e6, median/1e6, sampleCount/(median/1e9)));
+		return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.0f,%.1f", axis, value,
+				generator.getObjectCount(), pointLights, areaLightCount, width, height, samples, depth,
+				parseNanos/1e6, median/1e6, sampleCount/(median/1e9), median/sampleCount);
+	}
+}
@@ -0,0 +1,129 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import application.Parser;
+import colors.Color;
+import colors.IColor;
+import lighting.ILight;
+import scene.Intersection;
+import scene.Scene;
+import sceneObjects.ISceneObject;
+import vectors.IRay;
+
+/**
+ * This class measures the stages of tracing a primary ray in scenes of several sizes: finding the closest
+ * intersection (Scene.findIntersection), testing the shadow ray of the hit point (Scene.getSL) and shading the hit
+ * point (AbstractSurface.getColor, including its shadow rays).
+ * Every call uses the next of a fixed set of rays, so the measured time is an average over the view.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SceneBenchmark {
+	private static final int RAY_COUNT = 1024;
+
+	@Param({"10", "100", "1000"})
+	public int objects;
+
+	@Param({"double", "float"})
+	public String precision;
+
+	private Scene scene;
+	private IRay[] rays;
+	// the hits of the rays which hit an object (the index of the ray, the hit object and its distance)
+	private int[] hitRays;
+	private ISceneObject[] hitObjects;
+	private int[] hitPrimitives;
+	private double[] hitDistances;
+	private ILight light;
+	private Intersection hit;
+	private IColor color;
+	private int next;
+
+	/**
+	 * Creates the scene and the rays, and finds the hits of the rays.
+	 *
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	@Setup
+	public void setup() throws IOException, Parser.ParseException {
+		scene = BenchmarkScenes.parse("scene:\nprecision = "+precision+"\n"+BenchmarkScenes.createRandomScene(objects, 1));
+		rays = BenchmarkScenes.createPrimaryRays(scene, RAY_COUNT, 2);
+		int count = 0;
+		hitRays = new int[RAY_COUNT];
+		hitObjects = new ISceneObject[RAY_COUNT];
+		hitPrimitives = new int[RAY_COUNT];
+		hitDistances = new double[RAY_COUNT];
+		for (int i=0; i<RAY_COUNT; i++){
+			Intersection primary = scene.findIntersection(rays[i], null);
+			if (primary.isIntersects()){
+				hitRays[count] = i;
+				hitObjects[count] = primary.getIntersectionObject();
+				hitPrimitives[count] = primary.getPrimitive();
+				hitDistances[count] = primary.getDistance();
+				count++;
+			}
+		}
+		if (count==0){
+			throw new IllegalStateException("No ray hits the scene");
+		}
+		hitRays = Arrays.copyOf(hitRays, count);
+		light = scene.getLightsList().get(0);
+		hit = new Intersection();
+		color = new Color();
+		next = 0;
+	}
+
+	/**
+	 * Restores the next hit into the intersection.
+	 */
+	private void nextHit(){
+		next = (next+1) % hitRays.length;
+		hit.setIntersectionHit(hitDistances[next], hitObjects[next], hitPrimitives[next], rays[hitRays[next]]);
+	}
+
+	/**
+	 * Finds the closest intersection of the next ray.
+	 *
+	 * @return The distance of the closest intersection.
+	 */
+	@Benchmark
+	public double findIntersection(){
+		next = (next+1) % RAY_COUNT;
+		return scene.findIntersection(rays[next], null, 0).getDistance();
+	}
+
+	/**
+	 * Tests the shadow ray from the next hit point to the light.
+	 *
+	 * @return 0 if the shadow ray is blocked, otherwise 1.
+	 */
+	@Benchmark
+	public double getSL(){
+		nextHit();
+		IRay shadowRay = scene.createSecondaryRay(hit, light.getDirectionFromHitPointToLight(hit.getIntersectionPoint()));
+		return scene.getSL(shadowRay, light, hit);
+	}
+
+	/**
+	 * Shades the next hit point.
+	 *
+	 * @return The color of the hit point.
+	 */
+	@Benchmark
+	public IColor getColor(){
+		nextHit();
+		hit.getIntersectionObject().getSurface().getColor(hit, scene, 0, color);
+		return color;
+	}
+}
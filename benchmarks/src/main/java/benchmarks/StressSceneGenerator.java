@@ -0,0 +1,394 @@
+package benchmarks;
+
+import java.io.*;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class generates scene files (in the syntax of the scene parser) with a given number of spheres, boxes,
+ * cylinders, triangles, meshes, point lights and area lights, so the scaling of a render with the size of the scene
+ * can be measured (see ScalingSweep).
+ * The objects are placed at random (from a fixed seed) in a box above a floor in front of the camera, and they are
+ * smaller the more of them there are, so the scene looks about as full at every size. The intensity of the lights is
+ * divided between them, so the scene is about as bright with any number of lights.
+ * Meshes are spheres which are written as 'off' files to the directory of the scene file (see writeScene), and
+ * their position and scale come before their file name since the file is read when its name is parsed.
+ *
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.StressSceneGenerator [options] scene-file
+ *
+ * -spheres n, -boxes n, -cylinders n, -triangles n, -meshes n   the number of objects of every type (default 0)
+ * -objects n                 n objects of all types (see setObjectCount)
+ * -mesh-triangles n          the triangles of every mesh (default 500)
+ * -point-lights n            the number of point lights (default 1)
+ * -area-lights n             the number of area lights (default 0)
+ * -area-grid n               the grid width of the area lights (default 3)
+ * -reflectance r             the reflectance of the objects (default 0)
+ * -samples n                 the super sample width (default 1)
+ * -depth n                   the largest reflection depth (default 4)
+ * -seed n                    the seed of the random placement (default 1)
+ *
+ */
+public class StressSceneGenerator {
+	private int spheres = 0;
+	private int boxes = 0;
+	private int cylinders = 0;
+	private int triangles = 0;
+	private int meshes = 0;
+	private int meshTriangles = 500;
+	private int pointLights = 1;
+	private int areaLights = 0;
+	private int areaLightGrid = 3;
+	private double reflectance = 0;
+	private int superSampleWidth = 1;
+	private int maxReflectionDepth = 4;
+	private long seed = 1;
+
+	/**
+	 * Writes a generated scene file.
+	 *
+	 * @param args The options (see the class documentation) and the scene file.
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		StressSceneGenerator generator = new StressSceneGenerator();
+		File file = null;
+		try {
+			for (int i=0; i<args.length; i++){
+				if (!args[i].startsWith("-")){
+					file = new File(args[i]);
+				}else if (i+1<args.length){
+					generator.parseOption(args[i], args[++i]);
+				}else{
+					throw new IllegalArgumentException("Missing the value of option "+args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+		if (file==null){
+			System.err.println("Usage: StressSceneGenerator [options] scene-file");
+			System.exit(2);
+		}
+		generator.writeScene(file);
+	}
+
+	/**
+	 * Sets an option of the generator from the command line.
+	 *
+	 * @param option The name of the option (i.e '-spheres').
+	 * @param value
+	 * @throws IllegalArgumentException If the option is not known or its value is not valid.
+	 */
+	public void parseOption(String option, String value){
+		try {
+			if (option.equals("-spheres")){
+				setSpheres(Integer.parseInt(value));
+			}else if (option.equals("-boxes")){
+				setBoxes(Integer.parseInt(value));
+			}else if (option.equals("-cylinders")){
+				setCylinders(Integer.parseInt(value));
+			}else if (option.equals("-triangles")){
+				setTriangles(Integer.parseInt(value));
+			}else if (option.equals("-meshes")){
+				setMeshes(Integer.parseInt(value));
+			}else if (option.equals("-objects")){
+				setObjectCount(Integer.parseInt(value));
+			}else if (option.equals("-mesh-triangles")){
+				setMeshTriangles(Integer.parseInt(value));
+			}else if (option.equals("-point-lights")){
+				setPointLights(Integer.parseInt(value));
+			}else if (option.equals("-area-lights")){
+				setAreaLights(Integer.parseInt(value));
+			}else if (option.equals("-area-grid")){
+				setAreaLightGrid(Integer.parseInt(value));
+			}else if (option.equals("-reflectance")){
+				setReflectance(Double.parseDouble(value));
+			}else if (option.equals("-samples")){
+				setSuperSampleWidth(Integer.parseInt(value));
+			}else if (option.equals("-depth")){
+				setMaxReflectionDepth(Integer.parseInt(value));
+			}else if (option.equals("-seed")){
+				setSeed(Long.parseLong(value));
+			}else{
+				throw new IllegalArgumentException("Unknown option "+option);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Wrong value of option "+option+": "+value);
+		}
+	}
+
+	/**
+	 * Sets the number of spheres.
+	 *
+	 * @param spheres
+	 */
+	public void setSpheres(int spheres){
+		this.spheres = Math.max(0, spheres);
+	}
+
+	/**
+	 * Sets the number of boxes.
+	 *
+	 * @param boxes
+	 */
+	public void setBoxes(int boxes){
+		this.boxes = Math.max(0, boxes);
+	}
+
+	/**
+	 * Sets the number of cylinders.
+	 *
+	 * @param cylinders
+	 */
+	public void setCylinders(int cylinders){
+		this.cylinders = Math.max(0, cylinders);
+	}
+
+	/**
+	 * Sets the number of triangles.
+	 *
+	 * @param triangles
+	 */
+	public void setTriangles(int triangles){
+		this.triangles = Math.max(0, triangles);
+	}
+
+	/**
+	 * Sets the number of meshes.
+	 *
+	 * @param meshes
+	 */
+	public void setMeshes(int meshes){
+		this.meshes = Math.max(0, meshes);
+	}
+
+	/**
+	 * Sets the number of objects, divided between the types: 40% spheres, 30% triangles, 20% boxes and 10% cylinders
+	 * (the meshes are not changed).
+	 *
+	 * @param count
+	 */
+	public void setObjectCount(int count){
+		count = Math.max(0, count);
+		setBoxes(count/5);
+		setCylinders(count/10);
+		setTriangles(count*3/10);
+		setSpheres(count-boxes-cylinders-triangles);
+	}
+
+	/**
+	 * Returns the number of objects (without the floor).
+	 *
+	 * @return The number of objects.
+	 */
+	public int getObjectCount(){
+		return spheres+boxes+cylinders+triangles+meshes;
+	}
+
+	/**
+	 * Sets the number of triangles of every mesh.
+	 *
+	 * @param meshTriangles
+	 */
+	public void setMeshTriangles(int meshTriangles){
+		this.meshTriangles = Math.max(8, meshTriangles);
+	}
+
+	/**
+	 * Sets the number of point lights.
+	 *
+	 * @param pointLights
+	 */
+	public void setPointLights(int pointLights){
+		this.pointLights = Math.max(0, pointLights);
+	}
+
+	/**
+	 * Sets the number of area lights.
+	 *
+	 * @param areaLights
+	 */
+	public void setAreaLights(int areaLights){
+		this.areaLights = Math.max(0, areaLights);
+	}
+
+	/**
+	 * Sets the grid width of the area lights (every area light has its square point lights).
+	 *
+	 * @param grid
+	 */
+	public void setAreaLightGrid(int grid){
+		this.areaLightGrid = Math.max(1, grid);
+	}
+
+	/**
+	 * Sets the reflectance of the objects (0 for no reflections).
+	 *
+	 * @param reflectance
+	 */
+	public void setReflectance(double reflectance){
+		this.reflectance = Math.max(0, Math.min(1, reflectance));
+	}
+
+	/**
+	 * Sets the super sample width of the scene.
+	 *
+	 * @param width
+	 */
+	public void setSuperSampleWidth(int width){
+		this.superSampleWidth = Math.max(1, width);
+	}
+
+	/**
+	 * Sets the largest reflection depth of the scene.
+	 *
+	 * @param depth
+	 */
+	public void setMaxReflectionDepth(int depth){
+		this.maxReflectionDepth = Math.max(0, depth);
+	}
+
+	/**
+	 * Sets the seed of the random placement of the objects.
+	 *
+	 * @param seed
+	 */
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+
+	/**
+	 * Writes the scene to a file, and the mesh file (if the scene has meshes) to the same directory.
+	 * The scene must be parsed with that directory as the path of the texture files (see Scene.setPathToTextureFile).
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void writeScene(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (meshes>0){
+			BenchmarkScenes.writeSphereMesh(new File(directory, getMeshFilename()), meshTriangles);
+		}
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write(createScene());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the name of the mesh file of the scene.
+	 *
+	 * @return The name of the mesh file of the scene.
+	 */
+	public String getMeshFilename(){
+		return "stress-mesh-"+meshTriangles+".off";
+	}
+
+	/**
+	 * Returns the text of the scene (the mesh file must be written separately, see writeScene).
+	 *
+	 * @return The text of the scene.
+	 */
+	public String createScene(){
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		sb.append("scene:\nbackground-col = 0.3 0.3 0.4\nambient-light = 0.2 0.2 0.2\n");
+		sb.append("super-samp-width = ").append(superSampleWidth).append("\n");
+		sb.append("max-reflection-depth = ").append(maxReflectionDepth).append("\n\n");
+		sb.append("camera:\neye = 0 3 9\nlook-at = 0 1 0\nscreen-dist = 1\nup-direction = 0 1 0\n\n");
+		appendLights(sb);
+		sb.append("rectangle:\np0 = -6 0 -6\np1 = 6 0 -6\np2 = -6 0 6\n");
+		appendMaterial(sb, random);
+		double size = 2.0 / Math.cbrt(Math.max(getObjectCount(), 1));
+		int total = getObjectCount();
+		for (int i=0; i<total; i++){
+			double x = -4 + 8*random.nextDouble();
+			double y = 0.2 + 3*random.nextDouble();
+			double z = -4 + 8*random.nextDouble();
+			double s = size*(0.3+0.5*random.nextDouble());
+			if (i<spheres){
+				sb.append("sphere:\ncenter = ").append(format(x, y, z)).append("\n");
+				sb.append("radius = ").append(format(s)).append("\n");
+			}else if (i<spheres+boxes){
+				sb.append("box:\np0 = ").append(format(x, y, z)).append("\n");
+				sb.append("p1 = ").append(format(x+s, y, z)).append("\n");
+				sb.append("p2 = ").append(format(x, y+s, z)).append("\n");
+				sb.append("p3 = ").append(format(x, y, z+s)).append("\n");
+			}else if (i<spheres+boxes+cylinders){
+				sb.append("cylinder:\nstart = ").append(format(x, y, z)).append("\n");
+				sb.append("direction = ").append(format(random.nextDouble()-0.5, 1, random.nextDouble()-0.5)).append("\n");
+				sb.append("length = ").append(format(2*s)).append("\n");
+				sb.append("radius = ").append(format(s/3)).append("\n");
+			}else if (i<spheres+boxes+cylinders+triangles){
+				sb.append("triangle:\np0 = ").append(format(x, y, z)).append("\n");
+				sb.append("p1 = ").append(format(x+2*s, y, z+2*s*random.nextDouble())).append("\n");
+				sb.append("p2 = ").append(format(x+2*s*random.nextDouble(), y+2*s, z)).append("\n");
+			}else{
+				sb.append("mesh:\npos = ").append(format(x, y, z)).append("\n");
+				sb.append("scale = ").append(format(s)).append("\n");
+				sb.append("filename = ").append(getMeshFilename()).append("\n");
+			}
+			appendMaterial(sb, random);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the point lights (on a circle above the objects) and the area lights (squares above the objects).
+	 *
+	 * @param sb
+	 */
+	private void appendLights(StringBuilder sb){
+		int lights = pointLights+areaLights;
+		String color = format(0.9/Math.max(lights, 1), 0.9/Math.max(lights, 1), 0.9/Math.max(lights, 1));
+		for (int i=0; i<lights; i++){
+			double angle = 2*Math.PI*i/lights;
+			double x = 4*Math.cos(angle);
+			double z = 4*Math.sin(angle);
+			if (i<pointLights){
+				sb.append("light-point:\npos = ").append(format(x, 6, z)).append("\n");
+			}else{
+				sb.append("light-area:\np0 = ").append(format(x-0.5, 6, z-0.5)).append("\n");
+				sb.append("p1 = ").append(format(x+0.5, 6, z-0.5)).append("\n");
+				sb.append("p2 = ").append(format(x-0.5, 6, z+0.5)).append("\n");
+				sb.append("grid-width = ").append(areaLightGrid).append("\n");
+			}
+			sb.append("color = ").append(color).append("\n\n");
+		}
+	}
+
+	/**
+	 * Appends a random diffuse color, the specular color and the reflectance of an object, and ends its block.
+	 *
+	 * @param sb
+	 * @param random
+	 */
+	private void appendMaterial(StringBuilder sb, Random random){
+		sb.append("mtl-diffuse = ").append(format(random.nextDouble(), random.nextDouble(), random.nextDouble())).append("\n");
+		sb.append("mtl-specular = 0.5 0.5 0.5\n");
+		if (reflectance>0){
+			sb.append("reflectance = ").append(format(reflectance)).append("\n");
+		}
+		sb.append("\n");
+	}
+
+	/**
+	 * Returns the given numbers as the arguments of a scene file parameter.
+	 *
+	 * @param values
+	 * @return The given numbers separated by spaces.
+	 */
+	private static String format(double... values){
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<values.length; i++){
+			if (i>0){
+				sb.append(' ');
+			}
+			sb.append(String.format(Locale.ROOT, "%.6f", values[i]));
+		}
+		return sb.toString();
+	}
+}
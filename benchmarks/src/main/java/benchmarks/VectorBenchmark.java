@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import vectors.*;
+
+/**
+ * This class measures the vector operations which the intersection and the shading code use for every ray.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VectorBenchmark {
+
+	private IVector3D v1;
+	private IVector3D v2;
+	private IPoint3D p;
+
+	/**
+	 * Creates the vectors.
+	 */
+	@Setup
+	public void setup(){
+		v1 = new Vector3D(0.3, -1.2, 2.5);
+		v2 = new Vector3D(-0.7, 0.4, 0.9).normalize();
+		p = new Point3D(1, 2, 3);
+	}
+
+	/**
+	 * Returns the dot product of two vectors.
+	 *
+	 * @return The dot product.
+	 */
+	@Benchmark
+	public double dotProduct(){
+		return v1.dotProduct(v2);
+	}
+
+	/**
+	 * Returns the cross product of two vectors.
+	 *
+	 * @return The cross product.
+	 */
+	@Benchmark
+	public IVector3D crossProduct(){
+		return v1.crossProduct(v2);
+	}
+
+	/**
+	 * Returns a normalized vector.
+	 *
+	 * @return The normalized vector.
+	 */
+	@Benchmark
+	public IVector3D normalize(){
+		return v1.normalize();
+	}
+
+	/**
+	 * Returns the sum of two vectors.
+	 *
+	 * @return The sum.
+	 */
+	@Benchmark
+	public IVector3D addVector(){
+		return v1.addVector(v2);
+	}
+
+	/**
+	 * Returns a vector mirrored around a normal (as for a reflection).
+	 *
+	 * @return The mirrored vector.
+	 */
+	@Benchmark
+	public IVector3D mirror(){
+		return v1.mirror(v2);
+	}
+
+	/**
+	 * Returns the vector between two points.
+	 *
+	 * @return The vector between the points.
+	 */
+	@Benchmark
+	public IVector3D fromPoints(){
+		return new Vector3D(p, v1.getEndPoint());
+	}
+
+	/**
+	 * Returns a point moved by a scaled vector (as for a point on a ray).
+	 *
+	 * @return The moved point.
+	 */
+	@Benchmark
+	public IPoint3D movePointByVector(){
+		return p.movePointByVector(v1.multiplyByScalar(0.5));
+	}
+}
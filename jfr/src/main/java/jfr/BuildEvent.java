@@ -0,0 +1,32 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This event records the building of the compiled scene and its bounding volume hierarchies (or their update after
+ * objects moved).
+ *
+ */
+@Name("raytracer.Build")
+@Label("Acceleration Build")
+@Category({"Ray Tracer"})
+@Description("Building (or updating) the compiled scene and its bounding volume hierarchies")
+class BuildEvent extends Event {
+	@Label("Scene")
+	String scene;
+
+	@Label("Objects")
+	int objects;
+
+	@Label("Primitives")
+	int primitives;
+
+	@Label("Geometry Size")
+	@DataAmount
+	long geometryBytes;
+}
@@ -0,0 +1,33 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * This event records the encoding of an image file.
+ * When the image is encoded while it is rendered the event lasts as long as the render, and the encode time is the
+ * part of it which was spent encoding.
+ *
+ */
+@Name("raytracer.Encode")
+@Label("Image Encode")
+@Category({"Ray Tracer"})
+@Description("Encoding of an image file")
+class EncodeEvent extends Event {
+	@Label("Format")
+	String format;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Encode Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long encodeTime;
+}
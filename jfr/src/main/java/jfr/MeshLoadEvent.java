@@ -0,0 +1,26 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This event records the reading of a mesh file.
+ *
+ */
+@Name("raytracer.MeshLoad")
+@Label("Mesh Load")
+@Category({"Ray Tracer"})
+@Description("Reading of a mesh file")
+class MeshLoadEvent extends Event {
+	@Label("File")
+	String filename;
+
+	@Label("Vertices")
+	int vertices;
+
+	@Label("Triangles")
+	int triangles;
+}
@@ -0,0 +1,31 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This event records the parsing of a scene text (including the meshes it loads, see MeshLoadEvent).
+ *
+ */
+@Name("raytracer.Parse")
+@Label("Scene Parse")
+@Category({"Ray Tracer"})
+@Description("Parsing of a scene text")
+class ParseEvent extends Event {
+	@Label("Scene")
+	String scene;
+
+	@Label("Objects")
+	int objects;
+
+	@Label("Lights")
+	int lights;
+
+	@Label("Text Length")
+	@DataAmount
+	long textLength;
+}
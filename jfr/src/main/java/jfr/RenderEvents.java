@@ -0,0 +1,159 @@
+package jfr;
+
+import jdk.jfr.Event;
+import scene.IRenderObserver;
+import scene.RenderTelemetry;
+
+/**
+ * This class records the stages of a render as Java Flight Recorder events (see ParseEvent, MeshLoadEvent, BuildEvent,
+ * TileEvent and EncodeEvent), so slow tiles, GC pauses and allocations can be correlated with the stages in JDK
+ * Mission Control.
+ * It is found by the core with java.util.ServiceLoader, so it is installed by putting the jar of this module on the
+ * class path; the events are recorded when a recording is started (i.e with -XX:StartFlightRecording).
+ * Every stage creates its event and begins it, and the event is committed when the stage ends (if it is enabled in
+ * the recording).
+ *
+ */
+public class RenderEvents implements IRenderObserver {
+
+	/**
+	 * Returns a begun event for a stage.
+	 *
+	 * @param phase The stage (RenderTelemetry.PARSE, MESH_LOAD, BUILD, RENDER or ENCODE).
+	 * @return The begun event.
+	 */
+	@Override
+	public Object begin(int phase) {
+		Event event;
+		if (phase==RenderTelemetry.PARSE){
+			event = new ParseEvent();
+		}else if (phase==RenderTelemetry.MESH_LOAD){
+			event = new MeshLoadEvent();
+		}else if (phase==RenderTelemetry.BUILD){
+			event = new BuildEvent();
+		}else if (phase==RenderTelemetry.RENDER){
+			event = new TileEvent();
+		}else{
+			event = new EncodeEvent();
+		}
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Commits the event of a parsed scene.
+	 *
+	 * @param context
+	 * @param scene
+	 * @param objects
+	 * @param lights
+	 * @param textLength
+	 */
+	@Override
+	public void endParse(Object context, String scene, int objects, int lights, long textLength) {
+		ParseEvent event = (ParseEvent)context;
+		event.end();
+		if (event.shouldCommit()){
+			event.scene = scene;
+			event.objects = objects;
+			event.lights = lights;
+			event.textLength = textLength;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Commits the event of a loaded mesh.
+	 *
+	 * @param context
+	 * @param filename
+	 * @param vertices
+	 * @param triangles
+	 */
+	@Override
+	public void endMeshLoad(Object context, String filename, int vertices, int triangles) {
+		MeshLoadEvent event = (MeshLoadEvent)context;
+		event.end();
+		if (event.shouldCommit()){
+			event.filename = filename;
+			event.vertices = vertices;
+			event.triangles = triangles;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Commits the event of a built compiled scene.
+	 *
+	 * @param context
+	 * @param scene
+	 * @param objects
+	 * @param primitives
+	 * @param geometryBytes
+	 */
+	@Override
+	public void endBuild(Object context, String scene, int objects, int primitives, long geometryBytes) {
+		BuildEvent event = (BuildEvent)context;
+		event.end();
+		if (event.shouldCommit()){
+			event.scene = scene;
+			event.objects = objects;
+			event.primitives = primitives;
+			event.geometryBytes = geometryBytes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Commits the event of a rendered tile.
+	 *
+	 * @param context
+	 * @param scene
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param primaryRays
+	 * @param shadowRays
+	 * @param reflectionRays
+	 */
+	@Override
+	public void endTile(Object context, String scene, int x, int y, int width, int height,
+			long primaryRays, long shadowRays, long reflectionRays) {
+		TileEvent event = (TileEvent)context;
+		event.end();
+		if (event.shouldCommit()){
+			event.scene = scene;
+			event.x = x;
+			event.y = y;
+			event.width = width;
+			event.height = height;
+			event.primaryRays = primaryRays;
+			event.shadowRays = shadowRays;
+			event.reflectionRays = reflectionRays;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Commits the event of an encoded image.
+	 *
+	 * @param context
+	 * @param format
+	 * @param width
+	 * @param height
+	 * @param encodeNanos
+	 */
+	@Override
+	public void endEncode(Object context, String format, int width, int height, long encodeNanos) {
+		EncodeEvent event = (EncodeEvent)context;
+		event.end();
+		if (event.shouldCommit()){
+			event.format = format;
+			event.width = width;
+			event.height = height;
+			event.encodeTime = encodeNanos;
+			event.commit();
+		}
+	}
+}
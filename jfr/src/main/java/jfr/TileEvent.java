@@ -0,0 +1,44 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This event records the rendering of a tile, with the rays which were traced for it.
+ * There are many tiles, so the stack trace is not recorded.
+ *
+ */
+@Name("raytracer.Tile")
+@Label("Tile Render")
+@Category({"Ray Tracer"})
+@Description("Rendering of a tile of the image")
+@StackTrace(false)
+class TileEvent extends Event {
+	@Label("Scene")
+	String scene;
+
+	@Label("X")
+	int x;
+
+	@Label("Y")
+	int y;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Primary Rays")
+	long primaryRays;
+
+	@Label("Shadow Rays")
+	long shadowRays;
+
+	@Label("Reflection Rays")
+	long reflectionRays;
+}
@@ -0,0 +1,436 @@
+package application;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import colors.*;
+import rendering.*;
+import scene.CostBuffer;
+import scene.KeyframeSequence;
+import scene.ObjectProfiler;
+import scene.RenderTelemetry;
+import scene.Scene;
+import scene.SceneParser;
+import scene.SequenceParser;
+
+/**
+ * This class renders a scene file to an image file (PNG or PPM) without the GUI (i.e on a batch node).
+ * The size of the image is not limited by the canvas.
+ *
+ * The buffer type: by default ('stream') the image is encoded while it is rendered (see StreamingImageSink), so only
+ * the bands which are being rendered are held in memory. Otherwise the image is rendered into a frame buffer (in
+ * memory, or memory-mapped for large images) and encoded from it row by row when the rendering is done.
+ *
+ * The checkpoint directory: the completed tiles are saved as they are rendered, and a stopped render of the same
+ * scene is resumed from them (see RenderCheckpoint).
+ *
+ * The sequence file: the frames of an animation are rendered from the keyframes of the camera and the lights (see
+ * SequenceParser). The scene is parsed and compiled once, so the meshes, the textures and the compiled geometry are
+ * shared by all the frames. Every frame is written to the output file name with the frame number (i.e frame.png is
+ * written as frame0000.png, frame0001.png, ...), or formatted with the frame number when the name holds a format
+ * (i.e frame-%03d.png).
+ *
+ * The cost map prefix: the cost of every pixel (the intersection tests, the visited BVH nodes, the shadow rays, the
+ * deepest reflection and the time) is recorded, and every metric is written as a false-colour image and a PFM float
+ * map named by the prefix (i.e cost-tests.png and cost-tests.pfm, see CostMapWriter). It needs the
+ * 'raytracer.cost-map' system property on the command line, which enables the counters of RenderTelemetry.
+ *
+ * The deadline: every image is rendered progressively (see ProgressiveRenderer), a preview first and then levels of
+ * growing quality, until the scene is rendered as it is or the deadline passes. The best image rendered by then is
+ * written. The deadline is counted from the start of every image, and the image is rendered into a frame buffer (the
+ * 'stream' buffer type is taken as 'auto').
+ *
+ * The 'raytracer.telemetry' system property prints the phase times, the ray and intersection counters and the
+ * throughput of every rendering thread when the rendering is done (see RenderTelemetry). When the jar of the jfr
+ * module is on the class path the stages of the render are also recorded as Java Flight Recorder events.
+ *
+ * The 'raytracer.object-profile' system property prints the intersection tests, the hits, the intersection time and
+ * the occluded shadow rays of every object, and the shadow rays and the shading time of every light (see
+ * ObjectProfiler).
+ *
+ * {@value #USAGE}
+ *
+ */
+public class BatchRenderer {
+	/**
+	 * The command line of the batch renderer.
+	 */
+	public static final String USAGE = "Usage: BatchRenderer scene.txt width height output.png|output.ppm"
+			+ " [-threads n] [-tile size] [-buffer stream|auto|memory|mapped] [-checkpoint dir] [-sequence keys.txt]"
+			+ " [-cost-map prefix] [-deadline seconds]";
+
+	private String sceneFilename;
+	private String outputFilename;
+	private int width;
+	private int height;
+	private int threads;
+	private int tileSize;
+	private String bufferType;
+	private String checkpointDirectory;
+	private String sequenceFilename;
+	private String costMapPrefix;
+	private double deadlineSeconds;
+
+	/**
+	 * Constructs a batch renderer with the default options.
+	 */
+	public BatchRenderer(){
+		threads = Runtime.getRuntime().availableProcessors();
+		tileSize = TileRenderer.DEFAULT_TILE_SIZE;
+		bufferType = "stream";
+		checkpointDirectory = null;
+		sequenceFilename = null;
+		costMapPrefix = null;
+		deadlineSeconds = 0;
+	}
+
+	/**
+	 * The main method for the batch renderer.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		BatchRenderer renderer = new BatchRenderer();
+		try {
+			renderer.parseArguments(args);
+			renderer.render();
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		} catch (Parser.ParseException e) {
+			System.err.println("Error Parsing text: " + e.getMessage());
+			System.exit(1);
+		} catch (IOException e) {
+			System.err.println("Error rendering: " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Parses the command line arguments.
+	 *
+	 * @param args
+	 */
+	public void parseArguments(String[] args) {
+		if (args.length<4){
+			throw new IllegalArgumentException("Missing arguments");
+		}
+		try {
+			sceneFilename = args[0];
+			width = Integer.parseInt(args[1]);
+			height = Integer.parseInt(args[2]);
+			outputFilename = args[3];
+			for (int i=4; i<args.length; i+=2){
+				if (i+1>=args.length){
+					throw new IllegalArgumentException("Missing value for "+args[i]);
+				}
+				if (args[i].equals("-threads")){
+					threads = Integer.parseInt(args[i+1]);
+				}else if (args[i].equals("-tile")){
+					tileSize = Integer.parseInt(args[i+1]);
+				}else if (args[i].equals("-buffer")){
+					bufferType = args[i+1];
+				}else if (args[i].equals("-checkpoint")){
+					checkpointDirectory = args[i+1];
+				}else if (args[i].equals("-sequence")){
+					sequenceFilename = args[i+1];
+				}else if (args[i].equals("-cost-map")){
+					costMapPrefix = args[i+1];
+				}else if (args[i].equals("-deadline")){
+					deadlineSeconds = Double.parseDouble(args[i+1]);
+					if (!(deadlineSeconds>0)){
+						throw new IllegalArgumentException("The deadline must be positive");
+					}
+				}else{
+					throw new IllegalArgumentException("Unknown option "+args[i]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: "+e.getMessage());
+		}
+		if ((width<=0)||(height<=0)||(threads<=0)||(tileSize<=0)){
+			throw new IllegalArgumentException("The size, threads and tile size must be positive");
+		}
+		if (!(bufferType.equals("stream")||bufferType.equals("auto")||bufferType.equals("memory")||bufferType.equals("mapped"))){
+			throw new IllegalArgumentException("Unknown buffer type "+bufferType);
+		}
+		if (!(outputFilename.toLowerCase().endsWith(".png")||outputFilename.toLowerCase().endsWith(".ppm"))){
+			throw new IllegalArgumentException("The supported output formats are png and ppm");
+		}
+		if (deadlineSeconds>0){
+			if (checkpointDirectory!=null){
+				throw new IllegalArgumentException("The deadline is not supported with a checkpoint");
+			}
+			if (costMapPrefix!=null){
+				throw new IllegalArgumentException("The deadline is not supported with a cost map");
+			}
+		}
+		if (costMapPrefix!=null){
+			if (sequenceFilename!=null){
+				throw new IllegalArgumentException("The cost map is not supported with a sequence");
+			}
+			if (!RenderTelemetry.ENABLED){
+				throw new IllegalArgumentException("The cost map needs -Draytracer.cost-map=true");
+			}
+		}
+	}
+
+	/**
+	 * Parses the scene file and prepares the scene for rendering.
+	 *
+	 * @param sceneText The contents of the scene file.
+	 * @return The scene.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	public Scene loadScene(byte[] sceneText) throws IOException, Parser.ParseException {
+		Scene.setPathToTextureFile(new File(sceneFilename).getAbsoluteFile().getParent() + File.separator);
+		Scene scene = new Scene();
+		scene.setCanvasSize(height, width);
+		scene.setName(new File(sceneFilename).getName());
+		Object context = (RenderTelemetry.OBSERVER!=null) ? RenderTelemetry.OBSERVER.begin(RenderTelemetry.PARSE) : null;
+		long start = RenderTelemetry.startTime();
+		new SceneParser(scene).parse(new InputStreamReader(new ByteArrayInputStream(sceneText)));
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.addPhaseTime(RenderTelemetry.PARSE, RenderTelemetry.elapsed(start));
+		}
+		if (RenderTelemetry.OBSERVER!=null){
+			RenderTelemetry.OBSERVER.endParse(context, scene.getName(), scene.getObjectList().size(), scene.getLightsList().size(), sceneText.length);
+		}
+		scene.initSceneViewPlane();
+		scene.compile();
+		return scene;
+	}
+
+	/**
+	 * Returns 'true' if the image is rendered into a memory-mapped frame buffer (when it is not streamed), otherwise 'false'.
+	 * With the 'auto' buffer type (or the 'stream' buffer type with a deadline) a mapped frame buffer is used when an in-memory frame buffer would take more than
+	 * a quarter of the maximal heap.
+	 *
+	 * @return 'true' if the image is rendered into a memory-mapped frame buffer, otherwise 'false'.
+	 */
+	public boolean isMapped() {
+		if (bufferType.equals("auto")||((deadlineSeconds>0)&&bufferType.equals("stream"))){
+			return 12L*width*height > Runtime.getRuntime().maxMemory()/4;
+		}
+		return bufferType.equals("mapped");
+	}
+
+	/**
+	 * Parses the sequence file and validates it for the scene.
+	 *
+	 * @param scene
+	 * @return The sequence.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	public KeyframeSequence loadSequence(Scene scene) throws IOException, Parser.ParseException {
+		KeyframeSequence sequence = new KeyframeSequence();
+		Reader in = new FileReader(sequenceFilename);
+		try {
+			new SequenceParser(sequence).parse(in);
+		} finally {
+			in.close();
+		}
+		sequence.validate(scene);
+		return sequence;
+	}
+
+	/**
+	 * Renders the scene and writes the image file (or the frames of the sequence).
+	 *
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 * @throws InterruptedException
+	 */
+	public void render() throws IOException, Parser.ParseException, InterruptedException {
+		byte[] sceneText = Files.readAllBytes(new File(sceneFilename).toPath());
+		Scene scene = loadScene(sceneText);
+		TileRenderer renderer = new TileRenderer(scene, tileSize, threads);
+		Properties identity = RenderCheckpoint.describe(sceneText, scene, width, height, tileSize);
+		if (sequenceFilename==null){
+			CostBuffer costs = null;
+			if (costMapPrefix!=null){
+				costs = new CostBuffer(width, height);
+				scene.setCostBuffer(costs);
+			}
+			render(renderer, outputFilename, identity);
+			if (costs!=null){
+				new CostMapWriter(costs).write(costMapPrefix);
+				System.out.println("Cost map written to " + costMapPrefix + "-*.png and " + costMapPrefix + "-*.pfm");
+			}
+			if (RenderTelemetry.REPORT){
+				RenderTelemetry.report(System.out);
+			}
+			if (ObjectProfiler.ENABLED){
+				ObjectProfiler.report(System.out, scene);
+			}
+			return;
+		}
+		KeyframeSequence sequence = loadSequence(scene);
+		identity.setProperty("sequence-sha256", RenderCheckpoint.sha256(Files.readAllBytes(new File(sequenceFilename).toPath())));
+		for (int frame=0; frame<sequence.getFrameCount(); frame++){
+			sequence.apply(scene, frame);
+			identity.setProperty("frame", Integer.toString(frame));
+			String filename = getFrameFilename(frame);
+			render(renderer, filename, identity);
+			System.out.println("Frame " + frame + " written to " + filename);
+		}
+		if (RenderTelemetry.REPORT){
+			RenderTelemetry.report(System.out);
+		}
+		if (ObjectProfiler.ENABLED){
+			ObjectProfiler.report(System.out, scene);
+		}
+	}
+
+	/**
+	 * Renders the scene (in its current state) and writes the image file.
+	 *
+	 * @param renderer
+	 * @param filename The name of the image file.
+	 * @param identity The properties which identify the render in the checkpoint (see RenderCheckpoint.describe).
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void render(TileRenderer renderer, String filename, Properties identity) throws IOException, InterruptedException {
+		if (deadlineSeconds>0){
+			renderProgressive(renderer, filename);
+			return;
+		}
+		RenderCheckpoint checkpoint = null;
+		if (checkpointDirectory!=null){
+			checkpoint = new RenderCheckpoint(new File(checkpointDirectory), identity);
+			int restored = checkpoint.open();
+			if (restored>0){
+				System.out.println("Resuming from checkpoint: "+restored+" tiles were already rendered");
+			}
+		}
+		renderer.setCheckpoint(checkpoint);
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), 1<<16);
+		try {
+			if (bufferType.equals("stream")){
+				StreamingImageSink sink = new StreamingImageSink(createEncoder(filename, out), width, height, tileSize, 2*threads);
+				renderer.addTileListener(sink);
+				try {
+					renderer.render(width, height);
+				} finally {
+					renderer.removeTileListener(sink);
+					sink.close();
+				}
+			}else if (!isMapped()){
+				FrameBuffer buffer = new FrameBuffer(width, height);
+				renderer.render(buffer);
+				write(buffer, createEncoder(filename, out));
+			}else{
+				File bufferFile = new File(filename + ".fb");
+				MappedFrameBuffer buffer = new MappedFrameBuffer(bufferFile, width, height, tileSize);
+				try {
+					renderer.render(buffer);
+					write(buffer, createEncoder(filename, out));
+				} finally {
+					buffer.close();
+					bufferFile.delete();
+				}
+			}
+		} finally {
+			out.close();
+		}
+		if (checkpoint!=null){
+			checkpoint.clear();
+		}
+	}
+
+	/**
+	 * Renders the scene (in its current state) progressively until the deadline, and writes the best image which was
+	 * rendered by then to the image file.
+	 *
+	 * @param renderer The renderer whose tile size, threads and tile listeners are used.
+	 * @param filename The name of the image file.
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void renderProgressive(TileRenderer renderer, String filename) throws IOException, InterruptedException {
+		ProgressiveRenderer progressive = new ProgressiveRenderer(renderer);
+		long deadline = System.nanoTime() + (long)(deadlineSeconds*1e9);
+		IFrameBuffer buffer;
+		File bufferFile = null;
+		if (!isMapped()){
+			buffer = new FrameBuffer(width, height);
+		}else{
+			bufferFile = new File(filename + ".fb");
+			buffer = new MappedFrameBuffer(bufferFile, width, height, tileSize);
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), 1<<16);
+		try {
+			int levels = progressive.render(buffer, deadline);
+			System.out.println("Deadline: completed " + levels + " of " + progressive.getLevelCount() + " levels ("
+					+ progressive.getDescription(Math.max(0, levels-1)) + ")");
+			write(buffer, createEncoder(filename, out));
+		} finally {
+			out.close();
+			if (bufferFile!=null){
+				((MappedFrameBuffer)buffer).close();
+				bufferFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the name of the image file of a frame of the sequence.
+	 *
+	 * @param frame
+	 * @return The name of the image file of the frame.
+	 */
+	public String getFrameFilename(int frame) {
+		if (outputFilename.indexOf('%')>=0){
+			return String.format(outputFilename, frame);
+		}
+		int dot = outputFilename.lastIndexOf('.');
+		return outputFilename.substring(0, dot) + String.format("%04d", frame) + outputFilename.substring(dot);
+	}
+
+	/**
+	 * Returns an encoder for the format of the output file.
+	 *
+	 * @param filename The name of the output file.
+	 * @param out
+	 * @return An encoder for the format of the output file.
+	 */
+	private IImageEncoder createEncoder(String filename, OutputStream out) {
+		if (filename.toLowerCase().endsWith(".png")){
+			return new PNGEncoder(out);
+		}
+		return new PPMEncoder(out);
+	}
+
+	/**
+	 * Writes the image of the frame buffer with the encoder, one row at a time.
+	 *
+	 * @param buffer
+	 * @param encoder
+	 * @throws IOException
+	 */
+	private void write(IFrameBuffer buffer, IImageEncoder encoder) throws IOException {
+		int[] rgb = new int[buffer.getWidth()];
+		Object context = (RenderTelemetry.OBSERVER!=null) ? RenderTelemetry.OBSERVER.begin(RenderTelemetry.ENCODE) : null;
+		long start = RenderTelemetry.startTime();
+		encoder.begin(buffer.getWidth(), buffer.getHeight());
+		for (int y=0; y<buffer.getHeight(); y++){
+			buffer.getRowRGB(y, rgb);
+			encoder.writeRow(rgb, 0);
+		}
+		encoder.finish();
+		long nanos = RenderTelemetry.elapsed(start);
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.addPhaseTime(RenderTelemetry.ENCODE, nanos);
+		}
+		if (RenderTelemetry.OBSERVER!=null){
+			RenderTelemetry.OBSERVER.endEncode(context, encoder.getFormat(), buffer.getWidth(), buffer.getHeight(), nanos);
+		}
+	}
+}
@@ -9,7 +9,11 @@ import org.eclipse.swt.layout.*;
 import org.eclipse.swt.widgets.*;
 
 import colors.*;
+import scene.GBuffer;
+import scene.PrimaryHitBuffer;
+import scene.RenderTelemetry;
 import scene.Scene;
+import scene.SceneDiff;
 import scene.SceneParser;
 
 
@@ -40,6 +44,10 @@ public class RayTracer {
 
 	/**
 	 * Renders the scene, and sets the image pixels to the appropriate values to display the resulting image.
+	 * When the scene was rendered before at the same size, only the pixels which are affected by the edits of the 
+	 * scene text are rendered again (see SceneDiff), and the other pixels are taken from the previous image.
+	 * When only the lights were edited and the scene keeps a G-buffer ('g-buffer = true'), the image is shaded again
+	 * from the G-buffer of the previous render without tracing the primary rays.
 	 * 
 	 * @param dat ImageData for the result image from the ray tracer
 	 * @param canvas The canvas to draw the result image on
@@ -50,54 +58,104 @@ public class RayTracer {
 		// TO-ADD: initialize your scene object
 		Scene m_scene = new Scene();
 		m_scene.setCanvasSize(dat.height, dat.width);
+		m_scene.setName(m_filename);
 		// probably need to set its size before parsing.
+		String sceneText = m_sceneText.getText();
 
+		Object context = (RenderTelemetry.OBSERVER!=null) ? RenderTelemetry.OBSERVER.begin(RenderTelemetry.PARSE) : null;
 		try {
 			// TO-ADD: instantiate your Parser inherited class and invoke it.
 			SceneParser f = new SceneParser(m_scene);
-			f.parse(new StringReader(m_sceneText.getText()));
+			f.parse(new StringReader(sceneText));
 			//throw new IOException();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		if (RenderTelemetry.OBSERVER!=null){
+			RenderTelemetry.OBSERVER.endParse(context, m_scene.getName(), m_scene.getObjectList().size(), m_scene.getLightsList().size(), sceneText.length());
+		}
 		
 		// TO-ADD: possibly add post-parse scene initializations
 		
 		GC gc = new GC(canvas);
-		gc.fillRectangle(m_rect);
 		ImageData scanlined = new ImageData(m_rect.width, 1, 24, new PaletteData(0xFF0000 , 0xFF00 , 0xFF));
 
 		m_scene.initSceneViewPlane();
+		m_scene.compile();
+		SceneDiff diff = findSceneDiff(sceneText, dat.width, dat.height);
+		boolean[] affected = (diff==null) ? null : diff.getAffectedPixels(m_hits, m_lastScene, m_scene);
+		boolean relight = (affected==null)&&(diff!=null)&&(diff.isRelightable())&&(m_scene.isGBufferEnabled())&&
+				(m_gbuffer!=null)&&(m_gbuffer.isCompatible(dat.width, dat.height, m_scene.getSuperSampleWidth()));
+		// the previous render is kept only once this render completes
+		m_lastScene = null;
+		if ((affected==null)&&(!relight)){
+			gc.fillRectangle(m_rect);
+			m_frame = new FrameBuffer(dat.width, dat.height);
+			m_hits = new PrimaryHitBuffer(dat.width, dat.height);
+			m_gbuffer = (m_scene.isGBufferEnabled()) ? new GBuffer(dat.width, dat.height, m_scene.getSuperSampleWidth()) : null;
+		}
+		m_scene.setPrimaryHitBuffer(m_hits);
+		m_scene.setGBuffer(m_gbuffer);
+		IColor color = new colors.Color();
+		int[] row = new int[dat.width];
 		for(int y = 0; y < dat.height; ++y)
 		{
-			for(int x = 0; x < dat.width; ++x)
-			{	
-				// TO-ADD: get the color for this pixel (shoot rays etc')
-				IColor mycol = m_scene.getColorWithSuperSample(x, y);
-				
-				// TO-ADD: set the image color for this pixel.
-				int r = mycol.getRedScaled();//x;  // place-holders.
-				int g = mycol.getGreenScaled();//y;
-				int b = mycol.getBlueScaled();//x + y;
-				
-				// clamp values to [0,255]
-				r &= 0xFF;
-				g &= 0xFF;
-				b &= 0xFF;
-				int rgbcol = (r << 16) | (g << 8) | b;	
-				
-				dat.setPixel(x, y, rgbcol); 
-				scanlined.setPixel(x, 0, rgbcol);
+			boolean changed = (affected==null);
+			if (relight){
+				m_scene.relightColors(0, y, dat.width, m_frame);
+			}else if (affected==null){
+				m_scene.getColorsWithSuperSample(0, y, dat.width, m_frame);
+			}else{
+				for (int x = 0; x < dat.width; ++x){
+					if (affected[y*dat.width+x]){
+						m_scene.getColorWithSuperSample(x, y, color);
+						m_frame.setColor(x, y, color);
+						changed = true;
+					}
+				}
+			}
+			
+			// the colors of the row are converted to RGB values (clamped to [0,255]) by the frame buffer.
+			m_frame.getRowRGB(y, row);
+			dat.setPixels(0, y, dat.width, row, 0);
+			if (changed){
+				scanlined.setPixels(0, 0, dat.width, row, 0);
+				Image img = new Image(display, scanlined);
+				gc.drawImage(img, 0, y);
+				img.dispose();
 			}
-			Image img = new Image(display, scanlined);
-			gc.drawImage(img, 0, y);
-			img.dispose();
 			
 		}
+		m_scene.setPrimaryHitBuffer(null);
+		m_scene.setGBuffer(null);
+		m_lastScene = m_scene;
+		m_lastText = sceneText;
 		Image img = new Image(display, dat);
 		gc.drawImage(img, 0, 0);
 		img.dispose();
 	}
+
+	/**
+	 * Returns the edits of the scene text since the previous render.
+	 * 
+	 * @param sceneText The edited scene text.
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @return The edits of the scene text, or null if there is no previous render of the same size.
+	 */
+	SceneDiff findSceneDiff(String sceneText, int width, int height)
+	{
+		if ((m_lastScene==null)||(m_hits.getWidth()!=width)||(m_hits.getHeight()!=height)){
+			return null;
+		}
+		try {
+			return new SceneDiff(m_lastText, sceneText);
+		} catch (IOException e) {
+			return null;
+		} catch (Parser.ParseException e) {
+			return null;
+		}
+	}
 	
 	/**
 	 * Reads a text file (Reader type) and returns it as a String
@@ -129,6 +187,8 @@ public class RayTracer {
 		try {
 			String path = new File(filename).getParent() + File.separator;
 			Scene.setPathToTextureFile(path);
+			m_filename = new File(filename).getName();
+			m_lastScene = null;
 			Reader fr = new FileReader(filename);
 			m_sceneText.setText(readTextFile(fr));
 		} catch (FileNotFoundException e) {
@@ -142,6 +202,14 @@ public class RayTracer {
 	
 	org.eclipse.swt.graphics.Rectangle m_rect;
 	ImageData m_imgdat;
+	// the name of the opened scene file (identifies the scene in telemetry)
+	String m_filename;
+	// the previous render, to render again only the pixels which are affected by edits of the scene text
+	String m_lastText;
+	Scene m_lastScene;
+	FrameBuffer m_frame;
+	PrimaryHitBuffer m_hits;
+	GBuffer m_gbuffer;
 
 	
 	//********************  GUI  *********************
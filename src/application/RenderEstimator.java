@@ -0,0 +1,402 @@
+package application;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import colors.FrameBuffer;
+import scene.RenderTelemetry;
+import scene.Scene;
+import scene.SceneParser;
+
+/**
+ * This class estimates the time and the rays of a render from a sparse pilot pass, before the render is given a slot
+ * on a cluster node.
+ * The image is divided into square cells, two pixels at random positions in every cell (about 0.5% of the pixels by
+ * default) are traced through the real pipeline (with the super sampling, the ray packets and the reflections of the
+ * scene), and the time and the rays of every traced pixel are measured. The render is estimated from them as a
+ * stratified sample (the pixels stand for their cell), with a 95% confidence interval from the variance within the
+ * cells. Warm-up passes over other pixels are traced first, so the pixels are measured after the JIT compiled the
+ * pipeline.
+ * The cost of a sample hardly depends on the resolution or the super sample width, so the estimate is also scaled to
+ * smaller resolutions and super sample widths, and with a time budget the best settings which fit it are recommended.
+ * The pilot pass runs on one thread, and the render is assumed to scale linearly with the threads. The estimate is of
+ * the compiled pipeline, so a short render in a new JVM takes longer by the time the JIT needs to compile it.
+ *
+ * Usage: RenderEstimator scene.txt width height [-samples n] [-threads n] [-fraction f] [-budget seconds] [-seed n]
+ *
+ */
+public class RenderEstimator {
+	private static final double Z95 = 1.96;
+	private static final int SAMPLES_PER_CELL = 2;
+	private static final int MAX_WARMUP_PASSES = 8;
+	private static final double OUTLIER_FACTOR = 20;
+	private static final double[] SCALES = {1, 0.75, 0.5, 0.25};
+
+	private final Scene scene;
+	private final int width;
+	private final int height;
+	private double fraction;
+	private long seed;
+	private int pilotPixels;
+	private double nanos;
+	private double nanosError;
+	private double rays;
+
+	/**
+	 * Constructs an estimator of the render of a compiled scene at the given resolution.
+	 *
+	 * @param scene The scene (compiled, with the canvas size of the render).
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 */
+	public RenderEstimator(Scene scene, int width, int height){
+		this.scene = scene;
+		this.width = width;
+		this.height = height;
+		fraction = 0.005;
+		seed = 1;
+	}
+
+	/**
+	 * Sets the fraction of the pixels which are traced by the pilot pass (i.e 0.005).
+	 *
+	 * @param fraction
+	 */
+	public void setFraction(double fraction){
+		if ((fraction<=0)||(fraction>1)){
+			throw new IllegalArgumentException("The fraction must be between 0 and 1");
+		}
+		this.fraction = fraction;
+	}
+
+	/**
+	 * Sets the seed of the random positions of the traced pixels in their cells.
+	 *
+	 * @param seed
+	 */
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the width and height of the cells of the pilot pass (every cell has SAMPLES_PER_CELL traced pixels).
+	 *
+	 * @return The width and height of the cells (in pixels).
+	 */
+	public int getCellSize(){
+		return Math.max(1, (int)Math.round(Math.sqrt(SAMPLES_PER_CELL/fraction)));
+	}
+
+	/**
+	 * Traces the warm-up passes and the pilot pass, and estimates the render from the pilot pass.
+	 * Warm-up passes are traced until a pass is no longer more than 10% faster than the previous one (the JIT
+	 * compiled the pipeline), at most MAX_WARMUP_PASSES.
+	 */
+	public void run(){
+		Random random = new Random(seed);
+		FrameBuffer pixel = new FrameBuffer(1, 1);
+		int cell = getCellSize();
+		long previous = Long.MAX_VALUE;
+		for (int i=0; i<MAX_WARMUP_PASSES; i++){
+			long start = System.nanoTime();
+			for (int y=0; y<height; y+=cell){
+				for (int x=0; x<width; x+=cell){
+					scene.getTileWithSuperSample(x+random.nextInt(Math.min(cell, width-x)),
+							y+random.nextInt(Math.min(cell, height-y)), 1, 1, pixel);
+				}
+			}
+			long time = System.nanoTime()-start;
+			if (time>0.9*previous){
+				break;
+			}
+			previous = time;
+		}
+		trace(random, pixel);
+	}
+
+	/**
+	 * Traces SAMPLES_PER_CELL pixels of every cell, and estimates the render from them.
+	 * A pixel which took more than OUTLIER_FACTOR times the median pixel is traced again and its faster time is kept,
+	 * since a pause (i.e of the garbage collector) which falls on a pilot pixel would be multiplied by its cell.
+	 * Every cell stands for its pixels, so the time of the render is the sum of the mean time of the traced pixels of
+	 * every cell times its area, and its variance is the sum of the variances of those means (from the variance
+	 * within every cell) times the square of the area.
+	 *
+	 * @param random The random positions of the pixels in their cells.
+	 * @param pixel A buffer of one pixel.
+	 */
+	private void trace(Random random, FrameBuffer pixel){
+		int cell = getCellSize();
+		int cellsX = (width+cell-1)/cell;
+		int cellsY = (height+cell-1)/cell;
+		int count = cellsX*cellsY*SAMPLES_PER_CELL;
+		int[] px = new int[count];
+		int[] py = new int[count];
+		double[] t = new double[count];
+		double[] r = new double[count];
+		int k = 0;
+		for (int y=0; y<height; y+=cell){
+			for (int x=0; x<width; x+=cell){
+				for (int i=0; i<SAMPLES_PER_CELL; i++, k++){
+					px[k] = x+random.nextInt(Math.min(cell, width-x));
+					py[k] = y+random.nextInt(Math.min(cell, height-y));
+					long before = (RenderTelemetry.ENABLED) ? getThreadRays() : 0;
+					long start = System.nanoTime();
+					scene.getTileWithSuperSample(px[k], py[k], 1, 1, pixel);
+					t[k] = System.nanoTime()-start;
+					r[k] = (RenderTelemetry.ENABLED) ? getThreadRays()-before : 0;
+				}
+			}
+		}
+		double[] sorted = t.clone();
+		Arrays.sort(sorted);
+		double limit = OUTLIER_FACTOR*sorted[count/2];
+		for (k=0; k<count; k++){
+			if (t[k]>limit){
+				long start = System.nanoTime();
+				scene.getTileWithSuperSample(px[k], py[k], 1, 1, pixel);
+				t[k] = Math.min(t[k], System.nanoTime()-start);
+			}
+		}
+		double sum = 0, variance = 0, raySum = 0;
+		k = 0;
+		for (int y=0; y<height; y+=cell){
+			for (int x=0; x<width; x+=cell){
+				double area = Math.min(cell, width-x)*Math.min(cell, height-y);
+				double mean = 0;
+				for (int i=0; i<SAMPLES_PER_CELL; i++){
+					mean += t[k+i]/SAMPLES_PER_CELL;
+					raySum += area*r[k+i]/SAMPLES_PER_CELL;
+				}
+				double squares = 0;
+				for (int i=0; i<SAMPLES_PER_CELL; i++){
+					squares += (t[k+i]-mean)*(t[k+i]-mean);
+				}
+				sum += area*mean;
+				variance += area*area*squares/(SAMPLES_PER_CELL-1)/SAMPLES_PER_CELL;
+				k += SAMPLES_PER_CELL;
+			}
+		}
+		pilotPixels = count;
+		nanos = sum;
+		nanosError = Z95*Math.sqrt(variance);
+		rays = (RenderTelemetry.ENABLED) ? raySum : -1;
+	}
+
+	/**
+	 * Returns the rays which the current thread traced (the primary, shadow and reflection rays).
+	 *
+	 * @return The rays which the current thread traced.
+	 */
+	private static long getThreadRays(){
+		return RenderTelemetry.getThreadCount(RenderTelemetry.PRIMARY_RAYS)
+				+ RenderTelemetry.getThreadCount(RenderTelemetry.SHADOW_RAYS)
+				+ RenderTelemetry.getThreadCount(RenderTelemetry.REFLECTION_RAYS);
+	}
+
+	/**
+	 * Returns the number of pixels which the pilot pass traced.
+	 *
+	 * @return The number of pixels which the pilot pass traced.
+	 */
+	public int getPilotPixels(){
+		return pilotPixels;
+	}
+
+	/**
+	 * Returns the estimated time of a sample (of a pixel at the super sample width of the scene).
+	 *
+	 * @return The estimated time of a sample (in nanoseconds).
+	 */
+	public double getSampleNanos(){
+		int samples = scene.getSuperSampleWidth()*scene.getSuperSampleWidth();
+		return nanos/((double)width*height*samples);
+	}
+
+	/**
+	 * Returns the estimated time of the render on one thread at the given resolution and super sample width.
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param superSampleWidth
+	 * @return The estimated time of the render on one thread (in nanoseconds).
+	 */
+	public double estimateNanos(int width, int height, int superSampleWidth){
+		return nanos*getScale(width, height, superSampleWidth);
+	}
+
+	/**
+	 * Returns the half width of the 95% confidence interval of estimateNanos.
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param superSampleWidth
+	 * @return The half width of the 95% confidence interval of the estimated time (in nanoseconds).
+	 */
+	public double estimateErrorNanos(int width, int height, int superSampleWidth){
+		return nanosError*getScale(width, height, superSampleWidth);
+	}
+
+	/**
+	 * Returns the estimated rays of the render at the given resolution and super sample width, or -1 if the rays were
+	 * not counted (RenderTelemetry is not ENABLED).
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param superSampleWidth
+	 * @return The estimated rays of the render, or -1 if the rays were not counted.
+	 */
+	public double estimateRays(int width, int height, int superSampleWidth){
+		return (rays<0) ? -1 : rays*getScale(width, height, superSampleWidth);
+	}
+
+	/**
+	 * Returns the ratio between the samples of a render at the given resolution and super sample width and the samples
+	 * of the estimated render.
+	 *
+	 * @param width
+	 * @param height
+	 * @param superSampleWidth
+	 * @return The ratio between the samples of the renders.
+	 */
+	private double getScale(int width, int height, int superSampleWidth){
+		double samples = (double)width*height*superSampleWidth*superSampleWidth;
+		int ssw = scene.getSuperSampleWidth();
+		return samples/((double)this.width*this.height*ssw*ssw);
+	}
+
+	/**
+	 * Prints the estimate, and the settings which fit in the time budget (if one is given).
+	 *
+	 * @param out
+	 * @param threads The rendering threads of the render.
+	 * @param setupNanos The time of parsing and compiling the scene (in nanoseconds).
+	 * @param budgetSeconds The time budget of the render (in seconds), or 0 for none.
+	 */
+	public void report(PrintStream out, int threads, long setupNanos, double budgetSeconds){
+		int ssw = scene.getSuperSampleWidth();
+		out.println(String.format(Locale.ROOT, "pilot-pixels       %d (cells of %dx%d)", pilotPixels, getCellSize(), getCellSize()));
+		out.println(String.format(Locale.ROOT, "sample-time        %.0f ns", getSampleNanos()));
+		out.println(String.format(Locale.ROOT, "setup-time         %.2f s", setupNanos/1e9));
+		out.println(String.format(Locale.ROOT, "render-cpu-time    %.2f s +- %.2f s", estimateNanos(width, height, ssw)/1e9,
+				estimateErrorNanos(width, height, ssw)/1e9));
+		out.println(String.format(Locale.ROOT, "render-wall-time   %.2f s +- %.2f s (%d threads)",
+				getWallSeconds(width, height, ssw, threads, setupNanos), estimateErrorNanos(width, height, ssw)/1e9/threads, threads));
+		if (rays>=0){
+			out.println(String.format(Locale.ROOT, "rays               %.0f", estimateRays(width, height, ssw)));
+		}
+		if (budgetSeconds<=0){
+			return;
+		}
+		out.println(String.format(Locale.ROOT, "Settings for a budget of %.1f s:", budgetSeconds));
+		String best = null;
+		// the resolution is kept before the super sampling
+		for (int i=0; i<SCALES.length; i++){
+			for (int s=ssw; s>=1; s--){
+				int w = Math.max(1, (int)Math.round(width*SCALES[i]));
+				int h = Math.max(1, (int)Math.round(height*SCALES[i]));
+				double wall = getWallSeconds(w, h, s, threads, setupNanos);
+				boolean fits = wall+estimateErrorNanos(w, h, s)/1e9/threads<=budgetSeconds;
+				String setting = String.format(Locale.ROOT, "%dx%d super-samp-width %d", w, h, s);
+				out.println(String.format(Locale.ROOT, "  %-36s %10.2f s%s", setting, wall, (fits) ? "" : "  (over budget)"));
+				if ((fits)&&(best==null)){
+					best = setting;
+				}
+			}
+		}
+		out.println("recommended        " + ((best!=null) ? best : "none fits the budget"));
+	}
+
+	/**
+	 * Returns the estimated wall time of the render with the setup.
+	 *
+	 * @param width
+	 * @param height
+	 * @param superSampleWidth
+	 * @param threads The rendering threads.
+	 * @param setupNanos The time of parsing and compiling the scene (in nanoseconds).
+	 * @return The estimated wall time of the render (in seconds).
+	 */
+	private double getWallSeconds(int width, int height, int superSampleWidth, int threads, long setupNanos){
+		return (setupNanos+estimateNanos(width, height, superSampleWidth)/threads)/1e9;
+	}
+
+	/**
+	 * The main method for the estimator.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		// the rays are counted by RenderTelemetry, which reads this property when it is first used
+		System.setProperty("raytracer.counters", "true");
+		String usage = "Usage: RenderEstimator scene.txt width height [-samples n] [-threads n] [-fraction f] [-budget seconds] [-seed n]";
+		if (args.length<3){
+			System.err.println(usage);
+			System.exit(2);
+		}
+		try {
+			String sceneFilename = args[0];
+			int width = Integer.parseInt(args[1]);
+			int height = Integer.parseInt(args[2]);
+			int samples = 0;
+			int threads = Runtime.getRuntime().availableProcessors();
+			double fraction = 0.005;
+			double budget = 0;
+			long seed = 1;
+			for (int i=3; i<args.length; i+=2){
+				if (i+1>=args.length){
+					throw new IllegalArgumentException("Missing value for "+args[i]);
+				}
+				if (args[i].equals("-samples")){
+					samples = Integer.parseInt(args[i+1]);
+				}else if (args[i].equals("-threads")){
+					threads = Integer.parseInt(args[i+1]);
+				}else if (args[i].equals("-fraction")){
+					fraction = Double.parseDouble(args[i+1]);
+				}else if (args[i].equals("-budget")){
+					budget = Double.parseDouble(args[i+1]);
+				}else if (args[i].equals("-seed")){
+					seed = Long.parseLong(args[i+1]);
+				}else{
+					throw new IllegalArgumentException("Unknown option "+args[i]);
+				}
+			}
+			if ((width<=0)||(height<=0)||(threads<=0)||(samples<0)){
+				throw new IllegalArgumentException("The size and threads must be positive");
+			}
+
+			long start = System.nanoTime();
+			Scene.setPathToTextureFile(new File(sceneFilename).getAbsoluteFile().getParent() + File.separator);
+			Scene scene = new Scene();
+			scene.setCanvasSize(height, width);
+			scene.setName(new File(sceneFilename).getName());
+			byte[] sceneText = Files.readAllBytes(new File(sceneFilename).toPath());
+			new SceneParser(scene).parse(new InputStreamReader(new ByteArrayInputStream(sceneText)));
+			if (samples>0){
+				scene.setSuperSampleWidth(samples);
+			}
+			scene.initSceneViewPlane();
+			scene.compile();
+			long setupNanos = System.nanoTime()-start;
+
+			RenderEstimator estimator = new RenderEstimator(scene, width, height);
+			estimator.setFraction(fraction);
+			estimator.setSeed(seed);
+			estimator.run();
+			estimator.report(System.out, threads, setupNanos, budget);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(usage);
+			System.exit(2);
+		} catch (Parser.ParseException e) {
+			System.err.println("Error Parsing text: " + e.getMessage());
+			System.exit(1);
+		} catch (IOException e) {
+			System.err.println("Error reading the scene: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package application;
+
+import java.io.File;
+
+import rendering.ITileListener;
+import rendering.Tile;
+import colors.FrameBuffer;
+
+/**
+ * This class represents a job of the render server (see RenderServer): the scene text, the resolution and the options
+ * of a render, its priority, its state and its progress.
+ * Jobs are ordered by their priority (the highest first), and jobs of the same priority by the order in which they
+ * were submitted. The progress is counted by listening to the tiles of the render, and threads which wait for the
+ * progress are notified whenever it changes.
+ *
+ */
+public class RenderJob implements Comparable<RenderJob>, ITileListener {
+	/**
+	 * The state of a job which waits in the queue.
+	 */
+	public static final int QUEUED = 0;
+
+	/**
+	 * The state of a job which is being rendered.
+	 */
+	public static final int RENDERING = 1;
+
+	/**
+	 * The state of a job whose image is ready.
+	 */
+	public static final int DONE = 2;
+
+	/**
+	 * The state of a job which could not be rendered.
+	 */
+	public static final int FAILED = 3;
+
+	private static final String[] STATE_NAMES = {"queued", "rendering", "done", "failed"};
+
+	private final String id;
+	private final long sequence;
+	private final byte[] sceneText;
+	private final File directory;
+	private final int width;
+	private final int height;
+	private final int superSampleWidth;
+	private final double deadlineSeconds;
+	private final int priority;
+	private final String key;
+	private int state;
+	private int tilesDone;
+	private int tilesTotal;
+	private boolean cached;
+	private File image;
+	private String error;
+
+	/**
+	 * Constructs a queued job.
+	 *
+	 * @param id The id of the job.
+	 * @param sequence The order in which the job was submitted.
+	 * @param sceneText The contents of the scene file.
+	 * @param directory The directory of the meshes and the textures of the scene.
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param superSampleWidth The super sample width (0 for the super sample width of the scene).
+	 * @param deadlineSeconds The deadline of a progressive render (in seconds, or 0 to render the scene as it is).
+	 * @param priority The priority of the job (the highest is rendered first).
+	 * @param key The key of the image in the result cache.
+	 */
+	public RenderJob(String id, long sequence, byte[] sceneText, File directory, int width, int height, int superSampleWidth,
+			double deadlineSeconds, int priority, String key){
+		this.id = id;
+		this.sequence = sequence;
+		this.sceneText = sceneText;
+		this.directory = directory;
+		this.width = width;
+		this.height = height;
+		this.superSampleWidth = superSampleWidth;
+		this.deadlineSeconds = deadlineSeconds;
+		this.priority = priority;
+		this.key = key;
+		state = QUEUED;
+		tilesDone = 0;
+		tilesTotal = 0;
+		cached = false;
+		image = null;
+		error = null;
+	}
+
+	/**
+	 * Returns the id of the job.
+	 *
+	 * @return The id of the job.
+	 */
+	public String getId(){
+		return id;
+	}
+
+	/**
+	 * Returns the contents of the scene file.
+	 *
+	 * @return The contents of the scene file.
+	 */
+	public byte[] getSceneText(){
+		return sceneText;
+	}
+
+	/**
+	 * Returns the directory of the meshes and the textures of the scene.
+	 *
+	 * @return The directory of the meshes and the textures of the scene.
+	 */
+	public File getDirectory(){
+		return directory;
+	}
+
+	/**
+	 * Returns the width of the image (in pixels).
+	 *
+	 * @return The width of the image (in pixels).
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image (in pixels).
+	 *
+	 * @return The height of the image (in pixels).
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Returns the super sample width of the job (0 for the super sample width of the scene).
+	 *
+	 * @return The super sample width of the job.
+	 */
+	public int getSuperSampleWidth(){
+		return superSampleWidth;
+	}
+
+	/**
+	 * Returns the deadline of a progressive render (in seconds, or 0 to render the scene as it is).
+	 *
+	 * @return The deadline of a progressive render.
+	 */
+	public double getDeadlineSeconds(){
+		return deadlineSeconds;
+	}
+
+	/**
+	 * Returns the priority of the job.
+	 *
+	 * @return The priority of the job.
+	 */
+	public int getPriority(){
+		return priority;
+	}
+
+	/**
+	 * Returns the key of the image in the result cache.
+	 *
+	 * @return The key of the image in the result cache.
+	 */
+	public String getKey(){
+		return key;
+	}
+
+	/**
+	 * Returns the state of the job (i.e QUEUED).
+	 *
+	 * @return The state of the job.
+	 */
+	public synchronized int getState(){
+		return state;
+	}
+
+	/**
+	 * Returns the name of the state of the job (i.e 'queued').
+	 *
+	 * @return The name of the state of the job.
+	 */
+	public synchronized String getStateName(){
+		return STATE_NAMES[state];
+	}
+
+	/**
+	 * Returns 'true' if the job is done or failed, otherwise 'false'.
+	 *
+	 * @return 'true' if the job is done or failed, otherwise 'false'.
+	 */
+	public synchronized boolean isFinished(){
+		return (state==DONE)||(state==FAILED);
+	}
+
+	/**
+	 * Returns 'true' if the image was taken from the result cache, otherwise 'false'.
+	 *
+	 * @return 'true' if the image was taken from the result cache, otherwise 'false'.
+	 */
+	public synchronized boolean isCached(){
+		return cached;
+	}
+
+	/**
+	 * Returns the number of tiles which were rendered.
+	 *
+	 * @return The number of tiles which were rendered.
+	 */
+	public synchronized int getTilesDone(){
+		return tilesDone;
+	}
+
+	/**
+	 * Returns the number of tiles of the render (0 until the render starts).
+	 *
+	 * @return The number of tiles of the render.
+	 */
+	public synchronized int getTilesTotal(){
+		return tilesTotal;
+	}
+
+	/**
+	 * Returns the image file of the job, or null if the job is not done.
+	 *
+	 * @return The image file of the job, or null if the job is not done.
+	 */
+	public synchronized File getImage(){
+		return image;
+	}
+
+	/**
+	 * Returns the error of a failed job, or null if the job did not fail.
+	 *
+	 * @return The error of a failed job, or null if the job did not fail.
+	 */
+	public synchronized String getError(){
+		return error;
+	}
+
+	/**
+	 * Marks the job as rendering.
+	 *
+	 * @param tilesTotal The number of tiles of the render.
+	 */
+	public synchronized void start(int tilesTotal){
+		state = RENDERING;
+		this.tilesTotal = tilesTotal;
+		tilesDone = 0;
+		notifyAll();
+	}
+
+	/**
+	 * Marks the job as done (the tiles of a render which stopped at its deadline stay as they were counted).
+	 *
+	 * @param image The image file of the job.
+	 * @param cached 'true' if the image was taken from the result cache.
+	 */
+	public synchronized void finish(File image, boolean cached){
+		this.image = image;
+		this.cached = cached;
+		state = DONE;
+		notifyAll();
+	}
+
+	/**
+	 * Marks the job as failed.
+	 *
+	 * @param error The error of the job.
+	 */
+	public synchronized void fail(String error){
+		this.error = error;
+		state = FAILED;
+		notifyAll();
+	}
+
+	/**
+	 * Waits until the progress or the state of the job changes, or until the timeout passes.
+	 *
+	 * @param tilesDone The number of tiles which were rendered when the progress was last seen.
+	 * @param state The state of the job when it was last seen.
+	 * @param timeout The longest time to wait (in milliseconds).
+	 * @throws InterruptedException
+	 */
+	public synchronized void awaitChange(int tilesDone, int state, long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		long wait = timeout;
+		while ((this.tilesDone==tilesDone)&&(this.state==state)&&(wait>0)){
+			wait(wait);
+			wait = end - System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Counts a rendered tile.
+	 *
+	 * @param tile
+	 * @param tileBuffer
+	 */
+	@Override
+	public synchronized void tileRendered(Tile tile, FrameBuffer tileBuffer){
+		if (tilesDone<tilesTotal){
+			tilesDone++;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Returns the status of the job as a JSON object.
+	 *
+	 * @return The status of the job as a JSON object.
+	 */
+	public synchronized String toJson(){
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"id\": \"").append(id).append("\"");
+		sb.append(", \"state\": \"").append(STATE_NAMES[state]).append("\"");
+		sb.append(", \"priority\": ").append(priority);
+		sb.append(", \"width\": ").append(width);
+		sb.append(", \"height\": ").append(height);
+		sb.append(", \"tiles\": ").append(tilesTotal);
+		sb.append(", \"tiles-done\": ").append(tilesDone);
+		sb.append(", \"cached\": ").append(cached);
+		sb.append(", \"key\": \"").append(key).append("\"");
+		if (error!=null){
+			sb.append(", \"error\": \"").append(escape(error)).append("\"");
+		}
+		sb.append("}");
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the text as the contents of a JSON string.
+	 *
+	 * @param text
+	 * @return The text with its quotes, backslashes and control characters escaped.
+	 */
+	public static String escape(String text){
+		StringBuilder sb = new StringBuilder(text.length());
+		for (int i=0; i<text.length(); i++){
+			char c = text.charAt(i);
+			if ((c=='"')||(c=='\\')){
+				sb.append('\\').append(c);
+			}else if (c<' '){
+				sb.append(String.format("\\u%04x", (int)c));
+			}else{
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Compares the jobs by their priority (the highest first) and then by the order in which they were submitted.
+	 *
+	 * @param other
+	 * @return A negative number if this job is rendered before the other job, otherwise a positive number.
+	 */
+	@Override
+	public int compareTo(RenderJob other){
+		if (priority!=other.priority){
+			return (priority>other.priority) ? -1 : 1;
+		}
+		return (sequence<other.sequence) ? -1 : ((sequence>other.sequence) ? 1 : 0);
+	}
+}
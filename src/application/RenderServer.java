@@ -0,0 +1,699 @@
+package application;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import colors.FrameBuffer;
+import rendering.IImageEncoder;
+import rendering.PNGEncoder;
+import rendering.ProgressiveRenderer;
+import rendering.RenderCheckpoint;
+import rendering.TileRenderer;
+import scene.RenderTelemetry;
+import scene.Scene;
+import scene.SceneParser;
+
+/**
+ * This class is a long-running render server, which renders jobs that are submitted over a local HTTP API.
+ * The server keeps running between the jobs, so the code of the renderer stays compiled by the JIT, and the decoded
+ * textures (see TextureCache) and the parsed meshes (see MeshCache) are shared by the jobs.
+ * The jobs wait in a priority queue and are rendered one at a time (every job with all the rendering threads).
+ *
+ * The images are kept in a content-addressed cache directory: the key of an image is the SHA-256 hash of the scene
+ * text, the contents of the meshes and the textures it refers to, the resolution and the effective settings of the
+ * scene which change the pixels (i.e the precision given by a system property of the server). A job
+ * whose image is in the cache is done as soon as it is submitted, and a job which is identical to a queued or
+ * rendering job is shared with it. A job with a deadline is rendered progressively (see ProgressiveRenderer), and
+ * its image is cached only if the scene was rendered as it is before the deadline.
+ *
+ * The API (all the responses but the image are JSON or text):
+ * POST /jobs?width=w&height=h[&samples=n][&priority=p][&deadline=seconds][&dir=path] with the scene text as the body
+ * submits a job (the meshes and the textures are read from dir, by default the assets directory of the server),
+ * GET /jobs lists the jobs, GET /jobs/id returns the state and the progress of a job, GET /jobs/id/progress streams
+ * a line whenever the progress or the state of the job changes (until it is done or failed), and
+ * GET /jobs/id/image returns the PNG image of a job which is done.
+ *
+ * Usage: RenderServer [-port n] [-threads n] [-tile size] [-cache dir] [-assets dir]
+ *
+ */
+public class RenderServer {
+	/**
+	 * The default port of the server.
+	 */
+	public static final int DEFAULT_PORT = 8080;
+
+	// the longest time to wait for a change of a job before a progress line is repeated (in milliseconds)
+	private static final long PROGRESS_INTERVAL = 5000;
+	// the number of jobs which are kept (the oldest finished jobs are forgotten, their images stay in the cache)
+	private static final int MAX_JOBS = 1000;
+
+	private final File cacheDirectory;
+	private final File assetsDirectory;
+	private final int threads;
+	private final int tileSize;
+	private final PriorityBlockingQueue<RenderJob> queue;
+	private final Map<String, RenderJob> jobs;
+	private final Map<String, RenderJob> pending;
+	private final Map<String, String> assetHashes;
+	private long sequence;
+	private HttpServer server;
+	private ExecutorService executor;
+	private Thread worker;
+	private volatile boolean running;
+
+	/**
+	 * Constructs a render server.
+	 *
+	 * @param cacheDirectory The directory of the cached images.
+	 * @param assetsDirectory The default directory of the meshes and the textures of the scenes.
+	 * @param threads The number of rendering threads.
+	 * @param tileSize The width and height of the tiles (in pixels).
+	 */
+	public RenderServer(File cacheDirectory, File assetsDirectory, int threads, int tileSize){
+		this.cacheDirectory = cacheDirectory;
+		this.assetsDirectory = assetsDirectory;
+		this.threads = Math.max(1, threads);
+		this.tileSize = Math.max(1, tileSize);
+		queue = new PriorityBlockingQueue<RenderJob>();
+		jobs = new LinkedHashMap<String, RenderJob>();
+		pending = new HashMap<String, RenderJob>();
+		assetHashes = new HashMap<String, String>();
+		sequence = 0;
+		running = false;
+	}
+
+	/**
+	 * Starts the server on the given port of the loopback address, and starts rendering the queued jobs.
+	 *
+	 * @param port The port of the server (0 for any free port).
+	 * @throws IOException
+	 */
+	public void start(int port) throws IOException {
+		if ((!cacheDirectory.isDirectory())&&(!cacheDirectory.mkdirs())){
+			throw new IOException("Cannot create the cache directory " + cacheDirectory);
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/jobs", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					RenderServer.this.handle(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		// the progress of a job is streamed by the thread of its request, so every request has its own thread
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		running = true;
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, "render-server");
+		worker.start();
+		server.start();
+	}
+
+	/**
+	 * Stops the server (the job which is being rendered is abandoned).
+	 */
+	public void stop(){
+		running = false;
+		if (server!=null){
+			server.stop(0);
+			executor.shutdownNow();
+		}
+		if (worker!=null){
+			worker.interrupt();
+		}
+	}
+
+	/**
+	 * Returns the port of the server.
+	 *
+	 * @return The port of the server.
+	 */
+	public int getPort(){
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Submits a job. If the image of the job is in the cache the job is done, and if an identical job is queued or
+	 * being rendered that job is returned.
+	 *
+	 * @param sceneText The contents of the scene file.
+	 * @param directory The directory of the meshes and the textures of the scene.
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param superSampleWidth The super sample width (0 for the super sample width of the scene).
+	 * @param deadlineSeconds The deadline of a progressive render (in seconds, or 0 to render the scene as it is).
+	 * @param priority The priority of the job (the highest is rendered first).
+	 * @return The job.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	public RenderJob submit(byte[] sceneText, File directory, int width, int height, int superSampleWidth, double deadlineSeconds,
+			int priority) throws IOException, Parser.ParseException {
+		String key = getKey(sceneText, directory, width, height, superSampleWidth);
+		String pendingKey = key + "/" + deadlineSeconds;
+		synchronized (this){
+			RenderJob job = pending.get(pendingKey);
+			if (job!=null){
+				return job;
+			}
+			sequence++;
+			job = new RenderJob("job-" + sequence, sequence, sceneText, directory, width, height, superSampleWidth,
+					deadlineSeconds, priority, key);
+			jobs.put(job.getId(), job);
+			Iterator<RenderJob> iter = jobs.values().iterator();
+			while ((jobs.size()>MAX_JOBS)&&(iter.hasNext())){
+				if (iter.next().isFinished()){
+					iter.remove();
+				}
+			}
+			File image = getCacheFile(key);
+			if (image.isFile()){
+				job.finish(image, true);
+			}else{
+				pending.put(pendingKey, job);
+				queue.add(job);
+			}
+			return job;
+		}
+	}
+
+	/**
+	 * Returns the job of the given id, or null if there is no such job.
+	 *
+	 * @param id
+	 * @return The job of the given id, or null if there is no such job.
+	 */
+	public synchronized RenderJob getJob(String id){
+		return jobs.get(id);
+	}
+
+	/**
+	 * Returns all the jobs in the order in which they were submitted.
+	 *
+	 * @return All the jobs.
+	 */
+	public synchronized List<RenderJob> getJobs(){
+		return new ArrayList<RenderJob>(jobs.values());
+	}
+
+	/**
+	 * Returns the cache file of the image of the given key.
+	 *
+	 * @param key
+	 * @return The cache file of the image.
+	 */
+	private File getCacheFile(String key){
+		return new File(cacheDirectory, key + ".png");
+	}
+
+	/**
+	 * Returns the key of the image of a job: the SHA-256 hash of the identity of the render (the scene text, the
+	 * resolution and the effective settings of the scene which change the pixels, as in RenderCheckpoint.describe,
+	 * so the defaults of the system properties of the server are included) and of the names and the contents of the
+	 * files it refers to (the meshes and the textures).
+	 *
+	 * @param sceneText The contents of the scene file.
+	 * @param directory The directory of the meshes and the textures of the scene.
+	 * @param width
+	 * @param height
+	 * @param superSampleWidth
+	 * @return The key of the image.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	public String getKey(byte[] sceneText, File directory, int width, int height, int superSampleWidth)
+			throws IOException, Parser.ParseException {
+		AssetParser assets = new AssetParser();
+		assets.parse(new InputStreamReader(new ByteArrayInputStream(sceneText)));
+		Scene settings = assets.getSettings();
+		if (superSampleWidth>0){
+			settings.setSuperSampleWidth(superSampleWidth);
+		}
+		Properties identity = RenderCheckpoint.describe(sceneText, settings, width, height, tileSize);
+		StringBuilder sb = new StringBuilder();
+		for (String name:new TreeSet<String>(identity.stringPropertyNames())){
+			sb.append(name).append(" ").append(identity.getProperty(name)).append("\n");
+		}
+		for (String name:assets.getFilenames()){
+			sb.append("asset ").append(name).append(" ").append(getAssetHash(new File(directory, name))).append("\n");
+		}
+		return RenderCheckpoint.sha256(sb.toString().getBytes("UTF-8"));
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the contents of an asset file ('missing' if there is no such file). The hashes are
+	 * kept until the file is modified, so an asset is read once.
+	 *
+	 * @param file
+	 * @return The hash of the contents of the file.
+	 * @throws IOException
+	 */
+	private String getAssetHash(File file) throws IOException {
+		if (!file.isFile()){
+			return "missing";
+		}
+		String id = file.getCanonicalPath() + "@" + file.lastModified() + "@" + file.length();
+		synchronized (assetHashes){
+			String hash = assetHashes.get(id);
+			if (hash==null){
+				hash = RenderCheckpoint.sha256(Files.readAllBytes(file.toPath()));
+				assetHashes.put(id, hash);
+			}
+			return hash;
+		}
+	}
+
+	/**
+	 * Renders the queued jobs (in the order of their priority) until the server is stopped.
+	 */
+	private void work(){
+		while (running){
+			RenderJob job;
+			try {
+				job = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				render(job);
+			} catch (Parser.ParseException e) {
+				job.fail("Error Parsing text: " + e.getMessage());
+			} catch (InterruptedException e) {
+				job.fail("The server was stopped");
+				return;
+			} catch (Exception e) {
+				job.fail("Error rendering: " + e);
+			} finally {
+				synchronized (this){
+					pending.remove(job.getKey() + "/" + job.getDeadlineSeconds());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses the scene of a job, renders it and writes its image (to the cache if the scene was rendered as it is).
+	 *
+	 * @param job
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 * @throws InterruptedException
+	 */
+	private void render(RenderJob job) throws IOException, Parser.ParseException, InterruptedException {
+		if (RenderTelemetry.ENABLED){
+			// forgets the tile threads of the previous job (each job renders with new threads)
+			RenderTelemetry.reset();
+		}
+		int width = job.getWidth();
+		int height = job.getHeight();
+		Scene.setPathToTextureFile(job.getDirectory().getAbsolutePath() + File.separator);
+		Scene scene = new Scene();
+		scene.setCanvasSize(height, width);
+		scene.setName(job.getId());
+		new SceneParser(scene).parse(new InputStreamReader(new ByteArrayInputStream(job.getSceneText())));
+		if (job.getSuperSampleWidth()>0){
+			scene.setSuperSampleWidth(job.getSuperSampleWidth());
+		}
+		scene.initSceneViewPlane();
+		scene.compile();
+
+		TileRenderer renderer = new TileRenderer(scene, tileSize, threads);
+		renderer.addTileListener(job);
+		int tiles = renderer.getTiles(width, height).size();
+		FrameBuffer buffer = new FrameBuffer(width, height);
+		boolean complete = true;
+		if (job.getDeadlineSeconds()>0){
+			ProgressiveRenderer progressive = new ProgressiveRenderer(renderer);
+			// the preview is not rendered by the tile renderer, so it is not counted
+			job.start(tiles*(progressive.getLevelCount()-1));
+			int levels = progressive.render(buffer, System.nanoTime() + (long)(job.getDeadlineSeconds()*1e9));
+			complete = (levels==progressive.getLevelCount());
+		}else{
+			job.start(tiles);
+			renderer.render(buffer);
+		}
+		File image = complete ? getCacheFile(job.getKey()) : new File(cacheDirectory, job.getId() + ".png");
+		write(buffer, image);
+		job.finish(image, false);
+	}
+
+	/**
+	 * Writes the image of the frame buffer as a PNG file (to a temporary file which is renamed, so an image in the
+	 * cache is always complete).
+	 *
+	 * @param buffer
+	 * @param file
+	 * @throws IOException
+	 */
+	private void write(FrameBuffer buffer, File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 1<<16);
+		try {
+			IImageEncoder encoder = new PNGEncoder(out);
+			int[] rgb = new int[buffer.getWidth()];
+			encoder.begin(buffer.getWidth(), buffer.getHeight());
+			for (int y=0; y<buffer.getHeight(); y++){
+				buffer.getRowRGB(y, rgb);
+				encoder.writeRow(rgb, 0);
+			}
+			encoder.finish();
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Handles a request of the API.
+	 *
+	 * @param exchange
+	 * @throws IOException
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String[] path = exchange.getRequestURI().getPath().split("/");
+		// the path is /jobs[/id[/progress|/image]], so path[0] is empty and path[1] is 'jobs'
+		try {
+			if (path.length==2){
+				if (method.equals("POST")){
+					RenderJob job;
+					try {
+						job = submitRequest(exchange);
+					} catch (IOException e) {
+						// i.e an asset which cannot be read, or a bad directory
+						respond(exchange, 400, "text/plain", "Error reading the scene: " + e + "\n");
+						return;
+					}
+					respond(exchange, 200, "application/json", job.toJson() + "\n");
+				}else if (method.equals("GET")){
+					StringBuilder sb = new StringBuilder("[");
+					for (RenderJob job:getJobs()){
+						sb.append((sb.length()>1) ? ",\n" : "\n").append(job.toJson());
+					}
+					respond(exchange, 200, "application/json", sb.append("\n]\n").toString());
+				}else{
+					respond(exchange, 405, "text/plain", "Unsupported method " + method + "\n");
+				}
+				return;
+			}
+			RenderJob job = (path.length<=4) ? getJob(path[2]) : null;
+			if (job==null){
+				respond(exchange, 404, "text/plain", "Unknown job\n");
+			}else if (!method.equals("GET")){
+				respond(exchange, 405, "text/plain", "Unsupported method " + method + "\n");
+			}else if (path.length==3){
+				respond(exchange, 200, "application/json", job.toJson() + "\n");
+			}else if (path[3].equals("progress")){
+				streamProgress(exchange, job);
+			}else if (path[3].equals("image")){
+				File image = job.getImage();
+				if (image==null){
+					respond(exchange, 409, "text/plain", "The job is " + job.getStateName() + "\n");
+				}else{
+					byte[] bytes = Files.readAllBytes(image.toPath());
+					exchange.getResponseHeaders().set("Content-Type", "image/png");
+					exchange.sendResponseHeaders(200, bytes.length);
+					exchange.getResponseBody().write(bytes);
+				}
+			}else{
+				respond(exchange, 404, "text/plain", "Unknown resource " + path[3] + "\n");
+			}
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+		} catch (Parser.ParseException e) {
+			respond(exchange, 400, "text/plain", "Error Parsing text: " + e.getMessage() + "\n");
+		}
+	}
+
+	/**
+	 * Submits the job of a POST request.
+	 *
+	 * @param exchange
+	 * @return The job.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	private RenderJob submitRequest(HttpExchange exchange) throws IOException, Parser.ParseException {
+		Map<String, String> query = parseQuery(exchange.getRequestURI());
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		InputStream in = exchange.getRequestBody();
+		byte[] bytes = new byte[1<<16];
+		int n;
+		while ((n = in.read(bytes))>0){
+			body.write(bytes, 0, n);
+		}
+		int width;
+		int height;
+		int samples;
+		int priority;
+		double deadline;
+		try {
+			width = Integer.parseInt(getParameter(query, "width", null));
+			height = Integer.parseInt(getParameter(query, "height", null));
+			samples = Integer.parseInt(getParameter(query, "samples", "0"));
+			priority = Integer.parseInt(getParameter(query, "priority", "0"));
+			deadline = Double.parseDouble(getParameter(query, "deadline", "0"));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: "+e.getMessage());
+		}
+		if ((width<=0)||(height<=0)||(samples<0)||(deadline<0)){
+			throw new IllegalArgumentException("The size must be positive");
+		}
+		String dir = query.get("dir");
+		File directory = (dir!=null) ? new File(dir) : assetsDirectory;
+		return submit(body.toByteArray(), directory, width, height, samples, deadline, priority);
+	}
+
+	/**
+	 * Streams the progress of a job (a line whenever its progress or state changes) until the job is done or failed.
+	 *
+	 * @param exchange
+	 * @param job
+	 * @throws IOException
+	 */
+	private void streamProgress(HttpExchange exchange, RenderJob job) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain");
+		exchange.sendResponseHeaders(200, 0);
+		Writer out = new OutputStreamWriter(exchange.getResponseBody(), "UTF-8");
+		try {
+			while (true){
+				int state = job.getState();
+				int tilesDone = job.getTilesDone();
+				String line = job.getStateName();
+				if (state==RenderJob.RENDERING){
+					line += " " + tilesDone + "/" + job.getTilesTotal();
+				}else if (state==RenderJob.FAILED){
+					line += ": " + job.getError();
+				}
+				out.write(line + "\n");
+				out.flush();
+				if ((state==RenderJob.DONE)||(state==RenderJob.FAILED)){
+					return;
+				}
+				job.awaitChange(tilesDone, state, PROGRESS_INTERVAL);
+			}
+		} catch (InterruptedException e) {
+			return;
+		}
+	}
+
+	/**
+	 * Writes a response with the given status and text.
+	 *
+	 * @param exchange
+	 * @param status
+	 * @param contentType
+	 * @param text
+	 * @throws IOException
+	 */
+	private static void respond(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+		byte[] bytes = text.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	/**
+	 * Returns the parameters of the query of a request.
+	 *
+	 * @param uri
+	 * @return The parameters of the query.
+	 * @throws UnsupportedEncodingException
+	 */
+	private static Map<String, String> parseQuery(URI uri) throws UnsupportedEncodingException {
+		Map<String, String> query = new HashMap<String, String>();
+		String raw = uri.getRawQuery();
+		if (raw==null){
+			return query;
+		}
+		for (String pair:raw.split("&")){
+			int eq = pair.indexOf('=');
+			if (eq>0){
+				query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq+1), "UTF-8"));
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Returns a parameter of a query.
+	 *
+	 * @param query
+	 * @param name
+	 * @param defaultValue The value of a missing parameter (null if the parameter is required).
+	 * @return The value of the parameter.
+	 */
+	private static String getParameter(Map<String, String> query, String name, String defaultValue){
+		String value = query.get(name);
+		if (value!=null){
+			return value;
+		}
+		if (defaultValue==null){
+			throw new IllegalArgumentException("Missing parameter " + name);
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * This class collects the names of the files which a scene refers to (the meshes, the textures and the background
+	 * texture), without building the scene.
+	 */
+	private static class AssetParser extends Parser {
+		private final List<String> filenames = new ArrayList<String>();
+		private final Scene settings = new Scene();
+		private boolean sceneBlock = false;
+
+		/**
+		 * Returns the names of the files which the scene refers to, in the order of the scene file.
+		 *
+		 * @return The names of the files which the scene refers to.
+		 */
+		public List<String> getFilenames(){
+			return filenames;
+		}
+
+		/**
+		 * Returns a scene which holds only the settings of the scene block (and the defaults of the others).
+		 *
+		 * @return A scene which holds only the settings of the scene block.
+		 */
+		public Scene getSettings(){
+			return settings;
+		}
+
+		@Override
+		public void startFile(){
+		}
+
+		@Override
+		public void endFile(){
+		}
+
+		@Override
+		public boolean addObject(String name){
+			sceneBlock = name.equals("scene");
+			return true;
+		}
+
+		@Override
+		public boolean setParameter(String name, String[] args) throws ParseException {
+			if ((name.equals("filename")||name.equals("texture")||name.equals("background-tex"))&&(args.length>0)){
+				filenames.add(args[0]);
+			}
+			// the background texture is not loaded (it is hashed as an asset)
+			if ((sceneBlock)&&(!name.equals("background-tex"))){
+				try {
+					settings.parseParameter(name, args);
+				} catch (NumberFormatException e) {
+					throw new ParseException("parameter missing or number format is wrong for parameter '"+name+"'");
+				} catch (FileNotFoundException e) {
+					throw new ParseException("input file "+args[0]+" could not be opened");
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void reportError(String err){
+		}
+	}
+
+	/**
+	 * The main method for the render server.
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		String usage = "Usage: RenderServer [-port n] [-threads n] [-tile size] [-cache dir] [-assets dir]";
+		try {
+			int port = DEFAULT_PORT;
+			int threads = Runtime.getRuntime().availableProcessors();
+			int tileSize = TileRenderer.DEFAULT_TILE_SIZE;
+			File cache = new File("render-cache");
+			File assets = new File(".");
+			for (int i=0; i<args.length; i+=2){
+				if (i+1>=args.length){
+					throw new IllegalArgumentException("Missing value for "+args[i]);
+				}
+				if (args[i].equals("-port")){
+					port = Integer.parseInt(args[i+1]);
+				}else if (args[i].equals("-threads")){
+					threads = Integer.parseInt(args[i+1]);
+				}else if (args[i].equals("-tile")){
+					tileSize = Integer.parseInt(args[i+1]);
+				}else if (args[i].equals("-cache")){
+					cache = new File(args[i+1]);
+				}else if (args[i].equals("-assets")){
+					assets = new File(args[i+1]);
+				}else{
+					throw new IllegalArgumentException("Unknown option "+args[i]);
+				}
+			}
+			if ((port<0)||(threads<=0)||(tileSize<=0)){
+				throw new IllegalArgumentException("The threads and tile size must be positive");
+			}
+			RenderServer server = new RenderServer(cache, assets, threads, tileSize);
+			server.start(port);
+			System.out.println("Render server listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort() + "/jobs");
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid number: " + e.getMessage());
+			System.err.println(usage);
+			System.exit(2);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(usage);
+			System.exit(2);
+		} catch (IOException e) {
+			System.err.println("Error starting the server: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -318,6 +318,103 @@ public class Color implements IColor {
 		return result;
 	}
 	
+	/**
+	 * Sets the values of all the channels of the color (the values are not limited to be between 0 and 1,
+	 * so the color can be used to accumulate intensities before it is clamped).
+	 * 
+	 * @param red New value for the red channel of the color.
+	 * @param green New value for the green channel of the color.
+	 * @param blue New value for the blue channel of the color.
+	 */
+	@Override
+	public void setColor(double red, double green, double blue) {
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+	}
+	
+	/**
+	 * Sets the values of the color to the values of another color.
+	 * 
+	 * @param otherColor The color to copy.
+	 */
+	@Override
+	public void setColor(IColor otherColor) {
+		setColor(otherColor.getRed(), otherColor.getGreen(), otherColor.getBlue());
+	}
+	
+	/**
+	 * Adds another color (values) to the color (changing the current color).
+	 * 
+	 * @param otherColor The color to add to this color.
+	 * @return This color.
+	 */
+	@Override
+	public IColor addColorInPlace(IColor otherColor) {
+		red += otherColor.getRed();
+		green += otherColor.getGreen();
+		blue += otherColor.getBlue();
+		return this;
+	}
+	
+	/**
+	 * Adds another color (values) multiplied by a constant scalar to the color (changing the current color).
+	 * 
+	 * @param otherColor The color to add to this color.
+	 * @param c The multiplication constant for the added color.
+	 * @return This color.
+	 */
+	@Override
+	public IColor addScaledColorInPlace(IColor otherColor, double c) {
+		red += otherColor.getRed() * c;
+		green += otherColor.getGreen() * c;
+		blue += otherColor.getBlue() * c;
+		return this;
+	}
+	
+	/**
+	 * Multiplies the color (values) by a constant scalar (changing the current color).
+	 * 
+	 * @param c The multiplication constant.
+	 * @return This color.
+	 */
+	@Override
+	public IColor multiplyByConstantInPlace(double c) {
+		red *= c;
+		green *= c;
+		blue *= c;
+		return this;
+	}
+	
+	/**
+	 * Multiplies the color (values) by another color (values) (changing the current color).
+	 * 
+	 * @param otherColor The multiplication color.
+	 * @return This color.
+	 */
+	@Override
+	public IColor multiplyByColorInPlace(IColor otherColor) {
+		red *= otherColor.getRed();
+		green *= otherColor.getGreen();
+		blue *= otherColor.getBlue();
+		return this;
+	}
+	
+	/**
+	 * Multiplies the color (values) by another color (values) which is multiplied by a constant scalar (changing the current color).
+	 * 
+	 * @param otherColor The multiplication color.
+	 * @param c The multiplication constant for the multiplication color.
+	 * @return This color.
+	 */
+	@Override
+	public IColor multiplyByScaledColorInPlace(IColor otherColor, double c) {
+		red *= otherColor.getRed() * c;
+		green *= otherColor.getGreen() * c;
+		blue *= otherColor.getBlue() * c;
+		return this;
+	}
+	
 	/**
 	 * Returns the string representation of the color.
 	 * 
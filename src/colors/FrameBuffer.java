@@ -0,0 +1,163 @@
+package colors;
+
+/**
+ * This class represents a buffer of RGB colors for the pixels of an image (held in memory).
+ * The channels of all the pixels are packed in a single float array (red, green and blue of each pixel, row by row),
+ * so the colors of an image are kept without allocating a color object per pixel.
+ *
+ */
+public class FrameBuffer implements IFrameBuffer {
+	private static final double RGB_SCALE = 255d;
+	private final int width;
+	private final int height;
+	private final float[] channels;
+
+	/**
+	 * Constructs a frame buffer whose pixels are all black.
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 */
+	public FrameBuffer(int width, int height){
+		this.width = width;
+		this.height = height;
+		channels = new float[width*height*3];
+	}
+
+	/**
+	 * Returns the width of the image (in pixels).
+	 *
+	 * @return The width of the image (in pixels).
+	 */
+	@Override
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image (in pixels).
+	 *
+	 * @return The height of the image (in pixels).
+	 */
+	@Override
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Sets the color of the pixel at coordinates (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @param red Value for red channel.
+	 * @param green Value for green channel.
+	 * @param blue Value for blue channel.
+	 */
+	public void setColor(int x, int y, double red, double green, double blue){
+		int i = (y*width+x)*3;
+		channels[i] = (float)red;
+		channels[i+1] = (float)green;
+		channels[i+2] = (float)blue;
+	}
+
+	/**
+	 * Sets the color of the pixel at coordinates (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @param color
+	 */
+	public void setColor(int x, int y, IColor color){
+		setColor(x, y, color.getRed(), color.getGreen(), color.getBlue());
+	}
+
+	/**
+	 * Writes a rendered tile to the frame buffer.
+	 *
+	 * @param x X-coordinate of the top left pixel of the tile.
+	 * @param y Y-coordinate of the top left pixel of the tile.
+	 * @param width The width of the tile (in pixels).
+	 * @param height The height of the tile (in pixels).
+	 * @param tile The colors of the tile (the top left pixel of the tile is at (0,0)).
+	 */
+	@Override
+	public void setTile(int x, int y, int width, int height, FrameBuffer tile){
+		for (int i=0; i<height; i++){
+			System.arraycopy(tile.channels, i*tile.width*3, channels, ((y+i)*this.width+x)*3, width*3);
+		}
+	}
+
+	/**
+	 * Reads the color of the pixel at coordinates (x,y) into the given color.
+	 *
+	 * @param x
+	 * @param y
+	 * @param result The color which receives the color of the pixel.
+	 */
+	public void getColor(int x, int y, IColor result){
+		int i = (y*width+x)*3;
+		result.setColor(channels[i], channels[i+1], channels[i+2]);
+	}
+
+	/**
+	 * Returns the value of the red channel of the pixel at coordinates (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return The value of the red channel of the pixel at coordinates (x,y).
+	 */
+	public double getRed(int x, int y){
+		return channels[(y*width+x)*3];
+	}
+
+	/**
+	 * Returns the value of the green channel of the pixel at coordinates (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return The value of the green channel of the pixel at coordinates (x,y).
+	 */
+	public double getGreen(int x, int y){
+		return channels[(y*width+x)*3+1];
+	}
+
+	/**
+	 * Returns the value of the blue channel of the pixel at coordinates (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return The value of the blue channel of the pixel at coordinates (x,y).
+	 */
+	public double getBlue(int x, int y){
+		return channels[(y*width+x)*3+2];
+	}
+
+	/**
+	 * Returns an int RGB representation of the color of the pixel at coordinates (x,y).
+	 * Each channel is scaled to [0,255] and masked to 8 bits.
+	 *
+	 * @param x
+	 * @param y
+	 * @return An int RGB representation of the color of the pixel at coordinates (x,y).
+	 */
+	public int getRGB(int x, int y){
+		int i = (y*width+x)*3;
+		int red = ((int)(channels[i]*RGB_SCALE)) & 0xFF;
+		int green = ((int)(channels[i+1]*RGB_SCALE)) & 0xFF;
+		int blue = ((int)(channels[i+2]*RGB_SCALE)) & 0xFF;
+		return Color.makeRGB(red, green, blue);
+	}
+
+	/**
+	 * Writes the int RGB representations of a row of pixels into the given array.
+	 *
+	 * @param y The row of the pixels.
+	 * @param rgb The array which receives the RGB values (at least as long as the width of the image).
+	 */
+	@Override
+	public void getRowRGB(int y, int[] rgb){
+		for (int x=0; x<width; x++){
+			rgb[x] = getRGB(x, y);
+		}
+	}
+}
@@ -126,4 +126,63 @@ public interface IColor {
 	 * @return Result color.
 	 */
 	public IColor multiplyByColor(IColor otherColor);
+	
+	/**
+	 * Sets the values of all the channels of the color (the values are not limited to be between 0 and 1,
+	 * so the color can be used to accumulate intensities before it is clamped).
+	 * 
+	 * @param red New value for the red channel of the color.
+	 * @param green New value for the green channel of the color.
+	 * @param blue New value for the blue channel of the color.
+	 */
+	public void setColor(double red, double green, double blue);
+	
+	/**
+	 * Sets the values of the color to the values of another color.
+	 * 
+	 * @param otherColor The color to copy.
+	 */
+	public void setColor(IColor otherColor);
+	
+	/**
+	 * Adds another color (values) to the color (changing the current color).
+	 * 
+	 * @param otherColor The color to add to this color.
+	 * @return This color.
+	 */
+	public IColor addColorInPlace(IColor otherColor);
+	
+	/**
+	 * Adds another color (values) multiplied by a constant scalar to the color (changing the current color).
+	 * 
+	 * @param otherColor The color to add to this color.
+	 * @param c The multiplication constant for the added color.
+	 * @return This color.
+	 */
+	public IColor addScaledColorInPlace(IColor otherColor, double c);
+	
+	/**
+	 * Multiplies the color (values) by a constant scalar (changing the current color).
+	 * 
+	 * @param c The multiplication constant.
+	 * @return This color.
+	 */
+	public IColor multiplyByConstantInPlace(double c);
+	
+	/**
+	 * Multiplies the color (values) by another color (values) (changing the current color).
+	 * 
+	 * @param otherColor The multiplication color.
+	 * @return This color.
+	 */
+	public IColor multiplyByColorInPlace(IColor otherColor);
+	
+	/**
+	 * Multiplies the color (values) by another color (values) which is multiplied by a constant scalar (changing the current color).
+	 * 
+	 * @param otherColor The multiplication color.
+	 * @param c The multiplication constant for the multiplication color.
+	 * @return This color.
+	 */
+	public IColor multiplyByScaledColorInPlace(IColor otherColor, double c);
 }
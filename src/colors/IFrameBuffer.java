@@ -0,0 +1,46 @@
+package colors;
+
+import java.io.IOException;
+
+/**
+ * This interface represents the frame buffer which receives the rendered image tile by tile.
+ * There are several frame buffers (i.e in memory, memory-mapped file).
+ */
+public interface IFrameBuffer {
+
+	/**
+	 * Returns the width of the image (in pixels).
+	 *
+	 * @return The width of the image (in pixels).
+	 */
+	public int getWidth();
+
+	/**
+	 * Returns the height of the image (in pixels).
+	 *
+	 * @return The height of the image (in pixels).
+	 */
+	public int getHeight();
+
+	/**
+	 * Writes a rendered tile to the frame buffer.
+	 * Tiles which do not overlap can be written by several threads at the same time.
+	 *
+	 * @param x X-coordinate of the top left pixel of the tile.
+	 * @param y Y-coordinate of the top left pixel of the tile.
+	 * @param width The width of the tile (in pixels).
+	 * @param height The height of the tile (in pixels).
+	 * @param tile The colors of the tile (the top left pixel of the tile is at (0,0)).
+	 * @throws IOException
+	 */
+	public void setTile(int x, int y, int width, int height, FrameBuffer tile) throws IOException;
+
+	/**
+	 * Writes the int RGB representations of a row of pixels into the given array.
+	 *
+	 * @param y The row of the pixels.
+	 * @param rgb The array which receives the RGB values (at least as long as the width of the image).
+	 * @throws IOException
+	 */
+	public void getRowRGB(int y, int[] rgb) throws IOException;
+}
@@ -0,0 +1,145 @@
+package colors;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class represents a frame buffer which is backed by a memory-mapped file, for images which do not fit in memory.
+ * The pixels are stored as 8-bit RGB values in tile-major order (the pixels of every tile are contiguous in the file,
+ * and the tiles follow each other row by row), so writing a tile maps only the region of that tile, and reading a row
+ * maps only the row of tiles which contains it. The heap usage does not depend on the size of the image.
+ *
+ */
+public class MappedFrameBuffer implements IFrameBuffer, Closeable {
+	private static final int BYTES_PER_PIXEL = 3;
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final int tilesX;
+	private final long tileBytes;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private MappedByteBuffer band;
+	private int bandIndex;
+
+	/**
+	 * Constructs a frame buffer in the given file (the file is created, or overwritten if it exists).
+	 *
+	 * @param file
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param tileSize The width and height of the tiles which are written to the frame buffer (in pixels).
+	 * @throws IOException
+	 */
+	public MappedFrameBuffer(File file, int width, int height, int tileSize) throws IOException {
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		tilesX = (width+tileSize-1)/tileSize;
+		int tilesY = (height+tileSize-1)/tileSize;
+		tileBytes = (long)tileSize*tileSize*BYTES_PER_PIXEL;
+		this.file = new RandomAccessFile(file, "rw");
+		this.file.setLength(tileBytes*tilesX*tilesY);
+		channel = this.file.getChannel();
+		band = null;
+		bandIndex = -1;
+	}
+
+	/**
+	 * Returns the width of the image (in pixels).
+	 *
+	 * @return The width of the image (in pixels).
+	 */
+	@Override
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image (in pixels).
+	 *
+	 * @return The height of the image (in pixels).
+	 */
+	@Override
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Returns the width and height of the tiles of the frame buffer (in pixels).
+	 *
+	 * @return The width and height of the tiles of the frame buffer (in pixels).
+	 */
+	public int getTileSize(){
+		return tileSize;
+	}
+
+	/**
+	 * Writes a rendered tile to the frame buffer.
+	 * The tile must be one of the tiles of the frame buffer (its top left pixel is a multiple of the tile size),
+	 * and only its region of the file is mapped while it is written.
+	 *
+	 * @param x X-coordinate of the top left pixel of the tile.
+	 * @param y Y-coordinate of the top left pixel of the tile.
+	 * @param width The width of the tile (in pixels).
+	 * @param height The height of the tile (in pixels).
+	 * @param tile The colors of the tile (the top left pixel of the tile is at (0,0)).
+	 * @throws IOException
+	 */
+	@Override
+	public void setTile(int x, int y, int width, int height, FrameBuffer tile) throws IOException {
+		if ((x%tileSize!=0)||(y%tileSize!=0)||(width>tileSize)||(height>tileSize)){
+			throw new IllegalArgumentException("The tile is not aligned to the tiles of the frame buffer");
+		}
+		long offset = ((long)(y/tileSize)*tilesX + x/tileSize)*tileBytes;
+		MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, offset, tileBytes);
+		for (int i=0; i<height; i++){
+			int position = i*tileSize*BYTES_PER_PIXEL;
+			for (int j=0; j<width; j++){
+				int rgb = tile.getRGB(j, i);
+				region.put(position++, (byte)Color.getRedScaledFromRGB(rgb));
+				region.put(position++, (byte)Color.getGreenScaledFromRGB(rgb));
+				region.put(position++, (byte)Color.getBlueScaledFromRGB(rgb));
+			}
+		}
+	}
+
+	/**
+	 * Writes the int RGB representations of a row of pixels into the given array.
+	 * The row of tiles which contains the row is mapped (and kept mapped for the following rows).
+	 *
+	 * @param y The row of the pixels.
+	 * @param rgb The array which receives the RGB values (at least as long as the width of the image).
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized void getRowRGB(int y, int[] rgb) throws IOException {
+		int index = y/tileSize;
+		if (index!=bandIndex){
+			band = channel.map(FileChannel.MapMode.READ_ONLY, index*tilesX*tileBytes, tilesX*tileBytes);
+			bandIndex = index;
+		}
+		int rowOffset = (y%tileSize)*tileSize*BYTES_PER_PIXEL;
+		for (int x=0; x<width; x++){
+			int position = (int)((x/tileSize)*tileBytes) + rowOffset + (x%tileSize)*BYTES_PER_PIXEL;
+			rgb[x] = Color.makeRGB(band.get(position) & 0xFF, band.get(position+1) & 0xFF, band.get(position+2) & 0xFF);
+		}
+	}
+
+	/**
+	 * Closes the file of the frame buffer.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		band = null;
+		bandIndex = -1;
+		channel.close();
+		file.close();
+	}
+}
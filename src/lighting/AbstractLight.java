@@ -3,6 +3,7 @@ package lighting;
 import java.io.FileNotFoundException;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import vectors.*;
 import colors.*;
 import application.Parser.ParseException;
@@ -13,6 +14,7 @@ import application.Parser.ParseException;
  */
 public abstract class AbstractLight implements ILight{
 	private IColor intensity;
+	private List<ILight> innerLights;
 	
 	/**
 	 * Constructs an abstract light (this will be called by all implementing lights).
@@ -88,6 +90,18 @@ public abstract class AbstractLight implements ILight{
 		return getIntensityForPoint(point);
 	}
 	
+	/**
+	 * Computes the direction vector from the given hit point to the light source into the given vector.
+	 * 
+	 * @param hitPoint
+	 * @param result The vector which receives the direction.
+	 * @return The given vector.
+	 */
+	public Vector3D getDirectionFromHitPointToLight(IPoint3D hitPoint, Vector3D result){
+		IPoint3D direction = getDirectionFromHitPointToLight(hitPoint).getEndPoint();
+		return result.setCoordinates(direction.getX(), direction.getY(), direction.getZ());
+	}
+	
 	/**
 	 * Returns an iterator for the light source.
 	 * If it is a single light source, it will return an iterator with itself inside.
@@ -96,8 +110,11 @@ public abstract class AbstractLight implements ILight{
 	 * @return Iterator for all the inner light sources.
 	 */
 	public Iterator<ILight> getIterator(){
-		ILight[] arr = new ILight[1];
-		arr[0] = this;
-		return Arrays.asList(arr).iterator();
+		if (innerLights==null){
+			ILight[] arr = new ILight[1];
+			arr[0] = this;
+			innerLights = Arrays.asList(arr);
+		}
+		return innerLights.iterator();
 	}
 }
@@ -1,8 +1,10 @@
 package lighting;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import application.Parser.ParseException;
 import vectors.*;
 import colors.IColor;
@@ -17,6 +19,9 @@ public class AreaLight extends AbstractLight {
 	private IPoint3D p1;
 	private IPoint3D p2;
 	private PointLight[][] lightGrid;
+	private List<ILight> innerLights;
+	private int sampleLimit;
+	private List<ILight> limitedLights;
 
 
 	/**
@@ -89,6 +94,7 @@ public class AreaLight extends AbstractLight {
 	 */
 	public void setLightGrid(PointLight[][] lightGrid) {
 		this.lightGrid = lightGrid;
+		innerLights = null;
 	}
 
 	/**
@@ -98,6 +104,56 @@ public class AreaLight extends AbstractLight {
 	 */
 	public void setLightGridSize(int n) {
 		this.lightGrid = new PointLight[n][n];
+		innerLights = null;
+		limitedLights = null;
+	}
+
+	/**
+	 * Limits the inner light sources to a coarser grid of the given size (i.e for a fast preview), or uses the full
+	 * grid (0, or a limit which is not smaller than the grid).
+	 * Every light source of the coarse grid stands for a block of the full grid: it is at the center of the block and
+	 * has the intensity of all its lights, so the light of the area light does not change.
+	 * Call after the light was committed, and not while the scene is rendered.
+	 *
+	 * @param limit The width of the coarse grid, or 0 for the full grid.
+	 */
+	public void setSampleLimit(int limit) {
+		sampleLimit = limit;
+		limitedLights = null;
+		int n = lightGrid.length;
+		if ((limit<=0)||(limit>=n)){
+			return;
+		}
+		List<ILight> lights = new ArrayList<ILight>();
+		for (int a=0; a<limit; a++){
+			for (int b=0; b<limit; b++){
+				double x = 0, y = 0, z = 0;
+				int count = 0;
+				for (int i=a*n/limit; i<(a+1)*n/limit; i++){
+					for (int j=b*n/limit; j<(b+1)*n/limit; j++){
+						IPoint3D position = lightGrid[i][j].getPosition();
+						x += position.getX();
+						y += position.getY();
+						z += position.getZ();
+						count++;
+					}
+				}
+				PointLight pointLight = new PointLight();
+				pointLight.setIntensity(this.getIntensity().multiplyByConstant(count/Math.pow(n, 2d)));
+				pointLight.setPosition(new Point3D(x/count, y/count, z/count));
+				lights.add(pointLight);
+			}
+		}
+		limitedLights = lights;
+	}
+
+	/**
+	 * Returns the width of the coarse grid of the inner light sources, or 0 if the full grid is used.
+	 *
+	 * @return The width of the coarse grid of the inner light sources, or 0 if the full grid is used.
+	 */
+	public int getSampleLimit() {
+		return ((sampleLimit<=0)||(sampleLimit>=lightGrid.length)) ? 0 : sampleLimit;
 	}
 
 	/**
@@ -182,6 +238,8 @@ public class AreaLight extends AbstractLight {
 				lightGrid[i][j] = pointLight;
 			}
 		}
+		innerLights = null;
+		setSampleLimit(sampleLimit);
 	}
 	
 	/**
@@ -201,16 +259,24 @@ public class AreaLight extends AbstractLight {
 	 * Returns an iterator for the light source.
 	 * If it is a single light source, it will return an iterator with itself inside.
 	 * Otherwise it will return an iterator with multiple inner light sources. (i.e area light).
+	 * The list of the inner light sources is built once (until the grid changes).
+	 * With a sample limit the inner light sources of the coarse grid are returned (see setSampleLimit).
 	 * 
 	 * @return Iterator for all the inner light sources.
 	 */
 	public Iterator<ILight> getIterator(){
-		ILight[] arr = new ILight[lightGrid.length*lightGrid.length];
-		for (int i=0; i<lightGrid.length; i++){
-			for (int j=0; j<lightGrid.length; j++){
-				arr[i+j*lightGrid.length] = lightGrid[i][j];
+		if (limitedLights!=null){
+			return limitedLights.iterator();
+		}
+		if (innerLights==null){
+			ILight[] arr = new ILight[lightGrid.length*lightGrid.length];
+			for (int i=0; i<lightGrid.length; i++){
+				for (int j=0; j<lightGrid.length; j++){
+					arr[i+j*lightGrid.length] = lightGrid[i][j];
+				}
 			}
+			innerLights = Arrays.asList(arr);
 		}
-		return Arrays.asList(arr).iterator();
+		return innerLights.iterator();
 	}
 }
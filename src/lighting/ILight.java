@@ -34,6 +34,16 @@ public interface ILight {
 	 */
 	public IVector3D getDirectionFromHitPointToLight(IPoint3D hitPoint);
 	
+	/**
+	 * Computes the direction vector from the given hit point to the light source into the given vector
+	 * (which is reused by the thread while shading, see Vector3D.setCoordinates).
+	 * 
+	 * @param hitPoint
+	 * @param result The vector which receives the direction.
+	 * @return The given vector.
+	 */
+	public Vector3D getDirectionFromHitPointToLight(IPoint3D hitPoint, Vector3D result);
+	
 	/**
 	 * Returns the distance from the given hit point to the light source.
 	 * 
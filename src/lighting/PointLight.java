@@ -160,6 +160,19 @@ public class PointLight extends AbstractLight {
 		return new Vector3D(hitPoint, getPosition()).normalize();
 	}
 
+	/**
+	 * Computes the direction vector from the given hit point to the light source into the given vector
+	 * (without allocating a vector).
+	 * 
+	 * @param hitPoint
+	 * @param result The vector which receives the direction.
+	 * @return The given vector.
+	 */
+	@Override
+	public Vector3D getDirectionFromHitPointToLight(IPoint3D hitPoint, Vector3D result) {
+		return result.setDirection(hitPoint, getPosition());
+	}
+
 	/**
 	 * Returns the distance from the given hit point to the light source.
 	 * 
@@ -0,0 +1,139 @@
+package rendering;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import colors.Color;
+import scene.CostBuffer;
+
+/**
+ * This class writes the metrics of a cost buffer (see CostBuffer) as false-colour PNG images and as raw float buffers.
+ * Every metric is written to its own pair of files, named by the prefix and the name of the metric (i.e
+ * cost-tests.png and cost-tests.pfm).
+ * The false colours go from black (no cost) through blue, cyan and yellow to red at the 99th percentile of the metric,
+ * and the pixels above it are white, so a few very expensive pixels do not hide the others.
+ * The raw buffers are in the PFM format (a one channel float map, little endian, the bottom row first), which keeps
+ * the exact values for other tools.
+ *
+ */
+public class CostMapWriter {
+	private static final double PERCENTILE = 0.99;
+	private static final int[][] PALETTE = {{0, 0, 0}, {0, 0, 255}, {0, 255, 255}, {255, 255, 0}, {255, 0, 0}};
+
+	private final CostBuffer costs;
+
+	/**
+	 * Constructs a writer of the given cost buffer.
+	 *
+	 * @param costs
+	 */
+	public CostMapWriter(CostBuffer costs){
+		this.costs = costs;
+	}
+
+	/**
+	 * Writes the false-colour image and the raw buffer of every metric.
+	 *
+	 * @param prefix The prefix of the file names (i.e 'out/cost' for out/cost-tests.png).
+	 * @throws IOException
+	 */
+	public void write(String prefix) throws IOException {
+		for (int metric=0; metric<CostBuffer.getMetricCount(); metric++){
+			String name = prefix + "-" + CostBuffer.getMetricName(metric);
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(name + ".png"), 1<<16);
+			try {
+				writeImage(metric, new PNGEncoder(out));
+			} finally {
+				out.close();
+			}
+			out = new BufferedOutputStream(new FileOutputStream(name + ".pfm"), 1<<16);
+			try {
+				writeFloats(metric, out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of a metric which is drawn in red (the 99th percentile of the metric, or its maximum if the
+	 * percentile is 0).
+	 *
+	 * @param metric One of the metrics of CostBuffer (i.e CostBuffer.TESTS).
+	 * @return The value of the metric which is drawn in red.
+	 */
+	public double getScale(int metric){
+		float[] sorted = costs.getValues(metric).clone();
+		if (sorted.length==0){
+			return 0;
+		}
+		Arrays.sort(sorted);
+		double scale = sorted[(int)Math.min(sorted.length-1, Math.round(PERCENTILE*(sorted.length-1)))];
+		return (scale>0) ? scale : sorted[sorted.length-1];
+	}
+
+	/**
+	 * Writes a metric as a false-colour image with the encoder.
+	 *
+	 * @param metric One of the metrics of CostBuffer (i.e CostBuffer.TESTS).
+	 * @param encoder
+	 * @throws IOException
+	 */
+	public void writeImage(int metric, IImageEncoder encoder) throws IOException {
+		float[] values = costs.getValues(metric);
+		double scale = getScale(metric);
+		int width = costs.getWidth();
+		int[] rgb = new int[width];
+		encoder.begin(width, costs.getHeight());
+		for (int y=0; y<costs.getHeight(); y++){
+			for (int x=0; x<width; x++){
+				rgb[x] = getFalseColour((scale>0) ? values[y*width+x]/scale : 0);
+			}
+			encoder.writeRow(rgb, 0);
+		}
+		encoder.finish();
+	}
+
+	/**
+	 * Writes a metric as a PFM float map (the stream is not closed).
+	 *
+	 * @param metric One of the metrics of CostBuffer (i.e CostBuffer.TESTS).
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeFloats(int metric, OutputStream out) throws IOException {
+		float[] values = costs.getValues(metric);
+		int width = costs.getWidth();
+		out.write(("Pf\n" + width + " " + costs.getHeight() + "\n-1.0\n").getBytes("US-ASCII"));
+		ByteBuffer row = ByteBuffer.allocate(4*width).order(ByteOrder.LITTLE_ENDIAN);
+		for (int y=costs.getHeight()-1; y>=0; y--){
+			row.clear();
+			for (int x=0; x<width; x++){
+				row.putFloat(values[y*width+x]);
+			}
+			out.write(row.array(), 0, row.position());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Returns the false colour of a value (0 is black, 1 is red and values above 1 are white).
+	 *
+	 * @param value The value divided by the scale of its metric.
+	 * @return The int RGB value of the false colour.
+	 */
+	public static int getFalseColour(double value){
+		if (value>1){
+			return Color.makeRGB(255, 255, 255);
+		}
+		double position = Math.max(0, value)*(PALETTE.length-1);
+		int i = Math.min((int)position, PALETTE.length-2);
+		double t = position-i;
+		int[] from = PALETTE[i];
+		int[] to = PALETTE[i+1];
+		return Color.makeRGB((int)Math.round(from[0]+(to[0]-from[0])*t), (int)Math.round(from[1]+(to[1]-from[1])*t),
+				(int)Math.round(from[2]+(to[2]-from[2])*t));
+	}
+}
@@ -0,0 +1,42 @@
+package rendering;
+
+import java.io.IOException;
+
+/**
+ * This interface represents an encoder which writes an image file row by row, from top to bottom.
+ * There are several encoders (i.e PNG, PPM).
+ */
+public interface IImageEncoder {
+
+	/**
+	 * Returns the format of the image file (i.e 'png').
+	 *
+	 * @return The format of the image file.
+	 */
+	public String getFormat();
+
+	/**
+	 * Writes the header of the image file.
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @throws IOException
+	 */
+	public void begin(int width, int height) throws IOException;
+
+	/**
+	 * Encodes the next row of the image.
+	 *
+	 * @param rgb The int RGB values of the pixels.
+	 * @param offset The index of the first pixel of the row in the array.
+	 * @throws IOException
+	 */
+	public void writeRow(int[] rgb, int offset) throws IOException;
+
+	/**
+	 * Writes the end of the image file and flushes it (the stream of the encoder is not closed).
+	 *
+	 * @throws IOException
+	 */
+	public void finish() throws IOException;
+}
@@ -0,0 +1,22 @@
+package rendering;
+
+import java.io.IOException;
+
+import colors.FrameBuffer;
+
+/**
+ * This interface represents a listener which is notified by the tile renderer whenever a tile is rendered.
+ * The listener is called by the rendering thread of the tile, so it may block it (i.e to slow down the rendering
+ * until the rendered tiles are written).
+ */
+public interface ITileListener {
+
+	/**
+	 * Called after a tile was rendered (and written to the frame buffer of the renderer, if there is one).
+	 *
+	 * @param tile
+	 * @param tileBuffer The colors of the tile (the top left pixel of the tile is at (0,0)). Valid only during the call.
+	 * @throws IOException
+	 */
+	public void tileRendered(Tile tile, FrameBuffer tileBuffer) throws IOException;
+}
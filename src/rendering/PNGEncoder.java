@@ -0,0 +1,177 @@
+package rendering;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import colors.Color;
+
+/**
+ * This class writes an image in the PNG format (8-bit RGB), one row at a time.
+ * Every row is filtered (with the 'sub' filter) and compressed as soon as it is given, and the compressed data is
+ * written in IDAT chunks of a fixed size, so the image is never held in memory.
+ *
+ */
+public class PNGEncoder implements IImageEncoder {
+	private static final byte[] SIGNATURE = {(byte)137, 80, 78, 71, 13, 10, 26, 10};
+	private static final int CHUNK_SIZE = 1<<16;
+	private static final byte FILTER_SUB = 1;
+	private final OutputStream out;
+	private final Deflater deflater;
+	private final CRC32 crc;
+	private final byte[] chunk;
+	private int chunkLength;
+	private byte[] row;
+
+	/**
+	 * Constructs a PNG encoder which writes to the given stream.
+	 *
+	 * @param out
+	 * @param level The compression level (0-9).
+	 */
+	public PNGEncoder(OutputStream out, int level){
+		this.out = out;
+		deflater = new Deflater(level);
+		crc = new CRC32();
+		chunk = new byte[CHUNK_SIZE];
+		chunkLength = 0;
+		row = null;
+	}
+
+	/**
+	 * Constructs a PNG encoder which writes to the given stream with the default compression level.
+	 *
+	 * @param out
+	 */
+	public PNGEncoder(OutputStream out){
+		this(out, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Returns the format of the image file.
+	 *
+	 * @return The format of the image file ('png').
+	 */
+	@Override
+	public String getFormat() {
+		return "png";
+	}
+
+	/**
+	 * Writes the signature and the header chunk of the image file.
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @throws IOException
+	 */
+	@Override
+	public void begin(int width, int height) throws IOException {
+		out.write(SIGNATURE);
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8;	// bit depth
+		header[9] = 2;	// color type (RGB)
+		header[10] = 0;	// compression method
+		header[11] = 0;	// filter method
+		header[12] = 0;	// interlace method
+		writeChunk("IHDR", header, header.length);
+		row = new byte[1+width*3];
+	}
+
+	/**
+	 * Filters and compresses the next row of the image.
+	 *
+	 * @param rgb The int RGB values of the pixels.
+	 * @param offset The index of the first pixel of the row in the array.
+	 * @throws IOException
+	 */
+	@Override
+	public void writeRow(int[] rgb, int offset) throws IOException {
+		int width = (row.length-1)/3;
+		row[0] = FILTER_SUB;
+		int previous = 0;
+		for (int x=0; x<width; x++){
+			int pixel = rgb[offset+x];
+			row[1+3*x] = (byte)(Color.getRedScaledFromRGB(pixel)-Color.getRedScaledFromRGB(previous));
+			row[2+3*x] = (byte)(Color.getGreenScaledFromRGB(pixel)-Color.getGreenScaledFromRGB(previous));
+			row[3+3*x] = (byte)(Color.getBlueScaledFromRGB(pixel)-Color.getBlueScaledFromRGB(previous));
+			previous = pixel;
+		}
+		deflater.setInput(row);
+		while (!deflater.needsInput()){
+			deflate();
+		}
+	}
+
+	/**
+	 * Flushes the compressed data and writes the end chunk of the image file (the stream is not closed).
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void finish() throws IOException {
+		deflater.finish();
+		while (!deflater.finished()){
+			deflate();
+		}
+		if (chunkLength>0){
+			writeChunk("IDAT", chunk, chunkLength);
+			chunkLength = 0;
+		}
+		writeChunk("IEND", chunk, 0);
+		deflater.end();
+		out.flush();
+	}
+
+	/**
+	 * Compresses the pending input into the current IDAT chunk, and writes the chunk when it is full.
+	 *
+	 * @throws IOException
+	 */
+	private void deflate() throws IOException {
+		chunkLength += deflater.deflate(chunk, chunkLength, chunk.length-chunkLength);
+		if (chunkLength==chunk.length){
+			writeChunk("IDAT", chunk, chunkLength);
+			chunkLength = 0;
+		}
+	}
+
+	/**
+	 * Writes a chunk of the image file (length, type, data and CRC).
+	 *
+	 * @param type
+	 * @param data
+	 * @param length The length of the data.
+	 * @throws IOException
+	 */
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		byte[] header = new byte[8];
+		putInt(header, 0, length);
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		System.arraycopy(typeBytes, 0, header, 4, 4);
+		crc.reset();
+		crc.update(typeBytes, 0, 4);
+		crc.update(data, 0, length);
+		out.write(header);
+		out.write(data, 0, length);
+		byte[] checksum = new byte[4];
+		putInt(checksum, 0, (int)crc.getValue());
+		out.write(checksum);
+	}
+
+	/**
+	 * Writes a big-endian int to the given array.
+	 *
+	 * @param bytes
+	 * @param offset
+	 * @param value
+	 */
+	private static void putInt(byte[] bytes, int offset, int value){
+		bytes[offset] = (byte)(value>>>24);
+		bytes[offset+1] = (byte)(value>>>16);
+		bytes[offset+2] = (byte)(value>>>8);
+		bytes[offset+3] = (byte)value;
+	}
+}
@@ -0,0 +1,96 @@
+package rendering;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import colors.Color;
+import colors.IFrameBuffer;
+
+/**
+ * This class writes an image in the binary PPM format, one row at a time.
+ *
+ */
+public class PPMEncoder implements IImageEncoder {
+	private final OutputStream out;
+	private byte[] row;
+
+	/**
+	 * Constructs a PPM encoder which writes to the given stream.
+	 *
+	 * @param out
+	 */
+	public PPMEncoder(OutputStream out){
+		this.out = out;
+		row = null;
+	}
+
+	/**
+	 * Writes the image of the frame buffer to the stream (the stream is not closed).
+	 * The image is read one row at a time, so it can be larger than the memory.
+	 *
+	 * @param buffer
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void encode(IFrameBuffer buffer, OutputStream out) throws IOException {
+		PPMEncoder encoder = new PPMEncoder(out);
+		int[] rgb = new int[buffer.getWidth()];
+		encoder.begin(buffer.getWidth(), buffer.getHeight());
+		for (int y=0; y<buffer.getHeight(); y++){
+			buffer.getRowRGB(y, rgb);
+			encoder.writeRow(rgb, 0);
+		}
+		encoder.finish();
+	}
+
+	/**
+	 * Returns the format of the image file.
+	 *
+	 * @return The format of the image file ('ppm').
+	 */
+	@Override
+	public String getFormat() {
+		return "ppm";
+	}
+
+	/**
+	 * Writes the header of the image file.
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @throws IOException
+	 */
+	@Override
+	public void begin(int width, int height) throws IOException {
+		out.write(("P6\n"+width+" "+height+"\n255\n").getBytes("US-ASCII"));
+		row = new byte[width*3];
+	}
+
+	/**
+	 * Encodes the next row of the image.
+	 *
+	 * @param rgb The int RGB values of the pixels.
+	 * @param offset The index of the first pixel of the row in the array.
+	 * @throws IOException
+	 */
+	@Override
+	public void writeRow(int[] rgb, int offset) throws IOException {
+		int width = row.length/3;
+		for (int x=0; x<width; x++){
+			row[3*x] = (byte)Color.getRedScaledFromRGB(rgb[offset+x]);
+			row[3*x+1] = (byte)Color.getGreenScaledFromRGB(rgb[offset+x]);
+			row[3*x+2] = (byte)Color.getBlueScaledFromRGB(rgb[offset+x]);
+		}
+		out.write(row);
+	}
+
+	/**
+	 * Flushes the image file (the stream is not closed).
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void finish() throws IOException {
+		out.flush();
+	}
+}
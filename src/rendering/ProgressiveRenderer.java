@@ -0,0 +1,226 @@
+package rendering;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import colors.Color;
+import colors.FrameBuffer;
+import colors.IColor;
+import colors.IFrameBuffer;
+import lighting.AreaLight;
+import lighting.ILight;
+import scene.Scene;
+
+/**
+ * This class renders a scene progressively before a deadline, and leaves the best image which was rendered when the
+ * deadline passed in the frame buffer (i.e for previews which must be returned in time).
+ * The image is rendered in levels of growing quality, and every level spends the remaining time on one more feature
+ * of the scene, in the order of their priority:
+ * a preview at a quarter of the resolution (one sample per pixel, one sample per area light and no reflections),
+ * the full resolution, the super sampling of the scene, all the samples of the area lights, and the reflection depth
+ * of the scene (levels which would not change the image are skipped). The last level renders the scene as it is.
+ * The tiles of every level are written over the tiles of the previous level as soon as they are rendered, so when the
+ * deadline passes the image holds every tile at the best level which was reached. The preview is always completed,
+ * so the image is never empty.
+ * The settings of the scene are changed while it is rendered, and are restored when the render returns.
+ *
+ */
+public class ProgressiveRenderer {
+	private static final int PREVIEW_SCALE = 4;
+
+	private final Scene scene;
+	private final TileRenderer renderer;
+	private List<int[]> levels;
+	private int completedLevels;
+
+	/**
+	 * Constructs a progressive renderer for the given scene (the scene must be compiled before rendering).
+	 *
+	 * @param scene
+	 * @param tileSize The width and height of the tiles (in pixels).
+	 * @param threads The number of rendering threads.
+	 */
+	public ProgressiveRenderer(Scene scene, int tileSize, int threads){
+		this(new TileRenderer(scene, tileSize, threads));
+	}
+
+	/**
+	 * Constructs a progressive renderer which renders the levels with the given tile renderer (its deadline is set
+	 * while rendering).
+	 *
+	 * @param renderer
+	 */
+	public ProgressiveRenderer(TileRenderer renderer){
+		this.renderer = renderer;
+		scene = renderer.getScene();
+		levels = getLevels();
+		completedLevels = 0;
+	}
+
+	/**
+	 * Returns the levels of the render from the current settings of the scene.
+	 * Every level is {preview scale, super sample width, area light sample limit (0 for all), reflection depth}.
+	 *
+	 * @return The levels of the render.
+	 */
+	private List<int[]> getLevels(){
+		int superSampleWidth = scene.getSuperSampleWidth();
+		int depth = scene.getMaxReflectionDepth();
+		int grid = 0;
+		for (ILight light:scene.getLightsList()){
+			if ((light instanceof AreaLight)&&(((AreaLight)light).getLightGrid()!=null)){
+				grid = Math.max(grid, ((AreaLight)light).getLightGrid().length);
+			}
+		}
+		List<int[]> list = new ArrayList<int[]>();
+		list.add(new int[] {PREVIEW_SCALE, 1, 1, 0});
+		list.add(new int[] {1, 1, 1, 0});
+		if (superSampleWidth>1){
+			list.add(new int[] {1, superSampleWidth, 1, 0});
+		}
+		if (grid>1){
+			list.add(new int[] {1, superSampleWidth, 0, 0});
+		}
+		if (depth>0){
+			list.add(new int[] {1, superSampleWidth, 0, depth});
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the number of levels of the render (the last one renders the scene as it is).
+	 *
+	 * @return The number of levels of the render.
+	 */
+	public int getLevelCount(){
+		return levels.size();
+	}
+
+	/**
+	 * Returns the number of levels which the last render completed.
+	 *
+	 * @return The number of levels which the last render completed.
+	 */
+	public int getCompletedLevels(){
+		return completedLevels;
+	}
+
+	/**
+	 * Returns a description of a level (i.e 'full resolution, 2x2 samples, all area light samples, no reflections').
+	 *
+	 * @param level
+	 * @return A description of the level.
+	 */
+	public String getDescription(int level){
+		int[] settings = levels.get(level);
+		return ((settings[0]>1) ? "1/" + settings[0] + " resolution" : "full resolution")
+				+ ", " + settings[1] + "x" + settings[1] + " samples"
+				+ ", " + ((settings[2]>0) ? settings[2] + "x" + settings[2] + " area light samples" : "all area light samples")
+				+ ", " + ((settings[3]>0) ? "reflection depth " + settings[3] : "no reflections");
+	}
+
+	/**
+	 * Returns the tile renderer of the levels (i.e to add tile listeners, which are notified of the tiles of every
+	 * level but the preview).
+	 *
+	 * @return The tile renderer of the levels.
+	 */
+	public TileRenderer getTileRenderer(){
+		return renderer;
+	}
+
+	/**
+	 * Renders the levels into the frame buffer until the last level is completed or the deadline passes.
+	 *
+	 * @param buffer The frame buffer (of the canvas size of the scene).
+	 * @param deadline The deadline (in the time of System.nanoTime).
+	 * @return The number of levels which were completed (getLevelCount if the scene was rendered as it is).
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public int render(IFrameBuffer buffer, long deadline) throws IOException, InterruptedException {
+		levels = getLevels();
+		completedLevels = 0;
+		int superSampleWidth = scene.getSuperSampleWidth();
+		int depth = scene.getMaxReflectionDepth();
+		List<AreaLight> areaLights = new ArrayList<AreaLight>();
+		List<Integer> limits = new ArrayList<Integer>();
+		for (ILight light:scene.getLightsList()){
+			if ((light instanceof AreaLight)&&(((AreaLight)light).getLightGrid()!=null)){
+				areaLights.add((AreaLight)light);
+				limits.add(((AreaLight)light).getSampleLimit());
+			}
+		}
+		try {
+			for (int level=0; level<levels.size(); level++){
+				int[] settings = levels.get(level);
+				scene.setSuperSampleWidth(settings[1]);
+				for (AreaLight light:areaLights){
+					light.setSampleLimit(settings[2]);
+				}
+				scene.setMaxReflectionDepth(settings[3]);
+				if (settings[0]>1){
+					renderPreview(buffer, settings[0]);
+				}else{
+					renderer.setDeadline(deadline);
+					if (!renderer.render(buffer, renderer.getTiles(buffer.getWidth(), buffer.getHeight()))){
+						break;
+					}
+				}
+				completedLevels++;
+				if (System.nanoTime()-deadline>=0){
+					break;
+				}
+			}
+		} finally {
+			// the tile renderer returns only when its threads stopped, so no thread renders with these settings
+			renderer.setDeadline(TileRenderer.NO_DEADLINE);
+			scene.setSuperSampleWidth(superSampleWidth);
+			scene.setMaxReflectionDepth(depth);
+			for (int i=0; i<areaLights.size(); i++){
+				areaLights.get(i).setSampleLimit(limits.get(i));
+			}
+		}
+		return completedLevels;
+	}
+
+	/**
+	 * Renders the scene at a fraction of the resolution (without a deadline), and writes every pixel of it as a block
+	 * of pixels to the frame buffer.
+	 *
+	 * @param buffer
+	 * @param scale The width and height of the blocks (in pixels).
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void renderPreview(IFrameBuffer buffer, int scale) throws IOException, InterruptedException {
+		int width = buffer.getWidth();
+		int height = buffer.getHeight();
+		int previewWidth = (width+scale-1)/scale;
+		int previewHeight = (height+scale-1)/scale;
+		double canvasWidth = scene.getWidth();
+		double canvasHeight = scene.getHeight();
+		FrameBuffer preview = new FrameBuffer(previewWidth, previewHeight);
+		scene.setCanvasSize(previewHeight, previewWidth);
+		scene.initSceneViewPlane();
+		try {
+			new TileRenderer(scene, renderer.getTileSize(), renderer.getThreads()).render(preview);
+		} finally {
+			scene.setCanvasSize(canvasHeight, canvasWidth);
+			scene.initSceneViewPlane();
+		}
+		// the blocks are written tile by tile, as a mapped frame buffer only takes whole tiles
+		FrameBuffer block = new FrameBuffer(renderer.getTileSize(), renderer.getTileSize());
+		IColor color = new Color();
+		for (Tile tile:renderer.getTiles(width, height)){
+			for (int y=0; y<tile.getHeight(); y++){
+				for (int x=0; x<tile.getWidth(); x++){
+					preview.getColor((tile.getX()+x)/scale, (tile.getY()+y)/scale, color);
+					block.setColor(x, y, color);
+				}
+			}
+			buffer.setTile(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), block);
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package rendering;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+
+import colors.FrameBuffer;
+import scene.Scene;
+
+/**
+ * This class persists the tiles of a render to a directory, so a render which was stopped can be resumed.
+ * The directory holds a manifest which identifies the render (the hash of the scene file, the resolution, the tile size
+ * and the sampling options of the scene) and a file for every completed tile. Tile files are written to a temporary
+ * file and then renamed, so a tile file which exists is always complete.
+ * When a render with the same manifest is started again the completed tiles are read from their files instead of
+ * being rendered (see TileRenderer.setCheckpoint).
+ *
+ */
+public class RenderCheckpoint implements ITileListener {
+	private static final String MANIFEST = "checkpoint.properties";
+	private static final String COMPLETED = "completed-tiles";
+	private static final long MANIFEST_INTERVAL = 10000;
+	private final File directory;
+	private final Properties identity;
+	private final Set<Integer> completed;
+	private final Set<Integer> restored;
+	private long manifestTime;
+
+	/**
+	 * Constructs a checkpoint in the given directory for the render which is identified by the given properties.
+	 *
+	 * @param directory
+	 * @param identity The properties which identify the render (see describe).
+	 */
+	public RenderCheckpoint(File directory, Properties identity){
+		this.directory = directory;
+		this.identity = identity;
+		completed = new HashSet<Integer>();
+		restored = new HashSet<Integer>();
+		manifestTime = 0;
+	}
+
+	/**
+	 * Returns the properties which identify a render: the hash of the scene file, the resolution, the tile size and
+	 * the options of the scene which change the rendered pixels.
+	 *
+	 * @param sceneText The contents of the scene file.
+	 * @param scene The parsed scene.
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param tileSize The width and height of the tiles (in pixels).
+	 * @return The properties which identify the render.
+	 */
+	public static Properties describe(byte[] sceneText, Scene scene, int width, int height, int tileSize){
+		Properties identity = new Properties();
+		identity.setProperty("scene-sha256", sha256(sceneText));
+		identity.setProperty("width", Integer.toString(width));
+		identity.setProperty("height", Integer.toString(height));
+		identity.setProperty("tile-size", Integer.toString(tileSize));
+		identity.setProperty("super-samp-width", Integer.toString(scene.getSuperSampleWidth()));
+		identity.setProperty("precision", scene.getPrecision());
+		identity.setProperty("texture-filter", scene.getTextureFilter());
+		identity.setProperty("max-reflection-depth", Integer.toString(scene.getMaxReflectionDepth()));
+		return identity;
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the given bytes (as a hexadecimal string).
+	 *
+	 * @param bytes
+	 * @return The SHA-256 hash of the given bytes.
+	 */
+	public static String sha256(byte[] bytes){
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			StringBuilder sb = new StringBuilder(2*digest.length);
+			for (int i=0; i<digest.length; i++){
+				sb.append(String.format("%02x", digest[i] & 0xFF));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Opens the checkpoint directory.
+	 * If it holds a manifest of the same render, the tiles whose files exist are marked as completed.
+	 * Otherwise the directory is cleared and a new manifest is written.
+	 *
+	 * @return The number of completed tiles which were found.
+	 * @throws IOException
+	 */
+	public synchronized int open() throws IOException {
+		if ((!directory.isDirectory())&&(!directory.mkdirs())){
+			throw new IOException("Cannot create the checkpoint directory "+directory);
+		}
+		completed.clear();
+		restored.clear();
+		if (isSameRender()){
+			File[] files = directory.listFiles();
+			for (int i=0; i<files.length; i++){
+				String name = files[i].getName();
+				if (name.startsWith("tile-")&&name.endsWith(".rgb")){
+					try {
+						restored.add(Integer.valueOf(name.substring(5, name.length()-4)));
+					} catch (NumberFormatException e) {
+						// not a tile file
+					}
+				}
+			}
+			completed.addAll(restored);
+			return restored.size();
+		}
+		clear();
+		writeManifest();
+		return 0;
+	}
+
+	/**
+	 * Returns 'true' if the directory holds a manifest of the same render, otherwise 'false'.
+	 *
+	 * @return 'true' if the directory holds a manifest of the same render, otherwise 'false'.
+	 * @throws IOException
+	 */
+	private boolean isSameRender() throws IOException {
+		File file = new File(directory, MANIFEST);
+		if (!file.isFile()){
+			return false;
+		}
+		Properties manifest = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			manifest.load(in);
+		} finally {
+			in.close();
+		}
+		Iterator<String> names = identity.stringPropertyNames().iterator();
+		while (names.hasNext()){
+			String name = names.next();
+			if (!identity.getProperty(name).equals(manifest.getProperty(name))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns 'true' if the tile was completed by a previous run of the render, otherwise 'false'.
+	 *
+	 * @param tile
+	 * @return 'true' if the tile was completed by a previous run of the render, otherwise 'false'.
+	 */
+	public synchronized boolean isRestored(Tile tile){
+		return restored.contains(tile.getIndex());
+	}
+
+	/**
+	 * Returns the number of completed tiles.
+	 *
+	 * @return The number of completed tiles.
+	 */
+	public synchronized int getCompletedCount(){
+		return completed.size();
+	}
+
+	/**
+	 * Reads a tile which was completed by a previous run of the render into the tile buffer.
+	 *
+	 * @param tile
+	 * @param tileBuffer
+	 * @throws IOException
+	 */
+	public void loadTile(Tile tile, FrameBuffer tileBuffer) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(getTileFile(tile))));
+		try {
+			for (int i=0; i<tile.getHeight(); i++){
+				for (int j=0; j<tile.getWidth(); j++){
+					tileBuffer.setColor(j, i, in.readFloat(), in.readFloat(), in.readFloat());
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a rendered tile to its file (restored tiles are not written again), and periodically updates
+	 * the number of completed tiles in the manifest.
+	 *
+	 * @param tile
+	 * @param tileBuffer
+	 * @throws IOException
+	 */
+	@Override
+	public void tileRendered(Tile tile, FrameBuffer tileBuffer) throws IOException {
+		if (isRestored(tile)){
+			return;
+		}
+		File file = getTileFile(tile);
+		File temp = new File(directory, file.getName()+".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			for (int i=0; i<tile.getHeight(); i++){
+				for (int j=0; j<tile.getWidth(); j++){
+					out.writeFloat((float)tileBuffer.getRed(j, i));
+					out.writeFloat((float)tileBuffer.getGreen(j, i));
+					out.writeFloat((float)tileBuffer.getBlue(j, i));
+				}
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		synchronized (this) {
+			completed.add(tile.getIndex());
+			if (System.currentTimeMillis()-manifestTime>MANIFEST_INTERVAL){
+				writeManifest();
+			}
+		}
+	}
+
+	/**
+	 * Writes the manifest (with the number of completed tiles) to a temporary file and renames it.
+	 *
+	 * @throws IOException
+	 */
+	private synchronized void writeManifest() throws IOException {
+		Properties manifest = new Properties();
+		manifest.putAll(identity);
+		manifest.setProperty(COMPLETED, Integer.toString(completed.size()));
+		File file = new File(directory, MANIFEST);
+		File temp = new File(directory, MANIFEST+".tmp");
+		OutputStream out = new FileOutputStream(temp);
+		try {
+			manifest.store(out, "Render checkpoint");
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		manifestTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Removes the manifest and the tile files from the directory (i.e after the image was written).
+	 */
+	public synchronized void clear(){
+		File[] files = directory.listFiles();
+		if (files!=null){
+			for (int i=0; i<files.length; i++){
+				String name = files[i].getName();
+				if (name.startsWith("tile-")||name.startsWith(MANIFEST)){
+					files[i].delete();
+				}
+			}
+		}
+		completed.clear();
+		restored.clear();
+	}
+
+	/**
+	 * Returns the file of the given tile.
+	 *
+	 * @param tile
+	 * @return The file of the given tile.
+	 */
+	private File getTileFile(Tile tile){
+		return new File(directory, "tile-"+tile.getIndex()+".rgb");
+	}
+}
@@ -0,0 +1,207 @@
+package rendering;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import colors.FrameBuffer;
+import scene.RenderTelemetry;
+
+/**
+ * This class encodes an image while it is rendered.
+ * The rendered tiles are gathered into bands (the rows of the image which are covered by a row of tiles), and every
+ * completed band is passed in order to an encoder thread, which encodes its rows while the next bands are rendered.
+ * Only a limited number of bands is buffered: a rendering thread whose tile belongs to a band too far ahead of the
+ * encoder waits until the encoder catches up, so the memory usage does not depend on the height of the image.
+ *
+ */
+public class StreamingImageSink implements ITileListener, Closeable {
+	private final IImageEncoder encoder;
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final int tilesX;
+	private final int bandCount;
+	private final int maxBands;
+	private final Band[] bands;
+	private final BlockingQueue<Band> queue;
+	private final Thread encoderThread;
+	private int nextBand;
+	private final AtomicReference<IOException> failure;
+
+	/**
+	 * The pixels of a band of the image and the number of its tiles which were rendered.
+	 */
+	private static class Band {
+		private final int height;
+		private final int[] rgb;
+		private int tiles;
+
+		/**
+		 * Constructs a band.
+		 *
+		 * @param width
+		 * @param height
+		 */
+		private Band(int width, int height){
+			this.height = height;
+			rgb = new int[width*height];
+			tiles = 0;
+		}
+	}
+
+	/**
+	 * Constructs a sink and starts its encoder thread (the header of the image is written by the encoder thread).
+	 *
+	 * @param encoder
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param tileSize The width and height of the tiles which are rendered (in pixels).
+	 * @param maxBands The maximal number of bands which are buffered (at least 2).
+	 */
+	public StreamingImageSink(IImageEncoder encoder, int width, int height, int tileSize, int maxBands){
+		this.encoder = encoder;
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.maxBands = Math.max(2, maxBands);
+		tilesX = (width+tileSize-1)/tileSize;
+		bandCount = (height+tileSize-1)/tileSize;
+		bands = new Band[bandCount];
+		queue = new ArrayBlockingQueue<Band>(this.maxBands);
+		nextBand = 0;
+		failure = new AtomicReference<IOException>();
+		encoderThread = new Thread(new Runnable() {
+			public void run() {
+				encode();
+			}
+		}, "image-encoder");
+		encoderThread.start();
+	}
+
+	/**
+	 * Copies a rendered tile into its band, and passes the completed bands to the encoder thread in order.
+	 * Blocks while the band of the tile is too far ahead of the encoder.
+	 *
+	 * @param tile
+	 * @param tileBuffer
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized void tileRendered(Tile tile, FrameBuffer tileBuffer) throws IOException {
+		int index = tile.getY()/tileSize;
+		try {
+			while ((index>=nextBand+maxBands)&&(failure.get()==null)){
+				wait();
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+		if (failure.get()!=null){
+			throw failure.get();
+		}
+		if (bands[index]==null){
+			bands[index] = new Band(width, Math.min(tileSize, height-index*tileSize));
+		}
+		Band band = bands[index];
+		for (int i=0; i<tile.getHeight(); i++){
+			int offset = i*width+tile.getX();
+			for (int j=0; j<tile.getWidth(); j++){
+				band.rgb[offset+j] = tileBuffer.getRGB(j, i);
+			}
+		}
+		band.tiles++;
+		try {
+			while ((nextBand<bandCount)&&(bands[nextBand]!=null)&&(bands[nextBand].tiles==tilesX)){
+				while (!queue.offer(bands[nextBand], 100, TimeUnit.MILLISECONDS)){
+					if (failure.get()!=null){
+						throw failure.get();
+					}
+				}
+				bands[nextBand] = null;
+				nextBand++;
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Encodes the bands in order until the whole image is written (runs on the encoder thread).
+	 */
+	private void encode(){
+		try {
+			Object context = (RenderTelemetry.OBSERVER!=null) ? RenderTelemetry.OBSERVER.begin(RenderTelemetry.ENCODE) : null;
+			long start = RenderTelemetry.startTime();
+			encoder.begin(width, height);
+			long nanos = RenderTelemetry.elapsed(start);
+			for (int i=0; i<bandCount; i++){
+				Band band = queue.take();
+				start = RenderTelemetry.startTime();
+				for (int y=0; y<band.height; y++){
+					encoder.writeRow(band.rgb, y*width);
+				}
+				nanos += RenderTelemetry.elapsed(start);
+			}
+			start = RenderTelemetry.startTime();
+			encoder.finish();
+			nanos += RenderTelemetry.elapsed(start);
+			if (RenderTelemetry.ENABLED){
+				RenderTelemetry.addPhaseTime(RenderTelemetry.ENCODE, nanos);
+			}
+			if (RenderTelemetry.OBSERVER!=null){
+				RenderTelemetry.OBSERVER.endEncode(context, encoder.getFormat(), width, height, nanos);
+			}
+		} catch (IOException e) {
+			fail(e);
+		} catch (InterruptedException e) {
+			fail(new InterruptedIOException());
+		} catch (RuntimeException e) {
+			fail(new IOException(e));
+		}
+	}
+
+	/**
+	 * Records the failure of the encoder thread, and wakes up the rendering threads which wait for it.
+	 * The rendering threads which wait for room in the queue check for the failure periodically.
+	 *
+	 * @param e
+	 */
+	private void fail(IOException e){
+		failure.compareAndSet(null, e);
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until the encoder thread wrote the whole image (call after all the tiles were rendered).
+	 * If the image is not complete (i.e the rendering failed) the encoder thread is stopped.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		boolean complete;
+		synchronized (this) {
+			complete = (nextBand==bandCount);
+		}
+		if (!complete){
+			encoderThread.interrupt();
+		}
+		try {
+			encoderThread.join();
+		} catch (InterruptedException e) {
+			encoderThread.interrupt();
+			throw new InterruptedIOException();
+		}
+		if ((complete)&&(failure.get()!=null)){
+			throw failure.get();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package rendering;
+
+/**
+ * This class represents a rectangular tile of the image, which is rendered as a unit of work.
+ *
+ */
+public class Tile {
+	private final int index;
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+
+	/**
+	 * Constructs a tile.
+	 *
+	 * @param index The index of the tile (tiles are numbered row by row).
+	 * @param x X-coordinate of the top left pixel of the tile.
+	 * @param y Y-coordinate of the top left pixel of the tile.
+	 * @param width The width of the tile (in pixels).
+	 * @param height The height of the tile (in pixels).
+	 */
+	public Tile(int index, int x, int y, int width, int height){
+		this.index = index;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Returns the index of the tile (tiles are numbered row by row).
+	 *
+	 * @return The index of the tile.
+	 */
+	public int getIndex(){
+		return index;
+	}
+
+	/**
+	 * Returns the x-coordinate of the top left pixel of the tile.
+	 *
+	 * @return The x-coordinate of the top left pixel of the tile.
+	 */
+	public int getX(){
+		return x;
+	}
+
+	/**
+	 * Returns the y-coordinate of the top left pixel of the tile.
+	 *
+	 * @return The y-coordinate of the top left pixel of the tile.
+	 */
+	public int getY(){
+		return y;
+	}
+
+	/**
+	 * Returns the width of the tile (in pixels).
+	 *
+	 * @return The width of the tile (in pixels).
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Returns the height of the tile (in pixels).
+	 *
+	 * @return The height of the tile (in pixels).
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Returns the string representation of the tile.
+	 *
+	 * @return The string representation of the tile.
+	 */
+	public String toString(){
+		return index+" ("+x+","+y+" "+width+"x"+height+")";
+	}
+}
@@ -0,0 +1,383 @@
+package rendering;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import colors.FrameBuffer;
+import colors.IFrameBuffer;
+import scene.RenderTelemetry;
+import scene.Scene;
+
+/**
+ * This class renders a scene into a frame buffer tile by tile, with several threads.
+ * Every thread renders a tile into its own small buffer and then writes it to the frame buffer, so only the tiles
+ * which are being rendered are held in memory (the frame buffer itself may be a memory-mapped file).
+ * The tiles are handed out row by row, so the rows of the image are completed roughly from top to bottom.
+ * Tile listeners are notified of every rendered tile (i.e to encode the image while it is rendered).
+ * With a deadline the threads stop taking tiles when it passes, and the tiles which are being rendered are interrupted
+ * and dropped, so no tile is written after the render returned (see setDeadline).
+ *
+ */
+public class TileRenderer {
+	/**
+	 * The default width and height of the tiles (in pixels).
+	 */
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	/**
+	 * The deadline of a render without a deadline.
+	 */
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	private final Scene scene;
+	private final int tileSize;
+	private final int threads;
+	private final List<ITileListener> listeners;
+	private RenderCheckpoint checkpoint;
+	private Throwable failure;
+	private long deadline;
+
+	/**
+	 * Constructs a tile renderer for the given scene (the scene must be compiled before rendering).
+	 *
+	 * @param scene
+	 * @param tileSize The width and height of the tiles (in pixels).
+	 * @param threads The number of rendering threads.
+	 */
+	public TileRenderer(Scene scene, int tileSize, int threads){
+		this.scene = scene;
+		this.tileSize = Math.max(1, tileSize);
+		this.threads = Math.max(1, threads);
+		listeners = new ArrayList<ITileListener>();
+		checkpoint = null;
+		deadline = NO_DEADLINE;
+	}
+
+	/**
+	 * Constructs a tile renderer for the given scene with the default tile size and one thread per processor.
+	 *
+	 * @param scene
+	 */
+	public TileRenderer(Scene scene){
+		this(scene, DEFAULT_TILE_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns the scene which is rendered.
+	 *
+	 * @return The scene which is rendered.
+	 */
+	public Scene getScene(){
+		return scene;
+	}
+
+	/**
+	 * Returns the width and height of the tiles (in pixels).
+	 *
+	 * @return The width and height of the tiles (in pixels).
+	 */
+	public int getTileSize(){
+		return tileSize;
+	}
+
+	/**
+	 * Returns the number of rendering threads.
+	 *
+	 * @return The number of rendering threads.
+	 */
+	public int getThreads(){
+		return threads;
+	}
+
+	/**
+	 * Adds a listener which is notified whenever a tile is rendered.
+	 *
+	 * @param listener
+	 */
+	public void addTileListener(ITileListener listener){
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a tile listener.
+	 *
+	 * @param listener
+	 */
+	public void removeTileListener(ITileListener listener){
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Sets the checkpoint of the render (the checkpoint must be opened).
+	 * Tiles which the checkpoint restored are read from it instead of being rendered (and are still written to the
+	 * frame buffer and passed to the tile listeners), and rendered tiles are saved to it.
+	 *
+	 * @param checkpoint
+	 */
+	public void setCheckpoint(RenderCheckpoint checkpoint){
+		if (this.checkpoint!=null){
+			listeners.remove(this.checkpoint);
+		}
+		this.checkpoint = checkpoint;
+		if (checkpoint!=null){
+			listeners.add(0, checkpoint);
+		}
+	}
+
+	/**
+	 * Sets the deadline of the following renders (or NO_DEADLINE).
+	 * When the deadline passes no more tiles are taken, and the tiles which are being rendered are interrupted (they are
+	 * neither written to the frame buffer nor passed to the listeners). The render returns when the rendering threads
+	 * stopped, which is at most a row of a tile after the deadline.
+	 *
+	 * @param deadline The deadline (in the time of System.nanoTime), or NO_DEADLINE.
+	 */
+	public void setDeadline(long deadline){
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Returns the deadline of the renders (or NO_DEADLINE).
+	 *
+	 * @return The deadline of the renders (in the time of System.nanoTime), or NO_DEADLINE.
+	 */
+	public long getDeadline(){
+		return deadline;
+	}
+
+	/**
+	 * Returns 'true' if the deadline passed, otherwise 'false'.
+	 *
+	 * @return 'true' if the deadline passed, otherwise 'false'.
+	 */
+	private boolean isExpired(){
+		return (deadline!=NO_DEADLINE)&&(System.nanoTime()-deadline>=0);
+	}
+
+	/**
+	 * Returns the tiles which cover an image, row by row (the tiles at the right and bottom edges may be smaller).
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @return The tiles which cover the image.
+	 */
+	public List<Tile> getTiles(int width, int height){
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (int y=0; y<height; y+=tileSize){
+			for (int x=0; x<width; x+=tileSize){
+				tiles.add(new Tile(tiles.size(), x, y, Math.min(tileSize, width-x), Math.min(tileSize, height-y)));
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * Renders all the tiles of the frame buffer.
+	 *
+	 * @param buffer
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void render(IFrameBuffer buffer) throws IOException, InterruptedException {
+		render(buffer, getTiles(buffer.getWidth(), buffer.getHeight()));
+	}
+
+	/**
+	 * Renders all the tiles of an image only to the tile listeners (without a frame buffer).
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void render(int width, int height) throws IOException, InterruptedException {
+		render(null, getTiles(width, height));
+	}
+
+	/**
+	 * Renders the given tiles into the frame buffer, and returns when all of them were written (or the deadline passed).
+	 * If a thread fails, the other threads are interrupted (even if a tile listener blocks them) and the failure is thrown.
+	 *
+	 * @param buffer The frame buffer, or null if the tiles are only passed to the tile listeners.
+	 * @param tiles
+	 * @return 'true' if all the tiles were written, or 'false' if the deadline passed before.
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public boolean render(final IFrameBuffer buffer, final List<Tile> tiles) throws IOException, InterruptedException {
+		final AtomicInteger next = new AtomicInteger(0);
+		final AtomicInteger written = new AtomicInteger(0);
+		final AtomicInteger running = new AtomicInteger(0);
+		long start = RenderTelemetry.startTime();
+		synchronized (this) {
+			failure = null;
+		}
+		Thread[] workers = new Thread[Math.min(threads, Math.max(1, tiles.size()))];
+		for (int i=0; i<workers.length; i++){
+			workers[i] = new Thread(new Runnable() {
+				public void run() {
+					FrameBuffer tileBuffer = new FrameBuffer(tileSize, tileSize);
+					try {
+						int index;
+						while ((!isFailed())&&(!isExpired())&&(!Thread.currentThread().isInterrupted())&&((index = next.getAndIncrement())<tiles.size())){
+							if (renderTile(buffer, tiles.get(index), tileBuffer)){
+								written.incrementAndGet();
+							}
+						}
+					} catch (Throwable e) {
+						fail(e);
+					} finally {
+						synchronized (TileRenderer.this) {
+							running.decrementAndGet();
+							TileRenderer.this.notifyAll();
+						}
+					}
+				}
+			}, "tile-renderer-"+i);
+		}
+		running.set(workers.length);
+		for (int i=0; i<workers.length; i++){
+			workers[i].start();
+		}
+		try {
+			synchronized (this) {
+				// a failed thread wakes up the render as well, since the other threads may be blocked by a tile listener
+				// which waits for the tile of the failed thread (i.e a streaming sink which waits for a band)
+				while ((running.get()>0)&&(failure==null)&&(!isExpired())){
+					if (deadline==NO_DEADLINE){
+						wait();
+					}else{
+						wait(Math.max(1, (deadline-System.nanoTime())/1000000));
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			stop(workers);
+			throw e;
+		}
+		// at the deadline (or when a thread failed) the workers stop after the current row of their tiles (which are
+		// dropped), and the render returns only when they stopped, so the scene can be changed as soon as it returns
+		stop(workers);
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.addPhaseTime(RenderTelemetry.RENDER, RenderTelemetry.elapsed(start));
+		}
+		if (failure instanceof IOException){
+			throw (IOException)failure;
+		}
+		if (failure instanceof RuntimeException){
+			throw (RuntimeException)failure;
+		}
+		if (failure instanceof Error){
+			throw (Error)failure;
+		}
+		return written.get()==tiles.size();
+	}
+
+	/**
+	 * Renders a single tile into the tile buffer (or reads it from the checkpoint), writes it to the frame buffer 
+	 * and notifies the tile listeners.
+	 * A tile which was interrupted (at the deadline) is dropped.
+	 *
+	 * @param buffer The frame buffer, or null.
+	 * @param tile
+	 * @param tileBuffer The buffer of the rendering thread (at least as large as the tile).
+	 * @return 'true' if the tile was written, or 'false' if it was dropped.
+	 * @throws IOException
+	 */
+	protected boolean renderTile(IFrameBuffer buffer, Tile tile, FrameBuffer tileBuffer) throws IOException {
+		if ((checkpoint!=null)&&(checkpoint.isRestored(tile))){
+			checkpoint.loadTile(tile, tileBuffer);
+		}else{
+			Object context = null;
+			long primary = 0, shadow = 0, reflection = 0;
+			if (RenderTelemetry.OBSERVER!=null){
+				context = RenderTelemetry.OBSERVER.begin(RenderTelemetry.RENDER);
+				primary = RenderTelemetry.getThreadCount(RenderTelemetry.PRIMARY_RAYS);
+				shadow = RenderTelemetry.getThreadCount(RenderTelemetry.SHADOW_RAYS);
+				reflection = RenderTelemetry.getThreadCount(RenderTelemetry.REFLECTION_RAYS);
+			}
+			long start = RenderTelemetry.startTime();
+			scene.getTileWithSuperSample(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), tileBuffer);
+			if (RenderTelemetry.ENABLED){
+				RenderTelemetry.count(RenderTelemetry.RENDER_NANOS, RenderTelemetry.elapsed(start));
+			}
+			if (RenderTelemetry.OBSERVER!=null){
+				RenderTelemetry.OBSERVER.endTile(context, scene.getName(), tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(),
+						RenderTelemetry.getThreadCount(RenderTelemetry.PRIMARY_RAYS)-primary,
+						RenderTelemetry.getThreadCount(RenderTelemetry.SHADOW_RAYS)-shadow,
+						RenderTelemetry.getThreadCount(RenderTelemetry.REFLECTION_RAYS)-reflection);
+			}
+		}
+		if (Thread.currentThread().isInterrupted()){
+			return false;
+		}
+		writeTile(buffer, tile, tileBuffer);
+		return true;
+	}
+
+	/**
+	 * Interrupts the rendering threads and waits until all of them stopped (a thread stops after the current row of
+	 * its tile). The interrupt status of the calling thread is kept.
+	 *
+	 * @param workers
+	 */
+	private static void stop(Thread[] workers){
+		boolean interrupted = false;
+		for (int i=0; i<workers.length; i++){
+			workers[i].interrupt();
+		}
+		for (int i=0; i<workers.length; i++){
+			while (workers[i].isAlive()){
+				try {
+					workers[i].join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes a rendered tile to the frame buffer and notifies the tile listeners.
+	 *
+	 * @param buffer The frame buffer, or null.
+	 * @param tile
+	 * @param tileBuffer The buffer which holds the tile.
+	 * @throws IOException
+	 */
+	private void writeTile(IFrameBuffer buffer, Tile tile, FrameBuffer tileBuffer) throws IOException {
+		if (buffer!=null){
+			buffer.setTile(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), tileBuffer);
+		}
+		for (int i=0; i<listeners.size(); i++){
+			listeners.get(i).tileRendered(tile, tileBuffer);
+		}
+	}
+
+	/**
+	 * Records the failure of a rendering thread (only the first failure is kept), and wakes up the render so it
+	 * stops the other threads.
+	 *
+	 * @param e
+	 */
+	private synchronized void fail(Throwable e){
+		if (failure==null){
+			failure = e;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Returns 'true' if a rendering thread failed, otherwise 'false'.
+	 *
+	 * @return 'true' if a rendering thread failed, otherwise 'false'.
+	 */
+	private synchronized boolean isFailed(){
+		return failure!=null;
+	}
+}
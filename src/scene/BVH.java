@@ -0,0 +1,440 @@
+package scene;
+
+/**
+ * This class represents a bounding volume hierarchy over the primitives of a group of the compiled scene
+ * (the spheres, the triangles or the rectangles), which is built with the surface area heuristic (SAH).
+ * The nodes are kept in flat arrays in depth-first order: the two children of an inner node are next to each other,
+ * and always follow their parent, so the bounds can be refitted bottom-up in a single backward pass.
+ * When primitives move the hierarchy is refitted rather than rebuilt. Refitting keeps the tree, so it is always valid,
+ * but the nodes grow looser as the primitives move away from the places they were grouped at; the SAH cost of the tree
+ * measures that, and the tree is rebuilt when its cost grew too much since it was built (see CompiledScene.update).
+ * The bounds of the nodes are kept in the precision of the compiled geometry (see GeometryBuffer); in single precision
+ * they are rounded outwards, so a box still contains its primitives. The tree is split on the exact bounds.
+ *
+ */
+public class BVH {
+	static final int BOUNDS_STRIDE = 6;
+	private static final int MAX_LEAF_SIZE = 8;
+	private static final int BIN_COUNT = 12;
+	private static final double TRAVERSAL_COST = 1;
+	private static final double INTERSECTION_COST = 1;
+	/**
+	 * The bounds of the primitives are grown by this (relative) margin, so rays which hit a primitive at its edge
+	 * are not culled by the rounding of the box test.
+	 */
+	private static final double BOUNDS_EPSILON = 1e-9;
+
+	private final int primitiveCount;
+	int nodeCount;
+	GeometryBuffer nodeBounds;	// minX,minY,minZ,maxX,maxY,maxZ of every node
+	int[] nodeFirst;		// the first primitive (in order) of a leaf, or the left child of an inner node (the right child follows it)
+	int[] nodeSize;			// the number of primitives of a leaf, or 0 for an inner node
+	int[] nodeAxis;			// the split axis of an inner node
+	int[] order;			// the indices of the primitives, in the order of the leaves
+	int depth;
+	private double buildCost;
+
+	/**
+	 * Constructs an empty hierarchy for the given number of primitives (see build).
+	 *
+	 * @param primitiveCount
+	 * @param floatPrecision 'true' to keep the bounds of the nodes in single precision, 'false' for double precision.
+	 */
+	public BVH(int primitiveCount, boolean floatPrecision){
+		this.primitiveCount = primitiveCount;
+		int maxNodes = Math.max(1, 2*primitiveCount-1);
+		nodeBounds = new GeometryBuffer(maxNodes*BOUNDS_STRIDE, floatPrecision);
+		nodeFirst = new int[maxNodes];
+		nodeSize = new int[maxNodes];
+		nodeAxis = new int[maxNodes];
+		order = new int[primitiveCount];
+		nodeCount = 0;
+		depth = 0;
+		buildCost = 0;
+	}
+
+	/**
+	 * Returns the number of primitives in the hierarchy.
+	 *
+	 * @return The number of primitives in the hierarchy.
+	 */
+	public int getPrimitiveCount(){
+		return primitiveCount;
+	}
+
+	/**
+	 * Returns the number of nodes in the hierarchy.
+	 *
+	 * @return The number of nodes in the hierarchy.
+	 */
+	public int getNodeCount(){
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the number of levels of the hierarchy.
+	 *
+	 * @return The number of levels of the hierarchy.
+	 */
+	public int getDepth(){
+		return depth;
+	}
+
+	/**
+	 * Returns the memory taken by the nodes of the hierarchy.
+	 *
+	 * @return The memory taken by the nodes of the hierarchy (in bytes).
+	 */
+	public long getSizeInBytes(){
+		return nodeBounds.getSizeInBytes() + 4L*(nodeFirst.length + nodeSize.length + nodeAxis.length + order.length);
+	}
+
+	/**
+	 * Builds the hierarchy from the bounds of the primitives.
+	 *
+	 * @param primitiveBounds The bounds of the primitives as {minX,minY,minZ,maxX,maxY,maxZ} for every primitive.
+	 */
+	public void build(double[] primitiveBounds){
+		nodeCount = 0;
+		depth = 0;
+		if (primitiveCount==0){
+			buildCost = 0;
+			return;
+		}
+		double[] centroids = new double[3*primitiveCount];
+		for (int i=0; i<primitiveCount; i++){
+			order[i] = i;
+			for (int a=0; a<3; a++){
+				centroids[3*i+a] = 0.5*(primitiveBounds[i*BOUNDS_STRIDE+a] + primitiveBounds[i*BOUNDS_STRIDE+a+3]);
+			}
+		}
+		nodeCount = 1;
+		buildNode(0, 0, primitiveCount, 1, primitiveBounds, centroids);
+		buildCost = getCost();
+	}
+
+	/**
+	 * Builds a node over the given range of the primitive order, and its children.
+	 * The range is split at the best of BIN_COUNT planes per axis (by the SAH cost of the split), or in the middle
+	 * when the centroids of the primitives cannot be separated.
+	 *
+	 * @param node The index of the node.
+	 * @param first The first index of the range (in the primitive order).
+	 * @param count The number of primitives in the range.
+	 * @param level The level of the node (the root is at level 1).
+	 * @param primitiveBounds
+	 * @param centroids The centers of the bounds of the primitives.
+	 */
+	private void buildNode(int node, int first, int count, int level, double[] primitiveBounds, double[] centroids){
+		depth = Math.max(depth, level);
+		double[] nodeBox = new double[BOUNDS_STRIDE];
+		setLeafBounds(node, first, count, primitiveBounds, nodeBox);
+		if (count==1){
+			setLeaf(node, first, count);
+			return;
+		}
+		double[] cMin = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+		double[] cMax = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+		for (int j=first; j<first+count; j++){
+			for (int a=0; a<3; a++){
+				double c = centroids[3*order[j]+a];
+				cMin[a] = Math.min(cMin[a], c);
+				cMax[a] = Math.max(cMax[a], c);
+			}
+		}
+		int bestAxis = -1;
+		int bestSplit = 0;
+		double bestCost = Double.MAX_VALUE;
+		int[] binCount = new int[BIN_COUNT];
+		double[] binBounds = new double[BIN_COUNT*BOUNDS_STRIDE];
+		double[] rightArea = new double[BIN_COUNT];
+		int[] rightCount = new int[BIN_COUNT];
+		double[] box = new double[BOUNDS_STRIDE];
+		for (int a=0; a<3; a++){
+			double extent = cMax[a] - cMin[a];
+			if (extent<=0){
+				continue;
+			}
+			double scale = BIN_COUNT/extent;
+			for (int b=0; b<BIN_COUNT; b++){
+				binCount[b] = 0;
+				resetBounds(binBounds, b);
+			}
+			for (int j=first; j<first+count; j++){
+				int b = getBin(centroids[3*order[j]+a], cMin[a], scale);
+				binCount[b]++;
+				growBounds(binBounds, b, primitiveBounds, order[j]);
+			}
+			// sweep from the right to get the area and the count of every right side, then from the left
+			resetBounds(box, 0);
+			int n = 0;
+			for (int b=BIN_COUNT-1; b>0; b--){
+				growBounds(box, 0, binBounds, b);
+				n += binCount[b];
+				rightArea[b] = getArea(box, 0);
+				rightCount[b] = n;
+			}
+			resetBounds(box, 0);
+			n = 0;
+			for (int b=1; b<BIN_COUNT; b++){
+				growBounds(box, 0, binBounds, b-1);
+				n += binCount[b-1];
+				if ((n==0)||(rightCount[b]==0)){
+					continue;
+				}
+				double cost = getArea(box, 0)*n + rightArea[b]*rightCount[b];
+				if (cost<bestCost){
+					bestCost = cost;
+					bestAxis = a;
+					bestSplit = b;
+				}
+			}
+		}
+		double area = getArea(nodeBox, 0);
+		int mid;
+		if (bestAxis<0){
+			// all the centroids are at the same point
+			if (count<=MAX_LEAF_SIZE){
+				setLeaf(node, first, count);
+				return;
+			}
+			bestAxis = 0;
+			mid = first + count/2;
+		}else{
+			double splitCost = TRAVERSAL_COST + ((area>0) ? bestCost/area : count)*INTERSECTION_COST;
+			if ((count<=MAX_LEAF_SIZE)&&(splitCost>=count*INTERSECTION_COST)){
+				setLeaf(node, first, count);
+				return;
+			}
+			double scale = BIN_COUNT/(cMax[bestAxis] - cMin[bestAxis]);
+			int i = first;
+			int j = first+count-1;
+			while (i<=j){
+				if (getBin(centroids[3*order[i]+bestAxis], cMin[bestAxis], scale)<bestSplit){
+					i++;
+				}else{
+					int temp = order[i];
+					order[i] = order[j];
+					order[j] = temp;
+					j--;
+				}
+			}
+			mid = i;
+		}
+		int left = nodeCount;
+		nodeCount += 2;
+		nodeFirst[node] = left;
+		nodeSize[node] = 0;
+		nodeAxis[node] = bestAxis;
+		buildNode(left, first, mid-first, level+1, primitiveBounds, centroids);
+		buildNode(left+1, mid, first+count-mid, level+1, primitiveBounds, centroids);
+	}
+
+	/**
+	 * Recomputes the bounds of all the nodes from the (moved) bounds of the primitives, without changing the tree.
+	 *
+	 * @param primitiveBounds The bounds of the primitives as {minX,minY,minZ,maxX,maxY,maxZ} for every primitive.
+	 */
+	public void refit(double[] primitiveBounds){
+		double[] box = new double[2*BOUNDS_STRIDE];
+		for (int node=nodeCount-1; node>=0; node--){
+			if (nodeSize[node]>0){
+				setLeafBounds(node, nodeFirst[node], nodeSize[node], primitiveBounds, box);
+			}else{
+				int left = nodeFirst[node];
+				resetBounds(box, 0);
+				getBounds(left, box, 1);
+				growBounds(box, 0, box, 1);
+				getBounds(left+1, box, 1);
+				growBounds(box, 0, box, 1);
+				setBounds(node, box);
+			}
+		}
+	}
+
+	/**
+	 * Returns the SAH cost of the hierarchy: the expected cost of tracing a ray which hits the root, where every node
+	 * is weighted by the probability that such a ray hits it (the ratio of its surface area to the area of the root).
+	 *
+	 * @return The SAH cost of the hierarchy.
+	 */
+	public double getCost(){
+		if (nodeCount==0){
+			return 0;
+		}
+		double[] box = new double[BOUNDS_STRIDE];
+		getBounds(0, box, 0);
+		double rootArea = getArea(box, 0);
+		double cost = 0;
+		for (int node=0; node<nodeCount; node++){
+			getBounds(node, box, 0);
+			double weight = (rootArea>0) ? getArea(box, 0)/rootArea : 1;
+			cost += weight*((nodeSize[node]>0) ? nodeSize[node]*INTERSECTION_COST : TRAVERSAL_COST);
+		}
+		return cost;
+	}
+
+	/**
+	 * Returns the SAH cost of the hierarchy when it was last built.
+	 *
+	 * @return The SAH cost of the hierarchy when it was last built.
+	 */
+	public double getBuildCost(){
+		return buildCost;
+	}
+
+	/**
+	 * Makes the node a leaf of the given range of the primitive order.
+	 *
+	 * @param node
+	 * @param first
+	 * @param count
+	 */
+	private void setLeaf(int node, int first, int count){
+		nodeFirst[node] = first;
+		nodeSize[node] = count;
+		nodeAxis[node] = 0;
+	}
+
+	/**
+	 * Returns 'true' if a ray intersects with the box of the given node closer than the given distance, otherwise
+	 * 'false' (the same test as SceneObject.intersectBounds).
+	 *
+	 * @param node
+	 * @param maxDistance The distance from the origin of the ray beyond which intersections are ignored.
+	 * @return 'true' if the ray intersects with the box of the node closer than the given distance, otherwise 'false'.
+	 */
+	final boolean intersectNode(int node, double ox, double oy, double oz,
+			double dx, double dy, double dz, double maxDistance){
+		int k = node*BOUNDS_STRIDE;
+		double tMin = 0;
+		double tMax = maxDistance;
+		double inv = 1d/dx;
+		double t0 = (nodeBounds.get(k)-ox)*inv;
+		double t1 = (nodeBounds.get(k+3)-ox)*inv;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		inv = 1d/dy;
+		t0 = (nodeBounds.get(k+1)-oy)*inv;
+		t1 = (nodeBounds.get(k+4)-oy)*inv;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		inv = 1d/dz;
+		t0 = (nodeBounds.get(k+2)-oz)*inv;
+		t1 = (nodeBounds.get(k+5)-oz)*inv;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		return tMin<=tMax;
+	}
+
+	/**
+	 * Sets the bounds of the node to the bounds of the given range of the primitive order (grown by BOUNDS_EPSILON).
+	 *
+	 * @param node
+	 * @param first
+	 * @param count
+	 * @param primitiveBounds
+	 * @param box Receives the exact bounds of the node (at index 0).
+	 */
+	private void setLeafBounds(int node, int first, int count, double[] primitiveBounds, double[] box){
+		resetBounds(box, 0);
+		for (int j=first; j<first+count; j++){
+			growBounds(box, 0, primitiveBounds, order[j]);
+		}
+		for (int a=0; a<3; a++){
+			box[a] -= BOUNDS_EPSILON*Math.max(1, Math.abs(box[a]));
+			box[a+3] += BOUNDS_EPSILON*Math.max(1, Math.abs(box[a+3]));
+		}
+		setBounds(node, box);
+	}
+
+	/**
+	 * Sets the bounds of the node to the box at index 0 (rounded outwards in single precision).
+	 *
+	 * @param node
+	 * @param box
+	 */
+	private void setBounds(int node, double[] box){
+		int k = node*BOUNDS_STRIDE;
+		for (int a=0; a<3; a++){
+			nodeBounds.setFloor(k+a, box[a]);
+			nodeBounds.setCeiling(k+a+3, box[a+3]);
+		}
+	}
+
+	/**
+	 * Copies the bounds of the node to the box at the given index.
+	 *
+	 * @param node
+	 * @param box
+	 * @param i
+	 */
+	private void getBounds(int node, double[] box, int i){
+		int k = node*BOUNDS_STRIDE;
+		int m = i*BOUNDS_STRIDE;
+		for (int a=0; a<BOUNDS_STRIDE; a++){
+			box[m+a] = nodeBounds.get(k+a);
+		}
+	}
+
+	/**
+	 * Returns the bin of a centroid coordinate.
+	 *
+	 * @param c The centroid coordinate.
+	 * @param min The minimal centroid coordinate of the node.
+	 * @param scale The number of bins divided by the extent of the centroids of the node.
+	 * @return The bin of the centroid coordinate.
+	 */
+	private static int getBin(double c, double min, double scale){
+		return Math.min(BIN_COUNT-1, (int)((c-min)*scale));
+	}
+
+	/**
+	 * Sets the box at the given index to an empty box.
+	 *
+	 * @param bounds
+	 * @param i
+	 */
+	private static void resetBounds(double[] bounds, int i){
+		int k = i*BOUNDS_STRIDE;
+		for (int a=0; a<3; a++){
+			bounds[k+a] = Double.MAX_VALUE;
+			bounds[k+a+3] = -Double.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Grows the box at the given index to contain another box.
+	 *
+	 * @param bounds
+	 * @param i
+	 * @param other
+	 * @param j The index of the other box.
+	 */
+	private static void growBounds(double[] bounds, int i, double[] other, int j){
+		int k = i*BOUNDS_STRIDE;
+		int m = j*BOUNDS_STRIDE;
+		for (int a=0; a<3; a++){
+			bounds[k+a] = Math.min(bounds[k+a], other[m+a]);
+			bounds[k+a+3] = Math.max(bounds[k+a+3], other[m+a+3]);
+		}
+	}
+
+	/**
+	 * Returns the surface area of the box at the given index (0 for an empty box).
+	 *
+	 * @param bounds
+	 * @param i
+	 * @return The surface area of the box.
+	 */
+	private static double getArea(double[] bounds, int i){
+		int k = i*BOUNDS_STRIDE;
+		double dx = bounds[k+3] - bounds[k];
+		double dy = bounds[k+4] - bounds[k+1];
+		double dz = bounds[k+5] - bounds[k+2];
+		if ((dx<0)||(dy<0)||(dz<0)){
+			return 0;
+		}
+		return 2*(dx*dy + dy*dz + dz*dx);
+	}
+}
@@ -0,0 +1,701 @@
+package scene;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import sceneObjects.*;
+import vectors.*;
+
+/**
+ * This class holds the objects of the scene grouped by their type.
+ * Spheres, triangles (including the triangles of meshes) and rectangles (including the faces of boxes) are copied 
+ * into flat geometry buffers (in double or single precision), so each group is tested in its own loop which only 
+ * records the closest 't', the index of the object and the index of the primitive (the triangle of a mesh or the face 
+ * of a box).
+ * Each group has a bounding volume hierarchy (see BVH), so a ray is tested only against the primitives whose boxes it
+ * hits. When objects move the buffers are updated in place and the hierarchies are refitted (see update).
+ * All other objects (which have no flat representation) are tested with ISceneObject.intersect.
+ * The buffers are a copy: the objects keep their own geometry (in double precision) for shading, so single precision
+ * makes the copy smaller but does not shrink the objects.
+ *
+ */
+public class CompiledScene {
+	private ISceneObject[] objects;
+	private Map<ISceneObject,Integer> indices;
+
+	private boolean floatPrecision;
+
+	// spheres: center x,y,z and the square of the radius
+	static final int SPHERE_STRIDE = 4;
+	int sphereCount;
+	GeometryBuffer spheres;
+	int[] sphereObject;
+
+	// triangles and rectangles: p0 x,y,z, e1 = p1-p0 and e2 = p2-p0
+	static final int PARALLELOGRAM_STRIDE = 9;
+	int triangleCount;
+	GeometryBuffer triangles;
+	int[] triangleObject;
+	int[] trianglePrimitive;
+
+	int rectangleCount;
+	GeometryBuffer rectangles;
+	int[] rectangleObject;
+	int[] rectanglePrimitive;
+
+	int[] otherObject;
+
+	// the groups of primitives which have a bounding volume hierarchy
+	static final int SPHERES = 0;
+	static final int TRIANGLES = 1;
+	static final int RECTANGLES = 2;
+	BVH[] hierarchies;
+	private int rebuildCount;
+
+	/**
+	 * Constructs a compiled scene for the given objects.
+	 *
+	 * @param objectList The objects of the scene.
+	 * @param floatPrecision 'true' to keep the geometry in single precision, 'false' for double precision.
+	 */
+	public CompiledScene(List<ISceneObject> objectList, boolean floatPrecision){
+		this.floatPrecision = floatPrecision;
+		objects = objectList.toArray(new ISceneObject[objectList.size()]);
+		indices = new IdentityHashMap<ISceneObject,Integer>();
+		List<Integer> sphereList = new ArrayList<Integer>();
+		List<Integer> triangleOwners = new ArrayList<Integer>();
+		List<Integer> trianglePrimitives = new ArrayList<Integer>();
+		List<Integer> meshes = new ArrayList<Integer>();
+		List<Integer> rectangleOwners = new ArrayList<Integer>();
+		List<Integer> rectanglePrimitives = new ArrayList<Integer>();
+		List<Integer> others = new ArrayList<Integer>();
+		for (int i=0; i<objects.length; i++){
+			indices.put(objects[i], i);
+			if (objects[i] instanceof Sphere){
+				sphereList.add(i);
+			}else if (objects[i] instanceof Triangle){
+				triangleOwners.add(i);
+				trianglePrimitives.add(0);
+			}else if (objects[i] instanceof Mesh){
+				meshes.add(i);
+			}else if (objects[i] instanceof Rectangle){
+				rectangleOwners.add(i);
+				rectanglePrimitives.add(0);
+			}else if (objects[i] instanceof Box){
+				Rectangle[] faces = ((Box)objects[i]).getFaces();
+				for (int j=0; j<faces.length; j++){
+					rectangleOwners.add(i);
+					rectanglePrimitives.add(j);
+				}
+			}else{
+				others.add(i);
+			}
+		}
+		// the triangles of the meshes follow the single triangles
+		for (int i:meshes){
+			Mesh mesh = (Mesh)objects[i];
+			for (int j=0; j<mesh.getTriangleCount(); j++){
+				triangleOwners.add(i);
+				trianglePrimitives.add(j);
+			}
+		}
+		sphereCount = sphereList.size();
+		spheres = new GeometryBuffer(sphereCount*SPHERE_STRIDE, floatPrecision);
+		sphereObject = toArray(sphereList);
+		triangleCount = triangleOwners.size();
+		triangles = new GeometryBuffer(triangleCount*PARALLELOGRAM_STRIDE, floatPrecision);
+		triangleObject = toArray(triangleOwners);
+		trianglePrimitive = toArray(trianglePrimitives);
+		rectangleCount = rectangleOwners.size();
+		rectangles = new GeometryBuffer(rectangleCount*PARALLELOGRAM_STRIDE, floatPrecision);
+		rectangleObject = toArray(rectangleOwners);
+		rectanglePrimitive = toArray(rectanglePrimitives);
+		otherObject = toArray(others);
+		copyGeometry();
+		hierarchies = new BVH[] {new BVH(sphereCount, floatPrecision), new BVH(triangleCount, floatPrecision),
+				new BVH(rectangleCount, floatPrecision)};
+		for (int g=0; g<hierarchies.length; g++){
+			hierarchies[g].build(getPrimitiveBounds(g));
+		}
+		rebuildCount = 0;
+	}
+
+	/**
+	 * Updates the compiled scene after objects were moved (i.e a sphere got a new center or a mesh a new position).
+	 * The geometry is copied again into the same buffers, and the hierarchy of each group is refitted to the new
+	 * bounds. A hierarchy whose SAH cost grew by more than the given factor since it was built is rebuilt instead,
+	 * since refitting never changes which primitives are grouped together.
+	 * The objects must keep the number of their primitives (i.e a mesh may move but must not be loaded again).
+	 *
+	 * @param rebuildThreshold The growth of the SAH cost (relative to the cost when the hierarchy was built) above
+	 * which a hierarchy is rebuilt (i.e 1.5).
+	 * @return The number of hierarchies which were rebuilt.
+	 */
+	public int update(double rebuildThreshold){
+		copyGeometry();
+		int rebuilt = 0;
+		for (int g=0; g<hierarchies.length; g++){
+			BVH bvh = hierarchies[g];
+			double[] bounds = getPrimitiveBounds(g);
+			bvh.refit(bounds);
+			if (bvh.getCost()>rebuildThreshold*bvh.getBuildCost()){
+				bvh.build(bounds);
+				rebuilt++;
+			}
+		}
+		rebuildCount += rebuilt;
+		return rebuilt;
+	}
+
+	/**
+	 * Returns the number of times a hierarchy was rebuilt by update (since the scene was compiled).
+	 *
+	 * @return The number of times a hierarchy was rebuilt by update.
+	 */
+	public int getRebuildCount(){
+		return rebuildCount;
+	}
+
+	/**
+	 * Returns the bounding volume hierarchy of a group of primitives.
+	 *
+	 * @param group SPHERES, TRIANGLES or RECTANGLES.
+	 * @return The bounding volume hierarchy of the group.
+	 */
+	BVH getHierarchy(int group){
+		return hierarchies[group];
+	}
+
+	/**
+	 * Returns the bounds of an object (the union of the bounds of its primitives, as they are in the buffers).
+	 *
+	 * @param index The index of the object.
+	 * @return The bounds as {minX,minY,minZ,maxX,maxY,maxZ}, or null if the object has no bounds (i.e a cylinder,
+	 * which is intersected by the object itself) or no primitives.
+	 */
+	public double[] getObjectBounds(int index){
+		for (int i=0; i<otherObject.length; i++){
+			if (otherObject[i]==index){
+				return null;
+			}
+		}
+		double[] bounds = null;
+		for (int g=0; g<hierarchies.length; g++){
+			int[] owners = getPrimitiveObject(g);
+			double[] primBounds = null;
+			for (int i=0; i<owners.length; i++){
+				if (owners[i]!=index){
+					continue;
+				}
+				if (primBounds==null){
+					primBounds = getPrimitiveBounds(g);
+				}
+				int k = i*BVH.BOUNDS_STRIDE;
+				if (bounds==null){
+					bounds = new double[BVH.BOUNDS_STRIDE];
+					System.arraycopy(primBounds, k, bounds, 0, BVH.BOUNDS_STRIDE);
+					continue;
+				}
+				for (int a=0; a<3; a++){
+					bounds[a] = Math.min(bounds[a], primBounds[k+a]);
+					bounds[a+3] = Math.max(bounds[a+3], primBounds[k+a+3]);
+				}
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * Returns 'true' if the geometry is kept in single precision, otherwise 'false'.
+	 *
+	 * @return 'true' if the geometry is kept in single precision, otherwise 'false'.
+	 */
+	public boolean isFloatPrecision(){
+		return floatPrecision;
+	}
+
+	/**
+	 * Returns the memory taken by the compiled geometry.
+	 *
+	 * @return The memory taken by the compiled geometry (in bytes).
+	 */
+	public long getGeometrySizeInBytes(){
+		long size = spheres.getSizeInBytes() + triangles.getSizeInBytes() + rectangles.getSizeInBytes();
+		for (int g=0; g<hierarchies.length; g++){
+			size += hierarchies[g].getSizeInBytes();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of primitives of the compiled scene (the spheres, the triangles and the rectangles, and the
+	 * objects without a flat representation).
+	 *
+	 * @return The number of primitives of the compiled scene.
+	 */
+	public int getPrimitiveCount(){
+		return sphereCount + triangleCount + rectangleCount + otherObject.length;
+	}
+
+	/**
+	 * Returns the number of objects in the scene.
+	 *
+	 * @return The number of objects in the scene.
+	 */
+	public int getObjectCount(){
+		return objects.length;
+	}
+
+	/**
+	 * Returns the object at the given index.
+	 *
+	 * @param index
+	 * @return The object at the given index.
+	 */
+	public ISceneObject getObject(int index){
+		return objects[index];
+	}
+
+	/**
+	 * Returns the index of the given object.
+	 *
+	 * @param obj
+	 * @return The index of the given object, or -1 if the object is not part of the scene (or null).
+	 */
+	public int getIndex(ISceneObject obj){
+		if (obj==null){
+			return -1;
+		}
+		Integer index = indices.get(obj);
+		return (index==null) ? -1 : index;
+	}
+
+	/**
+	 * Finds the object which intersects with the ray and is closest to the origin of the ray.
+	 * The intersection point and the normal are computed only when they are requested from the intersection.
+	 *
+	 * @param ray
+	 * @param excludedObject The index of an object to ignore (i.e the object the ray originates from), or -1.
+	 * @param hit The intersection which receives the closest intersection (or a 'miss').
+	 * @return 'true' if the ray intersects with an object, otherwise 'false'.
+	 */
+	public boolean findIntersection(IRay ray, int excludedObject, Intersection hit){
+		hit.reset();
+		for (int i=0; i<otherObject.length; i++){
+			if (otherObject[i]!=excludedObject){
+				long start = (ObjectProfiler.ENABLED) ? System.nanoTime() : 0;
+				objects[otherObject[i]].intersect(ray, hit);
+				if (ObjectProfiler.ENABLED){
+					ObjectProfiler.countTest(otherObject[i], System.nanoTime()-start);
+				}
+			}
+		}
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.count(RenderTelemetry.OTHER_TESTS, otherObject.length);
+		}
+		IPoint3D p0 = ray.getP0();
+		IPoint3D v = ray.getV().getEndPoint();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double dx = v.getX(), dy = v.getY(), dz = v.getZ();
+		double minDistance = hit.getDistance();
+		int closest = -1;
+		int primitive = 0;
+		for (int g=0; g<hierarchies.length; g++){
+			int i = findClosest(g, excludedObject, minDistance, ox, oy, oz, dx, dy, dz);
+			if (i>=0){
+				minDistance = intersectPrimitive(g, i, ox, oy, oz, dx, dy, dz);
+				closest = getPrimitiveObject(g)[i];
+				primitive = (g==SPHERES) ? 0 : getPrimitiveIndex(g)[i];
+			}
+		}
+		if (closest>=0){
+			hit.setIntersectionHit(minDistance, objects[closest], primitive, ray);
+		}
+		if ((ObjectProfiler.ENABLED)&&(hit.isIntersects())){
+			ObjectProfiler.countHit((closest>=0) ? closest : getIndex(hit.getIntersectionObject()));
+		}
+		return hit.isIntersects();
+	}
+
+	/**
+	 * Returns 'true' if the ray intersects with any object closer than the given distance, otherwise 'false'.
+	 *
+	 * @param ray
+	 * @param excludedObject The index of an object to ignore (i.e the object the ray originates from), or -1.
+	 * @param maxDistance The distance from the origin of the ray beyond which hits are ignored.
+	 * @param scratch An intersection which is used to test the objects without a flat representation.
+	 * @return 'true' if the ray intersects with any object closer than the given distance, otherwise 'false'.
+	 */
+	public boolean isOccluded(IRay ray, int excludedObject, double maxDistance, Intersection scratch){
+		IPoint3D p0 = ray.getP0();
+		IPoint3D v = ray.getV().getEndPoint();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double dx = v.getX(), dy = v.getY(), dz = v.getZ();
+		for (int g=0; g<hierarchies.length; g++){
+			if (isAnyHit(g, excludedObject, maxDistance, ox, oy, oz, dx, dy, dz)){
+				return true;
+			}
+		}
+		for (int i=0; i<otherObject.length; i++){
+			if (otherObject[i]==excludedObject){
+				continue;
+			}
+			if (RenderTelemetry.ENABLED){
+				RenderTelemetry.count(RenderTelemetry.OTHER_TESTS, 1);
+			}
+			scratch.reset();
+			long start = (ObjectProfiler.ENABLED) ? System.nanoTime() : 0;
+			boolean occluded = (objects[otherObject[i]].intersect(ray, scratch))&&(scratch.getDistance()<maxDistance);
+			if (ObjectProfiler.ENABLED){
+				ObjectProfiler.countTest(otherObject[i], System.nanoTime()-start);
+				if (occluded){
+					ObjectProfiler.countOcclusion(otherObject[i]);
+				}
+			}
+			if (occluded){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the index of the primitive of a group which the ray hits closest to its origin (and closer than the given
+	 * distance), by traversing the hierarchy of the group front to back.
+	 * Of primitives which are hit at the same distance the one with the lowest index is returned, as if the group
+	 * was tested in order.
+	 *
+	 * @param group SPHERES, TRIANGLES or RECTANGLES.
+	 * @param excludedObject The index of an object to ignore, or -1.
+	 * @param maxDistance The distance from the origin of the ray beyond which hits are ignored.
+	 * @return The index of the closest primitive in the group, or -1 if the ray misses all the primitives of the group.
+	 */
+	private int findClosest(int group, int excludedObject, double maxDistance,
+			double ox, double oy, double oz, double dx, double dy, double dz){
+		BVH bvh = hierarchies[group];
+		if (bvh.nodeCount==0){
+			return -1;
+		}
+		int[] owners = getPrimitiveObject(group);
+		int[] stack = HitRecords.getStack(bvh.depth+1);
+		int top = 0;
+		stack[top++] = 0;
+		double minDistance = maxDistance;
+		int best = -1;
+		int nodes = 0;
+		int tests = 0;
+		while (top>0){
+			int node = stack[--top];
+			if (RenderTelemetry.ENABLED){
+				nodes++;
+			}
+			if (!bvh.intersectNode(node, ox, oy, oz, dx, dy, dz, minDistance)){
+				continue;
+			}
+			int size = bvh.nodeSize[node];
+			int first = bvh.nodeFirst[node];
+			if (size==0){
+				// the near child is pushed last, so it is visited first
+				if (isNegative(bvh.nodeAxis[node], dx, dy, dz)){
+					stack[top++] = first;
+					stack[top++] = first+1;
+				}else{
+					stack[top++] = first+1;
+					stack[top++] = first;
+				}
+				continue;
+			}
+			long start = (ObjectProfiler.ENABLED) ? System.nanoTime() : 0;
+			for (int j=first; j<first+size; j++){
+				int i = bvh.order[j];
+				if (owners[i]==excludedObject){
+					continue;
+				}
+				if (RenderTelemetry.ENABLED){
+					tests++;
+				}
+				double t = intersectPrimitive(group, i, ox, oy, oz, dx, dy, dz);
+				if ((t<minDistance)||((t==minDistance)&&(best>i))){
+					minDistance = t;
+					best = i;
+				}
+			}
+			if (ObjectProfiler.ENABLED){
+				ObjectProfiler.countLeaf(owners, bvh.order, first, size, excludedObject, System.nanoTime()-start);
+			}
+		}
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.countTraversal(group, nodes, tests);
+		}
+		return best;
+	}
+
+	/**
+	 * Returns 'true' if the ray hits any primitive of a group closer than the given distance, otherwise 'false'.
+	 *
+	 * @param group SPHERES, TRIANGLES or RECTANGLES.
+	 * @param excludedObject The index of an object to ignore, or -1.
+	 * @param maxDistance The distance from the origin of the ray beyond which hits are ignored.
+	 * @return 'true' if the ray hits any primitive of the group closer than the given distance, otherwise 'false'.
+	 */
+	private boolean isAnyHit(int group, int excludedObject, double maxDistance,
+			double ox, double oy, double oz, double dx, double dy, double dz){
+		BVH bvh = hierarchies[group];
+		if (bvh.nodeCount==0){
+			return false;
+		}
+		int[] owners = getPrimitiveObject(group);
+		int[] stack = HitRecords.getStack(bvh.depth+1);
+		int top = 0;
+		stack[top++] = 0;
+		int nodes = 0;
+		int tests = 0;
+		while (top>0){
+			int node = stack[--top];
+			if (RenderTelemetry.ENABLED){
+				nodes++;
+			}
+			if (!bvh.intersectNode(node, ox, oy, oz, dx, dy, dz, maxDistance)){
+				continue;
+			}
+			int size = bvh.nodeSize[node];
+			int first = bvh.nodeFirst[node];
+			if (size==0){
+				stack[top++] = first+1;
+				stack[top++] = first;
+				continue;
+			}
+			long start = (ObjectProfiler.ENABLED) ? System.nanoTime() : 0;
+			for (int j=first; j<first+size; j++){
+				int i = bvh.order[j];
+				if (owners[i]==excludedObject){
+					continue;
+				}
+				if (RenderTelemetry.ENABLED){
+					tests++;
+				}
+				if (intersectPrimitive(group, i, ox, oy, oz, dx, dy, dz)<maxDistance){
+					if (RenderTelemetry.ENABLED){
+						RenderTelemetry.countTraversal(group, nodes, tests);
+					}
+					if (ObjectProfiler.ENABLED){
+						ObjectProfiler.countLeaf(owners, bvh.order, first, j+1-first, excludedObject, System.nanoTime()-start);
+						ObjectProfiler.countOcclusion(owners[i]);
+					}
+					return true;
+				}
+			}
+			if (ObjectProfiler.ENABLED){
+				ObjectProfiler.countLeaf(owners, bvh.order, first, size, excludedObject, System.nanoTime()-start);
+			}
+		}
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.countTraversal(group, nodes, tests);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns 'true' if the direction of the ray is negative along the given axis, otherwise 'false'.
+	 *
+	 * @param axis
+	 * @return 'true' if the direction of the ray is negative along the given axis, otherwise 'false'.
+	 */
+	static boolean isNegative(int axis, double dx, double dy, double dz){
+		return ((axis==0) ? dx : ((axis==1) ? dy : dz)) < 0;
+	}
+
+	/**
+	 * Returns the 't' of the intersection of a ray with a primitive of a group.
+	 *
+	 * @param group SPHERES, TRIANGLES or RECTANGLES.
+	 * @param i The index of the primitive in the group.
+	 * @return The 't' of the intersection, or Double.POSITIVE_INFINITY if the ray misses the primitive.
+	 */
+	double intersectPrimitive(int group, int i, double ox, double oy, double oz, double dx, double dy, double dz){
+		if (group==SPHERES){
+			return intersectSphere(i, ox, oy, oz, dx, dy, dz);
+		}
+		if (group==TRIANGLES){
+			return intersectTriangle(i, ox, oy, oz, dx, dy, dz);
+		}
+		return intersectRectangle(i, ox, oy, oz, dx, dy, dz);
+	}
+
+	/**
+	 * Returns the indices (in the object array) of the objects which own the primitives of a group.
+	 *
+	 * @param group SPHERES, TRIANGLES or RECTANGLES.
+	 * @return The indices of the objects which own the primitives of the group.
+	 */
+	int[] getPrimitiveObject(int group){
+		if (group==SPHERES){
+			return sphereObject;
+		}
+		return (group==TRIANGLES) ? triangleObject : rectangleObject;
+	}
+
+	/**
+	 * Returns the indices of the primitives of a group in the objects which own them (the triangles or the rectangles).
+	 *
+	 * @param group TRIANGLES or RECTANGLES.
+	 * @return The indices of the primitives of the group in the objects which own them.
+	 */
+	int[] getPrimitiveIndex(int group){
+		return (group==TRIANGLES) ? trianglePrimitive : rectanglePrimitive;
+	}
+
+	/**
+	 * Returns the 't' of the closest intersection of a ray with a sphere.
+	 *
+	 * @param i The index of the sphere.
+	 * @return The 't' of the closest intersection, or Double.POSITIVE_INFINITY if the ray misses the sphere.
+	 */
+	double intersectSphere(int i, double ox, double oy, double oz, double dx, double dy, double dz){
+		int k = i*SPHERE_STRIDE;
+		return SceneObject.intersectSphere(spheres.get(k), spheres.get(k+1), spheres.get(k+2), spheres.get(k+3),
+				ox, oy, oz, dx, dy, dz);
+	}
+
+	/**
+	 * Returns the 't' of the intersection of a ray with a triangle.
+	 *
+	 * @param i The index of the triangle.
+	 * @return The 't' of the intersection, or Double.POSITIVE_INFINITY if the ray misses the triangle.
+	 */
+	double intersectTriangle(int i, double ox, double oy, double oz, double dx, double dy, double dz){
+		return intersectParallelogram(triangles, i, true, ox, oy, oz, dx, dy, dz);
+	}
+
+	/**
+	 * Returns the 't' of the intersection of a ray with a rectangle.
+	 *
+	 * @param i The index of the rectangle.
+	 * @return The 't' of the intersection, or Double.POSITIVE_INFINITY if the ray misses the rectangle.
+	 */
+	double intersectRectangle(int i, double ox, double oy, double oz, double dx, double dy, double dz){
+		return intersectParallelogram(rectangles, i, false, ox, oy, oz, dx, dy, dz);
+	}
+
+	/**
+	 * Returns the 't' of the intersection of a ray with a triangle or a rectangle in the given buffer.
+	 *
+	 * @param buffer The triangles (or rectangles) buffer.
+	 * @param i The index of the triangle (or rectangle).
+	 * @param isTriangle 'true' for a triangle, 'false' for a rectangle.
+	 * @return The 't' of the intersection, or Double.POSITIVE_INFINITY if the ray misses the triangle (or rectangle).
+	 */
+	static double intersectParallelogram(GeometryBuffer buffer, int i, boolean isTriangle,
+			double ox, double oy, double oz, double dx, double dy, double dz){
+		int k = i*PARALLELOGRAM_STRIDE;
+		return SceneObject.intersectParallelogram(buffer.get(k), buffer.get(k+1), buffer.get(k+2),
+				buffer.get(k+3), buffer.get(k+4), buffer.get(k+5),
+				buffer.get(k+6), buffer.get(k+7), buffer.get(k+8), isTriangle, ox, oy, oz, dx, dy, dz);
+	}
+
+	/**
+	 * Copies the spheres, the triangles and the rectangles (including the triangles of the meshes and the faces of the
+	 * boxes) from the objects to the buffers.
+	 */
+	private void copyGeometry(){
+		for (int i=0; i<sphereCount; i++){
+			Sphere sphere = (Sphere)objects[sphereObject[i]];
+			int k = i*SPHERE_STRIDE;
+			spheres.set(k, sphere.getCenter().getX());
+			spheres.set(k+1, sphere.getCenter().getY());
+			spheres.set(k+2, sphere.getCenter().getZ());
+			spheres.set(k+3, sphere.getRadius()*sphere.getRadius());
+		}
+		for (int i=0; i<triangleCount; i++){
+			ISceneObject obj = objects[triangleObject[i]];
+			Triangle triangle = (obj instanceof Mesh) ? ((Mesh)obj).getTriangle(trianglePrimitive[i]) : (Triangle)obj;
+			setParallelogram(triangles, i, triangle.getP0(), triangle.getP1(), triangle.getP2());
+		}
+		for (int i=0; i<rectangleCount; i++){
+			ISceneObject obj = objects[rectangleObject[i]];
+			Rectangle rectangle = (obj instanceof Box) ? ((Box)obj).getFaces()[rectanglePrimitive[i]] : (Rectangle)obj;
+			setParallelogram(rectangles, i, rectangle.getP0(), rectangle.getP1(), rectangle.getP2());
+		}
+	}
+
+	/**
+	 * Returns the bounds of the primitives of a group (as they are in the buffers, so in single precision the bounds
+	 * hold the rounded coordinates).
+	 *
+	 * @param group SPHERES, TRIANGLES or RECTANGLES.
+	 * @return The bounds of the primitives as {minX,minY,minZ,maxX,maxY,maxZ} for every primitive.
+	 */
+	private double[] getPrimitiveBounds(int group){
+		if (group==SPHERES){
+			double[] bounds = new double[sphereCount*BVH.BOUNDS_STRIDE];
+			for (int i=0; i<sphereCount; i++){
+				int k = i*SPHERE_STRIDE;
+				double r = Math.sqrt(spheres.get(k+3));
+				for (int a=0; a<3; a++){
+					bounds[i*BVH.BOUNDS_STRIDE+a] = spheres.get(k+a) - r;
+					bounds[i*BVH.BOUNDS_STRIDE+a+3] = spheres.get(k+a) + r;
+				}
+			}
+			return bounds;
+		}
+		boolean isTriangle = (group==TRIANGLES);
+		GeometryBuffer buffer = (isTriangle) ? triangles : rectangles;
+		int count = (isTriangle) ? triangleCount : rectangleCount;
+		double[] bounds = new double[count*BVH.BOUNDS_STRIDE];
+		for (int i=0; i<count; i++){
+			int k = i*PARALLELOGRAM_STRIDE;
+			for (int a=0; a<3; a++){
+				double p = buffer.get(k+a);
+				double e1 = buffer.get(k+3+a);
+				double e2 = buffer.get(k+6+a);
+				// the corners are p, p+e1, p+e2 (and p+e1+e2 for a parallelogram)
+				double min = p + Math.min(0, Math.min(e1, e2));
+				double max = p + Math.max(0, Math.max(e1, e2));
+				if (!isTriangle){
+					min = Math.min(min, p+e1+e2);
+					max = Math.max(max, p+e1+e2);
+				}
+				bounds[i*BVH.BOUNDS_STRIDE+a] = min;
+				bounds[i*BVH.BOUNDS_STRIDE+a+3] = max;
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * Copies a triangle (or a rectangle) to the given buffer as p0, p1-p0 and p2-p0.
+	 *
+	 * @param buffer The triangles (or rectangles) buffer.
+	 * @param i The index of the triangle (or rectangle).
+	 * @param p0
+	 * @param p1
+	 * @param p2
+	 */
+	private static void setParallelogram(GeometryBuffer buffer, int i, IPoint3D p0, IPoint3D p1, IPoint3D p2){
+		int k = i*PARALLELOGRAM_STRIDE;
+		buffer.set(k, p0.getX());
+		buffer.set(k+1, p0.getY());
+		buffer.set(k+2, p0.getZ());
+		buffer.set(k+3, p1.getX() - p0.getX());
+		buffer.set(k+4, p1.getY() - p0.getY());
+		buffer.set(k+5, p1.getZ() - p0.getZ());
+		buffer.set(k+6, p2.getX() - p0.getX());
+		buffer.set(k+7, p2.getY() - p0.getY());
+		buffer.set(k+8, p2.getZ() - p0.getZ());
+	}
+
+	/**
+	 * Returns the given list as an int array.
+	 *
+	 * @param list
+	 * @return The given list as an int array.
+	 */
+	private static int[] toArray(List<Integer> list){
+		int[] arr = new int[list.size()];
+		for (int i=0; i<arr.length; i++){
+			arr[i] = list.get(i);
+		}
+		return arr;
+	}
+}
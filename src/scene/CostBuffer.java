@@ -0,0 +1,119 @@
+package scene;
+
+/**
+ * This class holds what every pixel of a rendered image cost: the intersection tests, the visited BVH nodes, the shadow
+ * rays, the deepest reflection and the time which were spent on it (with all its samples), so the objects and the
+ * lights which make a frame slow can be found (i.e an expensive mesh or area light) and the quality of the bounding
+ * volume hierarchies can be checked (see CostMapWriter).
+ * The costs are taken from the counters of RenderTelemetry, so they are recorded only if it is ENABLED (with the
+ * 'raytracer.cost-map' system property). While a cost buffer is set the pixels are traced one by one even if the scene
+ * traces ray packets, so the cost of every pixel is known (the pixels of a packet share their traversals).
+ * A pixel is written only by the thread which renders it.
+ *
+ */
+public class CostBuffer {
+	// the metrics
+	public static final int TESTS = 0;
+	public static final int NODES = 1;
+	public static final int SHADOW_RAYS = 2;
+	public static final int DEPTH = 3;
+	public static final int NANOS = 4;
+	private static final String[] METRIC_NAMES = {"tests", "nodes", "shadow-rays", "depth", "nanos"};
+
+	private final int width;
+	private final int height;
+	private final float[][] values;
+
+	/**
+	 * Constructs an empty cost buffer (every pixel cost nothing).
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 */
+	public CostBuffer(int width, int height){
+		this.width = width;
+		this.height = height;
+		values = new float[METRIC_NAMES.length][width*height];
+	}
+
+	/**
+	 * Returns the width of the image.
+	 *
+	 * @return The width of the image (in pixels).
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image.
+	 *
+	 * @return The height of the image (in pixels).
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Records the cost of a pixel from the counters of the rendering thread before and after the pixel was traced.
+	 *
+	 * @param x
+	 * @param y
+	 * @param before The counters of the thread before the pixel was traced (see RenderTelemetry.getThreadCounts).
+	 * @param after The counters of the thread after the pixel was traced.
+	 * @param depth The deepest reflection of the pixel (see RenderTelemetry.takeThreadDepth).
+	 * @param nanos The time which was spent on the pixel (in nanoseconds).
+	 */
+	public void record(int x, int y, long[] before, long[] after, int depth, long nanos){
+		int i = y*width+x;
+		values[TESTS][i] = (after[RenderTelemetry.SPHERE_TESTS]-before[RenderTelemetry.SPHERE_TESTS])
+				+ (after[RenderTelemetry.TRIANGLE_TESTS]-before[RenderTelemetry.TRIANGLE_TESTS])
+				+ (after[RenderTelemetry.RECTANGLE_TESTS]-before[RenderTelemetry.RECTANGLE_TESTS])
+				+ (after[RenderTelemetry.OTHER_TESTS]-before[RenderTelemetry.OTHER_TESTS]);
+		values[NODES][i] = after[RenderTelemetry.BVH_NODE_VISITS]-before[RenderTelemetry.BVH_NODE_VISITS];
+		values[SHADOW_RAYS][i] = after[RenderTelemetry.SHADOW_RAYS]-before[RenderTelemetry.SHADOW_RAYS];
+		values[DEPTH][i] = depth;
+		values[NANOS][i] = nanos;
+	}
+
+	/**
+	 * Returns a metric of a pixel.
+	 *
+	 * @param metric One of the metrics (i.e TESTS).
+	 * @param x
+	 * @param y
+	 * @return The metric of the pixel.
+	 */
+	public float getValue(int metric, int x, int y){
+		return values[metric][y*width+x];
+	}
+
+	/**
+	 * Returns a metric of all the pixels, row by row (the array of the buffer, which must not be changed).
+	 *
+	 * @param metric One of the metrics (i.e TESTS).
+	 * @return The metric of all the pixels.
+	 */
+	public float[] getValues(int metric){
+		return values[metric];
+	}
+
+	/**
+	 * Returns the name of a metric (i.e 'shadow-rays').
+	 *
+	 * @param metric
+	 * @return The name of the metric.
+	 */
+	public static String getMetricName(int metric){
+		return METRIC_NAMES[metric];
+	}
+
+	/**
+	 * Returns the number of metrics.
+	 *
+	 * @return The number of metrics.
+	 */
+	public static int getMetricCount(){
+		return METRIC_NAMES.length;
+	}
+}
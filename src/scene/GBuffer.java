@@ -0,0 +1,133 @@
+package scene;
+
+/**
+ * This class holds the primary hits of every sample of a rendered image (a G-buffer), so the image can be shaded
+ * again after the lights (or the materials) of the scene were edited without tracing the primary rays (see
+ * Scene.relightColors).
+ * For every sample it keeps the index of the hit object, the index of the hit primitive of the object and the distance
+ * of the hit. These are what a traced ray records before the intersection is completed (see Intersection), so the
+ * hit point, the normal and the texture point of the sample are computed from them exactly as they were when the
+ * image was rendered, at 16 bytes a sample.
+ * A sample is written only by the thread which renders its pixel.
+ *
+ */
+public class GBuffer {
+	/**
+	 * The sample hit no object.
+	 */
+	public static final int MISS = -1;
+
+	private final int width;
+	private final int height;
+	private final int superSampleWidth;
+	private final int[] objects;
+	private final int[] primitives;
+	private final double[] distances;
+
+	/**
+	 * Constructs an empty G-buffer (all the samples missed).
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param superSampleWidth The super sample width of the scene (the pixels have its square samples).
+	 */
+	public GBuffer(int width, int height, int superSampleWidth){
+		this.width = width;
+		this.height = height;
+		this.superSampleWidth = superSampleWidth;
+		int samples = width*height*superSampleWidth*superSampleWidth;
+		objects = new int[samples];
+		primitives = new int[samples];
+		distances = new double[samples];
+		for (int i=0; i<samples; i++){
+			objects[i] = MISS;
+		}
+	}
+
+	/**
+	 * Returns 'true' if the G-buffer holds the samples of an image of the given size and super sample width,
+	 * otherwise 'false'.
+	 *
+	 * @param width
+	 * @param height
+	 * @param superSampleWidth
+	 * @return 'true' if the G-buffer holds the samples of an image of the given size and super sample width.
+	 */
+	public boolean isCompatible(int width, int height, int superSampleWidth){
+		return (this.width==width)&&(this.height==height)&&(this.superSampleWidth==superSampleWidth);
+	}
+
+	/**
+	 * Returns the memory taken by the G-buffer.
+	 *
+	 * @return The memory taken by the G-buffer (in bytes).
+	 */
+	public long getSizeInBytes(){
+		return 16L*objects.length;
+	}
+
+	/**
+	 * Records the primary hit of a sample.
+	 *
+	 * @param x
+	 * @param y
+	 * @param sample The index of the sample in the pixel (row by row).
+	 * @param object The index of the hit object (in the object list of the scene), or MISS.
+	 * @param primitive The index of the hit primitive of the object.
+	 * @param distance The distance of the hit from the camera.
+	 */
+	public void record(int x, int y, int sample, int object, int primitive, double distance){
+		int i = getIndex(x, y, sample);
+		objects[i] = object;
+		primitives[i] = primitive;
+		distances[i] = distance;
+	}
+
+	/**
+	 * Returns the index of the object which a sample hit, or MISS.
+	 *
+	 * @param x
+	 * @param y
+	 * @param sample The index of the sample in the pixel (row by row).
+	 * @return The index of the object which the sample hit, or MISS.
+	 */
+	public int getObject(int x, int y, int sample){
+		return objects[getIndex(x, y, sample)];
+	}
+
+	/**
+	 * Returns the index of the primitive (of its object) which a sample hit.
+	 *
+	 * @param x
+	 * @param y
+	 * @param sample The index of the sample in the pixel (row by row).
+	 * @return The index of the primitive which the sample hit.
+	 */
+	public int getPrimitive(int x, int y, int sample){
+		return primitives[getIndex(x, y, sample)];
+	}
+
+	/**
+	 * Returns the distance of the hit of a sample from the camera.
+	 *
+	 * @param x
+	 * @param y
+	 * @param sample The index of the sample in the pixel (row by row).
+	 * @return The distance of the hit of the sample from the camera.
+	 */
+	public double getDistance(int x, int y, int sample){
+		return distances[getIndex(x, y, sample)];
+	}
+
+	/**
+	 * Returns the index of a sample in the buffers.
+	 *
+	 * @param x
+	 * @param y
+	 * @param sample
+	 * @return The index of the sample in the buffers.
+	 */
+	private int getIndex(int x, int y, int sample){
+		return (y*width+x)*superSampleWidth*superSampleWidth + sample;
+	}
+}
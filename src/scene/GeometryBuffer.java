@@ -0,0 +1,148 @@
+package scene;
+
+import vectors.*;
+
+/**
+ * This class holds the coordinates of the compiled geometry, in double or in single (float) precision.
+ * The values are always read and written as double, so the intersection math is the same in both modes,
+ * but in single precision the buffer takes half the memory.
+ *
+ */
+public class GeometryBuffer {
+	/**
+	 * Below this distance from the origin, ray origins are offset by a fixed distance rather than by ulps.
+	 */
+	private static final float OFFSET_ORIGIN = 1f / 32f;
+	private static final float OFFSET_FLOAT_SCALE = 1f / 65536f;
+	private static final float OFFSET_INT_SCALE = 256f;
+
+	private final double[] doubles;
+	private final float[] floats;
+
+	/**
+	 * Constructs a geometry buffer.
+	 *
+	 * @param size The number of values in the buffer.
+	 * @param floatPrecision 'true' to keep the values in single precision, 'false' for double precision.
+	 */
+	public GeometryBuffer(int size, boolean floatPrecision){
+		if (floatPrecision){
+			floats = new float[size];
+			doubles = null;
+		}else{
+			doubles = new double[size];
+			floats = null;
+		}
+	}
+
+	/**
+	 * Returns the value at the given index.
+	 *
+	 * @param i
+	 * @return The value at the given index.
+	 */
+	public final double get(int i){
+		return (doubles!=null) ? doubles[i] : floats[i];
+	}
+
+	/**
+	 * Sets the value at the given index (rounded to float in single precision).
+	 *
+	 * @param i
+	 * @param value
+	 */
+	public final void set(int i, double value){
+		if (doubles!=null){
+			doubles[i] = value;
+		}else{
+			floats[i] = (float)value;
+		}
+	}
+
+	/**
+	 * Sets the value at the given index, rounded down to float in single precision (so a lower bound stays below the
+	 * value).
+	 *
+	 * @param i
+	 * @param value
+	 */
+	public final void setFloor(int i, double value){
+		set(i, value);
+		if ((floats!=null)&&(floats[i]>value)){
+			floats[i] = Math.nextDown(floats[i]);
+		}
+	}
+
+	/**
+	 * Sets the value at the given index, rounded up to float in single precision (so an upper bound stays above the
+	 * value).
+	 *
+	 * @param i
+	 * @param value
+	 */
+	public final void setCeiling(int i, double value){
+		set(i, value);
+		if ((floats!=null)&&(floats[i]<value)){
+			floats[i] = Math.nextUp(floats[i]);
+		}
+	}
+
+	/**
+	 * Returns the number of values in the buffer.
+	 *
+	 * @return The number of values in the buffer.
+	 */
+	public int size(){
+		return (doubles!=null) ? doubles.length : floats.length;
+	}
+
+	/**
+	 * Returns 'true' if the values are kept in single precision, otherwise 'false'.
+	 *
+	 * @return 'true' if the values are kept in single precision, otherwise 'false'.
+	 */
+	public boolean isFloatPrecision(){
+		return floats!=null;
+	}
+
+	/**
+	 * Returns the memory taken by the values of the buffer.
+	 *
+	 * @return The memory taken by the values of the buffer (in bytes).
+	 */
+	public long getSizeInBytes(){
+		return (doubles!=null) ? 8L*doubles.length : 4L*floats.length;
+	}
+
+	/**
+	 * Returns the origin for a ray which leaves a surface, moved off the surface by a few float ulps along its normal.
+	 * Geometry which was rounded to float may pass slightly above or below the exact hit point, so rays which start
+	 * exactly at the hit point could hit the surface they leave (or a surface touching it).
+	 * The offset grows with the magnitude of the coordinates, so it stays a few ulps at any distance from the origin.
+	 *
+	 * @param p The hit point.
+	 * @param normal The normal of the surface, on the side of the surface the ray leaves to.
+	 * @return The origin for the ray.
+	 */
+	public static IPoint3D offsetRayOrigin(IPoint3D p, IVector3D normal){
+		IPoint3D n = normal.getEndPoint();
+		return new Point3D(offset((float)p.getX(), (float)n.getX()),
+				offset((float)p.getY(), (float)n.getY()),
+				offset((float)p.getZ(), (float)n.getZ()));
+	}
+
+	/**
+	 * Returns a single coordinate moved along the given normal coordinate (see offsetRayOrigin).
+	 *
+	 * @param p
+	 * @param n
+	 * @return The coordinate moved along the given normal coordinate.
+	 */
+	private static float offset(float p, float n){
+		if (Math.abs(p)<OFFSET_ORIGIN){
+			return p + OFFSET_FLOAT_SCALE*n;
+		}
+		int ulps = (int)(OFFSET_INT_SCALE*n);
+		return Float.intBitsToFloat(Float.floatToIntBits(p) + ((p<0) ? -ulps : ulps));
+	}
+}
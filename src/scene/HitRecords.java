@@ -0,0 +1,72 @@
+package scene;
+
+/**
+ * This class holds the intersection objects which are reused by a thread while tracing rays.
+ * There is one intersection for every depth of the ray tree (0 for the primary rays, 1 for their reflections and so on),
+ * so an intersection is not overwritten while the color of its hit point is still being computed.
+ * It also holds the stack which is used to traverse the bounding volume hierarchies.
+ *
+ */
+class HitRecords {
+	private static final ThreadLocal<HitRecords> records = new ThreadLocal<HitRecords>() {
+		@Override
+		protected HitRecords initialValue() {
+			return new HitRecords();
+		}
+	};
+
+	private Intersection[] depths;
+	private Intersection shadow;
+	private int[] stack;
+
+	/**
+	 * Constructs the intersection objects for a thread.
+	 */
+	private HitRecords(){
+		depths = new Intersection[0];
+		shadow = new Intersection();
+		stack = new int[64];
+	}
+
+	/**
+	 * Returns the intersection object of the current thread for the given depth of the ray tree.
+	 *
+	 * @param depth
+	 * @return The intersection object of the current thread for the given depth of the ray tree.
+	 */
+	static Intersection get(int depth){
+		HitRecords r = records.get();
+		if (depth>=r.depths.length){
+			Intersection[] depths = new Intersection[Math.max(depth+1, r.depths.length*2)];
+			System.arraycopy(r.depths, 0, depths, 0, r.depths.length);
+			for (int i=r.depths.length; i<depths.length; i++){
+				depths[i] = new Intersection();
+			}
+			r.depths = depths;
+		}
+		return r.depths[depth];
+	}
+
+	/**
+	 * Returns the intersection object of the current thread which is used for shadow rays.
+	 *
+	 * @return The intersection object of the current thread which is used for shadow rays.
+	 */
+	static Intersection getShadowRecord(){
+		return records.get().shadow;
+	}
+
+	/**
+	 * Returns the traversal stack of the current thread (a traversal must end before the next one starts).
+	 *
+	 * @param depth The depth of the hierarchy which is traversed.
+	 * @return The traversal stack of the current thread.
+	 */
+	static int[] getStack(int depth){
+		HitRecords r = records.get();
+		if (r.stack.length<depth+1){
+			r.stack = new int[2*(depth+1)];
+		}
+		return r.stack;
+	}
+}
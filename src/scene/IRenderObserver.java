@@ -0,0 +1,81 @@
+package scene;
+
+/**
+ * This interface is implemented by observers of the stages of a render: parsing the scene, loading a mesh, building
+ * the compiled scene, rendering a tile and encoding the image (i.e to record them as Java Flight Recorder events, see
+ * the jfr module).
+ * The observer is found with java.util.ServiceLoader (see RenderTelemetry.OBSERVER), so it is installed by putting
+ * its jar on the class path. When there is no observer the stages are not observed at all.
+ * A stage is observed by a call to begin when it starts and a call to the end method of the stage, with the context
+ * which begin returned, when it ends. Both calls are made by the thread which runs the stage, and stages of several
+ * threads may be observed at the same time.
+ *
+ */
+public interface IRenderObserver {
+	/**
+	 * Called when a stage starts.
+	 *
+	 * @param phase The stage (RenderTelemetry.PARSE, MESH_LOAD, BUILD, RENDER for a tile or ENCODE).
+	 * @return The context of the stage, which is passed to the end method of the stage.
+	 */
+	public Object begin(int phase);
+
+	/**
+	 * Called when the scene was parsed.
+	 *
+	 * @param context The context which begin returned.
+	 * @param scene The name of the scene.
+	 * @param objects The number of objects of the scene.
+	 * @param lights The number of lights of the scene.
+	 * @param textLength The length of the scene text (in bytes or characters).
+	 */
+	public void endParse(Object context, String scene, int objects, int lights, long textLength);
+
+	/**
+	 * Called when the file of a mesh was read.
+	 *
+	 * @param context The context which begin returned.
+	 * @param filename The mesh file.
+	 * @param vertices The number of vertices of the mesh.
+	 * @param triangles The number of triangles of the mesh.
+	 */
+	public void endMeshLoad(Object context, String filename, int vertices, int triangles);
+
+	/**
+	 * Called when the compiled scene was built (or updated after objects moved).
+	 *
+	 * @param context The context which begin returned.
+	 * @param scene The name of the scene.
+	 * @param objects The number of objects of the scene.
+	 * @param primitives The number of spheres, triangles and rectangles of the compiled scene.
+	 * @param geometryBytes The memory taken by the compiled geometry (in bytes).
+	 */
+	public void endBuild(Object context, String scene, int objects, int primitives, long geometryBytes);
+
+	/**
+	 * Called when a tile was rendered.
+	 *
+	 * @param context The context which begin returned.
+	 * @param scene The name of the scene.
+	 * @param x The left pixel of the tile.
+	 * @param y The top pixel of the tile.
+	 * @param width The width of the tile (in pixels).
+	 * @param height The height of the tile (in pixels).
+	 * @param primaryRays The primary rays which were traced for the tile.
+	 * @param shadowRays The shadow rays which were traced for the tile.
+	 * @param reflectionRays The reflection rays which were traced for the tile.
+	 */
+	public void endTile(Object context, String scene, int x, int y, int width, int height,
+			long primaryRays, long shadowRays, long reflectionRays);
+
+	/**
+	 * Called when an image was encoded.
+	 *
+	 * @param context The context which begin returned.
+	 * @param format The format of the image (i.e 'png').
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 * @param encodeNanos The time which was spent encoding (without waiting for rendered rows).
+	 */
+	public void endEncode(Object context, String format, int width, int height, long encodeNanos);
+}
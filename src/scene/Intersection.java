@@ -5,24 +5,42 @@ import vectors.*;
 
 /**
  * This class represents all the information for an intersection of a ray with an object.
+ * The intersection point and the normal may be computed lazily: objects first record only the distance and the
+ * intersected primitive (see ISceneObject.intersect), and the rest is computed by the object when first requested.
+ * An intersection object may be reused for many rays (see reset).
  *
  */
 public class Intersection {
 
 	private boolean intersects;
+	private boolean complete;
 	private IPoint3D intersectionPoint;
 	private ISceneObject intersectionObject;
+	private int primitive;
 	private double distance;
 	private IVector3D normal;
+	private Point2D texturePoint;
 	private IRay ray;
 	
 	/**
 	 * Constructs an intersection object.
 	 */
 	public Intersection(){
+		reset();
+	}
+	
+	/**
+	 * Clears the intersection information (marks this intersection as a 'miss').
+	 */
+	public void reset(){
 		intersects = false;
+		complete = false;
+		intersectionPoint = null;
+		intersectionObject = null;
+		primitive = 0;
 		distance = Double.MAX_VALUE;
 		normal = null;
+		texturePoint = null;
 		ray = null;
 	}
 	
@@ -45,20 +63,50 @@ public class Intersection {
 	 * @param ray
 	 */
 	public void setIntersectionHit(IPoint3D hitPoint, double distance, ISceneObject obj, IVector3D normal, IRay ray){
-		intersectionPoint = hitPoint;
+		setIntersectionHit(distance, obj, 0, ray);
+		setIntersectionDetails(hitPoint, normal);
+	}
+	
+	/**
+	 * Marks this intersection as a successful hit with an object in the scene, without computing the intersection point
+	 * and the normal (they are computed by ISceneObject.completeIntersection when first requested).
+	 * 
+	 * @param distance The distance of the intersection point from the originating point.
+	 * @param obj The object which intersected with the ray.
+	 * @param primitive The index of the part of the object which intersected with the ray (i.e the face of a box).
+	 * @param ray
+	 */
+	public void setIntersectionHit(double distance, ISceneObject obj, int primitive, IRay ray){
 		intersects = true;
+		complete = false;
+		intersectionPoint = null;
 		intersectionObject = obj;
+		this.primitive = primitive;
 		this.distance = distance;
-		this.normal = normal;
+		normal = null;
+		texturePoint = null;
 		this.ray = ray;
 	}
 	
+	/**
+	 * Sets the intersection point and the normal of the surface at the intersection point.
+	 * 
+	 * @param hitPoint The intersection point with the object.
+	 * @param normal The normal of the surface at the intersection point.
+	 */
+	public void setIntersectionDetails(IPoint3D hitPoint, IVector3D normal){
+		intersectionPoint = hitPoint;
+		this.normal = normal;
+		complete = true;
+	}
+	
 	/**
 	 * Returns the intersection point.
 	 * 
 	 * @return The intersection point.
 	 */
 	public IPoint3D getIntersectionPoint(){
+		complete();
 		return intersectionPoint;
 	}
 	
@@ -71,6 +119,15 @@ public class Intersection {
 		return intersectionObject;
 	}
 	
+	/**
+	 * Returns the index of the part of the object which intersected with the ray (i.e the face of a box).
+	 * 
+	 * @return The index of the part of the object which intersected with the ray.
+	 */
+	public int getPrimitive(){
+		return primitive;
+	}
+	
 	/**
 	 * Returns the distance of the intersection point from the origination point.
 	 * 
@@ -86,9 +143,22 @@ public class Intersection {
 	 * @return The normal of the surface at the intersection point.
 	 */
 	public IVector3D getNormal(){
+		complete();
 		return normal;
 	}
 	
+	/**
+	 * Returns the 2D point which maps the intersection point to a texture (or checkers pattern).
+	 * 
+	 * @return The 2D point which maps the intersection point to a texture (or checkers pattern).
+	 */
+	public Point2D getTexturePoint(){
+		if ((texturePoint==null)&&(intersects)){
+			texturePoint = intersectionObject.parametrize(getIntersectionPoint());
+		}
+		return texturePoint;
+	}
+	
 	/**
 	 * Returns the Ray for the intersection.
 	 * 
@@ -97,4 +167,14 @@ public class Intersection {
 	public IRay getRay(){
 		return ray;
 	}
+	
+	/**
+	 * Computes the intersection point and the normal, if they were not computed yet.
+	 */
+	private void complete(){
+		if ((intersects)&&(!complete)){
+			complete = true;
+			intersectionObject.completeIntersection(this);
+		}
+	}
 }
@@ -0,0 +1,365 @@
+package scene;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import application.Parser.ParseException;
+import lighting.AreaLight;
+import lighting.ILight;
+import lighting.PointLight;
+import sceneObjects.Camera;
+import sceneObjects.ISceneObject;
+import sceneObjects.Mesh;
+import sceneObjects.Sphere;
+import vectors.*;
+
+/**
+ * This class represents an animation of a scene: keyframes of the camera (eye position and view direction or look-at
+ * point), of the positions of lights and of the positions of objects (the centers of spheres and the positions of
+ * meshes), from which the frames of the animation are interpolated.
+ * A frame is applied to the parsed and compiled scene in place, so the meshes, the textures and the compiled geometry
+ * are reused by all the frames. When objects move, the compiled scene is updated and its hierarchies are refitted
+ * rather than compiled again (see Scene.update).
+ * The values between two keyframes are interpolated linearly, and frames before the first (after the last) keyframe
+ * use the values of the first (last) keyframe.
+ *
+ */
+public class KeyframeSequence {
+	private int frameCount;
+	private IVector3D upDirection;
+	private TreeMap<Integer,CameraKey> cameraKeys;
+	private Map<Integer,TreeMap<Integer,IPoint3D>> lightKeys;
+	private Map<Integer,TreeMap<Integer,IPoint3D>> objectKeys;
+
+	/**
+	 * A keyframe of the camera.
+	 * Either the look-at point or the view direction is given.
+	 */
+	public static class CameraKey {
+		private final IPoint3D eye;
+		private final IPoint3D lookAt;
+		private final IVector3D direction;
+
+		/**
+		 * Constructs a keyframe of the camera.
+		 *
+		 * @param eye The eye position of the camera.
+		 * @param lookAt The point which the camera looks at (or null if the direction is given).
+		 * @param direction The view direction of the camera (or null if the look-at point is given).
+		 */
+		public CameraKey(IPoint3D eye, IPoint3D lookAt, IVector3D direction){
+			this.eye = eye;
+			this.lookAt = lookAt;
+			this.direction = direction;
+		}
+
+		/**
+		 * Returns the normalized view direction of the keyframe.
+		 *
+		 * @return The normalized view direction of the keyframe.
+		 */
+		private IVector3D getDirection(){
+			if (lookAt!=null){
+				return new Vector3D(eye, lookAt).normalize();
+			}
+			return direction.normalize();
+		}
+	}
+
+	/**
+	 * Constructs an empty sequence (the number of frames is taken from the last keyframe).
+	 */
+	public KeyframeSequence(){
+		frameCount = 0;
+		upDirection = null;
+		cameraKeys = new TreeMap<Integer,CameraKey>();
+		lightKeys = new TreeMap<Integer,TreeMap<Integer,IPoint3D>>();
+		objectKeys = new TreeMap<Integer,TreeMap<Integer,IPoint3D>>();
+	}
+
+	/**
+	 * Returns the number of frames of the sequence.
+	 * If it was not set, it is the last keyframe plus one.
+	 *
+	 * @return The number of frames of the sequence.
+	 */
+	public int getFrameCount(){
+		if (frameCount>0){
+			return frameCount;
+		}
+		int last = -1;
+		if (!cameraKeys.isEmpty()){
+			last = cameraKeys.lastKey();
+		}
+		for (TreeMap<Integer,IPoint3D> keys:lightKeys.values()){
+			last = Math.max(last, keys.lastKey());
+		}
+		for (TreeMap<Integer,IPoint3D> keys:objectKeys.values()){
+			last = Math.max(last, keys.lastKey());
+		}
+		return last+1;
+	}
+
+	/**
+	 * Sets the number of frames of the sequence.
+	 *
+	 * @param count
+	 */
+	public void setFrameCount(int count){
+		if (count>0){
+			frameCount = count;
+		}
+	}
+
+	/**
+	 * Returns the up direction of the camera in all the frames (or null if the up direction of the scene camera is used).
+	 *
+	 * @return The up direction of the camera in all the frames.
+	 */
+	public IVector3D getUpDirection(){
+		return upDirection;
+	}
+
+	/**
+	 * Sets the up direction of the camera in all the frames (it is orthogonalized to the view direction of every frame).
+	 *
+	 * @param upDir
+	 */
+	public void setUpDirection(IVector3D upDir){
+		upDirection = upDir;
+	}
+
+	/**
+	 * Adds a keyframe of the camera (replaces the keyframe of the same frame).
+	 *
+	 * @param frame
+	 * @param key
+	 */
+	public void addCameraKey(int frame, CameraKey key){
+		cameraKeys.put(frame, key);
+	}
+
+	/**
+	 * Adds a keyframe of the position of a light (replaces the keyframe of the same light and frame).
+	 *
+	 * @param light The index of the light in the scene (in the order of the scene file).
+	 * @param frame
+	 * @param position
+	 */
+	public void addLightKey(int light, int frame, IPoint3D position){
+		addKey(lightKeys, light, frame, position);
+	}
+
+	/**
+	 * Adds a keyframe of the position of an object (replaces the keyframe of the same object and frame).
+	 * The position is the center of a sphere, or the position of a mesh.
+	 *
+	 * @param object The index of the object in the scene (in the order of the scene file, without the lights).
+	 * @param frame
+	 * @param position
+	 */
+	public void addObjectKey(int object, int frame, IPoint3D position){
+		addKey(objectKeys, object, frame, position);
+	}
+
+	/**
+	 * Adds a keyframe of a position to the keyframes of a light or an object.
+	 *
+	 * @param keys The keyframes of the lights (or the objects).
+	 * @param index The index of the light (or the object).
+	 * @param frame
+	 * @param position
+	 */
+	private static void addKey(Map<Integer,TreeMap<Integer,IPoint3D>> keys, int index, int frame, IPoint3D position){
+		TreeMap<Integer,IPoint3D> frames = keys.get(index);
+		if (frames==null){
+			frames = new TreeMap<Integer,IPoint3D>();
+			keys.put(index, frames);
+		}
+		frames.put(frame, position);
+	}
+
+	/**
+	 * Validates that the keyframes can be applied to the given scene (the lights and the objects exist and have a position),
+	 * and takes the up direction of the scene camera if none was given.
+	 *
+	 * @param scene
+	 * @throws ParseException
+	 */
+	public void validate(Scene scene) throws ParseException {
+		if (getFrameCount()<=0){
+			throw new ParseException("The sequence has no frames");
+		}
+		if ((!cameraKeys.isEmpty())&&(scene.getCamera()==null)){
+			throw new ParseException("The sequence has camera keyframes but the scene has no camera");
+		}
+		if (upDirection==null){
+			if (scene.getCamera()!=null){
+				upDirection = scene.getCamera().getUpDirection();
+			}
+		}
+		for (CameraKey key:cameraKeys.values()){
+			if (key.getDirection().isCoLinear(upDirection)){
+				throw new ParseException("The direction and the up vector of a camera keyframe are co-linear");
+			}
+		}
+		List<ILight> lights = scene.getLightsList();
+		for (int light:lightKeys.keySet()){
+			if ((light<0)||(light>=lights.size())){
+				throw new ParseException("The scene has no light "+light);
+			}
+			if (!((lights.get(light) instanceof PointLight)||(lights.get(light) instanceof AreaLight))){
+				throw new ParseException("Light "+light+" has no position (only point and area lights can move)");
+			}
+		}
+		List<ISceneObject> objects = scene.getObjectList();
+		for (int object:objectKeys.keySet()){
+			if ((object<0)||(object>=objects.size())){
+				throw new ParseException("The scene has no object "+object);
+			}
+			if (!((objects.get(object) instanceof Sphere)||(objects.get(object) instanceof Mesh))){
+				throw new ParseException("Object "+object+" has no position (only spheres and meshes can move)");
+			}
+		}
+	}
+
+	/**
+	 * Sets the camera, the lights and the objects of the scene to the given frame, and updates the compiled scene
+	 * (if objects moved) and the view plane.
+	 *
+	 * @param scene A scene which was validated for the sequence.
+	 * @param frame
+	 */
+	public void apply(Scene scene, int frame){
+		if (!cameraKeys.isEmpty()){
+			applyCamera(scene.getCamera(), frame);
+		}
+		List<ILight> lights = scene.getLightsList();
+		for (Map.Entry<Integer,TreeMap<Integer,IPoint3D>> entry:lightKeys.entrySet()){
+			IPoint3D position = interpolate(entry.getValue(), frame);
+			ILight light = lights.get(entry.getKey());
+			if (light instanceof PointLight){
+				((PointLight)light).setPosition(position);
+			}else{
+				moveAreaLight((AreaLight)light, position);
+			}
+		}
+		List<ISceneObject> objects = scene.getObjectList();
+		for (Map.Entry<Integer,TreeMap<Integer,IPoint3D>> entry:objectKeys.entrySet()){
+			IPoint3D position = interpolate(entry.getValue(), frame);
+			ISceneObject object = objects.get(entry.getKey());
+			if (object instanceof Sphere){
+				((Sphere)object).setCenter(position);
+			}else{
+				((Mesh)object).moveTo(position);
+			}
+		}
+		if (!objectKeys.isEmpty()){
+			scene.update();
+		}
+		scene.initSceneViewPlane();
+	}
+
+	/**
+	 * Sets the camera to the interpolated keyframe of the given frame.
+	 * When both keyframes have a look-at point the look-at point is interpolated, otherwise the view direction.
+	 *
+	 * @param camera
+	 * @param frame
+	 */
+	private void applyCamera(Camera camera, int frame){
+		Map.Entry<Integer,CameraKey> before = cameraKeys.floorEntry(frame);
+		Map.Entry<Integer,CameraKey> after = cameraKeys.ceilingEntry(frame);
+		if (before==null){
+			before = after;
+		}
+		if (after==null){
+			after = before;
+		}
+		double t = getWeight(before.getKey(), after.getKey(), frame);
+		CameraKey k0 = before.getValue();
+		CameraKey k1 = after.getValue();
+		IPoint3D eye = lerp(k0.eye, k1.eye, t);
+		IVector3D direction;
+		if ((k0.lookAt!=null)&&(k1.lookAt!=null)){
+			direction = new Vector3D(eye, lerp(k0.lookAt, k1.lookAt, t)).normalize();
+		}else{
+			IVector3D d0 = k0.getDirection();
+			IVector3D d1 = k1.getDirection();
+			direction = d0.multiplyByScalar(1-t).addVector(d1.multiplyByScalar(t));
+			if ((direction.dotProduct(direction)<1e-12)||(direction.isCoLinear(upDirection))){
+				// the directions are opposite (or the blend is parallel to the up direction)
+				direction = (t<0.5) ? d0 : d1;
+			}
+			direction = direction.normalize();
+		}
+		camera.setView(eye, direction, upDirection);
+	}
+
+	/**
+	 * Moves an area light so its p0 point is at the given position (the rectangle of the light keeps its shape).
+	 *
+	 * @param light
+	 * @param position
+	 */
+	private static void moveAreaLight(AreaLight light, IPoint3D position){
+		IVector3D offset = new Vector3D(light.getP0(), position);
+		light.setP0(position);
+		light.setP1(light.getP1().movePointByVector(offset));
+		light.setP2(light.getP2().movePointByVector(offset));
+		try {
+			light.commit();
+		} catch (ParseException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the position of a light or an object in the given frame.
+	 *
+	 * @param keys The keyframes of the light (or the object).
+	 * @param frame
+	 * @return The position of the light (or the object) in the given frame.
+	 */
+	private static IPoint3D interpolate(TreeMap<Integer,IPoint3D> keys, int frame){
+		Map.Entry<Integer,IPoint3D> before = keys.floorEntry(frame);
+		Map.Entry<Integer,IPoint3D> after = keys.ceilingEntry(frame);
+		if (before==null){
+			return after.getValue();
+		}
+		if (after==null){
+			return before.getValue();
+		}
+		return lerp(before.getValue(), after.getValue(), getWeight(before.getKey(), after.getKey(), frame));
+	}
+
+	/**
+	 * Returns the weight of the second keyframe for the given frame (0 at the first keyframe, 1 at the second).
+	 *
+	 * @param frame0 The frame of the first keyframe.
+	 * @param frame1 The frame of the second keyframe.
+	 * @param frame
+	 * @return The weight of the second keyframe.
+	 */
+	private static double getWeight(int frame0, int frame1, int frame){
+		if (frame1==frame0){
+			return 0;
+		}
+		return (double)(frame-frame0)/(frame1-frame0);
+	}
+
+	/**
+	 * Returns the point between p0 (t=0) and p1 (t=1).
+	 *
+	 * @param p0
+	 * @param p1
+	 * @param t
+	 * @return The point between p0 and p1.
+	 */
+	private static IPoint3D lerp(IPoint3D p0, IPoint3D p1, double t){
+		return new Point3D(p0.getX() + t*(p1.getX()-p0.getX()),
+				p0.getY() + t*(p1.getY()-p0.getY()),
+				p0.getZ() + t*(p1.getZ()-p0.getZ()));
+	}
+}
@@ -0,0 +1,366 @@
+package scene;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import lighting.AreaLight;
+import lighting.ILight;
+import sceneObjects.ISceneObject;
+import sceneObjects.Mesh;
+
+/**
+ * This class profiles the cost of every object and every light of the scene: the intersection tests of the primitives
+ * of every object, the closest hits, the time spent testing them and the shadow rays they occluded, and the shadow
+ * rays, the occluded shadow rays and the shading time of every light. The report tells which objects (i.e a large
+ * mesh) and which lights (i.e a fine area light) take most of the frame.
+ * Objects are identified by their index in the object list of the scene (the order in the scene file), and lights by
+ * their index in the light list.
+ * Profiling is enabled with the 'raytracer.object-profile' system property, and like RenderTelemetry every thread
+ * profiles into its own arrays and every profiling site tests ENABLED, so without the property the JIT removes the
+ * profiling code. While profiling the pixels are traced one by one (the primitives of a ray packet share their tests).
+ * The time of a leaf of a hierarchy is measured once for all its primitives and shared by their tests, so the clock
+ * is not read for every test.
+ *
+ */
+public class ObjectProfiler {
+	/**
+	 * 'true' if the objects are profiled (with the 'raytracer.object-profile' system property), otherwise 'false'.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("raytracer.object-profile");
+
+	// the object metrics
+	private static final int TESTS = 0;
+	private static final int HITS = 1;
+	private static final int NANOS = 2;
+	private static final int OCCLUSIONS = 3;
+	private static final int OBJECT_METRICS = 4;
+
+	// the light metrics
+	private static final int SHADOW_RAYS = 0;
+	private static final int OCCLUDED = 1;
+	private static final int LIGHT_NANOS = 2;
+	private static final int LIGHT_METRICS = 3;
+
+	private static final List<ObjectProfiler> threads = new ArrayList<ObjectProfiler>();
+	private static final ThreadLocal<ObjectProfiler> records = new ThreadLocal<ObjectProfiler>() {
+		@Override
+		protected ObjectProfiler initialValue() {
+			ObjectProfiler profiler = new ObjectProfiler(Thread.currentThread());
+			synchronized (threads) {
+				threads.add(profiler);
+			}
+			return profiler;
+		}
+	};
+
+	private final Thread thread;
+	private long[] objects;
+	private long[] lights;
+
+	/**
+	 * Constructs the profile of a thread.
+	 *
+	 * @param thread
+	 */
+	private ObjectProfiler(Thread thread){
+		this.thread = thread;
+		objects = new long[0];
+		lights = new long[0];
+	}
+
+	/**
+	 * Returns the metrics of an object (the array is grown to hold it).
+	 *
+	 * @param object The index of the object.
+	 * @return The metrics of all the objects (the metrics of the object start at object*OBJECT_METRICS).
+	 */
+	private long[] getObjects(int object){
+		if ((object+1)*OBJECT_METRICS>objects.length){
+			synchronized (threads) {
+				objects = Arrays.copyOf(objects, Math.max(2*objects.length, (object+1)*OBJECT_METRICS));
+			}
+		}
+		return objects;
+	}
+
+	/**
+	 * Returns the metrics of a light (the array is grown to hold it).
+	 *
+	 * @param light The index of the light.
+	 * @return The metrics of all the lights (the metrics of the light start at light*LIGHT_METRICS).
+	 */
+	private long[] getLights(int light){
+		if ((light+1)*LIGHT_METRICS>lights.length){
+			synchronized (threads) {
+				lights = Arrays.copyOf(lights, Math.max(2*lights.length, (light+1)*LIGHT_METRICS));
+			}
+		}
+		return lights;
+	}
+
+	/**
+	 * Records the tests of the primitives of a leaf of a hierarchy and the time they took (call only if ENABLED).
+	 * The time is shared equally by the tests.
+	 *
+	 * @param owners The indices of the objects which own the primitives of the group.
+	 * @param order The order of the primitives in the hierarchy (see BVH.order).
+	 * @param first The position of the first tested primitive in the order.
+	 * @param size The number of primitives which were tested or excluded.
+	 * @param excludedObject The index of the object which was not tested, or -1.
+	 * @param nanos The time of the tests (in nanoseconds).
+	 */
+	static void countLeaf(int[] owners, int[] order, int first, int size, int excludedObject, long nanos){
+		ObjectProfiler profiler = records.get();
+		int tests = 0;
+		for (int j=first; j<first+size; j++){
+			if (owners[order[j]]!=excludedObject){
+				tests++;
+			}
+		}
+		if (tests==0){
+			return;
+		}
+		long share = nanos/tests;
+		for (int j=first; j<first+size; j++){
+			int object = owners[order[j]];
+			if (object!=excludedObject){
+				long[] o = profiler.getObjects(object);
+				o[object*OBJECT_METRICS+TESTS]++;
+				o[object*OBJECT_METRICS+NANOS] += share;
+			}
+		}
+	}
+
+	/**
+	 * Records a test of an object and the time it took (call only if ENABLED).
+	 *
+	 * @param object The index of the object.
+	 * @param nanos The time of the test (in nanoseconds).
+	 */
+	static void countTest(int object, long nanos){
+		long[] o = records.get().getObjects(object);
+		o[object*OBJECT_METRICS+TESTS]++;
+		o[object*OBJECT_METRICS+NANOS] += nanos;
+	}
+
+	/**
+	 * Records that a ray hit an object closest to its origin (call only if ENABLED).
+	 *
+	 * @param object The index of the object.
+	 */
+	static void countHit(int object){
+		records.get().getObjects(object)[object*OBJECT_METRICS+HITS]++;
+	}
+
+	/**
+	 * Records that an object occluded a shadow ray (call only if ENABLED).
+	 *
+	 * @param object The index of the object.
+	 */
+	static void countOcclusion(int object){
+		records.get().getObjects(object)[object*OBJECT_METRICS+OCCLUSIONS]++;
+	}
+
+	/**
+	 * Records the shading of a hit point by a light (call only if ENABLED).
+	 *
+	 * @param light The index of the light.
+	 * @param shadowRays The shadow rays which were traced to the light (one for every point of an area light).
+	 * @param occluded The shadow rays which were occluded.
+	 * @param nanos The time of the shading by the light, with its shadow rays (in nanoseconds).
+	 */
+	public static void countLight(int light, int shadowRays, int occluded, long nanos){
+		long[] l = records.get().getLights(light);
+		l[light*LIGHT_METRICS+SHADOW_RAYS] += shadowRays;
+		l[light*LIGHT_METRICS+OCCLUDED] += occluded;
+		l[light*LIGHT_METRICS+LIGHT_NANOS] += nanos;
+	}
+
+	/**
+	 * Returns the sum of a metric of an object over all the threads.
+	 *
+	 * @param object The index of the object.
+	 * @param metric
+	 * @return The sum of the metric of the object over all the threads.
+	 */
+	private static long getObjectTotal(int object, int metric){
+		long sum = 0;
+		synchronized (threads) {
+			for (ObjectProfiler profiler:threads){
+				int i = object*OBJECT_METRICS+metric;
+				sum += (i<profiler.objects.length) ? profiler.objects[i] : 0;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the sum of a metric of a light over all the threads.
+	 *
+	 * @param light The index of the light.
+	 * @param metric
+	 * @return The sum of the metric of the light over all the threads.
+	 */
+	private static long getLightTotal(int light, int metric){
+		long sum = 0;
+		synchronized (threads) {
+			for (ObjectProfiler profiler:threads){
+				int i = light*LIGHT_METRICS+metric;
+				sum += (i<profiler.lights.length) ? profiler.lights[i] : 0;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the intersection tests of an object (over all the threads).
+	 *
+	 * @param object The index of the object.
+	 * @return The intersection tests of the object.
+	 */
+	public static long getTests(int object){
+		return getObjectTotal(object, TESTS);
+	}
+
+	/**
+	 * Returns the rays which hit an object closest to their origin (over all the threads).
+	 *
+	 * @param object The index of the object.
+	 * @return The closest hits of the object.
+	 */
+	public static long getHits(int object){
+		return getObjectTotal(object, HITS);
+	}
+
+	/**
+	 * Returns the time spent testing an object (over all the threads).
+	 *
+	 * @param object The index of the object.
+	 * @return The time spent testing the object (in nanoseconds).
+	 */
+	public static long getNanos(int object){
+		return getObjectTotal(object, NANOS);
+	}
+
+	/**
+	 * Returns the shadow rays which an object occluded (over all the threads).
+	 *
+	 * @param object The index of the object.
+	 * @return The shadow rays which the object occluded.
+	 */
+	public static long getOcclusions(int object){
+		return getObjectTotal(object, OCCLUSIONS);
+	}
+
+	/**
+	 * Sets all the metrics to 0, and forgets the threads which ended (call between renders).
+	 */
+	public static void reset(){
+		synchronized (threads) {
+			Iterator<ObjectProfiler> iter = threads.iterator();
+			while (iter.hasNext()){
+				ObjectProfiler profiler = iter.next();
+				if (!profiler.thread.isAlive()){
+					iter.remove();
+				}else{
+					Arrays.fill(profiler.objects, 0);
+					Arrays.fill(profiler.lights, 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a short description of an object (its type, and the file and the triangles of a mesh).
+	 *
+	 * @param obj
+	 * @return A short description of the object.
+	 */
+	private static String describe(ISceneObject obj){
+		if (obj instanceof Mesh){
+			Mesh mesh = (Mesh)obj;
+			return "Mesh " + mesh.getFilename() + " (" + mesh.getTriangleCount() + " triangles)";
+		}
+		return obj.getClass().getSimpleName();
+	}
+
+	/**
+	 * Returns a short description of a light (its type, and the grid of an area light).
+	 *
+	 * @param light
+	 * @return A short description of the light.
+	 */
+	private static String describe(ILight light){
+		if ((light instanceof AreaLight)&&(((AreaLight)light).getLightGrid()!=null)){
+			int n = ((AreaLight)light).getLightGrid().length;
+			return "AreaLight " + n + "x" + n;
+		}
+		return light.getClass().getSimpleName();
+	}
+
+	/**
+	 * Prints the objects of the scene sorted by the time spent testing them, and the lights sorted by their shading
+	 * time, with their share of the total.
+	 *
+	 * @param out
+	 * @param scene
+	 */
+	public static void report(PrintStream out, Scene scene){
+		final List<ISceneObject> objectList = scene.getObjectList();
+		final long[] nanos = new long[objectList.size()];
+		long totalNanos = 0;
+		long totalOcclusions = 0;
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i=0; i<objectList.size(); i++){
+			nanos[i] = getNanos(i);
+			totalNanos += nanos[i];
+			totalOcclusions += getOcclusions(i);
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Long.compare(nanos[b], nanos[a]);
+			}
+		});
+		out.println("Objects (by intersection time):");
+		out.println(String.format(Locale.ROOT, "  %5s %-40s %14s %12s %10s %7s %12s %7s",
+				"#", "object", "tests", "hits", "ms", "time%", "occlusions", "occl%"));
+		for (int i:order){
+			long occlusions = getOcclusions(i);
+			out.println(String.format(Locale.ROOT, "  %5d %-40s %14d %12d %10.1f %6.1f%% %12d %6.1f%%", i+1,
+					describe(objectList.get(i)), getTests(i), getHits(i), nanos[i]/1e6,
+					(totalNanos>0) ? 100.0*nanos[i]/totalNanos : 0.0, occlusions,
+					(totalOcclusions>0) ? 100.0*occlusions/totalOcclusions : 0.0));
+		}
+		final List<ILight> lightList = scene.getLightsList();
+		final long[] lightNanos = new long[lightList.size()];
+		long totalLightNanos = 0;
+		List<Integer> lightOrder = new ArrayList<Integer>();
+		for (int i=0; i<lightList.size(); i++){
+			lightNanos[i] = getLightTotal(i, LIGHT_NANOS);
+			totalLightNanos += lightNanos[i];
+			lightOrder.add(i);
+		}
+		Collections.sort(lightOrder, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Long.compare(lightNanos[b], lightNanos[a]);
+			}
+		});
+		out.println("Lights (by shading time, with the shadow rays):");
+		out.println(String.format(Locale.ROOT, "  %5s %-40s %14s %9s %10s %7s",
+				"#", "light", "shadow-rays", "occluded", "ms", "time%"));
+		for (int i:lightOrder){
+			long rays = getLightTotal(i, SHADOW_RAYS);
+			long occluded = getLightTotal(i, OCCLUDED);
+			out.println(String.format(Locale.ROOT, "  %5d %-40s %14d %8.1f%% %10.1f %6.1f%%", i+1,
+					describe(lightList.get(i)), rays, (rays>0) ? 100.0*occluded/rays : 0.0, lightNanos[i]/1e6,
+					(totalLightNanos>0) ? 100.0*lightNanos[i]/totalLightNanos : 0.0));
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package scene;
+
+import sceneObjects.*;
+
+/**
+ * This class traces packets of rays through the scene.
+ * The spheres, triangles and rectangles of the compiled scene are tested by dedicated kernels
+ * which loop over all the rays of the packet, all other objects are tested one ray at a time.
+ * The hierarchy of each group is traversed once for the whole packet: a node is visited if any of the rays of
+ * the packet hits its box.
+ *
+ */
+public class PacketTracer {
+	private CompiledScene compiled;
+	private int packetWidth;
+
+	/**
+	 * Constructs a packet tracer for the given compiled scene.
+	 *
+	 * @param compiled The compiled objects of the scene.
+	 * @param packetWidth The number of rays in a packet.
+	 */
+	public PacketTracer(CompiledScene compiled, int packetWidth){
+		this.compiled = compiled;
+		this.packetWidth = packetWidth;
+	}
+
+	/**
+	 * Returns the number of rays in a packet.
+	 *
+	 * @return The number of rays in a packet.
+	 */
+	public int getPacketWidth(){
+		return packetWidth;
+	}
+
+	/**
+	 * Returns the object at the given index (as returned by RayPacket.getObjectIndex).
+	 *
+	 * @param index
+	 * @return The object at the given index.
+	 */
+	public ISceneObject getObject(int index){
+		return compiled.getObject(index);
+	}
+
+	/**
+	 * Finds the closest object for each of the rays in the packet.
+	 * The results are available through RayPacket.getObjectIndex and RayPacket.getDistance.
+	 *
+	 * @param packet
+	 */
+	public void trace(RayPacket packet){
+		CompiledScene c = compiled;
+		int n = packet.getSize();
+		for (int l=0; l<n; l++){
+			packet.distance[l] = Double.MAX_VALUE;
+			packet.objectIndex[l] = -1;
+			packet.primitive[l] = 0;
+		}
+		traceGroup(packet, n, CompiledScene.SPHERES);
+		traceGroup(packet, n, CompiledScene.TRIANGLES);
+		traceGroup(packet, n, CompiledScene.RECTANGLES);
+		Intersection hit = HitRecords.getShadowRecord();
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.count(RenderTelemetry.OTHER_TESTS, (long)c.otherObject.length*n);
+		}
+		for (int i=0; i<c.otherObject.length; i++){
+			ISceneObject obj = c.getObject(c.otherObject[i]);
+			for (int l=0; l<n; l++){
+				hit.reset();
+				if ((obj.intersect(packet.getRay(l), hit))&&(hit.getDistance()<packet.distance[l])){
+					packet.distance[l] = hit.getDistance();
+					packet.objectIndex[l] = c.otherObject[i];
+					packet.primitive[l] = hit.getPrimitive();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Traverses the hierarchy of a group with all the rays of the packet, and tests the rays against the primitives
+	 * of the leaves whose boxes are hit by any of the rays.
+	 * Of primitives which are hit at the same distance the one with the lowest index is kept (see CompiledScene.findIntersection).
+	 *
+	 * @param packet
+	 * @param n The number of rays in the packet.
+	 * @param group CompiledScene.SPHERES, TRIANGLES or RECTANGLES.
+	 */
+	private void traceGroup(RayPacket packet, int n, int group){
+		CompiledScene c = compiled;
+		BVH bvh = c.getHierarchy(group);
+		if (bvh.nodeCount==0){
+			return;
+		}
+		for (int l=0; l<n; l++){
+			packet.candidate[l] = -1;
+		}
+		int[] stack = HitRecords.getStack(bvh.depth+1);
+		int top = 0;
+		stack[top++] = 0;
+		int nodes = 0;
+		int tests = 0;
+		while (top>0){
+			int node = stack[--top];
+			if (RenderTelemetry.ENABLED){
+				nodes++;
+			}
+			if (!isBoundsHit(packet, n, bvh, node)){
+				continue;
+			}
+			int size = bvh.nodeSize[node];
+			int first = bvh.nodeFirst[node];
+			if (size==0){
+				// the near child (for the first ray) is pushed last, so it is visited first
+				if (CompiledScene.isNegative(bvh.nodeAxis[node], packet.directionX[0], packet.directionY[0], packet.directionZ[0])){
+					stack[top++] = first;
+					stack[top++] = first+1;
+				}else{
+					stack[top++] = first+1;
+					stack[top++] = first;
+				}
+				continue;
+			}
+			if (RenderTelemetry.ENABLED){
+				tests += size*n;
+			}
+			for (int j=first; j<first+size; j++){
+				int i = bvh.order[j];
+				if (group==CompiledScene.SPHERES){
+					traceSphere(packet, n, i);
+				}else if (group==CompiledScene.TRIANGLES){
+					traceParallelogram(packet, n, c.triangles, i, true, c.triangleObject[i], c.trianglePrimitive[i]);
+				}else{
+					traceParallelogram(packet, n, c.rectangles, i, false, c.rectangleObject[i], c.rectanglePrimitive[i]);
+				}
+			}
+		}
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.countTraversal(group, nodes, tests);
+		}
+	}
+
+	/**
+	 * Tests all the rays of the packet against a single sphere.
+	 *
+	 * @param packet
+	 * @param n The number of rays in the packet.
+	 * @param i The index of the sphere.
+	 */
+	private void traceSphere(RayPacket packet, int n, int i){
+		int k = i*CompiledScene.SPHERE_STRIDE;
+		double cx = compiled.spheres.get(k);
+		double cy = compiled.spheres.get(k+1);
+		double cz = compiled.spheres.get(k+2);
+		double r2 = compiled.spheres.get(k+3);
+		int object = compiled.sphereObject[i];
+		double[] ox = packet.originX, oy = packet.originY, oz = packet.originZ;
+		double[] dx = packet.directionX, dy = packet.directionY, dz = packet.directionZ;
+		double[] distance = packet.distance;
+		for (int l=0; l<n; l++){
+			// t^2 + 2*b*t + c = 0 (the direction of the ray is normalized)
+			double px = ox[l] - cx;
+			double py = oy[l] - cy;
+			double pz = oz[l] - cz;
+			double b = dx[l]*px + dy[l]*py + dz[l]*pz;
+			double c = px*px + py*py + pz*pz - r2;
+			double delta = b*b - c;
+			if (delta<0){
+				continue;
+			}
+			double sqrtDelta = Math.sqrt(delta);
+			double t = -b - sqrtDelta;
+			if (t<=0){
+				t = -b + sqrtDelta;
+			}
+			if ((t>0)&&((t<distance[l])||((t==distance[l])&&(packet.candidate[l]>i)))){
+				distance[l] = t;
+				packet.objectIndex[l] = object;
+				packet.primitive[l] = 0;
+				packet.candidate[l] = i;
+			}
+		}
+	}
+
+	/**
+	 * Tests all the rays of the packet against a triangle or a parallelogram (p, p+e1, p+e2).
+	 *
+	 * @param packet
+	 * @param n The number of rays in the packet.
+	 * @param buffer The triangles (or rectangles) buffer of the compiled scene.
+	 * @param i The index of the triangle (or parallelogram) in the buffer.
+	 * @param isTriangle 'true' for a triangle, 'false' for a parallelogram.
+	 * @param object The index of the object.
+	 * @param primitive The index of the triangle (or parallelogram) in the object.
+	 */
+	private static void traceParallelogram(RayPacket packet, int n, GeometryBuffer buffer, int i, boolean isTriangle,
+			int object, int primitive){
+		int k = i*CompiledScene.PARALLELOGRAM_STRIDE;
+		double px = buffer.get(k), py = buffer.get(k+1), pz = buffer.get(k+2);
+		double e1x = buffer.get(k+3), e1y = buffer.get(k+4), e1z = buffer.get(k+5);
+		double e2x = buffer.get(k+6), e2y = buffer.get(k+7), e2z = buffer.get(k+8);
+		double[] ox = packet.originX, oy = packet.originY, oz = packet.originZ;
+		double[] dx = packet.directionX, dy = packet.directionY, dz = packet.directionZ;
+		double[] distance = packet.distance;
+		for (int l=0; l<n; l++){
+			double t = SceneObject.intersectParallelogram(px, py, pz, e1x, e1y, e1z, e2x, e2y, e2z, isTriangle,
+					ox[l], oy[l], oz[l], dx[l], dy[l], dz[l]);
+			if ((t<distance[l])||((t==distance[l])&&(packet.candidate[l]>i))){
+				distance[l] = t;
+				packet.objectIndex[l] = object;
+				packet.primitive[l] = primitive;
+				packet.candidate[l] = i;
+			}
+		}
+	}
+
+	/**
+	 * Returns 'true' if any of the rays of the packet intersects with the bounding box of the given node
+	 * closer than its current closest hit, otherwise 'false'.
+	 *
+	 * @param packet
+	 * @param n The number of rays in the packet.
+	 * @param bvh
+	 * @param node
+	 * @return 'true' if any of the rays of the packet intersects with the bounding box of the node, otherwise 'false'.
+	 */
+	private static boolean isBoundsHit(RayPacket packet, int n, BVH bvh, int node){
+		for (int l=0; l<n; l++){
+			if (bvh.intersectNode(node, packet.originX[l], packet.originY[l], packet.originZ[l],
+					packet.directionX[l], packet.directionY[l], packet.directionZ[l], packet.distance[l])){
+				return true;
+			}
+		}
+		return false;
+	}
+}
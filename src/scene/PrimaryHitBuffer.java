@@ -0,0 +1,166 @@
+package scene;
+
+import vectors.IPoint3D;
+
+/**
+ * This class records what the primary rays of every pixel hit, so a render can be repeated for only the pixels
+ * which are affected by an edit of the scene (see SceneDiff).
+ * For every pixel it keeps the index of the object which all its samples hit (or MISS, or MIXED when the samples hit
+ * different objects), whether any of the hit surfaces is reflective (so the pixel may show any other object), and
+ * the bounds of its hit points (to find the pixels whose shadow rays may pass through a moved object).
+ * A pixel is written only by the thread which renders it.
+ *
+ */
+public class PrimaryHitBuffer {
+	/**
+	 * The samples of the pixel hit no object.
+	 */
+	public static final int MISS = -1;
+	/**
+	 * The samples of the pixel hit different objects (or some of them hit no object).
+	 */
+	public static final int MIXED = -2;
+	private static final byte REFLECTIVE = 1;
+
+	private final int width;
+	private final int height;
+	private final int[] objects;
+	private final byte[] flags;
+	private final float[] hitBounds;
+
+	/**
+	 * Constructs an empty buffer (all the pixels missed).
+	 *
+	 * @param width The width of the image (in pixels).
+	 * @param height The height of the image (in pixels).
+	 */
+	public PrimaryHitBuffer(int width, int height){
+		this.width = width;
+		this.height = height;
+		objects = new int[width*height];
+		flags = new byte[width*height];
+		hitBounds = new float[6*width*height];
+		for (int i=0; i<width*height; i++){
+			reset(i);
+		}
+	}
+
+	/**
+	 * Returns the width of the image (in pixels).
+	 *
+	 * @return The width of the image (in pixels).
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image (in pixels).
+	 *
+	 * @return The height of the image (in pixels).
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Records a sample of a pixel.
+	 *
+	 * @param x
+	 * @param y
+	 * @param firstSample 'true' for the first sample of the pixel (the previous record of the pixel is cleared).
+	 * @param object The index of the object which the sample hit (in the object list of the scene), or MISS.
+	 * @param hit The intersection of the sample (or null if it missed).
+	 * @param reflective 'true' if the hit surface is reflective, otherwise 'false'.
+	 */
+	public void record(int x, int y, boolean firstSample, int object, Intersection hit, boolean reflective){
+		int i = y*width+x;
+		if (firstSample){
+			reset(i);
+			objects[i] = object;
+		}else if (objects[i]!=object){
+			objects[i] = MIXED;
+		}
+		if (reflective){
+			flags[i] |= REFLECTIVE;
+		}
+		if (hit!=null){
+			IPoint3D p = hit.getIntersectionPoint();
+			int k = 6*i;
+			grow(k, p.getX(), p.getY(), p.getZ());
+		}
+	}
+
+	/**
+	 * Returns the index of the object which all the samples of the pixel hit, or MISS, or MIXED.
+	 *
+	 * @param x
+	 * @param y
+	 * @return The index of the object which all the samples of the pixel hit, or MISS, or MIXED.
+	 */
+	public int getObject(int x, int y){
+		return objects[y*width+x];
+	}
+
+	/**
+	 * Returns 'true' if any of the samples of the pixel hit a reflective surface, otherwise 'false'.
+	 *
+	 * @param x
+	 * @param y
+	 * @return 'true' if any of the samples of the pixel hit a reflective surface, otherwise 'false'.
+	 */
+	public boolean isReflective(int x, int y){
+		return (flags[y*width+x] & REFLECTIVE)!=0;
+	}
+
+	/**
+	 * Returns the bounds of the hit points of the samples of the pixel.
+	 *
+	 * @param x
+	 * @param y
+	 * @return The bounds as {minX,minY,minZ,maxX,maxY,maxZ}, or null if no sample hit an object.
+	 */
+	public double[] getHitBounds(int x, int y){
+		int k = 6*(y*width+x);
+		if (hitBounds[k]>hitBounds[k+3]){
+			return null;
+		}
+		double[] bounds = new double[6];
+		for (int a=0; a<6; a++){
+			bounds[a] = hitBounds[k+a];
+		}
+		return bounds;
+	}
+
+	/**
+	 * Clears the record of a pixel.
+	 *
+	 * @param i The index of the pixel.
+	 */
+	private void reset(int i){
+		objects[i] = MISS;
+		flags[i] = 0;
+		int k = 6*i;
+		for (int a=0; a<3; a++){
+			hitBounds[k+a] = Float.MAX_VALUE;
+			hitBounds[k+a+3] = -Float.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Grows the hit bounds of a pixel to contain a point (rounded outwards to float).
+	 *
+	 * @param k The index of the bounds of the pixel.
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	private void grow(int k, double x, double y, double z){
+		double[] p = {x, y, z};
+		for (int a=0; a<3; a++){
+			float f = (float)p[a];
+			hitBounds[k+a] = Math.min(hitBounds[k+a], (f>p[a]) ? Math.nextDown(f) : f);
+			hitBounds[k+a+3] = Math.max(hitBounds[k+a+3], (f<p[a]) ? Math.nextUp(f) : f);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package scene;
+
+import vectors.*;
+
+/**
+ * This class represents a packet of rays which are traced together.
+ * The rays are kept in a structure-of-arrays layout (one array per coordinate) so the intersection
+ * kernels can run over all the rays of the packet in tight loops.
+ *
+ */
+public class RayPacket {
+	/**
+	 * The maximal number of rays in a packet.
+	 */
+	public static final int MAX_WIDTH = 16;
+
+	final double[] originX;
+	final double[] originY;
+	final double[] originZ;
+	final double[] directionX;
+	final double[] directionY;
+	final double[] directionZ;
+	final double[] distance;
+	final int[] objectIndex;
+	final int[] primitive;
+	final int[] candidate;	// the index of the closest primitive of the ray in the group which is being traced, or -1
+	private IRay[] rays;
+	private int size;
+
+	/**
+	 * Constructs an empty ray packet.
+	 *
+	 * @param width The number of rays the packet can hold (between 1 and MAX_WIDTH).
+	 */
+	public RayPacket(int width){
+		width = Math.max(1, Math.min(width, MAX_WIDTH));
+		originX = new double[width];
+		originY = new double[width];
+		originZ = new double[width];
+		directionX = new double[width];
+		directionY = new double[width];
+		directionZ = new double[width];
+		distance = new double[width];
+		objectIndex = new int[width];
+		primitive = new int[width];
+		candidate = new int[width];
+		rays = new IRay[width];
+		size = 0;
+	}
+
+	/**
+	 * Adds a ray to the packet.
+	 *
+	 * @param ray
+	 * @return The index of the ray in the packet.
+	 */
+	public int add(IRay ray){
+		IPoint3D p0 = ray.getP0();
+		IPoint3D v = ray.getV().getEndPoint();
+		originX[size] = p0.getX();
+		originY[size] = p0.getY();
+		originZ[size] = p0.getZ();
+		directionX[size] = v.getX();
+		directionY[size] = v.getY();
+		directionZ[size] = v.getZ();
+		rays[size] = ray;
+		return size++;
+	}
+
+	/**
+	 * Removes all the rays from the packet.
+	 */
+	public void clear(){
+		for (int i=0; i<size; i++){
+			rays[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of rays in the packet.
+	 *
+	 * @return The number of rays in the packet.
+	 */
+	public int getSize(){
+		return size;
+	}
+
+	/**
+	 * Returns 'true' if no more rays can be added to the packet, otherwise 'false'.
+	 *
+	 * @return 'true' if no more rays can be added to the packet, otherwise 'false'.
+	 */
+	public boolean isFull(){
+		return size==rays.length;
+	}
+
+	/**
+	 * Returns the ray at the given index of the packet.
+	 *
+	 * @param i
+	 * @return The ray at the given index of the packet.
+	 */
+	public IRay getRay(int i){
+		return rays[i];
+	}
+
+	/**
+	 * Returns the distance to the closest hit of the ray at the given index (after tracing the packet).
+	 *
+	 * @param i
+	 * @return The distance to the closest hit, or Double.MAX_VALUE if the ray missed all objects.
+	 */
+	public double getDistance(int i){
+		return distance[i];
+	}
+
+	/**
+	 * Returns the index (in the object list of the scene) of the closest object hit by the ray at the given index
+	 * (after tracing the packet).
+	 *
+	 * @param i
+	 * @return The index of the closest object hit by the ray, or -1 if the ray missed all objects.
+	 */
+	public int getObjectIndex(int i){
+		return objectIndex[i];
+	}
+
+	/**
+	 * Returns the index of the primitive (i.e the triangle of a mesh) of the closest object hit by the ray at the given index
+	 * (after tracing the packet).
+	 *
+	 * @param i
+	 * @return The index of the primitive of the closest object hit by the ray.
+	 */
+	public int getPrimitive(int i){
+		return primitive[i];
+	}
+}
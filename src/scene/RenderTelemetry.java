@@ -0,0 +1,315 @@
+package scene;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts what a render does: the primary, shadow and reflection rays, the intersection tests of every type
+ * of primitive and the visited nodes of the bounding volume hierarchies, and it times the phases of a render (parsing,
+ * mesh loading, building the compiled scene, rendering and encoding).
+ * Every thread counts into its own counters (like HitRecords), so counting takes no lock and no atomic operation;
+ * the counters of all the threads are only added up when they are read.
+ * Telemetry is enabled with the 'raytracer.telemetry' system property, with the 'raytracer.cost-map' system property
+ * (see CostBuffer), with the 'raytracer.counters' system property (which counts without a report, i.e for the
+ * RenderEstimator), or when a render observer is installed (see IRenderObserver). Every counting site tests ENABLED (and every observed stage tests OBSERVER), which are static final
+ * constants, so when they are disabled the JIT removes the counting code altogether.
+ *
+ */
+public class RenderTelemetry {
+	/**
+	 * The observer of the stages of a render (the first one which java.util.ServiceLoader finds), or null.
+	 */
+	public static final IRenderObserver OBSERVER = loadObserver();
+
+	/**
+	 * 'true' if the report was requested (with the 'raytracer.telemetry' system property), otherwise 'false'.
+	 */
+	public static final boolean REPORT = Boolean.getBoolean("raytracer.telemetry");
+
+	/**
+	 * 'true' if the counters are counted (the counters, the report or a cost map were requested or an observer is
+	 * installed), otherwise 'false'.
+	 */
+	public static final boolean ENABLED = REPORT || Boolean.getBoolean("raytracer.counters")
+			|| Boolean.getBoolean("raytracer.cost-map") || (OBSERVER!=null);
+
+	// the counters
+	public static final int PRIMARY_RAYS = 0;
+	public static final int SHADOW_RAYS = 1;
+	public static final int REFLECTION_RAYS = 2;
+	public static final int SPHERE_TESTS = 3;
+	public static final int TRIANGLE_TESTS = 4;
+	public static final int RECTANGLE_TESTS = 5;
+	public static final int OTHER_TESTS = 6;
+	public static final int BVH_NODE_VISITS = 7;
+	public static final int RENDER_NANOS = 8;
+	private static final String[] COUNTER_NAMES = {"primary-rays", "shadow-rays", "reflection-rays", "sphere-tests",
+		"triangle-tests", "rectangle-tests", "other-tests", "bvh-node-visits", "render-nanos"};
+
+	// the phases
+	public static final int PARSE = 0;
+	public static final int MESH_LOAD = 1;
+	public static final int BUILD = 2;
+	public static final int RENDER = 3;
+	public static final int ENCODE = 4;
+	private static final String[] PHASE_NAMES = {"parse", "mesh-load", "build", "render", "encode"};
+
+	private static final List<RenderTelemetry> threads = new ArrayList<RenderTelemetry>();
+	private static final AtomicLongArray phases = new AtomicLongArray(PHASE_NAMES.length);
+	private static final ThreadLocal<RenderTelemetry> records = new ThreadLocal<RenderTelemetry>() {
+		@Override
+		protected RenderTelemetry initialValue() {
+			RenderTelemetry telemetry = new RenderTelemetry(Thread.currentThread());
+			synchronized (threads) {
+				threads.add(telemetry);
+			}
+			return telemetry;
+		}
+	};
+
+	private final Thread thread;
+	private final String threadName;
+	private final long[] counters;
+	private int depth;
+
+	/**
+	 * Constructs the counters of a thread.
+	 *
+	 * @param thread
+	 */
+	private RenderTelemetry(Thread thread){
+		this.thread = thread;
+		threadName = thread.getName();
+		counters = new long[COUNTER_NAMES.length];
+	}
+
+	/**
+	 * Returns the first render observer which java.util.ServiceLoader finds, or null if there is none (or it cannot be
+	 * loaded, i.e because it needs a newer Java version).
+	 *
+	 * @return The render observer, or null.
+	 */
+	private static IRenderObserver loadObserver(){
+		try {
+			Iterator<IRenderObserver> iter = ServiceLoader.load(IRenderObserver.class).iterator();
+			if (iter.hasNext()){
+				return iter.next();
+			}
+		} catch (ServiceConfigurationError e) {
+			System.err.println("The render observer was not loaded: "+e.getMessage());
+		} catch (LinkageError e) {
+			System.err.println("The render observer was not loaded: "+e);
+		}
+		return null;
+	}
+
+	/**
+	 * Adds to a counter of the current thread (call only if ENABLED).
+	 *
+	 * @param counter One of the counters (i.e PRIMARY_RAYS).
+	 * @param count
+	 */
+	public static void count(int counter, long count){
+		records.get().counters[counter] += count;
+	}
+
+	/**
+	 * Adds the visited nodes and the intersection tests of a traversal of a hierarchy of the compiled scene to the
+	 * counters of the current thread (call only if ENABLED).
+	 *
+	 * @param group CompiledScene.SPHERES, TRIANGLES or RECTANGLES.
+	 * @param nodes The visited nodes.
+	 * @param tests The intersection tests.
+	 */
+	static void countTraversal(int group, long nodes, long tests){
+		long[] counters = records.get().counters;
+		counters[BVH_NODE_VISITS] += nodes;
+		if (group==CompiledScene.SPHERES){
+			counters[SPHERE_TESTS] += tests;
+		}else if (group==CompiledScene.TRIANGLES){
+			counters[TRIANGLE_TESTS] += tests;
+		}else{
+			counters[RECTANGLE_TESTS] += tests;
+		}
+	}
+
+	/**
+	 * Records that the current thread traced a reflection ray of the given depth (call only if ENABLED).
+	 *
+	 * @param depth The depth of the reflection ray (1 for a reflection of a primary hit).
+	 */
+	public static void reachDepth(int depth){
+		RenderTelemetry telemetry = records.get();
+		if (depth>telemetry.depth){
+			telemetry.depth = depth;
+		}
+	}
+
+	/**
+	 * Returns the deepest reflection ray which the current thread traced since the last call, and starts over.
+	 *
+	 * @return The deepest reflection ray which the current thread traced since the last call (0 if none).
+	 */
+	public static int takeThreadDepth(){
+		RenderTelemetry telemetry = records.get();
+		int depth = telemetry.depth;
+		telemetry.depth = 0;
+		return depth;
+	}
+
+	/**
+	 * Returns the start time of a timed section, or 0 if telemetry is disabled (so no clock is read).
+	 *
+	 * @return The start time (in nanoseconds), or 0 if telemetry is disabled.
+	 */
+	public static long startTime(){
+		return (ENABLED) ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Returns the time since the start of a timed section, or 0 if telemetry is disabled.
+	 *
+	 * @param start The start time of the section (see startTime).
+	 * @return The time since the start of the section (in nanoseconds), or 0 if telemetry is disabled.
+	 */
+	public static long elapsed(long start){
+		return (ENABLED) ? System.nanoTime()-start : 0;
+	}
+
+	/**
+	 * Adds time to a phase (call only if ENABLED).
+	 *
+	 * @param phase One of the phases (i.e PARSE).
+	 * @param nanos
+	 */
+	public static void addPhaseTime(int phase, long nanos){
+		phases.addAndGet(phase, nanos);
+	}
+
+	/**
+	 * Returns the sum of a counter over all the threads.
+	 * The counters of threads which are still rendering may be slightly behind.
+	 *
+	 * @param counter One of the counters (i.e PRIMARY_RAYS).
+	 * @return The sum of the counter over all the threads.
+	 */
+	public static long getTotal(int counter){
+		long sum = 0;
+		synchronized (threads) {
+			for (RenderTelemetry telemetry:threads){
+				sum += telemetry.counters[counter];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the value of a counter of the current thread (i.e to find the rays of a tile from the values before and
+	 * after it was rendered).
+	 *
+	 * @param counter One of the counters (i.e PRIMARY_RAYS).
+	 * @return The value of the counter of the current thread.
+	 */
+	public static long getThreadCount(int counter){
+		return records.get().counters[counter];
+	}
+
+	/**
+	 * Copies all the counters of the current thread.
+	 *
+	 * @param counters The array which receives the counters (at least getCounterCount long).
+	 */
+	public static void getThreadCounts(long[] counters){
+		System.arraycopy(records.get().counters, 0, counters, 0, COUNTER_NAMES.length);
+	}
+
+	/**
+	 * Returns the time of a phase.
+	 *
+	 * @param phase One of the phases (i.e PARSE).
+	 * @return The time of the phase (in nanoseconds).
+	 */
+	public static long getPhaseTime(int phase){
+		return phases.get(phase);
+	}
+
+	/**
+	 * Returns the name of a counter (i.e 'shadow-rays').
+	 *
+	 * @param counter
+	 * @return The name of the counter.
+	 */
+	public static String getCounterName(int counter){
+		return COUNTER_NAMES[counter];
+	}
+
+	/**
+	 * Returns the number of counters.
+	 *
+	 * @return The number of counters.
+	 */
+	public static int getCounterCount(){
+		return COUNTER_NAMES.length;
+	}
+
+	/**
+	 * Sets all the counters and the phase times to 0, and forgets the threads which ended (call between renders).
+	 */
+	public static void reset(){
+		synchronized (threads) {
+			Iterator<RenderTelemetry> iter = threads.iterator();
+			while (iter.hasNext()){
+				RenderTelemetry telemetry = iter.next();
+				if (!telemetry.thread.isAlive()){
+					iter.remove();
+				}else{
+					for (int i=0; i<telemetry.counters.length; i++){
+						telemetry.counters[i] = 0;
+					}
+				}
+			}
+		}
+		for (int i=0; i<PHASE_NAMES.length; i++){
+			phases.set(i, 0);
+		}
+	}
+
+	/**
+	 * Prints the phase times, the total counters, the rays per second of the render and the throughput of every
+	 * thread which traced rays.
+	 *
+	 * @param out
+	 */
+	public static void report(PrintStream out){
+		out.println("Phases:");
+		for (int i=0; i<PHASE_NAMES.length; i++){
+			out.println(String.format(Locale.ROOT, "  %-18s %12.1f ms", PHASE_NAMES[i], getPhaseTime(i)/1e6));
+		}
+		out.println("Counters:");
+		for (int i=0; i<RENDER_NANOS; i++){
+			out.println(String.format(Locale.ROOT, "  %-18s %12d", COUNTER_NAMES[i], getTotal(i)));
+		}
+		long rays = getTotal(PRIMARY_RAYS)+getTotal(SHADOW_RAYS)+getTotal(REFLECTION_RAYS);
+		if (getPhaseTime(RENDER)>0){
+			out.println(String.format(Locale.ROOT, "  %-18s %12.0f", "rays/s", rays/(getPhaseTime(RENDER)/1e9)));
+		}
+		out.println("Threads:");
+		synchronized (threads) {
+			for (RenderTelemetry telemetry:threads){
+				long[] c = telemetry.counters;
+				long threadRays = c[PRIMARY_RAYS]+c[SHADOW_RAYS]+c[REFLECTION_RAYS];
+				if ((threadRays==0)||(c[RENDER_NANOS]==0)){
+					continue;
+				}
+				out.println(String.format(Locale.ROOT, "  %-18s %12d rays %10.1f ms %12.0f rays/s", telemetry.threadName,
+						threadRays, c[RENDER_NANOS]/1e6, threadRays/(c[RENDER_NANOS]/1e9)));
+			}
+		}
+	}
+}
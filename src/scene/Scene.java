@@ -3,8 +3,8 @@ package scene;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
-import org.eclipse.swt.graphics.ImageData;
 import colors.*;
+import textures.*;
 import application.Parser.ParseException;
 import sceneObjects.*;
 import vectors.*;
@@ -22,10 +22,22 @@ public class Scene extends SceneObject {
 	private List<ILight> lights;
 	private IColor backgroundColor;
 	private String backgroundTextureFilename;
-	private ImageData backgroundTexture;
+	private Texture backgroundTexture;
 	private IPoint3D viewPlaneP1;  //this is the left upper point of the view plane
 	private int superSampleWidth;
 	private IColor AmbientLightIntensity;
+	private int packetWidth;
+	private boolean floatPrecision;
+	private String textureFilter;
+	private double rebuildThreshold;
+	private CompiledScene compiledScene;
+	private PacketTracer packetTracer;
+	private PrimaryHitBuffer primaryHits;
+	private boolean gBufferEnabled;
+	private GBuffer gBuffer;
+	private CostBuffer costBuffer;
+	private int maxReflectionDepth;
+	private String name;
 	private static String pathToTextureFile = "";
 	
 	/**
@@ -43,6 +55,38 @@ public class Scene extends SceneObject {
 		backgroundTexture = null;
 		superSampleWidth = 1;
 		AmbientLightIntensity = new Color(0,0,0);
+		packetWidth = 1;
+		setPacketWidth(Integer.getInteger("raytracer.packet-width", 1));
+		floatPrecision = false;
+		setPrecision(System.getProperty("raytracer.precision", "double"));
+		textureFilter = "trilinear";
+		setTextureFilter(System.getProperty("raytracer.texture-filter", "trilinear"));
+		rebuildThreshold = 1.5;
+		setRebuildThreshold(Double.parseDouble(System.getProperty("raytracer.bvh-rebuild-threshold", "1.5")));
+		gBufferEnabled = Boolean.getBoolean("raytracer.g-buffer");
+		maxReflectionDepth = 4;
+		setMaxReflectionDepth(Integer.getInteger("raytracer.max-reflection-depth", 4));
+		name = "";
+		compiledScene = null;
+		packetTracer = null;
+	}
+
+	/**
+	 * Sets the name which identifies the scene in telemetry (i.e the name of its file).
+	 *
+	 * @param name
+	 */
+	public void setName(String name){
+		this.name = (name==null) ? "" : name;
+	}
+
+	/**
+	 * Returns the name which identifies the scene in telemetry.
+	 *
+	 * @return The name which identifies the scene in telemetry (empty if it was not set).
+	 */
+	public String getName(){
+		return name;
 	}
 
 	/**
@@ -89,6 +133,8 @@ public class Scene extends SceneObject {
 	
 	/**
 	 * Sets the name for the texture file for the background of the scene.
+	 * The texture is decoded once and shared through the texture cache, and it is stretched over the canvas
+	 * whatever the size of the canvas is.
 	 * 
 	 * @param name New file name
 	 * @throws FileNotFoundException
@@ -98,12 +144,7 @@ public class Scene extends SceneObject {
 			return;
 		}
 		backgroundTextureFilename = name;
-		try {
-			backgroundTexture = new ImageData(getPathToTextureFile()+name);
-		}catch (Exception e){
-			throw new FileNotFoundException();
-		}
-		backgroundTexture = backgroundTexture.scaledTo((int)getWidth(), (int)getHeight());
+		backgroundTexture = TextureCache.getTexture(getPathToTextureFile()+name);
 	}
 	
 	/**
@@ -126,11 +167,35 @@ public class Scene extends SceneObject {
 		if (getBackgroundTextureFilename()==null){
 			return getBackgroundColor();
 		}
-		int rgb = backgroundTexture.getPixel((int)x, (int)y);
-		double red = Color.getRedScaledFromRGB(rgb)/255d;
-		double green = Color.getGreenScaledFromRGB(rgb)/255d;
-		double blue = Color.getBlueScaledFromRGB(rgb)/255d;
-		return new Color(red,green,blue);
+		IColor color = new Color();
+		getBackgroundColor(x, y, color);
+		return color;
+	}
+
+	/**
+	 * Computes the background color (considering the background texture) into the given color.
+	 * The coordinates are those of the sample on the canvas (not rounded to a pixel), and they are normalized by the size
+	 * of the canvas to sample the background texture with the texture filter of the scene.
+	 * 
+	 * @param x X-coordinate for the background.
+	 * @param y Y-coordinate for the background.
+	 * @param result The color which receives the background color.
+	 */
+	public void getBackgroundColor(double x , double y, IColor result){
+		if ((getBackgroundTextureFilename()==null)||(getWidth()<=0)||(getHeight()<=0)){
+			result.setColor(getBackgroundColor());
+			return;
+		}
+		double u = (x+0.5) / getWidth();
+		double v = (y+0.5) / getHeight();
+		if (textureFilter.equals("trilinear")){
+			double footprint = Math.max(backgroundTexture.getWidth()/getWidth(), backgroundTexture.getHeight()/getHeight())/getSuperSampleWidth();
+			backgroundTexture.getTrilinearColor(u, v, footprint, result);
+		}else if (textureFilter.equals("bilinear")){
+			backgroundTexture.getBilinearColor(u, v, result);
+		}else{
+			backgroundTexture.getColor(u, v, result);
+		}
 	}
 
 	/**
@@ -198,6 +263,154 @@ public class Scene extends SceneObject {
 		return superSampleWidth;
 	}
 	
+	/**
+	 * Sets the number of primary rays which are traced together as a packet (1 disables packet tracing).
+	 * The default can be given with the 'raytracer.packet-width' system property.
+	 *
+	 * @param width
+	 */
+	public void setPacketWidth(int width){
+		if ((width>0)&&(width<=RayPacket.MAX_WIDTH)){
+			packetWidth = width;
+		}
+	}
+
+	/**
+	 * Returns the number of primary rays which are traced together as a packet.
+	 *
+	 * @return The number of primary rays which are traced together as a packet.
+	 */
+	public int getPacketWidth(){
+		return packetWidth;
+	}
+
+	/**
+	 * Sets the precision of the compiled geometry ('float' or 'double').
+	 * In 'float' precision the compiled copy of the geometry (the primitive buffers and the BVH node bounds) takes half
+	 * the memory, and rays which leave a surface are moved off the surface by a few ulps (see
+	 * GeometryBuffer.offsetRayOrigin).
+	 * The scene objects still keep their own geometry in double precision (the meshes keep their vertices, normals and
+	 * triangles for shading, and share them with the mesh cache), so the compiled copy comes on top of it: a scene
+	 * with large meshes takes less memory in 'float' precision than in 'double' precision, but more than it would
+	 * without a compiled copy.
+	 * The default can be given with the 'raytracer.precision' system property.
+	 *
+	 * @param precision The precision of the compiled geometry ('float' or 'double').
+	 */
+	public void setPrecision(String precision){
+		if (precision.equals("float")||precision.equals("double")){
+			floatPrecision = precision.equals("float");
+		}
+	}
+
+	/**
+	 * Returns the precision of the compiled geometry ('float' or 'double').
+	 *
+	 * @return The precision of the compiled geometry ('float' or 'double').
+	 */
+	public String getPrecision(){
+		return (floatPrecision) ? "float" : "double";
+	}
+
+	/**
+	 * Sets the filter which is used to sample textures ('nearest', 'bilinear' or 'trilinear').
+	 * 'trilinear' samples the mipmap levels of the texture which match the footprint of the sample (see getPixelSpreadAngle),
+	 * so minified textures do not alias even without super sampling.
+	 * The default can be given with the 'raytracer.texture-filter' system property.
+	 *
+	 * @param filter The filter which is used to sample textures ('nearest', 'bilinear' or 'trilinear').
+	 */
+	public void setTextureFilter(String filter){
+		if (filter.equals("nearest")||filter.equals("bilinear")||filter.equals("trilinear")){
+			textureFilter = filter;
+		}
+	}
+
+	/**
+	 * Returns the filter which is used to sample textures ('nearest', 'bilinear' or 'trilinear').
+	 *
+	 * @return The filter which is used to sample textures ('nearest', 'bilinear' or 'trilinear').
+	 */
+	public String getTextureFilter(){
+		return textureFilter;
+	}
+
+	/**
+	 * Sets the growth of the SAH cost of a bounding volume hierarchy (relative to its cost when it was built) above
+	 * which it is rebuilt rather than refitted when objects move (see update).
+	 * The default can be given with the 'raytracer.bvh-rebuild-threshold' system property.
+	 *
+	 * @param threshold The growth of the SAH cost above which a hierarchy is rebuilt (at least 1).
+	 */
+	public void setRebuildThreshold(double threshold){
+		if (threshold>=1){
+			rebuildThreshold = threshold;
+		}
+	}
+
+	/**
+	 * Returns the growth of the SAH cost of a bounding volume hierarchy above which it is rebuilt when objects move.
+	 *
+	 * @return The growth of the SAH cost of a bounding volume hierarchy above which it is rebuilt.
+	 */
+	public double getRebuildThreshold(){
+		return rebuildThreshold;
+	}
+
+	/**
+	 * Sets whether the primary hits of the rendered samples are kept in a G-buffer, so the image can be shaded again
+	 * after its lights are edited without tracing the primary rays (see relightColors).
+	 * The default can be given with the 'raytracer.g-buffer' system property.
+	 *
+	 * @param enabled
+	 */
+	public void setGBufferEnabled(boolean enabled){
+		gBufferEnabled = enabled;
+	}
+
+	/**
+	 * Returns 'true' if the primary hits of the rendered samples are kept in a G-buffer, otherwise 'false'.
+	 *
+	 * @return 'true' if the primary hits of the rendered samples are kept in a G-buffer, otherwise 'false'.
+	 */
+	public boolean isGBufferEnabled(){
+		return gBufferEnabled;
+	}
+
+	/**
+	 * Sets the largest number of reflections which are traced from a primary ray (0 disables reflections).
+	 * The default can be given with the 'raytracer.max-reflection-depth' system property.
+	 *
+	 * @param depth
+	 */
+	public void setMaxReflectionDepth(int depth){
+		if (depth>=0){
+			maxReflectionDepth = depth;
+		}
+	}
+
+	/**
+	 * Returns the largest number of reflections which are traced from a primary ray.
+	 *
+	 * @return The largest number of reflections which are traced from a primary ray.
+	 */
+	public int getMaxReflectionDepth(){
+		return maxReflectionDepth;
+	}
+
+	/**
+	 * Returns the angle (in radians) between the primary rays of neighbouring samples.
+	 * A sample at distance d from the camera covers a width of about d times this angle.
+	 *
+	 * @return The angle between the primary rays of neighbouring samples, or 0 if the camera or the canvas are not set.
+	 */
+	public double getPixelSpreadAngle(){
+		if ((getCamera()==null)||(getWidth()<=0)||(getCamera().getScreenDistance()<=0)){
+			return 0;
+		}
+		return getCamera().getScreenWidth() / (getWidth()*getSuperSampleWidth()*getCamera().getScreenDistance());
+	}
+
 	/**
 	 * Sets the ambient light intensity of the scene.
 	 * 
@@ -243,6 +456,291 @@ public class Scene extends SceneObject {
 		}
 	}
 
+	/**
+	 * Prepares the scene objects for the ray tracing (call after parsing the scene).
+	 * The objects are grouped by their type, so intersections are found without calling isIntersects on every object.
+	 */
+	public void compile(){
+		Object context = (RenderTelemetry.OBSERVER!=null) ? RenderTelemetry.OBSERVER.begin(RenderTelemetry.BUILD) : null;
+		long start = RenderTelemetry.startTime();
+		compiledScene = new CompiledScene(objects, floatPrecision);
+		if (getPacketWidth()>1){
+			packetTracer = new PacketTracer(compiledScene, getPacketWidth());
+		}else{
+			packetTracer = null;
+		}
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.addPhaseTime(RenderTelemetry.BUILD, RenderTelemetry.elapsed(start));
+		}
+		if (RenderTelemetry.OBSERVER!=null){
+			RenderTelemetry.OBSERVER.endBuild(context, name, objects.size(), compiledScene.getPrimitiveCount(),
+					compiledScene.getGeometrySizeInBytes());
+		}
+	}
+
+	/**
+	 * Updates the compiled scene after objects were moved (i.e between the frames of an animation), without
+	 * compiling it again: the geometry is copied to the same buffers and the hierarchies are refitted
+	 * (see CompiledScene.update).
+	 *
+	 * @return The number of hierarchies which were rebuilt.
+	 */
+	public int update(){
+		if (compiledScene==null){
+			return 0;
+		}
+		Object context = (RenderTelemetry.OBSERVER!=null) ? RenderTelemetry.OBSERVER.begin(RenderTelemetry.BUILD) : null;
+		long start = RenderTelemetry.startTime();
+		int rebuilt = compiledScene.update(getRebuildThreshold());
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.addPhaseTime(RenderTelemetry.BUILD, RenderTelemetry.elapsed(start));
+		}
+		if (RenderTelemetry.OBSERVER!=null){
+			RenderTelemetry.OBSERVER.endBuild(context, name, objects.size(), compiledScene.getPrimitiveCount(),
+					compiledScene.getGeometrySizeInBytes());
+		}
+		return rebuilt;
+	}
+
+	/**
+	 * Returns the compiled scene (or null if the scene was not compiled).
+	 *
+	 * @return The compiled scene.
+	 */
+	public CompiledScene getCompiledScene(){
+		return compiledScene;
+	}
+
+	/**
+	 * Sets the buffer which records what the primary rays of the rendered pixels hit (or null to record nothing).
+	 * It is used to render again only the pixels which are affected by an edit of the scene (see SceneDiff).
+	 *
+	 * @param hits
+	 */
+	public void setPrimaryHitBuffer(PrimaryHitBuffer hits){
+		primaryHits = hits;
+	}
+
+	/**
+	 * Returns the buffer which records what the primary rays of the rendered pixels hit (or null).
+	 *
+	 * @return The buffer which records what the primary rays of the rendered pixels hit.
+	 */
+	public PrimaryHitBuffer getPrimaryHitBuffer(){
+		return primaryHits;
+	}
+
+	/**
+	 * Sets the G-buffer which records the primary hits of the rendered samples (or null to record nothing).
+	 * It is read by relightColors instead of tracing the primary rays.
+	 *
+	 * @param buffer
+	 */
+	public void setGBuffer(GBuffer buffer){
+		gBuffer = buffer;
+	}
+
+	/**
+	 * Returns the G-buffer which records the primary hits of the rendered samples (or null).
+	 *
+	 * @return The G-buffer which records the primary hits of the rendered samples.
+	 */
+	public GBuffer getGBuffer(){
+		return gBuffer;
+	}
+
+	/**
+	 * Sets the buffer which records the cost of the rendered pixels (or null to record nothing).
+	 * While it is set the pixels are traced one by one (without ray packets).
+	 *
+	 * @param buffer
+	 */
+	public void setCostBuffer(CostBuffer buffer){
+		costBuffer = buffer;
+	}
+
+	/**
+	 * Returns the buffer which records the cost of the rendered pixels (or null).
+	 *
+	 * @return The buffer which records the cost of the rendered pixels.
+	 */
+	public CostBuffer getCostBuffer(){
+		return costBuffer;
+	}
+
+	/**
+	 * Computes the colors for a row of pixels starting at coordinates (x,y) with super sampling from the primary hits
+	 * in the G-buffer, and writes them to the frame buffer (at the same coordinates).
+	 * No primary ray is traced: the intersection of every sample is restored from the G-buffer and only the shading
+	 * (the lights, the shadow rays and the reflections) is computed, so the G-buffer must have been recorded for a
+	 * scene with the same camera, objects and super sampling (only the lights and the materials may differ).
+	 *
+	 * @param x
+	 * @param y
+	 * @param count The number of pixels in the row.
+	 * @param buffer The frame buffer which receives the colors of the pixels.
+	 */
+	public void relightColors(int x, int y, int count, FrameBuffer buffer){
+		IColor color = new Color();
+		double samples = getSuperSampleWidth()*getSuperSampleWidth();
+		double divider = 1d / (double)getSuperSampleWidth();
+		for (int p=x; p<x+count; p++){
+			double red = 0;
+			double green = 0;
+			double blue = 0;
+			for (int i=0; i<getSuperSampleWidth(); i++){
+				for (int j=0; j<getSuperSampleWidth(); j++){
+					double ix = (double)p + ((double)j)*divider;
+					double iy = (double)y + ((double)i)*divider;
+					int sample = i*getSuperSampleWidth()+j;
+					int object = gBuffer.getObject(p, y, sample);
+					if (object!=GBuffer.MISS){
+						Intersection hit = HitRecords.get(0);
+						hit.setIntersectionHit(gBuffer.getDistance(p, y, sample), objects.get(object),
+								gBuffer.getPrimitive(p, y, sample), constructRayThroughPixel(ix,iy));
+						hit.getIntersectionObject().getSurface().getColor(hit,this,0,color);
+						if (primaryHits!=null){
+							primaryHits.record(p, y, sample==0, object, hit, hit.getIntersectionObject().getSurface().getReflectance()!=0);
+						}
+					}else{
+						getBackgroundColor(ix,iy,color);
+						if (primaryHits!=null){
+							primaryHits.record(p, y, sample==0, PrimaryHitBuffer.MISS, null, false);
+						}
+					}
+					red += color.getRed();
+					green += color.getGreen();
+					blue += color.getBlue();
+				}
+			}
+			buffer.setColor(p, y, red/samples, green/samples, blue/samples);
+		}
+	}
+
+	/**
+	 * Computes the colors for a row of pixels starting at coordinates (x,y) with super sampling (after doing the ray tracing)
+	 * and writes them to the frame buffer.
+	 * When packet tracing is enabled the primary rays of the row are traced in packets.
+	 *
+	 * @param x
+	 * @param y
+	 * @param count The number of pixels in the row.
+	 * @param buffer The frame buffer which receives the colors of the pixels (at the same coordinates).
+	 */
+	public void getColorsWithSuperSample(int x, int y, int count, FrameBuffer buffer){
+		getColorsWithSuperSample(x, y, count, buffer, x, y);
+	}
+
+	/**
+	 * Computes the colors for a tile of pixels whose top left pixel is at coordinates (x,y) with super sampling 
+	 * (after doing the ray tracing) and writes them to the tile buffer (the top left pixel of the tile is written to (0,0)).
+	 * Tiles can be rendered by several threads at the same time (after the scene is compiled).
+	 * When the rendering thread is interrupted the tile is left incomplete (after the current row).
+	 *
+	 * @param x
+	 * @param y
+	 * @param width The width of the tile (in pixels).
+	 * @param height The height of the tile (in pixels).
+	 * @param tile The frame buffer which receives the colors of the tile.
+	 */
+	public void getTileWithSuperSample(int x, int y, int width, int height, FrameBuffer tile){
+		for (int i=0; i<height; i++){
+			if (Thread.currentThread().isInterrupted()){
+				return;
+			}
+			getColorsWithSuperSample(x, y+i, width, tile, 0, i);
+		}
+	}
+
+	/**
+	 * Computes the colors for a row of pixels starting at coordinates (x,y) with super sampling (after doing the ray tracing)
+	 * and writes them to the frame buffer starting at coordinates (bufferX,bufferY).
+	 *
+	 * @param x
+	 * @param y
+	 * @param count The number of pixels in the row.
+	 * @param buffer The frame buffer which receives the colors of the pixels.
+	 * @param bufferX
+	 * @param bufferY
+	 */
+	private void getColorsWithSuperSample(int x, int y, int count, FrameBuffer buffer, int bufferX, int bufferY){
+		IColor color = new Color();
+		if ((costBuffer!=null)&&(RenderTelemetry.ENABLED)){
+			CostBuffer costs = costBuffer;
+			long[] before = new long[RenderTelemetry.getCounterCount()];
+			long[] after = new long[RenderTelemetry.getCounterCount()];
+			for (int i=0; i<count; i++){
+				RenderTelemetry.getThreadCounts(before);
+				RenderTelemetry.takeThreadDepth();
+				long start = System.nanoTime();
+				getColorWithSuperSample(x+i, y, color);
+				long nanos = System.nanoTime()-start;
+				RenderTelemetry.getThreadCounts(after);
+				costs.record(x+i, y, before, after, RenderTelemetry.takeThreadDepth(), nanos);
+				buffer.setColor(bufferX+i, bufferY, color);
+			}
+			return;
+		}
+		if ((packetTracer==null)||(ObjectProfiler.ENABLED)){
+			for (int i=0; i<count; i++){
+				getColorWithSuperSample(x+i, y, color);
+				buffer.setColor(bufferX+i, bufferY, color);
+			}
+			return;
+		}
+		int samplesPerPixel = getSuperSampleWidth()*getSuperSampleWidth();
+		int samples = count*samplesPerPixel;
+		double divider = 1d / (double)getSuperSampleWidth();
+		double[] red = new double[count];
+		double[] green = new double[count];
+		double[] blue = new double[count];
+		RayPacket packet = new RayPacket(packetTracer.getPacketWidth());
+		int[] packetPixels = new int[RayPacket.MAX_WIDTH];
+		double[] packetX = new double[RayPacket.MAX_WIDTH];
+		double[] packetY = new double[RayPacket.MAX_WIDTH];
+		int[] packetSamples = new int[RayPacket.MAX_WIDTH];
+		for (int s=0; s<samples; s++){
+			int pixel = s / samplesPerPixel;
+			int sample = s % samplesPerPixel;
+			double ix = (double)(x+pixel) + ((double)(sample % getSuperSampleWidth()))*divider;
+			double iy = (double)y + ((double)(sample / getSuperSampleWidth()))*divider;
+			int lane = packet.add(constructRayThroughPixel(ix,iy));
+			packetPixels[lane] = pixel;
+			packetX[lane] = ix;
+			packetY[lane] = iy;
+			packetSamples[lane] = sample;
+			if ((packet.isFull())||(s==samples-1)){
+				packetTracer.trace(packet);
+				if (RenderTelemetry.ENABLED){
+					RenderTelemetry.count(RenderTelemetry.PRIMARY_RAYS, packet.getSize());
+				}
+				for (int l=0; l<packet.getSize(); l++){
+					int index = packet.getObjectIndex(l);
+					if (index>=0){
+						Intersection hit = HitRecords.get(0);
+						hit.setIntersectionHit(packet.getDistance(l), packetTracer.getObject(index), packet.getPrimitive(l), packet.getRay(l));
+						hit.getIntersectionObject().getSurface().getColor(hit,this,0,color);
+						if ((primaryHits!=null)||(gBuffer!=null)){
+							recordPrimaryHit(x+packetPixels[l], y, packetSamples[l], hit);
+						}
+					}else{
+						getBackgroundColor(packetX[l],packetY[l],color);
+						if ((primaryHits!=null)||(gBuffer!=null)){
+							recordPrimaryHit(x+packetPixels[l], y, packetSamples[l], null);
+						}
+					}
+					red[packetPixels[l]] += color.getRed();
+					green[packetPixels[l]] += color.getGreen();
+					blue[packetPixels[l]] += color.getBlue();
+				}
+				packet.clear();
+			}
+		}
+		for (int i=0; i<count; i++){
+			buffer.setColor(bufferX+i, bufferY, red[i]/samplesPerPixel, green[i]/samplesPerPixel, blue[i]/samplesPerPixel);
+		}
+	}
+
 	/**
 	 * Returns the color for pixel at coordinates (x,y) with super sampling (after doing the the ray tracing).
 	 * 
@@ -251,8 +749,24 @@ public class Scene extends SceneObject {
 	 * @return The color for pixel at coordinates (x,y) (after doing the the ray tracing).
 	 */
 	public IColor getColorWithSuperSample(double x, double y) {
-		// creating an array of colors for super sampling
-		IColor[][] superSampleColors = new Color[getSuperSampleWidth()][getSuperSampleWidth()];
+		IColor color = new Color();
+		getColorWithSuperSample(x, y, color);
+		return color;
+	}
+
+	/**
+	 * Computes the color for pixel at coordinates (x,y) with super sampling (after doing the the ray tracing) into the given color.
+	 * The samples are averaged as they are traced, so no colors are allocated for them.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param result The color which receives the color of the pixel.
+	 */
+	public void getColorWithSuperSample(double x, double y, IColor result) {
+		double red = 0;
+		double green = 0;
+		double blue = 0;
+		double samples = getSuperSampleWidth()*getSuperSampleWidth();
 		double divider = 1d / (double)getSuperSampleWidth();
 		double ix,iy;
 		for (int i=0; i<getSuperSampleWidth(); i++){
@@ -261,19 +775,123 @@ public class Scene extends SceneObject {
 				iy = (double)y + ((double)i)*divider;
 				
 				IRay ray = constructRayThroughPixel(ix,iy);
+				if (RenderTelemetry.ENABLED){
+					RenderTelemetry.count(RenderTelemetry.PRIMARY_RAYS, 1);
+				}
 				
-				Intersection hit = findIntersection(ray,null);
+				Intersection hit = findIntersection(ray,null,0);
 
 				if (hit.isIntersects()){
-					superSampleColors[i][j] = hit.getIntersectionObject().getSurface().getColor(hit,this,0);
+					hit.getIntersectionObject().getSurface().getColor(hit,this,0,result);
 				}else{
-					superSampleColors[i][j] =  getBackgroundColor(x,y);
+					getBackgroundColor(ix,iy,result);
 				}
+				if ((primaryHits!=null)||(gBuffer!=null)){
+					recordPrimaryHit((int)x, (int)y, i*getSuperSampleWidth()+j, (hit.isIntersects()) ? hit : null);
+				}
+				red += result.getRed();
+				green += result.getGreen();
+				blue += result.getBlue();
 			}
 		}
-		return Color.getAverageColor(superSampleColors);
+		result.setColor(red/samples, green/samples, blue/samples);
 	}
 	
+	/**
+	 * Records a sample of a pixel in the primary hit buffer and in the G-buffer (the ones which are set).
+	 *
+	 * @param x
+	 * @param y
+	 * @param sample The index of the sample in the pixel (row by row).
+	 * @param hit The intersection of the sample (or null if it missed).
+	 */
+	private void recordPrimaryHit(int x, int y, int sample, Intersection hit){
+		if (hit==null){
+			if (primaryHits!=null){
+				primaryHits.record(x, y, sample==0, PrimaryHitBuffer.MISS, null, false);
+			}
+			if (gBuffer!=null){
+				gBuffer.record(x, y, sample, GBuffer.MISS, 0, 0);
+			}
+			return;
+		}
+		ISceneObject obj = hit.getIntersectionObject();
+		int index = (compiledScene!=null) ? compiledScene.getIndex(obj) : objects.indexOf(obj);
+		if (primaryHits!=null){
+			primaryHits.record(x, y, sample==0, index, hit, obj.getSurface().getReflectance()!=0);
+		}
+		if (gBuffer!=null){
+			gBuffer.record(x, y, sample, index, hit.getPrimitive(), hit.getDistance());
+		}
+	}
+
+	/**
+	 * Returns the index of the object which the primary ray through the given point of the view plane hits
+	 * (without computing its color).
+	 *
+	 * @param x
+	 * @param y
+	 * @return The index of the object (in the object list), or PrimaryHitBuffer.MISS if the ray hits no object.
+	 */
+	public int findPrimaryObject(double x, double y){
+		Intersection hit = findIntersection(constructRayThroughPixel(x,y),null,0);
+		if (!hit.isIntersects()){
+			return PrimaryHitBuffer.MISS;
+		}
+		ISceneObject obj = hit.getIntersectionObject();
+		return (compiledScene!=null) ? compiledScene.getIndex(obj) : objects.indexOf(obj);
+	}
+
+	/**
+	 * Returns the rectangle of the view plane (in the pixel coordinates of constructRayThroughPixel) which holds the
+	 * projection of the given bounds, so the primary rays of the points outside of it miss the bounds.
+	 *
+	 * @param bounds The bounds (min x,y,z and max x,y,z).
+	 * @return {min x, min y, max x, max y}, or null if a corner of the bounds is not in front of the camera.
+	 */
+	public double[] getScreenBounds(double[] bounds){
+		IVector3D up = getCamera().getUpDirection();
+		IVector3D right = getCamera().getRightDirection();
+		IPoint3D p0 = getCamera().getEyePosition();
+		if ((viewPlaneP1==null)||(up==null)||(right==null)){
+			return null;
+		}
+		double halfWidth = getCamera().getScreenWidth()/2;
+		double halfHeight = getCamera().getScreenHeight()/2;
+		IVector3D normal = right.crossProduct(up);
+		IVector3D toPlane = new Vector3D(p0, viewPlaneP1);
+		double planeDistance = toPlane.dotProduct(normal);
+		double rr = right.dotProduct(right);
+		double ru = right.dotProduct(up);
+		double uu = up.dotProduct(up);
+		double det = ru*ru - rr*uu;
+		if ((planeDistance==0)||(det==0)){
+			return null;
+		}
+		double[] rect = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		for (int corner=0; corner<8; corner++){
+			IVector3D toCorner = new Vector3D(bounds[(corner&1)*3]-p0.getX(), bounds[((corner>>1)&1)*3+1]-p0.getY(),
+					bounds[((corner>>2)&1)*3+2]-p0.getZ());
+			double s = planeDistance / toCorner.dotProduct(normal);
+			if ((s<=0)||(Double.isInfinite(s))||(Double.isNaN(s))){
+				return null;
+			}
+			// the point where the ray to the corner crosses the view plane is viewPlaneP1 + a*right - b*up
+			IVector3D w = toCorner.multiplyByScalar(s).subtractVector(toPlane);
+			double wr = w.dotProduct(right);
+			double wu = w.dotProduct(up);
+			double a = (ru*wu - uu*wr) / det;
+			double b = (rr*wu - ru*wr) / det;
+			double x = (a*getWidth()/halfWidth - 1)/2;
+			double y = (b*getHeight()/halfHeight - 1)/2;
+			rect[0] = Math.min(rect[0], x);
+			rect[1] = Math.min(rect[1], y);
+			rect[2] = Math.max(rect[2], x);
+			rect[3] = Math.max(rect[3], y);
+		}
+		return rect;
+	}
+
 	/**
 	 * Returns the color for pixel at coordinates (x,y) (after doing the the ray tracing).
 	 * 
@@ -285,7 +903,7 @@ public class Scene extends SceneObject {
 
 		IRay ray = constructRayThroughPixel(x,y);
 		
-		Intersection hit = findIntersection(ray,null);
+		Intersection hit = findIntersection(ray,null,0);
 
 		if (hit.isIntersects()){
 			return new Color(0,0,0);
@@ -302,19 +920,20 @@ public class Scene extends SceneObject {
 	 * @return A ray which originates at the camera position and goes through pixel (x,y) at the view plane.
 	 */
 	private IRay constructRayThroughPixel(double x, double y) {
-		IVector3D up = getCamera().getUpDirection();
-		IVector3D right = getCamera().getRightDirection();
+		IPoint3D up = getCamera().getUpDirection().getEndPoint();
+		IPoint3D right = getCamera().getRightDirection().getEndPoint();
 		
 		double halfWidth = getCamera().getScreenWidth()/2;
 		double halfHeight = getCamera().getScreenHeight()/2;
 		double normalizedX = (2*x+1)/getWidth() * halfWidth;
 		double normalizedY = (2*y+1)/getHeight() * halfHeight;
 		
+		// the point on the view plane is viewPlaneP1 + right*normalizedX - up*normalizedY (computed without temporary vectors)
 		IPoint3D p0 = getCamera().getEyePosition();
-		IPoint3D p = viewPlaneP1.
-				movePointByVector(right.multiplyByScalar(normalizedX)).
-				movePointByVector(up.multiplyByScalar(-1*normalizedY));
-		return new Ray(p0, new Vector3D(p0, p).normalize());
+		double px = (viewPlaneP1.getX() + right.getX()*normalizedX) + up.getX()*(-1*normalizedY);
+		double py = (viewPlaneP1.getY() + right.getY()*normalizedX) + up.getY()*(-1*normalizedY);
+		double pz = (viewPlaneP1.getZ() + right.getZ()*normalizedX) + up.getZ()*(-1*normalizedY);
+		return new Ray(p0, new Vector3D(px-p0.getX(), py-p0.getY(), pz-p0.getZ()).normalize());
 	}
 	
 	/**
@@ -325,25 +944,66 @@ public class Scene extends SceneObject {
 	 * @return The intersection information of the closest object which intersects with the ray.
 	 */
 	public Intersection findIntersection(IRay ray, ISceneObject originatingObject) {
-		Intersection hit = null;
-		double minDistance = Double.MAX_VALUE;
-		Intersection bestHit = null;
+		Intersection hit = new Intersection();
+		findIntersection(ray, originatingObject, hit);
+		return hit;
+	}
+
+	/**
+	 * Finds the object which intersects with the ray and is closest to the camera.
+	 * The returned intersection belongs to the current thread and is reused by the next ray of the same depth,
+	 * so it must not be kept after the color of its hit point was computed.
+	 * 
+	 * @param ray
+	 * @param originatingObject
+	 * @param depth The depth of the ray in the ray tree (0 for primary rays, 1 for their reflections and so on).
+	 * @return The intersection information of the closest object which intersects with the ray.
+	 */
+	public Intersection findIntersection(IRay ray, ISceneObject originatingObject, int depth) {
+		Intersection hit = HitRecords.get(depth);
+		findIntersection(ray, originatingObject, hit);
+		return hit;
+	}
+
+	/**
+	 * Finds the object which intersects with the ray and is closest to the camera, and records it in the given intersection.
+	 * 
+	 * @param ray
+	 * @param originatingObject
+	 * @param hit The intersection which receives the closest intersection (or a 'miss').
+	 */
+	private void findIntersection(IRay ray, ISceneObject originatingObject, Intersection hit) {
+		if (compiledScene!=null){
+			compiledScene.findIntersection(ray, compiledScene.getIndex(originatingObject), hit);
+			return;
+		}
+		hit.reset();
 		for (ISceneObject obj:objects){
 			if (obj.equals(originatingObject)){
 				continue;
 			}
-			hit = obj.isIntersects(ray);
-			if (hit!=null){
-				if (hit.getDistance()<minDistance){
-					minDistance = hit.getDistance();
-					bestHit = hit;
-				}
-			}
+			obj.intersect(ray, hit);
 		}
-		if (bestHit==null){
-			bestHit = new Intersection();
+	}
+
+	/**
+	 * Returns a ray which leaves the surface at the given intersection in the given direction (i.e a shadow ray or a 
+	 * reflection ray).
+	 * In 'float' precision the origin of the ray is moved off the surface, to the side the ray leaves to.
+	 * 
+	 * @param hit The intersection the ray starts from.
+	 * @param direction The direction of the ray.
+	 * @return A ray which leaves the surface at the given intersection in the given direction.
+	 */
+	public IRay createSecondaryRay(Intersection hit, IVector3D direction){
+		if (!floatPrecision){
+			return new Ray(hit.getIntersectionPoint(), direction);
+		}
+		IVector3D normal = hit.getNormal();
+		if (normal.dotProduct(direction)<0){
+			normal = normal.multiplyByScalar(-1);
 		}
-		return bestHit;
+		return new Ray(GeometryBuffer.offsetRayOrigin(hit.getIntersectionPoint(), normal), direction);
 	}
 
 	/**
@@ -369,6 +1029,24 @@ public class Scene extends SceneObject {
 			if (name.equals("super-samp-width")){
 				setSuperSampleWidth(Integer.parseInt(args[0]));
 			}
+			if (name.equals("packet-width")){
+				setPacketWidth(Integer.parseInt(args[0]));
+			}
+			if (name.equals("precision")){
+				setPrecision(args[0]);
+			}
+			if (name.equals("texture-filter")){
+				setTextureFilter(args[0]);
+			}
+			if (name.equals("bvh-rebuild-threshold")){
+				setRebuildThreshold(Double.parseDouble(args[0]));
+			}
+			if (name.equals("g-buffer")){
+				setGBufferEnabled(Boolean.parseBoolean(args[0]));
+			}
+			if (name.equals("max-reflection-depth")){
+				setMaxReflectionDepth(Integer.parseInt(args[0]));
+			}
 		}catch (ArrayIndexOutOfBoundsException e){
 			throw new NumberFormatException();
 		}
@@ -425,14 +1103,19 @@ public class Scene extends SceneObject {
 	 */
 	public double getSL(IRay ray, ILight light, Intersection hitPoint){
 		double distanceFromLight = light.getDistanceFromHitPointToLight(ray.getP0());
+		Intersection blocker = HitRecords.getShadowRecord();
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.count(RenderTelemetry.SHADOW_RAYS, 1);
+		}
+		if (compiledScene!=null){
+			return compiledScene.isOccluded(ray, compiledScene.getIndex(hitPoint.getIntersectionObject()), distanceFromLight, blocker) ? 0 : 1;
+		}
 		
 		for (ISceneObject obj:getObjectList()){
 			if (!obj.equals(hitPoint.getIntersectionObject())){
-				Intersection hit = obj.isIntersects(ray);
-				if (hit!=null){
-					if (hit.isIntersects()&&(hit.getDistance()<distanceFromLight)){
-							return 0;
-					}
+				blocker.reset();
+				if ((obj.intersect(ray, blocker))&&(blocker.getDistance()<distanceFromLight)){
+					return 0;
 				}
 			}
 		}
@@ -0,0 +1,485 @@
+package scene;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+
+import application.Parser;
+import lighting.ILight;
+import lighting.PointLight;
+import vectors.IPoint3D;
+
+/**
+ * This class compares two versions of a scene file, to find the pixels of a rendered image which have to be rendered
+ * again after the scene was edited (see PrimaryHitBuffer).
+ * The files are compared block by block (an object with its parameters). An edit of an object which changes only its
+ * material (mtl-*, reflectance, checkers-*, texture or the mesh shader) changes only the pixels which see the object.
+ * An edit which moves (or reshapes) an object also changes the pixels which see it after the edit, and the pixels
+ * whose shadow rays may pass through it before or after the edit.
+ * Pixels which see a reflective surface (or several objects) are always rendered again, since their reflections may
+ * show any object.
+ * Any other edit (the scene, the camera, the lights, added, removed or reordered objects, or objects which have no
+ * bounds) requires rendering the whole image.
+ *
+ */
+public class SceneDiff {
+	private static final Set<String> MATERIAL_PARAMETERS = new HashSet<String>(Arrays.asList(
+			"mtl-type", "mtl-diffuse", "mtl-specular", "mtl-ambient", "mtl-emission", "mtl-shininess",
+			"reflectance", "checkers-size", "checkers-diffuse1", "checkers-diffuse2", "texture", "shader"));
+	private static final Set<String> VISIBILITY_PARAMETERS = new HashSet<String>(Arrays.asList(
+			"super-samp-width", "precision"));
+	private static final Set<String> OBJECTS = new HashSet<String>(Arrays.asList(
+			"rectangle", "sphere", "cylinder", "disc", "box", "triangle", "mesh"));
+
+	private boolean fullRender;
+	private boolean relightable;
+	private Set<Integer> editedObjects;
+	private Set<Integer> movedObjects;
+
+	/**
+	 * A block of a scene file: the name of an object and its parameters (in the order of the file).
+	 */
+	private static class Block {
+		private final String name;
+		private final List<String> parameters;
+		private final Map<String,String> values;
+
+		/**
+		 * Constructs an empty block.
+		 *
+		 * @param name The name of the object.
+		 */
+		private Block(String name){
+			this.name = name;
+			parameters = new ArrayList<String>();
+			values = new HashMap<String,String>();
+		}
+	}
+
+	/**
+	 * A parser which reads the blocks of a scene file (without creating the objects).
+	 */
+	private static class BlockReader extends Parser {
+		private final List<Block> blocks = new ArrayList<Block>();
+
+		@Override
+		public void startFile(){
+		}
+
+		@Override
+		public void endFile(){
+		}
+
+		@Override
+		public boolean addObject(String name){
+			blocks.add(new Block(name));
+			return true;
+		}
+
+		@Override
+		public boolean setParameter(String name, String[] args){
+			Block block = blocks.get(blocks.size()-1);
+			StringBuilder value = new StringBuilder();
+			for (String arg:args){
+				value.append(arg).append(' ');
+			}
+			block.parameters.add(name+"="+value);
+			block.values.put(name, value.toString());
+			return true;
+		}
+
+		@Override
+		public void reportError(String err){
+		}
+	}
+
+	/**
+	 * Compares two versions of a scene file.
+	 *
+	 * @param oldText The scene file which was rendered.
+	 * @param newText The edited scene file.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	public SceneDiff(String oldText, String newText) throws IOException, Parser.ParseException {
+		editedObjects = new TreeSet<Integer>();
+		movedObjects = new TreeSet<Integer>();
+		List<Block> oldBlocks = read(oldText);
+		List<Block> newBlocks = read(newText);
+		relightable = isRelightable(oldBlocks, newBlocks);
+		if (oldBlocks.size()!=newBlocks.size()){
+			fullRender = true;
+			return;
+		}
+		int object = 0;
+		for (int i=0; i<oldBlocks.size(); i++){
+			Block oldBlock = oldBlocks.get(i);
+			Block newBlock = newBlocks.get(i);
+			if (!oldBlock.name.equals(newBlock.name)){
+				fullRender = true;
+				return;
+			}
+			boolean isObject = OBJECTS.contains(oldBlock.name);
+			if (!oldBlock.parameters.equals(newBlock.parameters)){
+				if (!isObject){
+					fullRender = true;
+					return;
+				}
+				editedObjects.add(object);
+				if (!isMaterialEdit(oldBlock, newBlock)){
+					movedObjects.add(object);
+				}
+			}
+			if (isObject){
+				object++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the blocks of a scene file.
+	 *
+	 * @param text
+	 * @return The blocks of the scene file.
+	 * @throws IOException
+	 * @throws Parser.ParseException
+	 */
+	private static List<Block> read(String text) throws IOException, Parser.ParseException {
+		BlockReader reader = new BlockReader();
+		reader.parse(new StringReader(text));
+		return reader.blocks;
+	}
+
+	/**
+	 * Returns 'true' if the edit does not change what the primary rays hit: the blocks which are not lights
+	 * are the same, except for the materials of objects and the options of the scene which do not change the primary
+	 * rays (lights may be edited, added or removed).
+	 *
+	 * @param oldBlocks
+	 * @param newBlocks
+	 * @return 'true' if the edit does not change what the primary rays hit.
+	 */
+	private static boolean isRelightable(List<Block> oldBlocks, List<Block> newBlocks){
+		List<Block> oldView = getViewBlocks(oldBlocks);
+		List<Block> newView = getViewBlocks(newBlocks);
+		if (oldView.size()!=newView.size()){
+			return false;
+		}
+		for (int i=0; i<oldView.size(); i++){
+			Block oldBlock = oldView.get(i);
+			Block newBlock = newView.get(i);
+			if (!oldBlock.name.equals(newBlock.name)){
+				return false;
+			}
+			if (oldBlock.parameters.equals(newBlock.parameters)){
+				continue;
+			}
+			if (oldBlock.name.equals("scene")){
+				for (String name:VISIBILITY_PARAMETERS){
+					if (!String.valueOf(oldBlock.values.get(name)).equals(String.valueOf(newBlock.values.get(name)))){
+						return false;
+					}
+				}
+			}else if (!(OBJECTS.contains(oldBlock.name)&&isMaterialEdit(oldBlock, newBlock))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the blocks which are not lights.
+	 *
+	 * @param blocks
+	 * @return The blocks which are not lights.
+	 */
+	private static List<Block> getViewBlocks(List<Block> blocks){
+		List<Block> view = new ArrayList<Block>();
+		for (Block block:blocks){
+			if (!block.name.startsWith("light-")){
+				view.add(block);
+			}
+		}
+		return view;
+	}
+
+	/**
+	 * Returns 'true' if the two versions of an object differ only in the values of material parameters,
+	 * otherwise 'false' (parameters which were reordered count as a change of the geometry, since a mesh applies
+	 * its parameters in order).
+	 *
+	 * @param oldBlock
+	 * @param newBlock
+	 * @return 'true' if the two versions of an object differ only in the values of material parameters.
+	 */
+	private static boolean isMaterialEdit(Block oldBlock, Block newBlock){
+		Set<String> names = new HashSet<String>(oldBlock.values.keySet());
+		names.addAll(newBlock.values.keySet());
+		boolean changed = false;
+		for (String name:names){
+			if (!String.valueOf(oldBlock.values.get(name)).equals(String.valueOf(newBlock.values.get(name)))){
+				if (!MATERIAL_PARAMETERS.contains(name)){
+					return false;
+				}
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns 'true' if the whole image has to be rendered again, otherwise 'false'.
+	 *
+	 * @return 'true' if the whole image has to be rendered again, otherwise 'false'.
+	 */
+	public boolean isFullRender(){
+		return fullRender;
+	}
+
+	/**
+	 * Returns 'true' if the edit does not change what the primary rays hit (i.e only lights, materials or the
+	 * ambient light were edited), so the image can be shaded again from a G-buffer (see Scene.relightColors),
+	 * otherwise 'false'.
+	 *
+	 * @return 'true' if the edit does not change what the primary rays hit.
+	 */
+	public boolean isRelightable(){
+		return relightable;
+	}
+
+	/**
+	 * Returns the indices of the objects which were edited (in the object list of the scene).
+	 *
+	 * @return The indices of the objects which were edited.
+	 */
+	public Set<Integer> getEditedObjects(){
+		return editedObjects;
+	}
+
+	/**
+	 * Returns the indices of the objects whose geometry was edited (in the object list of the scene).
+	 *
+	 * @return The indices of the objects whose geometry was edited.
+	 */
+	public Set<Integer> getMovedObjects(){
+		return movedObjects;
+	}
+
+	/**
+	 * Returns the pixels which have to be rendered again.
+	 *
+	 * @param hits What the primary rays of the pixels hit in the rendered (old) scene.
+	 * @param oldScene The rendered scene (compiled).
+	 * @param newScene The edited scene (compiled, with its view plane initialized).
+	 * @return A flag for every pixel (row by row), or null if the whole image has to be rendered again.
+	 */
+	public boolean[] getAffectedPixels(PrimaryHitBuffer hits, Scene oldScene, Scene newScene){
+		if (fullRender){
+			return null;
+		}
+		int width = hits.getWidth();
+		int height = hits.getHeight();
+		boolean[] affected = new boolean[width*height];
+		if (editedObjects.isEmpty()){
+			return affected;
+		}
+		for (int y=0; y<height; y++){
+			for (int x=0; x<width; x++){
+				int object = hits.getObject(x, y);
+				affected[y*width+x] = (object==PrimaryHitBuffer.MIXED)||(editedObjects.contains(object))||(hits.isReflective(x, y));
+			}
+		}
+		if (movedObjects.isEmpty()){
+			return affected;
+		}
+		List<double[]> objectBounds = new ArrayList<double[]>();
+		for (int object:movedObjects){
+			double[] before = oldScene.getCompiledScene().getObjectBounds(object);
+			double[] after = newScene.getCompiledScene().getObjectBounds(object);
+			if ((before==null)||(after==null)){
+				return null;
+			}
+			objectBounds.add(pad(before));
+			objectBounds.add(pad(after));
+		}
+		double[] lightPositions = getLightPositions(newScene);
+		if (lightPositions==null){
+			return null;
+		}
+		int[] rect = getScreenRectangle(newScene, objectBounds, width, height);
+		int samples = newScene.getSuperSampleWidth();
+		double divider = 1d / (double)samples;
+		for (int y=0; y<height; y++){
+			for (int x=0; x<width; x++){
+				if (affected[y*width+x]){
+					continue;
+				}
+				affected[y*width+x] = isShadowAffected(hits.getHitBounds(x, y), lightPositions, objectBounds)||
+						((x>=rect[0])&&(y>=rect[1])&&(x<=rect[2])&&(y<=rect[3])&&(isVisibilityAffected(newScene, x, y, samples, divider)));
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * Returns the pixels whose samples may see the given bounds: the rectangle which holds the projections of the
+	 * bounds to the view plane (grown by a pixel), or the whole image if some bounds are not in front of the camera.
+	 *
+	 * @param scene
+	 * @param objectBounds The bounds of the moved objects (before and after the edit).
+	 * @param width
+	 * @param height
+	 * @return {min x, min y, max x, max y} of the pixels (inclusive).
+	 */
+	private static int[] getScreenRectangle(Scene scene, List<double[]> objectBounds, int width, int height){
+		int[] rect = {width, height, -1, -1};
+		for (double[] bounds:objectBounds){
+			double[] screen = scene.getScreenBounds(bounds);
+			if (screen==null){
+				return new int[] {0, 0, width-1, height-1};
+			}
+			// the samples of pixel x lie in [x, x+1)
+			rect[0] = Math.min(rect[0], (int)Math.max(-1, Math.floor(screen[0]))-1);
+			rect[1] = Math.min(rect[1], (int)Math.max(-1, Math.floor(screen[1]))-1);
+			rect[2] = Math.max(rect[2], (int)Math.min(width, Math.ceil(screen[2]))+1);
+			rect[3] = Math.max(rect[3], (int)Math.min(height, Math.ceil(screen[3]))+1);
+		}
+		return rect;
+	}
+
+	/**
+	 * Returns 'true' if a shadow ray from a hit point of the pixel to a light may pass through one of the given
+	 * bounds, otherwise 'false'.
+	 * A shadow ray from a point in the hit bounds to a light lies within the segment from the center of the hit bounds
+	 * to the light grown by the half extents of the hit bounds, so the segment is tested against the object bounds
+	 * grown by the half extents.
+	 *
+	 * @param hitBounds The bounds of the hit points of the pixel (or null if it hit no object).
+	 * @param lightPositions The positions of the lights (x,y,z for every light).
+	 * @param objectBounds The bounds of the moved objects (before and after the edit).
+	 * @return 'true' if a shadow ray of the pixel may pass through one of the given bounds.
+	 */
+	private static boolean isShadowAffected(double[] hitBounds, double[] lightPositions, List<double[]> objectBounds){
+		if (hitBounds==null){
+			return false;
+		}
+		double[] center = new double[3];
+		double[] extent = new double[3];
+		for (int a=0; a<3; a++){
+			center[a] = (hitBounds[a]+hitBounds[a+3])/2;
+			extent[a] = (hitBounds[a+3]-hitBounds[a])/2;
+		}
+		for (int l=0; l<lightPositions.length; l+=3){
+			for (double[] bounds:objectBounds){
+				if (isSegmentOverlapping(center, lightPositions, l, bounds, extent)){
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns 'true' if the segment from p to a light overlaps the given bounds grown by the given extents,
+	 * otherwise 'false'.
+	 *
+	 * @param p
+	 * @param lightPositions
+	 * @param l The index of the position of the light.
+	 * @param bounds
+	 * @param extent
+	 * @return 'true' if the segment overlaps the grown bounds.
+	 */
+	private static boolean isSegmentOverlapping(double[] p, double[] lightPositions, int l, double[] bounds, double[] extent){
+		double tmin = 0;
+		double tmax = 1;
+		for (int a=0; a<3; a++){
+			double min = bounds[a]-extent[a];
+			double max = bounds[a+3]+extent[a];
+			double d = lightPositions[l+a]-p[a];
+			if (d==0){
+				if ((p[a]<min)||(p[a]>max)){
+					return false;
+				}
+				continue;
+			}
+			double t0 = (min-p[a])/d;
+			double t1 = (max-p[a])/d;
+			tmin = Math.max(tmin, Math.min(t0, t1));
+			tmax = Math.min(tmax, Math.max(t0, t1));
+			if (tmin>tmax){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns 'true' if a sample of the pixel hits a moved object in the edited scene, otherwise 'false'.
+	 *
+	 * @param newScene
+	 * @param x
+	 * @param y
+	 * @param samples The super sample width of the scene.
+	 * @param divider
+	 * @return 'true' if a sample of the pixel hits a moved object in the edited scene.
+	 */
+	private boolean isVisibilityAffected(Scene newScene, int x, int y, int samples, double divider){
+		for (int i=0; i<samples; i++){
+			for (int j=0; j<samples; j++){
+				int object = newScene.findPrimaryObject((double)x + ((double)j)*divider, (double)y + ((double)i)*divider);
+				if (movedObjects.contains(object)){
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the positions of the lights (the inner lights of area lights).
+	 *
+	 * @param scene
+	 * @return The positions of the lights (x,y,z for every light), or null if a light has no position
+	 * (i.e a directional light).
+	 */
+	private static double[] getLightPositions(Scene scene){
+		List<IPoint3D> positions = new ArrayList<IPoint3D>();
+		for (ILight light:scene.getLightsList()){
+			Iterator<ILight> iter = light.getIterator();
+			if (iter==null){
+				continue;
+			}
+			while (iter.hasNext()){
+				ILight innerLight = iter.next();
+				if (!(innerLight instanceof PointLight)){
+					return null;
+				}
+				positions.add(((PointLight)innerLight).getPosition());
+			}
+		}
+		double[] arr = new double[3*positions.size()];
+		for (int i=0; i<positions.size(); i++){
+			arr[3*i] = positions.get(i).getX();
+			arr[3*i+1] = positions.get(i).getY();
+			arr[3*i+2] = positions.get(i).getZ();
+		}
+		return arr;
+	}
+
+	/**
+	 * Returns the given bounds grown by a small margin (shadow rays start slightly off the surface).
+	 *
+	 * @param bounds
+	 * @return The grown bounds.
+	 */
+	private static double[] pad(double[] bounds){
+		double[] padded = new double[6];
+		for (int a=0; a<3; a++){
+			double margin = 1e-5*Math.max(1, Math.max(Math.abs(bounds[a]), Math.abs(bounds[a+3])));
+			padded[a] = bounds[a] - margin;
+			padded[a+3] = bounds[a+3] + margin;
+		}
+		return padded;
+	}
+}
@@ -0,0 +1,169 @@
+package scene;
+
+import application.Parser;
+import scene.KeyframeSequence.CameraKey;
+import vectors.*;
+
+/**
+ * This class represents the parser of a sequence file, which holds the keyframes of an animation of a scene.
+ * The file has the same syntax as the scene file:
+ *
+ * sequence:
+ * frames = 120
+ * up-direction = 0 1 0
+ *
+ * camera-key:
+ * frame = 0
+ * eye = 0 1.5 4
+ * look-at = 0 0.5 0   (or direction = x y z)
+ *
+ * light-key:
+ * light = 0           (the index of the light in the scene file)
+ * frame = 60
+ * pos = 2 3 2
+ *
+ * object-key:
+ * object = 3          (the index of a sphere or a mesh in the scene file, without the lights)
+ * frame = 60
+ * pos = 0 1 0         (the center of a sphere, or the position of a mesh)
+ *
+ */
+public class SequenceParser extends Parser {
+
+	private KeyframeSequence sequence;
+	private String curObj;
+	private int frame;
+	private int light;
+	private int object;
+	private IPoint3D eye;
+	private IPoint3D lookAt;
+	private IVector3D direction;
+	private IPoint3D position;
+
+	/**
+	 * Constructs a sequence file parser.
+	 *
+	 * @param sequence The sequence which receives the keyframes.
+	 */
+	public SequenceParser(KeyframeSequence sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Returns the sequence.
+	 *
+	 * @return The sequence.
+	 */
+	public KeyframeSequence getSequence(){
+		return sequence;
+	}
+
+	/**
+	 * Starts a new object of the sequence file.
+	 *
+	 * @param name The name of the new object
+	 * @return 'true' if the object is recognized
+	 * @throws ParseException
+	 */
+	@Override
+	public boolean addObject(String name) throws ParseException
+	{
+		System.out.println("OBJECT: " + name);
+		frame = -1;
+		light = -1;
+		object = -1;
+		eye = null;
+		lookAt = null;
+		direction = null;
+		position = null;
+		if (name.equals("sequence")||name.equals("camera-key")||name.equals("light-key")||name.equals("object-key")){
+			curObj = name;
+			return true;
+		}
+		curObj = null;
+		return false;
+	}
+
+	/**
+	 * Sets the parameters for the current object.
+	 *
+	 * @param name The name of the parameter
+	 * @param args The values for the parameter (given as String[])
+	 * @return 'true' if the parameter is recognized
+	 * @throw ParseException
+	 */
+	@Override
+	public boolean setParameter(String name, String[] args) throws ParseException
+	{
+		if (curObj==null){
+			return false;
+		}
+		try{
+			if (curObj.equals("sequence")){
+				if (name.equals("frames")){
+					sequence.setFrameCount(Integer.parseInt(args[0]));
+				}else if (name.equals("up-direction")){
+					sequence.setUpDirection(new Vector3D(Double.parseDouble(args[0]),Double.parseDouble(args[1]),Double.parseDouble(args[2])));
+				}else{
+					return false;
+				}
+			}else if (name.equals("frame")){
+				frame = Integer.parseInt(args[0]);
+			}else if (name.equals("light")&&curObj.equals("light-key")){
+				light = Integer.parseInt(args[0]);
+			}else if (name.equals("object")&&curObj.equals("object-key")){
+				object = Integer.parseInt(args[0]);
+			}else if (name.equals("pos")&&(curObj.equals("light-key")||curObj.equals("object-key"))){
+				position = new Point3D(Double.parseDouble(args[0]),Double.parseDouble(args[1]),Double.parseDouble(args[2]));
+			}else if (name.equals("eye")&&curObj.equals("camera-key")){
+				eye = new Point3D(Double.parseDouble(args[0]),Double.parseDouble(args[1]),Double.parseDouble(args[2]));
+			}else if (name.equals("look-at")&&curObj.equals("camera-key")){
+				lookAt = new Point3D(Double.parseDouble(args[0]),Double.parseDouble(args[1]),Double.parseDouble(args[2]));
+			}else if (name.equals("direction")&&curObj.equals("camera-key")){
+				direction = new Vector3D(Double.parseDouble(args[0]),Double.parseDouble(args[1]),Double.parseDouble(args[2]));
+			}else{
+				return false;
+			}
+		}catch (NumberFormatException e){
+			throw new ParseException("parameter missing or number format is wrong for parameter '"+name+"'");
+		}catch (ArrayIndexOutOfBoundsException e){
+			throw new ParseException("parameter missing or number format is wrong for parameter '"+name+"'");
+		}
+		System.out.print("PARAM: " + name);
+	    for (String s : args)
+	        System.out.print(", " + s);
+	    System.out.println();
+		return true;
+	}
+
+	/**
+	 * Finishes the parsing of the current object and adds its keyframe to the sequence.
+	 *
+	 * @throws ParseException
+	 */
+	@Override
+	public void commit() throws ParseException
+	{
+		if (curObj==null){
+			return;
+		}
+		if (curObj.equals("camera-key")){
+			if ((frame<0)||(eye==null)||((lookAt==null)&&(direction==null))){
+				throw new ParseException("Parameters given for a camera keyframe are not valid or missing");
+			}
+			sequence.addCameraKey(frame, new CameraKey(eye, lookAt, (lookAt==null) ? direction : null));
+		}
+		if (curObj.equals("light-key")){
+			if ((frame<0)||(light<0)||(position==null)){
+				throw new ParseException("Parameters given for a light keyframe are not valid or missing");
+			}
+			sequence.addLightKey(light, frame, position);
+		}
+		if (curObj.equals("object-key")){
+			if ((frame<0)||(object<0)||(position==null)){
+				throw new ParseException("Parameters given for an object keyframe are not valid or missing");
+			}
+			sequence.addObjectKey(object, frame, position);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package sceneObjects;
+
+/**
+ * This mini-class represents a triangle, which also knows the indexes (at the vertex array) of his points. 
+ * It is used so that we can compute all the normals of the vertices only once and save them to an array.
+ *
+ */
+class AnotatedTriangle{
+	public Triangle triangle;
+	public int iPoint1;
+	public int iPoint2;
+	public int iPoint3;
+}
@@ -78,6 +78,15 @@ public class Box extends SceneObject {
 		return p3;
 	}
 
+	/**
+	 * Returns the 6 rectangles which create the box.
+	 *
+	 * @return The 6 rectangles which create the box.
+	 */
+	public Rectangle[] getFaces(){
+		return boxFaces;
+	}
+
 	/**
 	 * Sets the p0 point of the box.
 	 * 
@@ -139,26 +148,39 @@ public class Box extends SceneObject {
 	 */
 	@Override
 	public Intersection isIntersects(IRay ray) {
-		Intersection[] possibleIntesctions = new Intersection[6];
-		Intersection bestHit = null;
-		double minDistance = Double.MAX_VALUE;
+		Intersection hit = new Intersection();
+		intersect(ray, hit);
+		return hit;
+	}
+
+	/**
+	 * Records the intersection of the given ray with the box in the given intersection, if it is closer than the 
+	 * intersection which is already recorded there (the intersected face is recorded as the primitive).
+	 * 
+	 * @param ray
+	 * @param hit The intersection to update.
+	 * @return 'true' if the intersection was recorded, or 'false' otherwise.
+	 */
+	@Override
+	public boolean intersect(IRay ray, Intersection hit) {
+		boolean found = false;
 		for (int i=0; i<6; i++){
-			possibleIntesctions[i] = boxFaces[i].isIntersects(ray);
-		}
-		for (Intersection hit:possibleIntesctions){
-			if (hit!=null){
-				if (hit.getDistance()<minDistance){
-					bestHit = hit;
-					minDistance = hit.getDistance();
-				}
+			if (boxFaces[i].intersect(ray, hit)){
+				hit.setIntersectionHit(hit.getDistance(), this, i, ray);
+				found = true;
 			}
 		}
-		if (bestHit!=null){
-			bestHit.setIntersectionHit(bestHit.getIntersectionPoint(), bestHit.getDistance(), this,bestHit.getNormal(),ray);
-		}else{
-			bestHit = new Intersection();
-		}
-		return bestHit;
+		return found;
+	}
+
+	/**
+	 * Computes the intersection point and the normal for an intersection which was recorded by intersect.
+	 * 
+	 * @param hit
+	 */
+	@Override
+	public void completeIntersection(Intersection hit) {
+		hit.setIntersectionDetails(hit.getRay().getPointOnRay(hit.getDistance()), boxFaces[hit.getPrimitive()].getNormal(hit.getRay()));
 	}
 
 	/**
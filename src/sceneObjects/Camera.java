@@ -190,6 +190,25 @@ public class Camera extends SceneObject{
 		}
 	}
 
+	/**
+	 * Moves the camera to the given eye position and view direction (i.e for the frames of an animation).
+	 * The up direction is orthogonalized to the view direction.
+	 * 
+	 * @param eyePos The eye position of the camera.
+	 * @param viewDir The view direction of the camera.
+	 * @param upDir The up direction of the camera (must not be co-linear with the view direction).
+	 */
+	public void setView(IPoint3D eyePos, IVector3D viewDir, IVector3D upDir){
+		if (viewDir.isCoLinear(upDir)){
+			throw new IllegalArgumentException("The direction and the up vector of the camera are co-linear");
+		}
+		eyePosition = eyePos;
+		viewDirection = viewDir;
+		upDirection = upDir;
+		rightDirection = null;
+		orthogonalizeViewDirectionUp();
+	}
+
     /**
      * Parses the given parameters to create a scene object.
      * 
@@ -112,6 +112,21 @@ public class Cylinder extends SceneObject{
 	 */
 	@Override
 	public Intersection isIntersects(IRay ray) {
+		Intersection hit = new Intersection();
+		intersect(ray, hit);
+		return hit;
+	}
+
+	/**
+	 * Records the intersection of the given ray with the cylinder in the given intersection, if it is closer than the 
+	 * intersection which is already recorded there.
+	 * 
+	 * @param ray
+	 * @param hit The intersection to update.
+	 * @return 'true' if the intersection was recorded, or 'false' otherwise.
+	 */
+	@Override
+	public boolean intersect(IRay ray, Intersection hit) {
 		// THIS is taken from http://www.gamedev.net/community/forums/topic.asp?topic_id=467789
 		//
 		//--------------------------------------------------------------------------
@@ -135,48 +150,77 @@ public class Cylinder extends SceneObject{
 		// c = (X . X) - d
 		//--------------------------------------------------------------------------
 
-		IVector3D X = (new Vector3D(getStart(),ray.getP0())).crossProduct(getDirection());
-		IVector3D Y = ray.getV().crossProduct(getDirection());
-		double a = Y.dotProduct(Y);
-		double b = 2 * (X.dotProduct(Y));
-		double c = (X.dotProduct(X)) - getRadius()*getRadius();
+		IPoint3D o = ray.getP0();
+		IPoint3D v = ray.getV().getEndPoint();
+		IPoint3D d = getDirection().getEndPoint();
+		double sx = o.getX() - getStart().getX();
+		double sy = o.getY() - getStart().getY();
+		double sz = o.getZ() - getStart().getZ();
+		// X = (O - A) x D , Y = V x D
+		double xx = sy*d.getZ() - sz*d.getY();
+		double xy = sz*d.getX() - sx*d.getZ();
+		double xz = sx*d.getY() - sy*d.getX();
+		double yx = v.getY()*d.getZ() - v.getZ()*d.getY();
+		double yy = v.getZ()*d.getX() - v.getX()*d.getZ();
+		double yz = v.getX()*d.getY() - v.getY()*d.getX();
+		double a = yx*yx + yy*yy + yz*yz;
+		double b = 2 * (xx*yx + xy*yy + xz*yz);
+		double c = (xx*xx + xy*xy + xz*xz) - getRadius()*getRadius();
 		
 		// Solve quadratic equation
-		double[] sol = solveEquation(a, b, c);
+		double delta = b*b - 4d*a*c;
 		// no solutions were found
-		if (sol==null){
-			return new Intersection();
+		if (delta<0){
+			return false;
 		}
-		Intersection hit = new Intersection();
-		IPoint3D hitPoint1 = ray.getPointOnRay(sol[0]);
-		IPoint3D hitPoint2 = ray.getPointOnRay(sol[1]);
-		double dist1 = ray.getP0().getDistanceBetweenPoints(hitPoint1);
-		double dist2 = ray.getP0().getDistanceBetweenPoints(hitPoint2);
-		if (dist1>dist2&&(sol[0]>=0&&sol[1]>=0)){
-			IPoint3D temp = hitPoint1;
-			hitPoint1 = hitPoint2;
-			hitPoint2 = temp;
+		double t1 = ((-1d*b) + (Math.sqrt(delta)))/(2d*a);
+		double t2 = ((-1d*b) - (Math.sqrt(delta)))/(2d*a);
+		if ((t1>t2)&&(t1>=0&&t2>=0)){
+			double temp = t1;
+			t1 = t2;
+			t2 = temp;
 		}
-		
-		IVector3D vecFromStartToHitPoint1 = new Vector3D(getStart(),hitPoint1);
-		IVector3D vecFromStartToHitPoint2 = new Vector3D(getStart(),hitPoint2);
-		
-		double projection1 = vecFromStartToHitPoint1.dotProduct(getDirection());
-		double projection2 = vecFromStartToHitPoint2.dotProduct(getDirection());
-		
-		IVector3D normal = null;
-		
-		if ((projection1>getLength())||(projection1<0)||(sol[0]<0)){
-			if ((projection2>getLength())||(projection2<0)||(sol[1]<0)){
-				return new Intersection();
-			}
-			normal = getNormal(vecFromStartToHitPoint2.normalize());
-			hit.setIntersectionHit(hitPoint2, ray.getP0().getDistanceBetweenPoints(hitPoint2), this,normal,ray);
-			return hit;
+		double t = Double.POSITIVE_INFINITY;
+		if (isOnCylinder(t1, sx, sy, sz, v, d)){
+			t = t1;
+		}else if (isOnCylinder(t2, sx, sy, sz, v, d)){
+			t = t2;
 		}
-		normal = getNormal(vecFromStartToHitPoint1.normalize());
-		hit.setIntersectionHit(hitPoint1, ray.getP0().getDistanceBetweenPoints(hitPoint1), this,normal,ray);
-		return hit;
+		if (t>=hit.getDistance()){
+			return false;
+		}
+		hit.setIntersectionHit(t, this, 0, ray);
+		return true;
+	}
+
+	/**
+	 * Returns 'true' if the point 't' on the ray is on the (finite) cylinder, otherwise 'false'.
+	 * 
+	 * @param t
+	 * @param sx The x-coordinate of the vector from the start point of the cylinder to the origin of the ray.
+	 * @param sy The y-coordinate of the vector from the start point of the cylinder to the origin of the ray.
+	 * @param sz The z-coordinate of the vector from the start point of the cylinder to the origin of the ray.
+	 * @param v The direction of the ray.
+	 * @param d The direction of the cylinder.
+	 * @return 'true' if the point 't' on the ray is on the (finite) cylinder, otherwise 'false'.
+	 */
+	private boolean isOnCylinder(double t, double sx, double sy, double sz, IPoint3D v, IPoint3D d){
+		if (!(t>=0)){
+			return false;
+		}
+		double projection = (sx + t*v.getX())*d.getX() + (sy + t*v.getY())*d.getY() + (sz + t*v.getZ())*d.getZ();
+		return (projection>=0)&&(projection<=getLength());
+	}
+
+	/**
+	 * Computes the intersection point and the normal for an intersection which was recorded by intersect.
+	 * 
+	 * @param hit
+	 */
+	@Override
+	public void completeIntersection(Intersection hit) {
+		IPoint3D hitPoint = hit.getRay().getPointOnRay(hit.getDistance());
+		hit.setIntersectionDetails(hitPoint, getNormal(new Vector3D(getStart(),hitPoint).normalize()));
 	}
 
 	/**
@@ -101,19 +101,60 @@ public class Disc extends SceneObject{
 	 */
 	@Override
 	public Intersection isIntersects(IRay ray) {
-		IPlane3D plane = new Plane3D(getNormal(),getCenter());
-		IPoint3D hitPoint = plane.rayPlaneIntersection(ray);
+		Intersection hit = new Intersection();
+		intersect(ray, hit);
+		return hit;
+	}
+
+	/**
+	 * Records the intersection of the given ray with the disc in the given intersection, if it is closer than the 
+	 * intersection which is already recorded there.
+	 * 
+	 * @param ray
+	 * @param hit The intersection to update.
+	 * @return 'true' if the intersection was recorded, or 'false' otherwise.
+	 */
+	@Override
+	public boolean intersect(IRay ray, Intersection hit) {
+		IPoint3D o = ray.getP0();
+		IPoint3D v = ray.getV().getEndPoint();
+		IPoint3D n = getNormal().getEndPoint();
+		double dotProd = v.getX()*n.getX() + v.getY()*n.getY() + v.getZ()*n.getZ();
 		// check if there is a hit point with the plane of the disc
-		if (hitPoint == null){
-			return new Intersection();
+		if (dotProd==0){
+			return false;
+		}
+		double cx = getCenter().getX() - o.getX();
+		double cy = getCenter().getY() - o.getY();
+		double cz = getCenter().getZ() - o.getZ();
+		double t = (cx*n.getX() + cy*n.getY() + cz*n.getZ()) / dotProd;
+		if (t<0){
+			return false;
 		}
 		// check if the hit point is not out of the disc
-		if (hitPoint.getDistanceBetweenPoints(getCenter())>getRadius()){
-			return new Intersection();
+		double hx = t*v.getX() - cx;
+		double hy = t*v.getY() - cy;
+		double hz = t*v.getZ() - cz;
+		if (hx*hx + hy*hy + hz*hz > getRadius()*getRadius()){
+			return false;
 		}
-		Intersection hit = new Intersection();
-		hit.setIntersectionHit(hitPoint, ray.getP0().getDistanceBetweenPoints(getCenter()), this,plane.getNormal(ray),ray);
-		return hit;
+		double distance = Math.sqrt(cx*cx + cy*cy + cz*cz);
+		if (distance>=hit.getDistance()){
+			return false;
+		}
+		hit.setIntersectionHit(distance, this, 0, ray);
+		return true;
+	}
+
+	/**
+	 * Computes the intersection point and the normal for an intersection which was recorded by intersect.
+	 * 
+	 * @param hit
+	 */
+	@Override
+	public void completeIntersection(Intersection hit) {
+		IPlane3D plane = new Plane3D(getNormal(),getCenter());
+		hit.setIntersectionDetails(plane.rayPlaneIntersection(hit.getRay()), plane.getNormal(hit.getRay()));
 	}
 
     /**
@@ -31,6 +31,25 @@ public interface ISceneObject {
 	 */
 	public Intersection isIntersects(IRay ray);
 	
+	/**
+	 * Records the intersection of the given ray with the object in the given intersection, if it is closer than the 
+	 * intersection which is already recorded there.
+	 * Only the distance, the object and the intersected primitive are recorded, the intersection point and the normal 
+	 * are computed later by completeIntersection (only for the closest intersection).
+	 * 
+	 * @param ray
+	 * @param hit The intersection to update.
+	 * @return 'true' if the intersection was recorded, or 'false' otherwise.
+	 */
+	public boolean intersect(IRay ray, Intersection hit);
+	
+	/**
+	 * Computes the intersection point and the normal for an intersection which was recorded by intersect.
+	 * 
+	 * @param hit
+	 */
+	public void completeIntersection(Intersection hit);
+	
 	/**
 	 * Finishes parsing the scene object and validates that all mandatory values were given and valid.
 	 * 
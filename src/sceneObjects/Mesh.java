@@ -7,22 +7,11 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import scene.Intersection;
+import scene.RenderTelemetry;
 import scene.Scene;
 import vectors.*;
 import application.Parser.ParseException;
 
-/**
- * This mini-class represents a triangle, which also knows the indexes (at the vertex array) of his points. 
- * It is used so that we can compute all the normals of the vertices only once and save them to an array.
- *
- */
-class AnotatedTriangle{
-	public Triangle triangle;
-	public int iPoint1;
-	public int iPoint2;
-	public int iPoint3;
-}
-
 /**
  * 
  * This class represents a mesh object which consists of triangles (supports 'off' and 'ply2' formats).
@@ -35,8 +24,10 @@ public class Mesh extends SceneObject{
 	private String filename;
 	private IPoint3D position;
 	private double scale;
-	private ISceneObject boundingBox;
+	private double[] bounds;
 	private String shaderType;
+	private String cacheKey;
+	private long cacheModified;
 	
 	/**
 	 * Constructs a mesh object.
@@ -46,9 +37,10 @@ public class Mesh extends SceneObject{
 		triangles = new AnotatedTriangle[0];
 		position = null;
 		scale = 1;
-		boundingBox = null;
+		bounds = null;
 		vertices = null;
 		shaderType = "flat";
+		cacheKey = null;
 	}
 	
 	/**
@@ -136,35 +128,105 @@ public class Mesh extends SceneObject{
 	 */
 	@Override
 	public Intersection isIntersects(IRay ray) {
-		// This needs serious optimizations for speed
-		Intersection hit;
-		Intersection bestHit = null;
-		double minDist = Double.MAX_VALUE;
-		if (boundingBox!=null){
-			hit = boundingBox.isIntersects(ray);
-			if (!hit.isIntersects()){
-				return hit;
+		Intersection hit = new Intersection();
+		intersect(ray, hit);
+		return hit;
+	}
+
+	/**
+	 * Records the intersection of the given ray with the mesh in the given intersection, if it is closer than the 
+	 * intersection which is already recorded there (the index of the intersected triangle is recorded as the primitive).
+	 * 
+	 * @param ray
+	 * @param hit The intersection to update.
+	 * @return 'true' if the intersection was recorded, or 'false' otherwise.
+	 */
+	@Override
+	public boolean intersect(IRay ray, Intersection hit) {
+		if (bounds!=null){
+			IPoint3D o = ray.getP0();
+			IPoint3D v = ray.getV().getEndPoint();
+			if (!intersectBounds(bounds, o.getX(), o.getY(), o.getZ(), v.getX(), v.getY(), v.getZ(), hit.getDistance())){
+				return false;
 			}
 		}
-		for (AnotatedTriangle t:triangles){
-			hit = t.triangle.isIntersects(ray);
-			if (hit.isIntersects()){
-				if (hit.getDistance()<minDist){
-					if (getShaderType().equals("flat")){
-						hit.setIntersectionHit(hit.getIntersectionPoint(), hit.getDistance(), this,hit.getNormal(),ray);
-					}
-					if (getShaderType().equals("phong")){
-						hit.setIntersectionHit(hit.getIntersectionPoint(), hit.getDistance(), this,getNormal(hit.getIntersectionPoint(), t),ray);
-					}
-					bestHit = hit;
-					minDist = hit.getDistance();
-				}
+		boolean found = false;
+		for (int i=0; i<triangles.length; i++){
+			if (triangles[i].triangle.intersect(ray, hit)){
+				hit.setIntersectionHit(hit.getDistance(), this, i, ray);
+				found = true;
 			}
 		}
-		if (bestHit==null){
-			bestHit = new Intersection();
+		return found;
+	}
+
+	/**
+	 * Computes the intersection point and the normal for an intersection which was recorded by intersect.
+	 * 
+	 * @param hit
+	 */
+	@Override
+	public void completeIntersection(Intersection hit) {
+		AnotatedTriangle t = triangles[hit.getPrimitive()];
+		IPoint3D hitPoint = hit.getRay().getPointOnRay(hit.getDistance());
+		if (getShaderType().equals("phong")){
+			hit.setIntersectionDetails(hitPoint, getNormal(hitPoint, t));
+		}else{
+			hit.setIntersectionDetails(hitPoint, t.triangle.getNormal(hit.getRay()));
 		}
-		return bestHit;
+	}
+
+	/**
+	 * Returns the number of triangles in the mesh.
+	 * 
+	 * @return The number of triangles in the mesh.
+	 */
+	public int getTriangleCount(){
+		return triangles.length;
+	}
+
+	/**
+	 * Returns the triangle at the given index.
+	 * 
+	 * @param index
+	 * @return The triangle at the given index.
+	 */
+	public Triangle getTriangle(int index){
+		return triangles[index].triangle;
+	}
+
+	/**
+	 * Moves the mesh to a new position (the mesh file is not parsed again).
+	 * The vertices, the triangles and the bounding box are moved by the offset between the positions.
+	 * 
+	 * @param newPosition
+	 */
+	public void moveTo(IPoint3D newPosition){
+		IVector3D offset = new Vector3D(getPosition(), newPosition);
+		if (vertices!=null){
+			for (int i=0; i<vertices.length; i++){
+				vertices[i] = vertices[i].movePointByVector(offset);
+			}
+			for (int i=0; i<triangles.length; i++){
+				AnotatedTriangle t = triangles[i];
+				t.triangle = new Triangle(vertices[t.iPoint1],vertices[t.iPoint2],vertices[t.iPoint3]);
+			}
+		}
+		if (bounds!=null){
+			IPoint3D p0 = new Point3D(bounds[0],bounds[1],bounds[2]).movePointByVector(offset);
+			IPoint3D p1 = new Point3D(bounds[3],bounds[4],bounds[5]).movePointByVector(offset);
+			bounds = new double[] {p0.getX(),p0.getY(),p0.getZ(),p1.getX(),p1.getY(),p1.getZ()};
+		}
+		setPosition(newPosition);
+	}
+
+	/**
+	 * Returns the bounding box of the mesh as {minX,minY,minZ,maxX,maxY,maxZ}.
+	 * 
+	 * @return The bounding box of the mesh, or null if the mesh file was not parsed.
+	 */
+	public double[] getBounds(){
+		return bounds;
 	}
 
     /**
@@ -181,7 +243,15 @@ public class Mesh extends SceneObject{
 			if (name.equals("filename")){
 				setFilename(args[0]);
 				if (getFilename()!=null){
+					Object context = (RenderTelemetry.OBSERVER!=null) ? RenderTelemetry.OBSERVER.begin(RenderTelemetry.MESH_LOAD) : null;
+					long start = RenderTelemetry.startTime();
 					parseFile(getFilename());
+					if (RenderTelemetry.ENABLED){
+						RenderTelemetry.addPhaseTime(RenderTelemetry.MESH_LOAD, RenderTelemetry.elapsed(start));
+					}
+					if (RenderTelemetry.OBSERVER!=null){
+						RenderTelemetry.OBSERVER.endMeshLoad(context, getFilename(), (vertices==null) ? 0 : vertices.length, getTriangleCount());
+					}
 				}
 			}
 			if (name.equals("pos")){
@@ -208,11 +278,22 @@ public class Mesh extends SceneObject{
 		if ((getPosition()==null)||(getFilename()==null)){
 			throw new ParseException("Parameters given for Mesh are not valid or missing");
 		}
-		calculateVerticesNormals();
+		long start = RenderTelemetry.startTime();
+		if (verticesNormals==null){
+			calculateVerticesNormals();
+			if ((cacheKey!=null)&&(vertices!=null)){
+				MeshCache.put(cacheKey, new MeshCache.Entry(vertices, triangles, verticesNormals, bounds, cacheModified));
+			}
+		}
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.addPhaseTime(RenderTelemetry.MESH_LOAD, RenderTelemetry.elapsed(start));
+		}
 	}
 	
 	/**
 	 * Parses the mesh configuration file (of type 'off' or 'ply2').
+	 * A mesh file which was already parsed with the same scale and position is taken from the mesh cache (with the
+	 * normals of its vertices), and a parsed mesh file is added to the cache when the mesh is committed.
 	 * 
 	 * @param filename
 	 * @throws NumberFormatException
@@ -220,6 +301,19 @@ public class Mesh extends SceneObject{
 	@SuppressWarnings("deprecation")
 	private void parseFile(String filename) throws NumberFormatException{
 		File file = new File(Scene.getPathToTextureFile()+filename);
+		verticesNormals = null;
+		cacheKey = MeshCache.getKey(file, getScale(), getPosition());
+		cacheModified = file.lastModified();
+		if (cacheKey!=null){
+			MeshCache.Entry entry = MeshCache.get(cacheKey, cacheModified);
+			if (entry!=null){
+				vertices = entry.vertices.clone();
+				triangles = MeshCache.copyTriangles(entry.triangles);
+				verticesNormals = entry.verticesNormals;
+				bounds = (entry.bounds!=null) ? entry.bounds.clone() : null;
+				return;
+			}
+		}
 	    FileInputStream fis = null;
 	    BufferedInputStream bis = null;
 	    DataInputStream dis = null;
@@ -255,11 +349,11 @@ public class Mesh extends SceneObject{
 	    	triangles = new AnotatedTriangle[numOfTriangles];
 	    	// read the vertices
 	    	double minX = Double.MAX_VALUE;
-	    	double maxX = Double.MIN_VALUE;
+	    	double maxX = -Double.MAX_VALUE;
 	    	double minY = Double.MAX_VALUE;
-	    	double maxY = Double.MIN_VALUE;	    	
+	    	double maxY = -Double.MAX_VALUE;	    	
 	    	double minZ = Double.MAX_VALUE;
-	    	double maxZ = Double.MIN_VALUE;
+	    	double maxZ = -Double.MAX_VALUE;
 	    	double x,y,z;
 	    	IVector3D transfer = new Vector3D(getPosition());
 	    	for (int i=0; i<numOfVertices;i++){
@@ -278,10 +372,8 @@ public class Mesh extends SceneObject{
 	    	}
 	    	// build bounding box
 	    	IPoint3D p0 = new Point3D(minX,minY,minZ).movePointByVector(transfer);
-	    	IPoint3D p1 = new Point3D(maxX,minY,minZ).movePointByVector(transfer);
-	    	IPoint3D p2 = new Point3D(minX,maxY,minZ).movePointByVector(transfer);
-	    	IPoint3D p3 = new Point3D(minX,minY,maxZ).movePointByVector(transfer);
-	    	boundingBox = new Box(p0,p1,p2,p3);
+	    	IPoint3D p1 = new Point3D(maxX,maxY,maxZ).movePointByVector(transfer);
+	    	bounds = new double[] {p0.getX(),p0.getY(),p0.getZ(),p1.getX(),p1.getY(),p1.getZ()};
 	    	// create triangles from the vertices
 	    	for (int i=0; i<numOfTriangles;i++){
 	    		line = dis.readLine();
@@ -0,0 +1,206 @@
+package sceneObjects;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import vectors.IPoint3D;
+import vectors.IVector3D;
+
+/**
+ * This class holds the parsed meshes which are shared by all the scenes of the process (i.e the scenes of a render
+ * server, which parses a scene for every job).
+ * A mesh is keyed by the canonical path of its file, its scale and its position, so a mesh file is parsed (and the
+ * normals of its vertices are computed) once for every placement of it (it is parsed again only if the file was
+ * modified). Every mesh gets its own copy of the vertices and the triangles, so moving a mesh does not change the cache.
+ * The cache has a memory budget: when the meshes exceed it, the least recently used meshes are evicted.
+ *
+ */
+public class MeshCache {
+	/**
+	 * The default memory budget of the cache (in megabytes), used unless the raytracer.mesh-cache-mb property is set.
+	 */
+	public static final int DEFAULT_BUDGET_MB = 256;
+
+	// the estimated sizes (in bytes) of a vertex (its point and normal) and of a triangle
+	private static final long VERTEX_BYTES = 96;
+	private static final long TRIANGLE_BYTES = 192;
+
+	private static final LinkedHashMap<String, Entry> meshes = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private static long budget = 1024L*1024L*Integer.getInteger("raytracer.mesh-cache-mb", DEFAULT_BUDGET_MB);
+	private static long size = 0;
+
+	/**
+	 * A parsed mesh and the modification time of its file.
+	 */
+	static class Entry {
+		final IPoint3D[] vertices;
+		final AnotatedTriangle[] triangles;
+		final IVector3D[] verticesNormals;
+		final double[] bounds;
+		final long lastModified;
+
+		/**
+		 * Constructs a cache entry with copies of the given vertices, triangles, normals and bounds.
+		 *
+		 * @param vertices
+		 * @param triangles
+		 * @param verticesNormals
+		 * @param bounds
+		 * @param lastModified
+		 */
+		Entry(IPoint3D[] vertices, AnotatedTriangle[] triangles, IVector3D[] verticesNormals, double[] bounds, long lastModified){
+			this.vertices = vertices.clone();
+			this.triangles = copyTriangles(triangles);
+			this.verticesNormals = verticesNormals.clone();
+			this.bounds = (bounds!=null) ? bounds.clone() : null;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * Returns the estimated number of bytes which are used by the entry.
+		 *
+		 * @return The estimated number of bytes which are used by the entry.
+		 */
+		long getSizeInBytes(){
+			return VERTEX_BYTES*vertices.length + TRIANGLE_BYTES*triangles.length;
+		}
+	}
+
+	/**
+	 * The cache is only used through its static methods.
+	 */
+	private MeshCache(){
+	}
+
+	/**
+	 * Returns the key of a mesh file with the given scale and position, or null if the file does not exist.
+	 *
+	 * @param file
+	 * @param scale
+	 * @param position
+	 * @return The key of the mesh, or null if the file does not exist.
+	 */
+	static String getKey(File file, double scale, IPoint3D position){
+		if ((!file.isFile())||(position==null)){
+			return null;
+		}
+		try {
+			return file.getCanonicalPath() + "@" + scale + "@" + position.getX() + "," + position.getY() + "," + position.getZ();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the cached mesh of the given key, or null if it is not in the cache (or its file was modified).
+	 *
+	 * @param key
+	 * @param lastModified The modification time of the mesh file.
+	 * @return The cached mesh of the given key, or null if it is not in the cache.
+	 */
+	static synchronized Entry get(String key, long lastModified){
+		Entry entry = meshes.get(key);
+		if ((entry!=null)&&(entry.lastModified!=lastModified)){
+			meshes.remove(key);
+			size -= entry.getSizeInBytes();
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Adds a mesh to the cache and evicts meshes if the cache exceeds its budget.
+	 *
+	 * @param key
+	 * @param entry
+	 */
+	static synchronized void put(String key, Entry entry){
+		Entry old = meshes.put(key, entry);
+		if (old!=null){
+			size -= old.getSizeInBytes();
+		}
+		size += entry.getSizeInBytes();
+		evict();
+	}
+
+	/**
+	 * Returns a copy of the triangles (the triangles themselves are not changed by a mesh, so they are shared).
+	 *
+	 * @param triangles
+	 * @return A copy of the triangles.
+	 */
+	static AnotatedTriangle[] copyTriangles(AnotatedTriangle[] triangles){
+		AnotatedTriangle[] copy = new AnotatedTriangle[triangles.length];
+		for (int i=0; i<triangles.length; i++){
+			copy[i] = new AnotatedTriangle();
+			copy[i].triangle = triangles[i].triangle;
+			copy[i].iPoint1 = triangles[i].iPoint1;
+			copy[i].iPoint2 = triangles[i].iPoint2;
+			copy[i].iPoint3 = triangles[i].iPoint3;
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the memory budget of the cache (in bytes).
+	 *
+	 * @return The memory budget of the cache (in bytes).
+	 */
+	public static synchronized long getBudget(){
+		return budget;
+	}
+
+	/**
+	 * Sets the memory budget of the cache (in bytes) and evicts meshes if the cache exceeds it.
+	 *
+	 * @param budget
+	 */
+	public static synchronized void setBudget(long budget){
+		if (budget>=0){
+			MeshCache.budget = budget;
+			evict();
+		}
+	}
+
+	/**
+	 * Returns the estimated number of bytes which are used by the meshes in the cache.
+	 *
+	 * @return The estimated number of bytes which are used by the meshes in the cache.
+	 */
+	public static synchronized long getSizeInBytes(){
+		return size;
+	}
+
+	/**
+	 * Returns the number of meshes in the cache.
+	 *
+	 * @return The number of meshes in the cache.
+	 */
+	public static synchronized int getMeshCount(){
+		return meshes.size();
+	}
+
+	/**
+	 * Removes all the meshes from the cache.
+	 */
+	public static synchronized void clear(){
+		meshes.clear();
+		size = 0;
+	}
+
+	/**
+	 * Evicts the least recently used meshes until the cache fits its budget (a mesh which is larger than the budget
+	 * is evicted as well).
+	 */
+	private static void evict(){
+		Iterator<Map.Entry<String, Entry>> iter = meshes.entrySet().iterator();
+		while ((size>budget)&&(iter.hasNext())){
+			Entry entry = iter.next().getValue();
+			iter.remove();
+			size -= entry.getSizeInBytes();
+		}
+	}
+}
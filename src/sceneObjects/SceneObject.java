@@ -1,6 +1,8 @@
 package sceneObjects;
 
+import scene.Intersection;
 import surfaces.*;
+import vectors.*;
 
 /**
  * This abstract class holds all the shared functionality for all scene objects.
@@ -37,6 +39,141 @@ public abstract class SceneObject implements ISceneObject {
 		return sol;
 	}
 	
+	/**
+	 * Returns the 't' of the closest intersection of a ray with a sphere (the direction of the ray must be normalized).
+	 * 
+	 * @param cx The x-coordinate of the center of the sphere.
+	 * @param cy The y-coordinate of the center of the sphere.
+	 * @param cz The z-coordinate of the center of the sphere.
+	 * @param radiusSquare The square of the radius of the sphere.
+	 * @return The 't' of the closest intersection, or Double.POSITIVE_INFINITY if the ray misses the sphere.
+	 */
+	public static double intersectSphere(double cx, double cy, double cz, double radiusSquare,
+			double ox, double oy, double oz, double dx, double dy, double dz){
+		// t^2 + 2*b*t + c = 0
+		double px = ox - cx;
+		double py = oy - cy;
+		double pz = oz - cz;
+		double b = dx*px + dy*py + dz*pz;
+		double c = px*px + py*py + pz*pz - radiusSquare;
+		double delta = b*b - c;
+		if (delta<0){
+			return Double.POSITIVE_INFINITY;
+		}
+		double sqrtDelta = Math.sqrt(delta);
+		double t = -b - sqrtDelta;
+		if (t<=0){
+			t = -b + sqrtDelta;
+		}
+		return (t>0) ? t : Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Returns the 't' of the intersection of a ray with a triangle or a parallelogram (p, p+e1, p+e2).
+	 * 
+	 * @param isTriangle 'true' for a triangle, 'false' for a parallelogram.
+	 * @return The 't' of the intersection, or Double.POSITIVE_INFINITY if the ray misses the triangle (or parallelogram).
+	 */
+	public static double intersectParallelogram(double px, double py, double pz,
+			double e1x, double e1y, double e1z, double e2x, double e2y, double e2z, boolean isTriangle,
+			double ox, double oy, double oz, double dx, double dy, double dz){
+		// Moller-Trumbore: solve o + t*d = p + u*e1 + v*e2
+		double qx = dy*e2z - dz*e2y;
+		double qy = dz*e2x - dx*e2z;
+		double qz = dx*e2y - dy*e2x;
+		double det = e1x*qx + e1y*qy + e1z*qz;
+		if (det==0){
+			return Double.POSITIVE_INFINITY;
+		}
+		double invDet = 1d/det;
+		double sx = ox - px;
+		double sy = oy - py;
+		double sz = oz - pz;
+		double u = (sx*qx + sy*qy + sz*qz) * invDet;
+		if ((u<0)||(u>1)){
+			return Double.POSITIVE_INFINITY;
+		}
+		double rx = sy*e1z - sz*e1y;
+		double ry = sz*e1x - sx*e1z;
+		double rz = sx*e1y - sy*e1x;
+		double v = (dx*rx + dy*ry + dz*rz) * invDet;
+		if ((v<0)||((isTriangle) ? (u+v>1) : (v>1))){
+			return Double.POSITIVE_INFINITY;
+		}
+		double t = (e2x*rx + e2y*ry + e2z*rz) * invDet;
+		return (t>=0) ? t : Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Returns 'true' if a ray intersects with an axis aligned box closer than the given distance, otherwise 'false'.
+	 * 
+	 * @param bounds The box as {minX,minY,minZ,maxX,maxY,maxZ}.
+	 * @param maxDistance The distance from the origin of the ray beyond which intersections are ignored.
+	 * @return 'true' if the ray intersects with the box closer than the given distance, otherwise 'false'.
+	 */
+	public static boolean intersectBounds(double[] bounds, double ox, double oy, double oz, 
+			double dx, double dy, double dz, double maxDistance){
+		return intersectBounds(bounds, 0, ox, oy, oz, dx, dy, dz, maxDistance);
+	}
+	
+	/**
+	 * Returns 'true' if a ray intersects with an axis aligned box (which is kept in an array of boxes) closer than 
+	 * the given distance, otherwise 'false'.
+	 * 
+	 * @param bounds The boxes as {minX,minY,minZ,maxX,maxY,maxZ} for every box.
+	 * @param offset The index of the first value of the box in the array.
+	 * @param maxDistance The distance from the origin of the ray beyond which intersections are ignored.
+	 * @return 'true' if the ray intersects with the box closer than the given distance, otherwise 'false'.
+	 */
+	public static boolean intersectBounds(double[] bounds, int offset, double ox, double oy, double oz, 
+			double dx, double dy, double dz, double maxDistance){
+		double tMin = 0;
+		double tMax = maxDistance;
+		double inv = 1d/dx;
+		double t0 = (bounds[offset]-ox)*inv;
+		double t1 = (bounds[offset+3]-ox)*inv;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		inv = 1d/dy;
+		t0 = (bounds[offset+1]-oy)*inv;
+		t1 = (bounds[offset+4]-oy)*inv;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		inv = 1d/dz;
+		t0 = (bounds[offset+2]-oz)*inv;
+		t1 = (bounds[offset+5]-oz)*inv;
+		tMin = Math.max(tMin, Math.min(t0, t1));
+		tMax = Math.min(tMax, Math.max(t0, t1));
+		return tMin<=tMax;
+	}
+	
+	/**
+	 * Records the intersection of the given ray with the object in the given intersection, if it is closer than the 
+	 * intersection which is already recorded there.
+	 * This implementation uses isIntersects, so the intersection is recorded with all of its information.
+	 * 
+	 * @param ray
+	 * @param hit The intersection to update.
+	 * @return 'true' if the intersection was recorded, or 'false' otherwise.
+	 */
+	public boolean intersect(IRay ray, Intersection hit){
+		Intersection objectHit = isIntersects(ray);
+		if ((objectHit==null)||(!objectHit.isIntersects())||(objectHit.getDistance()>=hit.getDistance())){
+			return false;
+		}
+		hit.setIntersectionHit(objectHit.getIntersectionPoint(), objectHit.getDistance(), 
+				objectHit.getIntersectionObject(), objectHit.getNormal(), ray);
+		return true;
+	}
+	
+	/**
+	 * Computes the intersection point and the normal for an intersection which was recorded by intersect.
+	 * 
+	 * @param hit
+	 */
+	public void completeIntersection(Intersection hit){
+	}
+	
 	/**
 	 * Returns the surface of the object.
 	 * 
@@ -83,66 +83,41 @@ public class Sphere extends SceneObject {
 	 */
 	@Override
 	public Intersection isIntersects(IRay ray) {
-		// a*(t^2) + b*t + c = 0
-		// a = 1
-		double a = 1;
-		// b = 2*V*(p0 - center)
-		IVector3D vecFromP0toCenter = new Vector3D(getCenter(),ray.getP0());
-        double b = ray.getV().multiplyByScalar(2d).dotProduct(vecFromP0toCenter);
-        // c = (p0 - center)^2  - r^2
-        double c = vecFromP0toCenter.dotProduct(vecFromP0toCenter) - radiusSquare;
-        
-        // Solve quadratic equation 
-        double[] sol = solveEquation(a, b, c);
-        
-        return getIntersectionBySolution(ray, sol);
+		Intersection hit = new Intersection();
+		intersect(ray, hit);
+		return hit;
 	}
 
 	/**
-	 * Returns the intersection information based on the given possible 't' for the equation 'P = p0 +tV'.
+	 * Records the intersection of the given ray with the sphere in the given intersection, if it is closer than the 
+	 * intersection which is already recorded there.
 	 * 
 	 * @param ray
-	 * @param sol The possible solutions for 't'.
-	 * @return The intersection information based on the given possible 't' for the equation 'P = p0 +tV'.
+	 * @param hit The intersection to update.
+	 * @return 'true' if the intersection was recorded, or 'false' otherwise.
 	 */
-	private Intersection getIntersectionBySolution(IRay ray, double[] sol) {
-		// no solutions could be found
-        if (sol==null){
-        	return new Intersection();
-        }
-        
-        double sol1 = sol[0];
-        double sol2 = sol[1];
-        
-        // if both solutions are not positive (or equal zero)
-		if ((sol1<=0)&&(sol2<=0)){
-			return new Intersection();
-		}
-		Intersection hit = new Intersection();
-		IPoint3D hitPoint1 = ray.getPointOnRay(sol1);
-		IPoint3D hitPoint2 = ray.getPointOnRay(sol2);
-		double distanceSol1 = ray.getP0().getDistanceBetweenPoints(hitPoint1);
-		double distanceSol2 = ray.getP0().getDistanceBetweenPoints(hitPoint2);
-		
-		// sol2 is the good solution 
-		if (sol1<=0){
-			hit.setIntersectionHit(hitPoint2, distanceSol2, this, new Vector3D(getCenter(),hitPoint2).normalize(),ray);
-			return hit;
-		}
-		
-		// sol1 is the good solution 
-		if (sol2<=0){
-			hit.setIntersectionHit(hitPoint1, distanceSol1, this, new Vector3D(getCenter(),hitPoint1).normalize(),ray);
-			return hit;
-		}
-				
-		// both solutions are positive (not zero) and we need to choose the closest one to p0
-		if (distanceSol1<distanceSol2){
-			hit.setIntersectionHit(hitPoint1, distanceSol1, this, new Vector3D(getCenter(),hitPoint1).normalize(),ray);
-		}else{
-			hit.setIntersectionHit(hitPoint2, distanceSol2, this,new Vector3D(getCenter(),hitPoint2).normalize(),ray);
+	@Override
+	public boolean intersect(IRay ray, Intersection hit) {
+		IPoint3D p0 = ray.getP0();
+		IPoint3D v = ray.getV().getEndPoint();
+		double t = intersectSphere(getCenter().getX(), getCenter().getY(), getCenter().getZ(), radiusSquare,
+				p0.getX(), p0.getY(), p0.getZ(), v.getX(), v.getY(), v.getZ());
+		if (t>=hit.getDistance()){
+			return false;
 		}
-		return hit;
+		hit.setIntersectionHit(t, this, 0, ray);
+		return true;
+	}
+
+	/**
+	 * Computes the intersection point and the normal for an intersection which was recorded by intersect.
+	 * 
+	 * @param hit
+	 */
+	@Override
+	public void completeIntersection(Intersection hit) {
+		IPoint3D hitPoint = hit.getRay().getPointOnRay(hit.getDistance());
+		hit.setIntersectionDetails(hitPoint, new Vector3D(getCenter(),hitPoint).normalize());
 	}
 	
     /**
@@ -122,52 +122,52 @@ public class Triangle extends SceneObject{
 	 */
 	@Override
 	public Intersection isIntersects(IRay ray) {
-		IVector3D normal = getNormalVector();
-		IPlane3D plane = new Plane3D(normal,getP0());
-		
-		IPoint3D hitPoint = plane.rayPlaneIntersection(ray);
-		if (hitPoint==null){
-			return new Intersection();
-		}
-		
-		// Now we check to see if the hitPoint is inside 3 of the triangles the object triangle creates
-		
-		// triangle =  p0,p1,p2
-		if(rayTriangleIntersection(hitPoint,getP0(),getP1(),getP2())==false)
-			return new Intersection();
-		
-		// triangle = p0,p2,p1
-		if(rayTriangleIntersection(hitPoint,getP0(),getP2(),getP1())==false)
-			return new Intersection();
-		
-		
-		// triangle p1,p2,p0
-		if(rayTriangleIntersection(hitPoint,getP1(),getP2(),getP0())==false)
-			return new Intersection();
-		
 		Intersection hit = new Intersection();
-		hit.setIntersectionHit(hitPoint, ray.getP0().getDistanceBetweenPoints(hitPoint), this,plane.getNormal(ray),ray);
-		
+		intersect(ray, hit);
 		return hit;
 	}
-	
+
+	/**
+	 * Records the intersection of the given ray with the triangle in the given intersection, if it is closer than the 
+	 * intersection which is already recorded there.
+	 * 
+	 * @param ray
+	 * @param hit The intersection to update.
+	 * @return 'true' if the intersection was recorded, or 'false' otherwise.
+	 */
+	@Override
+	public boolean intersect(IRay ray, Intersection hit) {
+		IPoint3D o = ray.getP0();
+		IPoint3D v = ray.getV().getEndPoint();
+		double t = intersectParallelogram(p0.getX(), p0.getY(), p0.getZ(),
+				p1.getX()-p0.getX(), p1.getY()-p0.getY(), p1.getZ()-p0.getZ(),
+				p2.getX()-p0.getX(), p2.getY()-p0.getY(), p2.getZ()-p0.getZ(), true,
+				o.getX(), o.getY(), o.getZ(), v.getX(), v.getY(), v.getZ());
+		if (t>=hit.getDistance()){
+			return false;
+		}
+		hit.setIntersectionHit(t, this, 0, ray);
+		return true;
+	}
+
 	/**
-	 * Returns 'true' if the hit point is inside the triangle "projection".
+	 * Computes the intersection point and the normal for an intersection which was recorded by intersect.
 	 * 
-	 * @param hitPoint
-	 * @param trianglePoint1
-	 * @param trianglePoint2
-	 * @param trianglePoint3
-	 * @return 'true' if the hit point is inside the triangle "projection".
+	 * @param hit
+	 */
+	@Override
+	public void completeIntersection(Intersection hit) {
+		hit.setIntersectionDetails(hit.getRay().getPointOnRay(hit.getDistance()), getNormal(hit.getRay()));
+	}
+
+	/**
+	 * Returns the normal of the triangle which faces the origin of the given ray.
+	 * 
+	 * @param ray
+	 * @return The normal of the triangle which faces the origin of the given ray.
 	 */
-	private boolean rayTriangleIntersection(IPoint3D hitPoint,IPoint3D trianglePoint1,IPoint3D trianglePoint2,IPoint3D trianglePoint3)
-	{
-		IVector3D v1 = new Vector3D(trianglePoint2,trianglePoint1);
-		IVector3D v2 = new Vector3D(trianglePoint2,trianglePoint3);
-		IVector3D v3 = new Vector3D(trianglePoint2,hitPoint);
-		IVector3D norm1 = v1.crossProduct(v2);
-		IVector3D norm2 = v1.crossProduct(v3);
-		return (norm2.dotProduct(norm1)>=0);
+	public IVector3D getNormal(IRay ray){
+		return new Plane3D(getNormalVector(),getP0()).getNormal(ray);
 	}
 
 	/**
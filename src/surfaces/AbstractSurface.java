@@ -1,6 +1,7 @@
 package surfaces;
 
 import java.util.Iterator;
+import java.util.List;
 
 import application.Parser.ParseException;
 import lighting.ILight;
@@ -20,7 +21,6 @@ public abstract class AbstractSurface implements ISurface {
 	protected double shininess;
 	protected double reflectance;
 	protected String type;
-	private final static int rayTraceCounter = 4;
 	
 	/**
 	 * Returns the emission intensity (color) of the surface.
@@ -139,90 +139,126 @@ public abstract class AbstractSurface implements ISurface {
 	 * @return The color of the surface at a given intersection point.
 	 */
 	public IColor getColor(Intersection hit, Scene scene, int iteration) {
+		IColor intensity = new Color();
+		getColor(hit, scene, iteration, intensity);
+		return intensity;
+	}
+
+	/**
+	 * Computes the color of the surface at a given intersection point into the given color.
+	 * No colors are allocated, the intermediate intensities are accumulated in colors which are reused by the thread,
+	 * and the directions to the viewer, to the lights and of their reflections are computed into reused vectors.
+	 * 
+	 * @param hit The intersection information.
+	 * @param scene The scene.
+	 * @param iteration The iteration number (used for reflectance). Use the value 0.
+	 * @param result The color which receives the color of the surface.
+	 */
+	public void getColor(Intersection hit, Scene scene, int iteration, IColor result) {
 		IPoint3D hitPoint = hit.getIntersectionPoint();
-		IColor hitPointDiffuse = getDiffuseForHitPoint(hit);
+		IColor hitPointDiffuse = getDiffuseForHitPoint(hit, scene, ShadingRecords.getDiffuse());
+		IColor temp = ShadingRecords.getTemp();
 
-		// I = 0
-		IColor intensity = new Color();
 		//First part of the formula, before the sigma
-		// I = I + Ie
-		intensity = intensity.addColor(emission);
+		// I = Ie
+		result.setColor(emission);
 		// I = I + Ka*Ia
-		intensity = intensity.addColor(ambient.multiplyByColor(scene.getAmbientLightIntensity()));
+		temp.setColor(ambient);
+		result.addColorInPlace(temp.multiplyByColorInPlace(scene.getAmbientLightIntensity()));
 
 		IVector3D normal = hit.getNormal();
-		IVector3D viewer = hit.getRay().getV().multiplyByScalar(-1);
-		IColor lightSum = new Color(0, 0, 0);
-		Iterator<ILight> lightIter = scene.getLightsList().iterator();
+		IVector3D viewer = ShadingRecords.getViewer().setScaled(hit.getRay().getV(), -1);
+		Vector3D l = ShadingRecords.getLightDirection();
+		Vector3D r = ShadingRecords.getLightReflection();
+		IColor lightSum = ShadingRecords.getLightSum();
+		lightSum.setColor(0, 0, 0);
+		List<ILight> lights = scene.getLightsList();
 		double viewerDotR = 0;
 		
 		//Sum for all lights
-		while (lightIter.hasNext()) { 
-			ILight light = lightIter.next();
+		for (int lightIndex=0; lightIndex<lights.size(); lightIndex++){
+			ILight light = lights.get(lightIndex);
 			if (light.getIterator()!=null){
 				Iterator<ILight> iter = light.getIterator();
+				long start = (ObjectProfiler.ENABLED) ? System.nanoTime() : 0;
+				int shadowRays = 0;
+				int occluded = 0;
 				while (iter.hasNext()){
 					ILight innerLight = iter.next();
-					IColor temp = new Color(0, 0, 0);
-					IVector3D l = innerLight.getDirectionFromHitPointToLight(hitPoint);
-					IVector3D r = l.mirror(normal);
-					double shadow = scene.getSL(new Ray(hit.getIntersectionPoint(), l), innerLight, hit);
+					innerLight.getDirectionFromHitPointToLight(hitPoint, l);
+					r.setMirror(l, normal);
+					double shadow = scene.getSL(scene.createSecondaryRay(hit, l), innerLight, hit);
+					if (ObjectProfiler.ENABLED){
+						shadowRays++;
+						occluded += (shadow==0) ? 1 : 0;
+					}
 					//The sum of what's inside the sigma
 					//(Kd (N * L)...
-					temp = hitPointDiffuse.multiplyByConstant(normal.dotProduct(l));
+					temp.setColor(hitPointDiffuse);
+					temp.multiplyByConstantInPlace(normal.dotProduct(l));
 					//...+Ks (V * R)^n)...
 					viewerDotR = viewer.dotProduct(r);
 					viewerDotR = (viewerDotR<0)? 0 : viewerDotR;
-					if (innerLight.getDistanceFromHitPointToLight(hit.getIntersectionPoint())>0){
-						temp = temp.addColor(specular.multiplyByConstant(
-						Math.pow(viewerDotR, shininess)));
+					if (innerLight.getDistanceFromHitPointToLight(hitPoint)>0){
+						temp.addScaledColorInPlace(specular, Math.pow(viewerDotR, shininess));
 						temp.clamp();
 					}
 					//...* (Il * Sl)
-					temp = temp.multiplyByColor(innerLight.getIntensityForPoint(hit.getIntersectionPoint(),normal)
-							.multiplyByConstant(shadow));
-					lightSum = lightSum.addColor(temp);
+					temp.multiplyByScaledColorInPlace(innerLight.getIntensityForPoint(hitPoint,normal), shadow);
+					lightSum.addColorInPlace(temp);
+				}
+				if (ObjectProfiler.ENABLED){
+					ObjectProfiler.countLight(lightIndex, shadowRays, occluded, System.nanoTime()-start);
 				}
 			}
 		}
-		IColor reflectanceIntensity = new Color(0, 0, 0);
-		if (reflectance != 0 || iteration<rayTraceCounter) {
-			reflectanceIntensity = RayTrace(hit, scene, iteration);
-		}
+		result.addColorInPlace(lightSum);
 
-		intensity = intensity.addColor(lightSum);
 		//+Kt * Ir
-		intensity = intensity.addColor(reflectanceIntensity.multiplyByConstant(reflectance));
+		if (reflectance != 0 && iteration<scene.getMaxReflectionDepth()) {
+			IColor reflectanceIntensity = ShadingRecords.getReflection(iteration);
+			RayTrace(hit, scene, iteration, reflectanceIntensity);
+			result.addScaledColorInPlace(reflectanceIntensity, reflectance);
+		}
 
-		intensity.clamp();
-		return intensity;
+		result.clamp();
 	}
 	
 	/**
-	 * Returns the reflectance intensity for the given hit point and iteration.
+	 * Computes the reflectance intensity for the given hit point and iteration into the given color.
 	 * 
 	 * @param hit
 	 * @param scene
 	 * @param iteration
-	 * @return The reflectance intensity for the given hit point and iteration.
+	 * @param result The color which receives the reflectance intensity.
 	 */
-	private IColor RayTrace(Intersection hit, Scene scene, int iteration) {
-		IVector3D mirrorVector = hit.getRay().getV().multiplyByScalar(-1).mirror(hit.getNormal());
-		IRay mirrorRay = new Ray(hit.getIntersectionPoint(), mirrorVector);
-		Intersection mirrorIntersection = scene.findIntersection(mirrorRay,hit.getIntersectionObject());
+	private void RayTrace(Intersection hit, Scene scene, int iteration, IColor result) {
+		Vector3D mirrorVector = ShadingRecords.getMirror().setScaled(hit.getRay().getV(), -1);
+		mirrorVector.setMirror(mirrorVector, hit.getNormal());
+		IRay mirrorRay = scene.createSecondaryRay(hit, mirrorVector);
+		if (RenderTelemetry.ENABLED){
+			RenderTelemetry.count(RenderTelemetry.REFLECTION_RAYS, 1);
+			RenderTelemetry.reachDepth(iteration+1);
+		}
+		Intersection mirrorIntersection = scene.findIntersection(mirrorRay,hit.getIntersectionObject(),iteration+1);
 		if (!mirrorIntersection.isIntersects()){
-			return scene.getBackgroundColor();
+			result.setColor(scene.getBackgroundColor());
+			return;
 		}
-		return mirrorIntersection.getIntersectionObject().getSurface().getColor(mirrorIntersection, scene, iteration+1);
+		mirrorIntersection.getIntersectionObject().getSurface().getColor(mirrorIntersection, scene, iteration+1, result);
 	}
 	
 	/**
 	 * Returns the diffuse intensity for a given hit point.
+	 * Surfaces whose diffuse intensity varies over the surface write it to the given color and return it,
+	 * so no color is allocated for the lookup.
 	 * 
 	 * @param hit
+	 * @param scene
+	 * @param result A color which may receive the diffuse intensity.
 	 * @return The diffuse intensity for a given hit point.
 	 */
-	protected abstract IColor getDiffuseForHitPoint(Intersection hit);
+	protected abstract IColor getDiffuseForHitPoint(Intersection hit, Scene scene, IColor result);
 	
 	/**
 	 * Finishes parsing the surface and validates that all mandatory values were given and valid.
@@ -2,6 +2,7 @@ package surfaces;
 
 import java.io.FileNotFoundException;
 import scene.Intersection;
+import scene.Scene;
 import vectors.*;
 import colors.*;
 
@@ -143,11 +144,12 @@ public class CheckersSurface extends AbstractSurface {
 	 * Returns the diffuse intensity for a given hit point.
 	 * 
 	 * @param hit
+	 * @param scene
+	 * @param result A color which may receive the diffuse intensity (not used by this surface).
 	 * @return The diffuse intensity for a given hit point.
 	 */
-	protected IColor getDiffuseForHitPoint(Intersection hit) {
-		IPoint3D hitPoint = hit.getIntersectionPoint();
-		Point2D hitParam = hit.getIntersectionObject().parametrize(hitPoint);
+	protected IColor getDiffuseForHitPoint(Intersection hit, Scene scene, IColor result) {
+		Point2D hitParam = hit.getTexturePoint();
 		if (hitParam != null) {
 			if ((int)(hitParam.getX()/checkersSize)%2 + (int)(hitParam.getY()/checkersSize)%2 == 1) {
 				return checkersDiffuse1;
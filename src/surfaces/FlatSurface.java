@@ -2,6 +2,7 @@ package surfaces;
 
 import java.io.FileNotFoundException;
 import scene.Intersection;
+import scene.Scene;
 import colors.Color;
 import colors.IColor;
 
@@ -73,9 +74,11 @@ public class FlatSurface extends AbstractSurface {
 	 * Returns the diffuse intensity for a given hit point.
 	 * 
 	 * @param hit
+	 * @param scene
+	 * @param result A color which may receive the diffuse intensity (not used by this surface).
 	 * @return The diffuse intensity for a given hit point.
 	 */
-	protected IColor getDiffuseForHitPoint(Intersection hit) {
+	protected IColor getDiffuseForHitPoint(Intersection hit, Scene scene, IColor result) {
 		return diffuse;
 	}
 
@@ -115,6 +115,15 @@ public interface ISurface {
 	 */
 	public IColor getColor(Intersection hit, Scene scene, int iteration);
 	
+	/**
+	 * Computes the color of the surface at a given intersection point into the given color (without allocating colors).
+	 * @param hit The intersection information.
+	 * @param scene The scene.
+	 * @param iteration The iteration number (used for reflectance). Use the value 0.
+	 * @param result The color which receives the color of the surface.
+	 */
+	public void getColor(Intersection hit, Scene scene, int iteration, IColor result);
+	
     /**
      * Parses the given parameters to create a surface for a scene object.
      * 
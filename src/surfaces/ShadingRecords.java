@@ -0,0 +1,172 @@
+package surfaces;
+
+import colors.Color;
+import vectors.Point3D;
+import vectors.Vector3D;
+
+/**
+ * This class holds the colors and the vectors which are reused by a thread while computing the colors of hit points.
+ * There is one reflection color for every depth of the ray tree, so the reflection of a hit point is not overwritten
+ * while the color of the hit point is still being computed. The other colors and the vectors are only used before
+ * the reflection is traced (the rays which are created from the vectors copy them).
+ *
+ */
+class ShadingRecords {
+	private static final ThreadLocal<ShadingRecords> records = new ThreadLocal<ShadingRecords>() {
+		@Override
+		protected ShadingRecords initialValue() {
+			return new ShadingRecords();
+		}
+	};
+
+	private Color[] reflections;
+	private Color lightSum;
+	private Color temp;
+	private Color diffuse;
+	private Vector3D viewer;
+	private Vector3D lightDirection;
+	private Vector3D lightReflection;
+	private Vector3D mirror;
+	private Vector3D footprintNormal;
+	private Vector3D footprintTangent1;
+	private Vector3D footprintTangent2;
+	private Point3D footprintPoint;
+
+	/**
+	 * Constructs the colors for a thread.
+	 */
+	private ShadingRecords(){
+		reflections = new Color[0];
+		lightSum = new Color();
+		temp = new Color();
+		diffuse = new Color();
+		viewer = new Vector3D(0d,0d,0d);
+		lightDirection = new Vector3D(0d,0d,0d);
+		lightReflection = new Vector3D(0d,0d,0d);
+		mirror = new Vector3D(0d,0d,0d);
+		footprintNormal = new Vector3D(0d,0d,0d);
+		footprintTangent1 = new Vector3D(0d,0d,0d);
+		footprintTangent2 = new Vector3D(0d,0d,0d);
+		footprintPoint = new Point3D(0d,0d,0d);
+	}
+
+	/**
+	 * Returns the color of the current thread which receives the reflection for the given depth of the ray tree.
+	 *
+	 * @param depth
+	 * @return The color of the current thread which receives the reflection for the given depth of the ray tree.
+	 */
+	static Color getReflection(int depth){
+		ShadingRecords r = records.get();
+		if (depth>=r.reflections.length){
+			Color[] reflections = new Color[Math.max(depth+1, r.reflections.length*2)];
+			System.arraycopy(r.reflections, 0, reflections, 0, r.reflections.length);
+			for (int i=r.reflections.length; i<reflections.length; i++){
+				reflections[i] = new Color();
+			}
+			r.reflections = reflections;
+		}
+		return r.reflections[depth];
+	}
+
+	/**
+	 * Returns the color of the current thread which accumulates the intensities of the lights.
+	 *
+	 * @return The color of the current thread which accumulates the intensities of the lights.
+	 */
+	static Color getLightSum(){
+		return records.get().lightSum;
+	}
+
+	/**
+	 * Returns the color of the current thread which holds the intensity of a single light.
+	 *
+	 * @return The color of the current thread which holds the intensity of a single light.
+	 */
+	static Color getTemp(){
+		return records.get().temp;
+	}
+
+	/**
+	 * Returns the color of the current thread which receives the diffuse intensity of a hit point.
+	 *
+	 * @return The color of the current thread which receives the diffuse intensity of a hit point.
+	 */
+	static Color getDiffuse(){
+		return records.get().diffuse;
+	}
+
+	/**
+	 * Returns the vector of the current thread which receives the direction from a hit point to the viewer.
+	 *
+	 * @return The vector of the current thread which receives the direction from a hit point to the viewer.
+	 */
+	static Vector3D getViewer(){
+		return records.get().viewer;
+	}
+
+	/**
+	 * Returns the vector of the current thread which receives the direction from a hit point to a light.
+	 *
+	 * @return The vector of the current thread which receives the direction from a hit point to a light.
+	 */
+	static Vector3D getLightDirection(){
+		return records.get().lightDirection;
+	}
+
+	/**
+	 * Returns the vector of the current thread which receives the reflection of the direction to a light.
+	 *
+	 * @return The vector of the current thread which receives the reflection of the direction to a light.
+	 */
+	static Vector3D getLightReflection(){
+		return records.get().lightReflection;
+	}
+
+	/**
+	 * Returns the vector of the current thread which receives the direction of a reflected ray.
+	 *
+	 * @return The vector of the current thread which receives the direction of a reflected ray.
+	 */
+	static Vector3D getMirror(){
+		return records.get().mirror;
+	}
+
+	/**
+	 * Returns the vector of the current thread which receives the normal of a hit point whose texture footprint is
+	 * measured.
+	 *
+	 * @return The vector of the current thread which receives the normal of a hit point whose texture footprint is
+	 * measured.
+	 */
+	static Vector3D getFootprintNormal(){
+		return records.get().footprintNormal;
+	}
+
+	/**
+	 * Returns the vector of the current thread which receives the first tangent of a texture footprint.
+	 *
+	 * @return The vector of the current thread which receives the first tangent of a texture footprint.
+	 */
+	static Vector3D getFootprintTangent1(){
+		return records.get().footprintTangent1;
+	}
+
+	/**
+	 * Returns the vector of the current thread which receives the second tangent of a texture footprint.
+	 *
+	 * @return The vector of the current thread which receives the second tangent of a texture footprint.
+	 */
+	static Vector3D getFootprintTangent2(){
+		return records.get().footprintTangent2;
+	}
+
+	/**
+	 * Returns the point of the current thread which receives a point at the edge of a texture footprint.
+	 *
+	 * @return The point of the current thread which receives a point at the edge of a texture footprint.
+	 */
+	static Point3D getFootprintPoint(){
+		return records.get().footprintPoint;
+	}
+}
@@ -1,9 +1,9 @@
 package surfaces;
 
 import java.io.FileNotFoundException;
-import org.eclipse.swt.graphics.ImageData;
 import scene.Intersection;
 import scene.Scene;
+import textures.*;
 import vectors.*;
 import colors.*;
 
@@ -14,7 +14,10 @@ import colors.*;
 public class TextureSurface extends AbstractSurface {
 
 	private String texture;
-	private ImageData textureImage;
+	private Texture textureImage;
+	private static final double MIN_FOOTPRINT_COS = 0.05;
+	private static final Vector3D X_AXIS = new Vector3D(1, 0, 0);
+	private static final Vector3D Y_AXIS = new Vector3D(0, 1, 0);
 
 	/**
 	 * Constructs a texture surface.
@@ -41,16 +44,17 @@ public class TextureSurface extends AbstractSurface {
 	}
 
 	/**
-	 * Returns the texture as ImageData.
+	 * Returns the decoded texture (shared with all the surfaces which use the same texture file).
 	 * 
-	 * @return The texture as ImageData.
+	 * @return The decoded texture.
 	 */
-	public ImageData getTextureImage() {
+	public Texture getTextureImage() {
 		return textureImage;
 	}
 
 	/**
 	 * Opens and Sets the texture for the surface.
+	 * The texture is decoded once and shared through the texture cache.
 	 * 
 	 * @param texture
 	 * @throws FileNotFoundException
@@ -63,12 +67,7 @@ public class TextureSurface extends AbstractSurface {
 			throw new FileNotFoundException("The supported file format is png.");
 		}
 		this.texture = texture;
-		try {
-			textureImage = new ImageData(Scene.getPathToTextureFile() + texture);
-		}
-		catch (Exception e) {
-			throw new FileNotFoundException();
-		}
+		textureImage = TextureCache.getTexture(Scene.getPathToTextureFile() + texture);
 	}
 
 	/**
@@ -122,22 +121,78 @@ public class TextureSurface extends AbstractSurface {
 	
 	/**
 	 * Returns the diffuse intensity for a given hit point.
+	 * The texture is sampled with the texture filter of the scene.
 	 * 
 	 * @param hit
-	 * @return The diffuse intensity for a given hit point.
+	 * @param scene
+	 * @param result A color which may receive the diffuse intensity.
+	 * @return The diffuse intensity for a given hit point (either the given color or the diffuse color of the surface).
 	 */
-	protected IColor getDiffuseForHitPoint(Intersection hit) {
-		IPoint3D hitPoint = hit.getIntersectionPoint();
-		Point2D hitParam = hit.getIntersectionObject().parametrize(hitPoint);
+	protected IColor getDiffuseForHitPoint(Intersection hit, Scene scene, IColor result) {
+		Point2D hitParam = hit.getTexturePoint();
 		if (hitParam != null && textureImage != null) {
-			int xPixel = Math.max(Math.min((int)(hitParam.getX()*textureImage.width-1), textureImage.width), 0);
-			int yPixel = Math.max(Math.min((int)(hitParam.getY()*textureImage.height-1), textureImage.height), 0);
-			int pixel = textureImage.getPixel(xPixel, yPixel);
-			double red = Color.getRedScaledFromRGB(pixel) / 255d;
-			double green = Color.getGreenScaledFromRGB(pixel) / 255d;
-			double blue = Color.getBlueScaledFromRGB(pixel) / 255d;
-			return new Color(red, green, blue);
+			String filter = scene.getTextureFilter();
+			if (filter.equals("trilinear")){
+				textureImage.getTrilinearColor(hitParam.getX(), hitParam.getY(), getFootprint(hit, scene), result);
+			}else if (filter.equals("bilinear")){
+				textureImage.getBilinearColor(hitParam.getX(), hitParam.getY(), result);
+			}else{
+				textureImage.getColor(hitParam.getX(), hitParam.getY(), result);
+			}
+			return result;
 		}
 		return diffuse;
 	}
+
+	/**
+	 * Returns the width (in texels) of the footprint of a sample on the texture at the given hit point.
+	 * The width of the sample on the surface is found from its distance and the angle between the ray and the surface,
+	 * and it is mapped to the texture by parametrizing points which are that far from the hit point along the surface.
+	 * The vectors and the points are the ones of the current thread (see ShadingRecords), so only the two texture
+	 * points are allocated.
+	 * 
+	 * @param hit
+	 * @param scene
+	 * @return The width of the footprint of the sample on the texture (in texels).
+	 */
+	private double getFootprint(Intersection hit, Scene scene) {
+		Vector3D normal = ShadingRecords.getFootprintNormal().setNormalized(hit.getNormal());
+		double cos = Math.max(Math.abs(hit.getRay().getV().dotProduct(normal)), MIN_FOOTPRINT_COS);
+		double width = hit.getDistance() * scene.getPixelSpreadAngle() / cos;
+		if (width<=0){
+			return 0;
+		}
+		// the dot product with the x axis is the x coordinate of the normal
+		IVector3D axis = (Math.abs(normal.dotProduct(X_AXIS))<0.9) ? X_AXIS : Y_AXIS;
+		Vector3D tangent1 = ShadingRecords.getFootprintTangent1().setCrossProduct(normal, axis);
+		tangent1.setNormalized(tangent1);
+		Vector3D tangent2 = ShadingRecords.getFootprintTangent2().setCrossProduct(normal, tangent1);
+		tangent1.setScaled(tangent1, width);
+		tangent2.setScaled(tangent2, width);
+		Point2D hitParam = hit.getTexturePoint();
+		IPoint3D hitPoint = hit.getIntersectionPoint();
+		Point3D point = ShadingRecords.getFootprintPoint();
+		Point2D param1 = hit.getIntersectionObject().parametrize(point.setMovedPoint(hitPoint, tangent1));
+		Point2D param2 = hit.getIntersectionObject().parametrize(point.setMovedPoint(hitPoint, tangent2));
+		return Math.max(getTexelDistance(hitParam, param1), getTexelDistance(hitParam, param2));
+	}
+
+	/**
+	 * Returns the distance (in texels) between two 2D texture points, along the axis where they are farthest apart.
+	 * Texture coordinates wrap around (i.e the seam of a sphere), so a distance of more than half the texture is measured the other way.
+	 * 
+	 * @param p1
+	 * @param p2
+	 * @return The distance between the two texture points (in texels).
+	 */
+	private double getTexelDistance(Point2D p1, Point2D p2) {
+		if (p2 == null){
+			return 0;
+		}
+		double du = Math.abs(p1.getX()-p2.getX());
+		double dv = Math.abs(p1.getY()-p2.getY());
+		du = (du>0.5) ? 1-du : du;
+		dv = (dv>0.5) ? 1-dv : dv;
+		return Math.max(du*textureImage.getWidth(), dv*textureImage.getHeight());
+	}
 }
@@ -0,0 +1,257 @@
+package textures;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+
+import colors.Color;
+import colors.IColor;
+
+/**
+ * This class represents a decoded texture image.
+ * The texels are kept as packed int RGB values (row by row), so a lookup is an array access
+ * instead of going through the palette and depth handling of the image.
+ * A mipmap pyramid (each level half the size of the previous one, down to 1x1) is generated once when the texture
+ * is constructed, so minified textures can be sampled from a level whose texels match the footprint of the sample.
+ *
+ */
+public class Texture {
+	private static final double RGB_SCALE = 255d;
+	private final int width;
+	private final int height;
+	private final int[] texels;
+	private final int[][] levels;
+	private final int[] levelWidths;
+	private final int[] levelHeights;
+
+	/**
+	 * Constructs a texture from the given texels (and generates its mipmap levels).
+	 *
+	 * @param width
+	 * @param height
+	 * @param texels The packed int RGB values of the texels (row by row).
+	 */
+	public Texture(int width, int height, int[] texels){
+		this.width = width;
+		this.height = height;
+		this.texels = texels;
+		int count = 1;
+		for (int w=width, h=height; (w>1)||(h>1); w=Math.max(1, w/2), h=Math.max(1, h/2)){
+			count++;
+		}
+		levels = new int[count][];
+		levelWidths = new int[count];
+		levelHeights = new int[count];
+		levels[0] = texels;
+		levelWidths[0] = width;
+		levelHeights[0] = height;
+		for (int i=1; i<count; i++){
+			levelWidths[i] = Math.max(1, levelWidths[i-1]/2);
+			levelHeights[i] = Math.max(1, levelHeights[i-1]/2);
+			levels[i] = downsample(levels[i-1], levelWidths[i-1], levelHeights[i-1], levelWidths[i], levelHeights[i]);
+		}
+	}
+
+	/**
+	 * Constructs a texture by decoding the given image.
+	 *
+	 * @param image
+	 */
+	public Texture(ImageData image){
+		this(image.width, image.height, decode(image));
+	}
+
+	/**
+	 * Decodes the pixels of the image to packed int RGB values.
+	 *
+	 * @param image
+	 * @return The packed int RGB values of the pixels of the image (row by row).
+	 */
+	private static int[] decode(ImageData image){
+		int[] texels = new int[image.width*image.height];
+		int[] row = new int[image.width];
+		PaletteData palette = image.palette;
+		for (int y=0; y<image.height; y++){
+			image.getPixels(0, y, image.width, row, 0);
+			for (int x=0; x<image.width; x++){
+				RGB rgb = palette.getRGB(row[x]);
+				texels[y*image.width+x] = Color.makeRGB(rgb.red, rgb.green, rgb.blue);
+			}
+		}
+		return texels;
+	}
+
+	/**
+	 * Returns the width of the texture (in texels).
+	 *
+	 * @return The width of the texture (in texels).
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Returns the height of the texture (in texels).
+	 *
+	 * @return The height of the texture (in texels).
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Returns the packed int RGB value of the texel at coordinates (x,y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return The packed int RGB value of the texel at coordinates (x,y).
+	 */
+	public int getTexel(int x, int y){
+		return texels[y*width+x];
+	}
+
+	/**
+	 * Averages every 2x2 block of texels of a mipmap level to build the next level.
+	 *
+	 * @param source The texels of the previous level.
+	 * @param sourceWidth
+	 * @param sourceHeight
+	 * @param width The width of the new level.
+	 * @param height The height of the new level.
+	 * @return The texels of the new level.
+	 */
+	private static int[] downsample(int[] source, int sourceWidth, int sourceHeight, int width, int height){
+		int[] level = new int[width*height];
+		for (int y=0; y<height; y++){
+			int y0 = Math.min(2*y, sourceHeight-1);
+			int y1 = Math.min(2*y+1, sourceHeight-1);
+			for (int x=0; x<width; x++){
+				int x0 = Math.min(2*x, sourceWidth-1);
+				int x1 = Math.min(2*x+1, sourceWidth-1);
+				int t00 = source[y0*sourceWidth+x0];
+				int t01 = source[y0*sourceWidth+x1];
+				int t10 = source[y1*sourceWidth+x0];
+				int t11 = source[y1*sourceWidth+x1];
+				int red = (Color.getRedScaledFromRGB(t00)+Color.getRedScaledFromRGB(t01)+Color.getRedScaledFromRGB(t10)+Color.getRedScaledFromRGB(t11)+2)/4;
+				int green = (Color.getGreenScaledFromRGB(t00)+Color.getGreenScaledFromRGB(t01)+Color.getGreenScaledFromRGB(t10)+Color.getGreenScaledFromRGB(t11)+2)/4;
+				int blue = (Color.getBlueScaledFromRGB(t00)+Color.getBlueScaledFromRGB(t01)+Color.getBlueScaledFromRGB(t10)+Color.getBlueScaledFromRGB(t11)+2)/4;
+				level[y*width+x] = Color.makeRGB(red, green, blue);
+			}
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the number of mipmap levels of the texture (including the texture itself).
+	 *
+	 * @return The number of mipmap levels of the texture.
+	 */
+	public int getLevelCount(){
+		return levels.length;
+	}
+
+	/**
+	 * Returns the number of bytes which are used by the texels (of all the mipmap levels).
+	 *
+	 * @return The number of bytes which are used by the texels.
+	 */
+	public long getSizeInBytes(){
+		long size = 0;
+		for (int i=0; i<levels.length; i++){
+			size += 4L*levels[i].length;
+		}
+		return size;
+	}
+
+	/**
+	 * Reads the color of the texel which is mapped to the given 2D texture point (nearest texel) into the given color.
+	 *
+	 * @param u X-coordinate of the texture point (between 0 and 1).
+	 * @param v Y-coordinate of the texture point (between 0 and 1).
+	 * @param result The color which receives the color of the texel.
+	 */
+	public void getColor(double u, double v, IColor result){
+		int x = Math.max(Math.min((int)(u*width-1), width-1), 0);
+		int y = Math.max(Math.min((int)(v*height-1), height-1), 0);
+		int texel = texels[y*width+x];
+		result.setColor(Color.getRedScaledFromRGB(texel) / RGB_SCALE,
+				Color.getGreenScaledFromRGB(texel) / RGB_SCALE,
+				Color.getBlueScaledFromRGB(texel) / RGB_SCALE);
+	}
+
+	/**
+	 * Reads the color of the given 2D texture point into the given color, interpolating the 4 nearest texels
+	 * of the texture (bilinear filtering).
+	 *
+	 * @param u X-coordinate of the texture point (between 0 and 1).
+	 * @param v Y-coordinate of the texture point (between 0 and 1).
+	 * @param result The color which receives the color of the texture point.
+	 */
+	public void getBilinearColor(double u, double v, IColor result){
+		result.setColor(0, 0, 0);
+		addBilinearColor(0, u, v, 1, result);
+	}
+
+	/**
+	 * Reads the color of the given 2D texture point into the given color, interpolating between the two mipmap levels
+	 * whose texels are closest to the footprint of the sample (trilinear filtering).
+	 *
+	 * @param u X-coordinate of the texture point (between 0 and 1).
+	 * @param v Y-coordinate of the texture point (between 0 and 1).
+	 * @param footprint The width of the sample on the texture (in texels of the texture itself).
+	 * @param result The color which receives the color of the texture point.
+	 */
+	public void getTrilinearColor(double u, double v, double footprint, IColor result){
+		result.setColor(0, 0, 0);
+		double lod = (footprint>1) ? Math.log(footprint)/Math.log(2) : 0;
+		if (lod>=levels.length-1){
+			addBilinearColor(levels.length-1, u, v, 1, result);
+			return;
+		}
+		int level = (int)lod;
+		double fraction = lod-level;
+		addBilinearColor(level, u, v, 1-fraction, result);
+		if (fraction>0){
+			addBilinearColor(level+1, u, v, fraction, result);
+		}
+	}
+
+	/**
+	 * Adds the bilinear interpolation of the 4 texels of a mipmap level which are nearest to the given 2D texture point
+	 * (multiplied by a weight) to the given color.
+	 *
+	 * @param level The mipmap level.
+	 * @param u X-coordinate of the texture point (between 0 and 1).
+	 * @param v Y-coordinate of the texture point (between 0 and 1).
+	 * @param weight The weight of the level.
+	 * @param result The color which accumulates the interpolated color.
+	 */
+	private void addBilinearColor(int level, double u, double v, double weight, IColor result){
+		int[] texels = levels[level];
+		int w = levelWidths[level];
+		int h = levelHeights[level];
+		double fx = Math.max(Math.min(u*w-0.5, w-1), 0);
+		double fy = Math.max(Math.min(v*h-0.5, h-1), 0);
+		int x0 = (int)fx;
+		int y0 = (int)fy;
+		int x1 = Math.min(x0+1, w-1);
+		int y1 = Math.min(y0+1, h-1);
+		double ax = fx-x0;
+		double ay = fy-y0;
+		double w00 = (1-ax)*(1-ay)*weight/RGB_SCALE;
+		double w01 = ax*(1-ay)*weight/RGB_SCALE;
+		double w10 = (1-ax)*ay*weight/RGB_SCALE;
+		double w11 = ax*ay*weight/RGB_SCALE;
+		int t00 = texels[y0*w+x0];
+		int t01 = texels[y0*w+x1];
+		int t10 = texels[y1*w+x0];
+		int t11 = texels[y1*w+x1];
+		result.setColor(
+				result.getRed() + w00*Color.getRedScaledFromRGB(t00) + w01*Color.getRedScaledFromRGB(t01)
+				+ w10*Color.getRedScaledFromRGB(t10) + w11*Color.getRedScaledFromRGB(t11),
+				result.getGreen() + w00*Color.getGreenScaledFromRGB(t00) + w01*Color.getGreenScaledFromRGB(t01)
+				+ w10*Color.getGreenScaledFromRGB(t10) + w11*Color.getGreenScaledFromRGB(t11),
+				result.getBlue() + w00*Color.getBlueScaledFromRGB(t00) + w01*Color.getBlueScaledFromRGB(t01)
+				+ w10*Color.getBlueScaledFromRGB(t10) + w11*Color.getBlueScaledFromRGB(t11));
+	}
+}
@@ -0,0 +1,141 @@
+package textures;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.ImageData;
+
+/**
+ * This class holds the decoded textures which are shared by all the scenes of the process.
+ * The textures are keyed by the canonical path of their file, so a texture file is decoded once no matter how many
+ * surfaces use it (it is decoded again only if the file was modified).
+ * The cache has a memory budget: when the decoded textures exceed it, the least recently used textures are evicted
+ * (surfaces which already hold an evicted texture keep using it).
+ *
+ */
+public class TextureCache {
+	/**
+	 * The default memory budget of the cache (in megabytes), used unless the raytracer.texture-cache-mb property is set.
+	 */
+	public static final int DEFAULT_BUDGET_MB = 256;
+
+	private static final LinkedHashMap<String, Entry> textures = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private static long budget = 1024L*1024L*Integer.getInteger("raytracer.texture-cache-mb", DEFAULT_BUDGET_MB);
+	private static long size = 0;
+
+	/**
+	 * A decoded texture and the modification time of its file.
+	 */
+	private static class Entry {
+		private final Texture texture;
+		private final long lastModified;
+
+		/**
+		 * Constructs a cache entry.
+		 *
+		 * @param texture
+		 * @param lastModified
+		 */
+		private Entry(Texture texture, long lastModified){
+			this.texture = texture;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * The cache is only used through its static methods.
+	 */
+	private TextureCache(){
+	}
+
+	/**
+	 * Returns the decoded texture of the given image file (the file is decoded if it is not in the cache).
+	 *
+	 * @param filename
+	 * @return The decoded texture of the given image file.
+	 * @throws FileNotFoundException
+	 */
+	public static synchronized Texture getTexture(String filename) throws FileNotFoundException {
+		File file = new File(filename);
+		String key;
+		try {
+			key = file.getCanonicalPath();
+		} catch (IOException e) {
+			throw new FileNotFoundException(filename);
+		}
+		long lastModified = file.lastModified();
+		Entry entry = textures.get(key);
+		if ((entry!=null)&&(entry.lastModified==lastModified)){
+			return entry.texture;
+		}
+		if (entry!=null){
+			textures.remove(key);
+			size -= entry.texture.getSizeInBytes();
+		}
+		Texture texture;
+		try {
+			texture = new Texture(new ImageData(key));
+		} catch (Exception e) {
+			throw new FileNotFoundException(filename);
+		}
+		textures.put(key, new Entry(texture, lastModified));
+		size += texture.getSizeInBytes();
+		evict();
+		return texture;
+	}
+
+	/**
+	 * Returns the memory budget of the cache (in bytes).
+	 *
+	 * @return The memory budget of the cache (in bytes).
+	 */
+	public static synchronized long getBudget(){
+		return budget;
+	}
+
+	/**
+	 * Sets the memory budget of the cache (in bytes) and evicts textures if the cache exceeds it.
+	 *
+	 * @param budget
+	 */
+	public static synchronized void setBudget(long budget){
+		if (budget>=0){
+			TextureCache.budget = budget;
+			evict();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes which are used by the textures in the cache.
+	 *
+	 * @return The number of bytes which are used by the textures in the cache.
+	 */
+	public static synchronized long getSizeInBytes(){
+		return size;
+	}
+
+	/**
+	 * Removes all the textures from the cache.
+	 */
+	public static synchronized void clear(){
+		textures.clear();
+		size = 0;
+	}
+
+	/**
+	 * Evicts the least recently used textures until the cache fits its budget
+	 * (the most recently used texture is always kept).
+	 */
+	private static void evict(){
+		Iterator<Map.Entry<String, Entry>> iter = textures.entrySet().iterator();
+		while ((size>budget)&&(textures.size()>1)&&(iter.hasNext())){
+			Entry entry = iter.next().getValue();
+			iter.remove();
+			size -= entry.texture.getSizeInBytes();
+		}
+	}
+}
@@ -90,12 +90,30 @@ public class Point3D implements IPoint3D {
 	 */
 	@Override
 	public IPoint3D movePointByVector(IVector3D v) {
-		double nx = getX() + v.getEndPoint().getX();
-		double ny = getY() + v.getEndPoint().getY();
-		double nz = getZ() + v.getEndPoint().getZ();
+		IPoint3D end = Vector3D.endPointOf(v);
+		double nx = getX() + end.getX();
+		double ny = getY() + end.getY();
+		double nz = getZ() + end.getZ();
 		return new Point3D(nx,ny,nz);
 	}
 	
+	/**
+	 * Sets this point to the given point moved at the direction of the given vector (the same as movePointByVector,
+	 * but changes this point, so it is only used on points which are not shared, i.e the points which are reused by a
+	 * thread while shading).
+	 * 
+	 * @param point
+	 * @param v
+	 * @return This point.
+	 */
+	public Point3D setMovedPoint(IPoint3D point, IVector3D v) {
+		IPoint3D end = Vector3D.endPointOf(v);
+		x = point.getX() + end.getX();
+		y = point.getY() + end.getY();
+		z = point.getZ() + end.getZ();
+		return this;
+	}
+
 	/**
 	 * Returns the distance between this point and the given point.
 	 * 
@@ -57,9 +57,10 @@ public class Vector3D implements IVector3D {
 	 */
 	@Override
 	public double dotProduct(IVector3D otherVector) {
-		double dx = endPoint.getX()*otherVector.getEndPoint().getX();
-		double dy = endPoint.getY()*otherVector.getEndPoint().getY();
-		double dz = endPoint.getZ()*otherVector.getEndPoint().getZ();
+		IPoint3D other = endPointOf(otherVector);
+		double dx = endPoint.getX()*other.getX();
+		double dy = endPoint.getY()*other.getY();
+		double dz = endPoint.getZ()*other.getZ();
 		return dx+dy+dz;
 	}
 
@@ -71,9 +72,10 @@ public class Vector3D implements IVector3D {
 	 */
 	@Override
 	public IVector3D crossProduct(IVector3D otherVector) {
-		double x = endPoint.getY()*otherVector.getEndPoint().getZ() - endPoint.getZ()*otherVector.getEndPoint().getY();
-		double y = endPoint.getZ()*otherVector.getEndPoint().getX() - endPoint.getX()*otherVector.getEndPoint().getZ();
-		double z = endPoint.getX()*otherVector.getEndPoint().getY() - endPoint.getY()*otherVector.getEndPoint().getX();
+		IPoint3D other = endPointOf(otherVector);
+		double x = endPoint.getY()*other.getZ() - endPoint.getZ()*other.getY();
+		double y = endPoint.getZ()*other.getX() - endPoint.getX()*other.getZ();
+		double z = endPoint.getX()*other.getY() - endPoint.getY()*other.getX();
 		return new Vector3D(x,y,z);
 	}
 	
@@ -104,17 +106,7 @@ public class Vector3D implements IVector3D {
 	 */
 	@Override
 	public IVector3D normalize() {
-		double x = getEndPoint().getX();
-		double y = getEndPoint().getY();
-		double z = getEndPoint().getZ();
-		double vectorLength = x*x + y*y + z*z;
-        if ((vectorLength != 0)&&(vectorLength != 1)){
-        	vectorLength = (1 / Math.sqrt(vectorLength));
-        }
-        x *= vectorLength;
-        y *= vectorLength;
-        z *= vectorLength;
-		return new Vector3D(new Point3D(x,y,z));
+		return new Vector3D(0d,0d,0d).setNormalized(endPoint.getX(), endPoint.getY(), endPoint.getZ());
 	}
 	
 	/**
@@ -125,9 +117,10 @@ public class Vector3D implements IVector3D {
 	 */
 	@Override
 	public IVector3D addVector(IVector3D otherVector) {
-		double newX = getEndPoint().getX() + otherVector.getEndPoint().getX();
-		double newY = getEndPoint().getY() + otherVector.getEndPoint().getY();
-		double newZ = getEndPoint().getZ() + otherVector.getEndPoint().getZ();
+		IPoint3D other = endPointOf(otherVector);
+		double newX = endPoint.getX() + other.getX();
+		double newY = endPoint.getY() + other.getY();
+		double newZ = endPoint.getZ() + other.getZ();
 		return new Vector3D(newX, newY, newZ);
 	}
 	
@@ -139,9 +132,10 @@ public class Vector3D implements IVector3D {
 	 */
 	@Override
 	public Vector3D subtractVector(IVector3D otherVector) {
-		double newX = getEndPoint().getX() - otherVector.getEndPoint().getX();
-		double newY = getEndPoint().getY() - otherVector.getEndPoint().getY();
-		double newZ = getEndPoint().getZ() - otherVector.getEndPoint().getZ();
+		IPoint3D other = endPointOf(otherVector);
+		double newX = endPoint.getX() - other.getX();
+		double newY = endPoint.getY() - other.getY();
+		double newZ = endPoint.getZ() - other.getZ();
 		return new Vector3D(newX, newY, newZ);
 	}
 	
@@ -198,7 +192,128 @@ public class Vector3D implements IVector3D {
 
 		// I' = I - 2*(N.I)*N;
 
-		double dot = this.dotProduct(mirrorVector);
-		return this.multiplyByScalar(-1).addVector(mirrorVector.multiplyByScalar(2d*dot)).normalize();
+		return new Vector3D(0d,0d,0d).setMirror(this, mirrorVector);
+	}
+
+	/**
+	 * Sets the coordinates of this vector (changes this vector, so it is only used on vectors which own their end point
+	 * and are not shared, i.e the vectors which are reused by a thread while shading).
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return This vector.
+	 */
+	public Vector3D setCoordinates(double x, double y, double z){
+		endPoint.setX(x);
+		endPoint.setY(y);
+		endPoint.setZ(z);
+		return this;
+	}
+
+	/**
+	 * Sets this vector to the given vector multiplied by the given scalar (the same as multiplyByScalar, but changes
+	 * this vector, see setCoordinates).
+	 * 
+	 * @param vector
+	 * @param scalar
+	 * @return This vector.
+	 */
+	public Vector3D setScaled(IVector3D vector, double scalar){
+		IPoint3D p = endPointOf(vector);
+		return setCoordinates(p.getX()*scalar, p.getY()*scalar, p.getZ()*scalar);
+	}
+
+	/**
+	 * Sets this vector to the normalized direction from the origin to the end point (the same as normalizing
+	 * new Vector3D(origin, endPoint), but changes this vector, see setCoordinates).
+	 * 
+	 * @param origin
+	 * @param endPoint
+	 * @return This vector.
+	 */
+	public Vector3D setDirection(IPoint3D origin, IPoint3D endPoint){
+		return setNormalized(endPoint.getX()-origin.getX(), endPoint.getY()-origin.getY(), endPoint.getZ()-origin.getZ());
+	}
+
+	/**
+	 * Sets this vector to the reflected (mirror) vector of the given vector (the same as mirror, but changes this
+	 * vector, see setCoordinates). The given vector may be this vector.
+	 * 
+	 * @param vector
+	 * @param mirrorVector
+	 * @return This vector.
+	 */
+	public Vector3D setMirror(IVector3D vector, IVector3D mirrorVector){
+		// I = incident vector
+		// N = normal of surface
+
+		// the reflected vector is:
+
+		// I' = I - 2*(N.I)*N;
+
+		IPoint3D i = endPointOf(vector);
+		IPoint3D n = endPointOf(mirrorVector);
+		double dot = vector.dotProduct(mirrorVector);
+		double scalar = 2d*dot;
+		return setNormalized(i.getX()*-1 + n.getX()*scalar, i.getY()*-1 + n.getY()*scalar, i.getZ()*-1 + n.getZ()*scalar);
+	}
+
+	/**
+	 * Sets this vector to the normalized vector of the given vector (the same as normalize, but changes this vector,
+	 * see setCoordinates). The given vector may be this vector.
+	 * 
+	 * @param vector
+	 * @return This vector.
+	 */
+	public Vector3D setNormalized(IVector3D vector){
+		IPoint3D p = endPointOf(vector);
+		return setNormalized(p.getX(), p.getY(), p.getZ());
+	}
+
+	/**
+	 * Sets this vector to the cross product of the given vectors (the same as crossProduct, but changes this vector,
+	 * see setCoordinates). The given vectors may be this vector.
+	 * 
+	 * @param vector
+	 * @param otherVector
+	 * @return This vector.
+	 */
+	public Vector3D setCrossProduct(IVector3D vector, IVector3D otherVector){
+		IPoint3D p = endPointOf(vector);
+		IPoint3D other = endPointOf(otherVector);
+		double x = p.getY()*other.getZ() - p.getZ()*other.getY();
+		double y = p.getZ()*other.getX() - p.getX()*other.getZ();
+		double z = p.getX()*other.getY() - p.getY()*other.getX();
+		return setCoordinates(x, y, z);
+	}
+
+	/**
+	 * Sets this vector to the normalized vector of the given coordinates (see setCoordinates).
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return This vector.
+	 */
+	private Vector3D setNormalized(double x, double y, double z){
+		double vectorLength = x*x + y*y + z*z;
+        if ((vectorLength != 0)&&(vectorLength != 1)){
+        	vectorLength = (1 / Math.sqrt(vectorLength));
+        }
+        x *= vectorLength;
+        y *= vectorLength;
+        z *= vectorLength;
+		return setCoordinates(x, y, z);
+	}
+
+	/**
+	 * Returns the end point of the given vector without copying it when it is a Vector3D (it must not be changed).
+	 * 
+	 * @param vector
+	 * @return The end point of the given vector.
+	 */
+	static IPoint3D endPointOf(IVector3D vector){
+		return (vector instanceof Vector3D) ? ((Vector3D)vector).endPoint : vector.getEndPoint();
 	}
 }
@@ -0,0 +1,104 @@
+package rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import colors.FrameBuffer;
+import colors.IFrameBuffer;
+import scene.Scene;
+import scene.SceneParser;
+
+/**
+ * Tests of the tile renderer.
+ *
+ */
+public class TileRendererTest {
+	private static final String SCENE = "scene:\nbackground-col = 0.8 0.8 1\nambient-light = 1 1 1\n\n"
+			+ "camera:\neye = 6 0 0\ndirection = -1 0 0\nscreen-dist = 1.2\nup-direction = 0 1 0\n\n"
+			+ "light-point:\npos = 1 2 -2\ncolor = 1 1 1\n\n"
+			+ "sphere:\ncenter = 0 0.8 0\nradius = 0.8\nmtl-diffuse = 0.6 0.2 0.2\n";
+
+	/**
+	 * Returns a compiled scene of the given size.
+	 *
+	 * @param width
+	 * @param height
+	 * @return A compiled scene of the given size.
+	 * @throws Exception
+	 */
+	private static Scene createScene(int width, int height) throws Exception {
+		Scene scene = new Scene();
+		scene.setCanvasSize(height, width);
+		new SceneParser(scene).parse(new StringReader(SCENE));
+		scene.initSceneViewPlane();
+		scene.compile();
+		return scene;
+	}
+
+	/**
+	 * A tile fails while another thread is blocked by a streaming sink, which waits for the band of the failed tile:
+	 * the render must stop the blocked thread and throw the failure.
+	 *
+	 * @throws Exception
+	 */
+	@Test(timeout=20000)
+	public void testFailureWhileSinkIsFull() throws Exception {
+		final int size = 32;
+		final int tileSize = 8;
+		final int tilesX = size/tileSize;
+		final CountDownLatch blocked = new CountDownLatch(1);
+		TileRenderer renderer = new TileRenderer(createScene(size, size), tileSize, 2) {
+			@Override
+			protected boolean renderTile(IFrameBuffer buffer, Tile tile, FrameBuffer tileBuffer) throws IOException {
+				if (tile.getIndex()==0){
+					// fail only when the other thread renders a band which the sink does not take yet
+					try {
+						blocked.await(10, TimeUnit.SECONDS);
+						Thread.sleep(200);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					throw new IllegalStateException("tile failed");
+				}
+				if (tile.getIndex()>=2*tilesX){
+					blocked.countDown();
+				}
+				return super.renderTile(buffer, tile, tileBuffer);
+			}
+		};
+		StreamingImageSink sink = new StreamingImageSink(new IImageEncoder() {
+			public String getFormat(){
+				return "none";
+			}
+
+			public void begin(int width, int height){
+			}
+
+			public void writeRow(int[] rgb, int offset){
+			}
+
+			public void finish(){
+			}
+		}, size, size, tileSize, 2);
+		renderer.addTileListener(sink);
+		try {
+			renderer.render(size, size);
+			fail("The failure of the tile was not thrown");
+		} catch (IllegalStateException e) {
+			assertEquals("tile failed", e.getMessage());
+		} finally {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				// the image is not complete
+			}
+		}
+	}
+}